@@ -0,0 +1,24 @@
+package com.opentalk.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @author welsir
+ * @description : 基准测试入口，默认挂 GC profiler 输出 gc.alloc.rate.norm（每次操作分配字节数）。
+ *                用法：java -jar OpenTalk-bench/target/benchmarks.jar [基准类正则]
+ * @date 2026/10/17
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "com\\.opentalk\\.bench\\..*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,96 @@
+package com.opentalk.bench;
+
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.message.MetaMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author welsir
+ * @description : MessageCodec 编解码：默认大小缓冲区逐步扩容 vs 精确长度组合缓冲区，拷贝解码 vs 零拷贝解码
+ * @date 2026/10/17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    private static final int MESSAGES = 1024;
+
+    @Param({"tiny", "chat", "4096", "media"})
+    private String payload;
+
+    @Param({"0", "2", "8"})
+    private int headerCount;
+
+    @Param({"true", "false"})
+    private boolean pooled;
+
+    private ByteBufAllocator alloc;
+    private MetaMessage[] messages;
+    private ByteBuf[] frames;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        alloc = pooled ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
+        messages = Payloads.messages(payload, headerCount, MESSAGES, 42);
+        frames = new ByteBuf[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            ByteBuf frame = Unpooled.buffer(MessageCodec.computeFrameSize(messages[i]));
+            MessageCodec.encode(frame, messages[i]);
+            frames[i] = frame;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = (i + 1) & (MESSAGES - 1);
+        return i;
+    }
+
+    @Benchmark
+    public void encodeGrowing(Blackhole bh) {
+        ByteBuf buf = alloc.ioBuffer();
+        MessageCodec.encode(buf, messages[next()]);
+        bh.consume(buf.readableBytes());
+        buf.release();
+    }
+
+    @Benchmark
+    public void encodeExact(Blackhole bh) {
+        ByteBuf buf = MessageCodec.encode(alloc, messages[next()]);
+        bh.consume(buf.readableBytes());
+        buf.release();
+    }
+
+    @Benchmark
+    public void decodeCopy(Blackhole bh) {
+        MetaMessage msg = MessageCodec.decode(frames[next()].duplicate());
+        bh.consume(msg.getBody());
+    }
+
+    @Benchmark
+    public void decodeRetained(Blackhole bh) {
+        MetaMessage msg = MessageCodec.decodeRetained(frames[next()].duplicate());
+        bh.consume(msg.calculateBodyLength());
+        msg.release();
+    }
+}
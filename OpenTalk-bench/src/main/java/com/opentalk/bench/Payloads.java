@@ -0,0 +1,90 @@
+package com.opentalk.bench;
+
+import com.opentalk.netty.message.HeaderType;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.message.MetaMessageHead;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author welsir
+ * @description : 按典型流量分布生成基准测试用的消息，固定随机种子保证各次运行可比
+ * @date 2026/10/17
+ */
+public class Payloads {
+
+    private static final String TEXT = "{\"type\":\"text\",\"content\":\"今天下午三点开会，记得带上周报。ok 收到 👍 see you later\","
+            + "\"mentions\":[],\"quote\":null,\"ext\":{\"client\":\"android\",\"ver\":\"3.2.1\"}}";
+
+    /**
+     * distribution 取值：
+     * tiny  — 16~64 字节，打字提示/回执一类的小消息；
+     * chat  — 85% 20~200 字节，12% 200~2KB，3% 2KB~16KB，模拟普通聊天流量；
+     * media — 32KB~256KB，图片/语音分片；
+     * 纯数字 — 固定大小。
+     */
+    public static MetaMessage[] messages(String distribution, int headerCount, int count, long seed) {
+        Random random = new Random(seed);
+        MetaMessage[] messages = new MetaMessage[count];
+        for (int i = 0; i < count; i++) {
+            MetaMessage msg = new MetaMessage();
+            msg.setVersion(1);
+            msg.setCmd(1);
+            msg.setHeaders(headers(headerCount, random));
+            msg.setBody(body(sampleSize(distribution, random)));
+            messages[i] = msg;
+        }
+        return messages;
+    }
+
+    static int sampleSize(String distribution, Random random) {
+        switch (distribution) {
+            case "tiny":
+                return 16 + random.nextInt(49);
+            case "chat": {
+                int p = random.nextInt(100);
+                if (p < 85) {
+                    return 20 + random.nextInt(181);
+                }
+                if (p < 97) {
+                    return 200 + random.nextInt(1849);
+                }
+                return 2048 + random.nextInt(14337);
+            }
+            case "media":
+                return 32 * 1024 + random.nextInt(224 * 1024 + 1);
+            default:
+                return Integer.parseInt(distribution);
+        }
+    }
+
+    private static List<MetaMessageHead> headers(int headerCount, Random random) {
+        List<MetaMessageHead> headers = new ArrayList<>(headerCount);
+        for (int i = 0; i < headerCount; i++) {
+            switch (i % 3) {
+                case 0:
+                    headers.add(HeaderType.ofLong(HeaderType.CLIENT_MSG_ID, random.nextLong()));
+                    break;
+                case 1:
+                    headers.add(HeaderType.ofAscii(HeaderType.ROOM_ID, Long.toString(Math.abs(random.nextLong()))));
+                    break;
+                default:
+                    headers.add(HeaderType.ofLong(HeaderType.TIMESTAMP, System.currentTimeMillis()));
+                    break;
+            }
+        }
+        return headers;
+    }
+
+    private static byte[] body(int size) {
+        byte[] text = TEXT.getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[size];
+        for (int pos = 0; pos < size; pos += text.length) {
+            System.arraycopy(text, 0, body, pos, Math.min(text.length, size - pos));
+        }
+        return body;
+    }
+}
@@ -0,0 +1,93 @@
+package com.opentalk.bench;
+
+import com.opentalk.netty.compress.VarInt;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author welsir
+ * @description : VarInt 读/写/长度计算，每次操作处理 1024 个值
+ * @date 2026/10/17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(VarIntBenchmark.COUNT)
+public class VarIntBenchmark {
+
+    static final int COUNT = 1024;
+
+    /**
+     * 编码字节数；mixed 按消息长度的实际分布，绝大多数为 1~2 字节
+     */
+    @Param({"1", "2", "3", "5", "mixed"})
+    private String bytes;
+
+    private int[] values;
+    private ByteBuf buf;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        values = new int[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = sample(random);
+        }
+        buf = Unpooled.directBuffer(COUNT * 5);
+        for (int value : values) {
+            VarInt.writeVarInt32(buf, value);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        buf.release();
+    }
+
+    private int sample(Random random) {
+        switch (bytes) {
+            case "1":
+                return random.nextInt(1 << 7);
+            case "2":
+                return (1 << 7) + random.nextInt((1 << 14) - (1 << 7));
+            case "3":
+                return (1 << 14) + random.nextInt((1 << 21) - (1 << 14));
+            case "5":
+                return -1 - random.nextInt(1 << 20);
+            default:
+                int p = random.nextInt(100);
+                return p < 70 ? random.nextInt(1 << 7) : p < 97 ? random.nextInt(1 << 14) : random.nextInt(1 << 21);
+        }
+    }
+
+    @Benchmark
+    public void write() {
+        buf.clear();
+        for (int value : values) {
+            VarInt.writeVarInt32(buf, value);
+        }
+    }
+
+    @Benchmark
+    public void read(Blackhole bh) {
+        buf.readerIndex(0);
+        for (int i = 0; i < COUNT; i++) {
+            bh.consume(VarInt.readVarInt32(buf));
+        }
+    }
+
+    @Benchmark
+    public void computeSize(Blackhole bh) {
+        for (int value : values) {
+            bh.consume(VarInt.computeVarInt32Size(value));
+        }
+    }
+}
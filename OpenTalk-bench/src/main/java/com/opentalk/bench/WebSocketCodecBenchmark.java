@@ -0,0 +1,93 @@
+package com.opentalk.bench;
+
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.codec.ServerMessageWebSocketDecoder;
+import com.opentalk.netty.codec.ServerMessageWebSocketEncoder;
+import com.opentalk.netty.message.MetaMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author welsir
+ * @description : 经过 pipeline 的 WebSocket 编解码器，包含 MessageToMessage 编解码框架本身的开销
+ * @date 2026/10/17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSocketCodecBenchmark {
+
+    private static final int MESSAGES = 1024;
+
+    @Param({"tiny", "chat", "media"})
+    private String payload;
+
+    @Param({"2"})
+    private int headerCount;
+
+    @Param({"true", "false"})
+    private boolean pooled;
+
+    @Param({"true", "false"})
+    private boolean zeroCopy;
+
+    private EmbeddedChannel channel;
+    private MetaMessage[] messages;
+    private ByteBuf[] frames;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        channel = new EmbeddedChannel(new ServerMessageWebSocketEncoder(), new ServerMessageWebSocketDecoder(zeroCopy));
+        channel.config().setAllocator(pooled ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT);
+        messages = Payloads.messages(payload, headerCount, MESSAGES, 42);
+        frames = new ByteBuf[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            ByteBuf frame = Unpooled.buffer(MessageCodec.computeFrameSize(messages[i]));
+            MessageCodec.encode(frame, messages[i]);
+            frames[i] = frame;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        for (ByteBuf frame : frames) {
+            frame.release();
+        }
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = (i + 1) & (MESSAGES - 1);
+        return i;
+    }
+
+    @Benchmark
+    public void encode(Blackhole bh) {
+        // 编码器写出后会 release 消息，预先 retain 以便复用
+        channel.writeOutbound(messages[next()].retain());
+        BinaryWebSocketFrame frame = channel.readOutbound();
+        bh.consume(frame.content().readableBytes());
+        frame.release();
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) {
+        channel.writeInbound(new BinaryWebSocketFrame(frames[next()].retainedDuplicate()));
+        MetaMessage msg = channel.readInbound();
+        bh.consume(msg.calculateBodyLength());
+        msg.release();
+    }
+}
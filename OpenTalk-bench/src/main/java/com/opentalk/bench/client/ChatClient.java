@@ -0,0 +1,95 @@
+package com.opentalk.bench.client;
+
+import com.opentalk.netty.dispatch.CommandType;
+import com.opentalk.netty.message.HeaderType;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.message.MetaMessageHead;
+import com.opentalk.netty.reliable.ReliableDelivery;
+import com.opentalk.netty.reliable.SequenceWindow;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author welsir
+ * @description : 一条已完成握手的客户端连接。发送的 MetaMessage 由连接编码后 release，调用方不再持有
+ * @date 2026/10/17
+ */
+public class ChatClient {
+
+    private static final int RECEIVE_WINDOW_BITS = 4096;
+
+    private final String uid;
+    private final Channel channel;
+    /**
+     * 已收到的会话序号，未协商可靠投递时为 null；只在 channel 所属 event loop 上访问
+     */
+    private final SequenceWindow received;
+    private boolean ackPending;
+
+    ChatClient(String uid, Channel channel, boolean reliable) {
+        this.uid = uid;
+        this.channel = channel;
+        this.received = reliable ? new SequenceWindow(RECEIVE_WINDOW_BITS) : null;
+    }
+
+    /**
+     * 记录收到的带序号帧，重复帧（服务端超时重发）返回 false。重复帧说明确认丢失或过晚，同样需要再次确认
+     */
+    boolean onSequenced(long seq) {
+        ackPending = true;
+        return received == null || received.mark(seq);
+    }
+
+    /**
+     * 心跳定时器调用：有待确认的序号时发送 ACK 帧代替心跳帧，确认随心跳批量发送
+     */
+    void heartbeat() {
+        MetaMessage msg = new MetaMessage();
+        msg.setVersion(1);
+        if (!ackPending) {
+            msg.setHeartBeat(true);
+            sendAndForget(msg);
+            return;
+        }
+        ackPending = false;
+        msg.setCmd(CommandType.ACK);
+        List<MetaMessageHead> headers = new ArrayList<>(2);
+        headers.add(HeaderType.ofLong(HeaderType.ACK_SEQ, received.cumulative()));
+        byte[] sack = received.selective(ReliableDelivery.MAX_SACK_BYTES);
+        if (sack.length > 0) {
+            headers.add(new MetaMessageHead(HeaderType.ACK_SACK, sack));
+        }
+        msg.setHeaders(headers);
+        sendAndForget(msg);
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    public Channel channel() {
+        return channel;
+    }
+
+    public boolean isActive() {
+        return channel.isActive();
+    }
+
+    public ChannelFuture send(MetaMessage msg) {
+        return channel.writeAndFlush(msg);
+    }
+
+    /**
+     * 不关心发送结果时使用，不分配 promise
+     */
+    public void sendAndForget(MetaMessage msg) {
+        channel.writeAndFlush(msg, channel.voidPromise());
+    }
+
+    public ChannelFuture close() {
+        return channel.close();
+    }
+}
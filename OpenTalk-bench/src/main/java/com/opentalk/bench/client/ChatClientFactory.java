@@ -0,0 +1,130 @@
+package com.opentalk.bench.client;
+
+import com.opentalk.netty.factory.NettyFactory;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshaker;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 轻量异步客户端：所有连接共享少量 event loop 线程，每个连接只占一个 channel，
+ * 单进程可以维持数万条连接（Java-WebSocket 每个客户端要占两个线程，无法达到这个规模）。
+ * 帧格式与服务端共用 {@code MessageCodec}。
+ * <p>
+ * 单个源 IP 到同一目标端口的连接数受本地端口范围限制（约 2.8 万），
+ * localAddresses 大于 1 时依次绑定 127.0.0.1、127.0.0.2 ... 作为源地址，仅适用于压测本机。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class ChatClientFactory implements Closeable {
+
+    private static final int MAX_FRAME_PAYLOAD = 1024 * 1024;
+
+    private final URI endpoint;
+    private final InetSocketAddress remote;
+    private final EventLoopGroup group;
+    private final Bootstrap bootstrap;
+    private final InetAddress[] localAddresses;
+    private final AtomicInteger nextLocal = new AtomicInteger();
+    private final boolean batch;
+    private final boolean reliable;
+    private final long heartbeatMillis;
+
+    /**
+     * @param endpoint        形如 ws://127.0.0.1:9989/chat
+     * @param reliable        协商可靠投递，收到的帧在心跳时批量确认，需要 heartbeatMillis 小于服务端的重发超时
+     * @param heartbeatMillis 心跳间隔，0 表示不发心跳
+     */
+    public ChatClientFactory(URI endpoint, int threads, int localAddresses, boolean batch, boolean reliable, long heartbeatMillis) throws UnknownHostException {
+        this.endpoint = endpoint;
+        this.remote = new InetSocketAddress(endpoint.getHost(), endpoint.getPort());
+        this.batch = batch;
+        this.reliable = reliable;
+        this.heartbeatMillis = heartbeatMillis;
+        this.group = NettyFactory.eventLoopGroup(threads, "chatClient", NettyFactory.AFFINITY_NONE);
+        this.bootstrap = new Bootstrap()
+                .group(group)
+                .channel(NettyFactory.socketChannelClass())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10_000);
+        if (localAddresses > 1) {
+            this.localAddresses = new InetAddress[localAddresses];
+            for (int i = 0; i < localAddresses; i++) {
+                this.localAddresses[i] = InetAddress.getByAddress(new byte[]{127, 0, (byte) ((i + 1) >>> 8), (byte) (i + 1)});
+            }
+        } else {
+            this.localAddresses = null;
+        }
+    }
+
+    /**
+     * 建立连接并完成 WebSocket 握手
+     *
+     * @param token 平台签发的握手 token，为 null 时以 ?uid= 直连（服务端需关闭鉴权）
+     */
+    public CompletableFuture<ChatClient> connect(String uid, String token, MessageListener listener) {
+        CompletableFuture<ChatClient> connected = new CompletableFuture<>();
+        StringBuilder query = new StringBuilder(token == null ? "uid=" + uid : "token=" + token);
+        if (batch) {
+            query.append("&batch=1");
+        }
+        if (reliable) {
+            query.append("&reliable=1");
+        }
+        URI uri = URI.create(endpoint.getScheme() + "://" + endpoint.getHost() + ":" + endpoint.getPort() + endpoint.getPath() + "?" + query);
+        WebSocketClientHandshaker handshaker = WebSocketClientHandshakerFactory.newHandshaker(uri, WebSocketVersion.V13,
+                null, false, EmptyHttpHeaders.INSTANCE, MAX_FRAME_PAYLOAD);
+        Bootstrap b = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                ch.pipeline().addLast(new HttpClientCodec(), new HttpObjectAggregator(8192),
+                        new WebSocketClientProtocolHandler(handshaker, true),
+                        new ChatClientHandler(uid, reliable, listener, connected));
+            }
+        });
+        (localAddresses == null ? b.connect(remote)
+                : b.connect(remote, new InetSocketAddress(localAddresses[Math.floorMod(nextLocal.getAndIncrement(), localAddresses.length)], 0)))
+                .addListener(future -> {
+                    if (!future.isSuccess()) {
+                        connected.completeExceptionally(future.cause());
+                    }
+                });
+        if (heartbeatMillis > 0) {
+            connected.thenAccept(this::scheduleHeartbeat);
+        }
+        return connected;
+    }
+
+    private void scheduleHeartbeat(ChatClient client) {
+        ScheduledFuture<?> future = client.channel().eventLoop().scheduleAtFixedRate(client::heartbeat,
+                heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        client.channel().closeFuture().addListener(f -> future.cancel(false));
+    }
+
+    @Override
+    public void close() {
+        group.shutdownGracefully().syncUninterruptibly();
+    }
+}
@@ -0,0 +1,113 @@
+package com.opentalk.bench.client;
+
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.message.MetaMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketClientProtocolHandler;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 客户端侧编解码与回调：出站 MetaMessage 用 {@link MessageCodec} 编码为二进制帧，
+ * 入站帧（含批量帧）解码后逐条交给 {@link MessageListener}。服务端的心跳应答直接丢弃，
+ * 带序号信封的帧记录序号后由心跳定时器批量确认，服务端重发的重复帧不再回调。
+ * 每个连接一个实例。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class ChatClientHandler extends ChannelDuplexHandler {
+
+    private final String uid;
+    private final boolean reliable;
+    private final MessageListener listener;
+    private final CompletableFuture<ChatClient> connected;
+    private final List<Object> decoded = new ArrayList<>();
+    private ChatClient client;
+
+    ChatClientHandler(String uid, boolean reliable, MessageListener listener, CompletableFuture<ChatClient> connected) {
+        this.uid = uid;
+        this.reliable = reliable;
+        this.listener = listener;
+        this.connected = connected;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+            client = new ChatClient(uid, ctx.channel(), reliable);
+            connected.complete(client);
+        } else if (evt == WebSocketClientProtocolHandler.ClientHandshakeStateEvent.HANDSHAKE_TIMEOUT) {
+            connected.completeExceptionally(new IllegalStateException("handshake timed out: " + uid));
+            ctx.close();
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof MetaMessage)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        MetaMessage message = (MetaMessage) msg;
+        ByteBuf buf;
+        try {
+            buf = MessageCodec.encode(ctx.alloc(), message);
+        } catch (Throwable t) {
+            promise.tryFailure(t);
+            return;
+        } finally {
+            message.release();
+        }
+        ctx.write(new BinaryWebSocketFrame(buf), promise);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof BinaryWebSocketFrame)) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        ByteBuf buf = ((BinaryWebSocketFrame) msg).content();
+        try {
+            if (MessageCodec.isHeartbeat(buf) || client == null) {
+                return;
+            }
+            // 序号按帧分配，批量帧内的消息共用一个序号，按帧去重
+            if (MessageCodec.isSequenced(buf) && !client.onSequenced(buf.getLong(buf.readerIndex() + 2))) {
+                return;
+            }
+            MessageCodec.decodeFrame(buf, false, decoded);
+            for (int i = 0; i < decoded.size(); i++) {
+                listener.onMessage(client, (MetaMessage) decoded.get(i));
+            }
+        } finally {
+            for (int i = 0; i < decoded.size(); i++) {
+                ReferenceCountUtil.release(decoded.get(i));
+            }
+            decoded.clear();
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        connected.completeExceptionally(new IllegalStateException("connection closed before handshake: " + uid));
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        connected.completeExceptionally(cause);
+        ctx.close();
+    }
+}
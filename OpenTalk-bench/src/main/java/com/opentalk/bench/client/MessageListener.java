@@ -0,0 +1,15 @@
+package com.opentalk.bench.client;
+
+import com.opentalk.netty.message.MetaMessage;
+
+/**
+ * @author welsir
+ * @description : 客户端收到消息的回调，在连接所属的 event loop 上执行，不可阻塞；
+ *                msg 在回调返回后由客户端 release，需要继续持有时自行 retain
+ * @date 2026/10/17
+ */
+@FunctionalInterface
+public interface MessageListener {
+
+    void onMessage(ChatClient client, MetaMessage msg);
+}
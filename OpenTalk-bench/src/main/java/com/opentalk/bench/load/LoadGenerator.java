@@ -0,0 +1,255 @@
+package com.opentalk.bench.load;
+
+import com.opentalk.bench.Payloads;
+import com.opentalk.bench.client.ChatClient;
+import com.opentalk.bench.client.ChatClientFactory;
+import com.opentalk.netty.NettyServerBoot;
+import com.opentalk.netty.config.NettyServerConfig;
+import com.opentalk.netty.dispatch.CommandType;
+import com.opentalk.netty.message.HeaderType;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.message.MetaMessageHead;
+import com.opentalk.netty.metrics.ChatMetrics;
+import com.opentalk.netty.metrics.LatencyHistogram;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 端到端压测：建立大量真实 WebSocket 连接，按房间收发消息，输出每秒吞吐与端到端延迟分位数。
+ * 不指定 --endpoint 时在本进程内嵌入启动聊天节点，所有性能改动都可以用同一条命令在本机复现：
+ * <pre>
+ *     java -cp OpenTalk-bench/target/benchmarks.jar com.opentalk.bench.load.LoadGenerator \
+ *          --connections=20000 --rooms=2000 --rate=0.5 --durationSeconds=60
+ * </pre>
+ * 发送时间写在自定义 header 里，收发两端都在本进程内，用 System.nanoTime 计算延迟不受时钟漂移影响。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class LoadGenerator {
+
+    /**
+     * 发送时刻（System.nanoTime），仅压测使用
+     */
+    public static final int SEND_NANOS = 100;
+
+    static {
+        HeaderType.register(SEND_NANOS, "benchSendNanos", HeaderType.Kind.LONG);
+    }
+
+    private final LoadOptions options;
+    private final Map<String, List<String>> rooms = new ConcurrentHashMap<>();
+    private final List<ChatClient> clients = new ArrayList<>();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder expected = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+    private volatile LatencyHistogram measured;
+    private byte[][] bodies;
+    private NettyServerBoot server;
+
+    public LoadGenerator(LoadOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator(LoadOptions.parse(args)).run();
+    }
+
+    public void run() throws Exception {
+        String endpoint = options.getEndpoint();
+        if (endpoint == null) {
+            server = startEmbedded();
+            endpoint = "ws://127.0.0.1:" + options.getPort() + "/chat";
+        }
+        for (int i = 0; i < options.getConnections(); i++) {
+            rooms.computeIfAbsent(roomOf(i), key -> new ArrayList<>()).add(uidOf(i));
+        }
+        MetaMessage[] samples = Payloads.messages(options.getPayload(), 0, 256, 42);
+        bodies = new byte[samples.length][];
+        for (int i = 0; i < samples.length; i++) {
+            bodies[i] = samples[i].getBody();
+        }
+        try (ChatClientFactory factory = new ChatClientFactory(URI.create(endpoint), options.getClientThreads(),
+                options.getLocalAddresses(), options.isBatch(), options.isReliable(), options.getHeartbeatMillis())) {
+            connectAll(factory);
+            for (ChatClient client : clients) {
+                join(client);
+            }
+            for (ChatClient client : clients) {
+                startSending(client);
+            }
+            report();
+            for (ChatClient client : clients) {
+                client.close();
+            }
+        } finally {
+            if (server != null) {
+                server.shutdown();
+            }
+        }
+    }
+
+    private NettyServerBoot startEmbedded() {
+        NettyServerConfig config = new NettyServerConfig();
+        config.setPort(options.getPort());
+        // 嵌入式节点单独运行，不与平台服务共用 ID 空间
+        config.setNodeId(0);
+        config.setAuthEnabled(false);
+        config.setAdmissionEnabled(false);
+        config.setMetricsPort(0);
+        config.setCommitLogDir(options.getCommitLogDir());
+        config.setSessionInitialCapacity(Math.max(config.getSessionInitialCapacity(), options.getConnections()));
+        NettyServerBoot boot = new NettyServerBoot(config);
+        boot.run();
+        return boot;
+    }
+
+    private void connectAll(ChatClientFactory factory) throws InterruptedException {
+        int total = options.getConnections();
+        List<CompletableFuture<ChatClient>> futures = new ArrayList<>(total);
+        long pauseNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, options.getConnectRate());
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long due = start + i * pauseNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            futures.add(factory.connect(uidOf(i), null, this::onMessage));
+        }
+        int failed = 0;
+        for (CompletableFuture<ChatClient> future : futures) {
+            try {
+                clients.add(future.get(30, TimeUnit.SECONDS));
+            } catch (Exception e) {
+                failed++;
+            }
+        }
+        System.out.printf("connected %d/%d in %dms, %d failed%n", clients.size(), total,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failed);
+    }
+
+    private void join(ChatClient client) {
+        MetaMessage msg = new MetaMessage();
+        msg.setVersion(1);
+        msg.setCmd(CommandType.JOIN_ROOM);
+        List<MetaMessageHead> headers = new ArrayList<>(1);
+        headers.add(HeaderType.ofAscii(HeaderType.ROOM_ID, roomOf(client)));
+        msg.setHeaders(headers);
+        client.sendAndForget(msg);
+    }
+
+    private void startSending(ChatClient client) {
+        String room = roomOf(client);
+        int roomSize = rooms.get(room).size();
+        MetaMessageHead roomHead = HeaderType.ofAscii(HeaderType.ROOM_ID, room);
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.getRate());
+        AtomicLong seq = new AtomicLong();
+        client.channel().eventLoop().scheduleAtFixedRate(() -> {
+            if (!client.isActive()) {
+                return;
+            }
+            MetaMessage msg = new MetaMessage();
+            msg.setVersion(1);
+            msg.setCmd(CommandType.ROOM_CHAT);
+            List<MetaMessageHead> headers = new ArrayList<>(3);
+            headers.add(roomHead);
+            headers.add(HeaderType.ofLong(HeaderType.CLIENT_MSG_ID, seq.incrementAndGet()));
+            headers.add(HeaderType.ofLong(SEND_NANOS, System.nanoTime()));
+            msg.setHeaders(headers);
+            msg.setBody(bodies[ThreadLocalRandom.current().nextInt(bodies.length)]);
+            client.sendAndForget(msg);
+            sent.increment();
+            expected.add(roomSize);
+        }, ThreadLocalRandom.current().nextLong(periodNanos), periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void onMessage(ChatClient client, MetaMessage msg) {
+        long sendNanos = HeaderType.longValue(msg.header(SEND_NANOS), 0);
+        if (sendNanos == 0) {
+            return;
+        }
+        long latency = System.nanoTime() - sendNanos;
+        received.increment();
+        interval.get().record(latency);
+        LatencyHistogram total = measured;
+        if (total != null) {
+            total.record(latency);
+        }
+    }
+
+    private void report() throws InterruptedException {
+        long lastSent = 0, lastReceived = 0, lastIn = ChatMetrics.messagesIn(), lastOut = ChatMetrics.messagesOut();
+        long baseSent = 0, baseExpected = 0, baseReceived = 0;
+        int seconds = options.getWarmupSeconds() + options.getDurationSeconds();
+        for (int t = 1; t <= seconds; t++) {
+            TimeUnit.SECONDS.sleep(1);
+            long s = sent.sum(), r = received.sum();
+            LatencyHistogram.Snapshot snapshot = interval.getAndSet(new LatencyHistogram()).snapshot();
+            StringBuilder line = new StringBuilder(String.format("%s t=%ds sent/s=%d recv/s=%d",
+                    t <= options.getWarmupSeconds() ? "warmup" : "run", t, s - lastSent, r - lastReceived));
+            if (server != null) {
+                long in = ChatMetrics.messagesIn(), out = ChatMetrics.messagesOut();
+                line.append(String.format(" server in/s=%d out/s=%d", in - lastIn, out - lastOut));
+                lastIn = in;
+                lastOut = out;
+            }
+            line.append(" latency ").append(percentiles(snapshot));
+            System.out.println(line);
+            lastSent = s;
+            lastReceived = r;
+            if (t == options.getWarmupSeconds()) {
+                baseSent = s;
+                baseExpected = expected.sum();
+                baseReceived = r;
+                measured = new LatencyHistogram();
+            }
+        }
+        if (measured == null) {
+            measured = new LatencyHistogram();
+        }
+        LatencyHistogram.Snapshot total = measured.snapshot();
+        long measuredSent = sent.sum() - baseSent;
+        long measuredExpected = expected.sum() - baseExpected;
+        long measuredReceived = received.sum() - baseReceived;
+        int duration = Math.max(1, options.getDurationSeconds());
+        System.out.printf("connections=%d rooms=%d rate=%.2f/s payload=%s%n", clients.size(), rooms.size(), options.getRate(), options.getPayload());
+        System.out.printf("sent=%d (%d/s) delivered=%d (%d/s) expected=%d delivery=%.4f%n", measuredSent, measuredSent / duration,
+                measuredReceived, measuredReceived / duration, measuredExpected,
+                measuredExpected == 0 ? 1d : (double) measuredReceived / measuredExpected);
+        System.out.println("end-to-end latency " + percentiles(total) + " max=" + micros(total.max()) + "us");
+    }
+
+    private static String percentiles(LatencyHistogram.Snapshot snapshot) {
+        return "p50=" + micros(snapshot.valueAt(0.5)) + "us p90=" + micros(snapshot.valueAt(0.9))
+                + "us p99=" + micros(snapshot.valueAt(0.99)) + "us p999=" + micros(snapshot.valueAt(0.999)) + "us";
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private String roomOf(int index) {
+        return "room-" + (index % options.getRooms());
+    }
+
+    private String roomOf(ChatClient client) {
+        return roomOf(Integer.parseInt(client.getUid().substring(2)));
+    }
+
+    private static String uidOf(int index) {
+        return "u-" + index;
+    }
+}
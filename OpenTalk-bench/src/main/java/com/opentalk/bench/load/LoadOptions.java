@@ -0,0 +1,87 @@
+package com.opentalk.bench.load;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 压测参数，命令行以 --name=value 形式覆盖默认值
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Data
+public class LoadOptions {
+
+    /**
+     * 目标地址，为空时在本进程内启动嵌入式聊天节点（关闭鉴权与准入限流）
+     */
+    private String endpoint;
+    private int port = 19989;
+    private int connections = 10_000;
+    /**
+     * 每秒新建连接数
+     */
+    private int connectRate = 2_000;
+    private int rooms = 1_000;
+    /**
+     * 每个连接每秒发送的消息数，可以小于 1
+     */
+    private double rate = 1;
+    /**
+     * 消息体大小分布，取值同基准测试的 Payloads：tiny、chat、media 或固定字节数
+     */
+    private String payload = "chat";
+    private int warmupSeconds = 10;
+    private int durationSeconds = 60;
+    private int clientThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * 源地址个数，超过 2.8 万条连接时需要大于 1
+     */
+    private int localAddresses = 1;
+    private boolean batch = true;
+    /**
+     * 协商可靠投递，确认随心跳发送
+     */
+    private boolean reliable = true;
+    private int heartbeatMillis = 5_000;
+    /**
+     * 嵌入式节点的消息提交日志目录，为空表示不持久化
+     */
+    private String commitLogDir = "";
+
+    public static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("expected --name=value, got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        LoadOptions options = new LoadOptions();
+        options.endpoint = values.getOrDefault("endpoint", options.endpoint);
+        options.port = intValue(values, "port", options.port);
+        options.connections = intValue(values, "connections", options.connections);
+        options.connectRate = intValue(values, "connectRate", options.connectRate);
+        options.rooms = intValue(values, "rooms", options.rooms);
+        options.rate = Double.parseDouble(values.getOrDefault("rate", String.valueOf(options.rate)));
+        options.payload = values.getOrDefault("payload", options.payload);
+        options.warmupSeconds = intValue(values, "warmupSeconds", options.warmupSeconds);
+        options.durationSeconds = intValue(values, "durationSeconds", options.durationSeconds);
+        options.clientThreads = intValue(values, "clientThreads", options.clientThreads);
+        options.localAddresses = intValue(values, "localAddresses", options.localAddresses);
+        options.commitLogDir = values.getOrDefault("commitLogDir", options.commitLogDir);
+        options.batch = Boolean.parseBoolean(values.getOrDefault("batch", String.valueOf(options.batch)));
+        options.reliable = Boolean.parseBoolean(values.getOrDefault("reliable", String.valueOf(options.reliable)));
+        options.heartbeatMillis = intValue(values, "heartbeatMillis", options.heartbeatMillis);
+        return options;
+    }
+
+    private static int intValue(Map<String, String> values, String name, int defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+}
@@ -12,4 +12,16 @@ public class Session {
 
     private String id;
 
-}
\ No newline at end of file
+    private String uid;
+
+    /**
+     * 绑定时间（毫秒时间戳）
+     */
+    private long bindTime;
+
+    /**
+     * 最近一次收到入站帧的时间（毫秒时间戳），event loop 写、空闲检测线程读
+     */
+    private volatile long lastReadTime;
+
+}
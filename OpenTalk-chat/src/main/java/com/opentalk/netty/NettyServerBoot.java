@@ -1,14 +1,40 @@
 package com.opentalk.netty;
 
+import com.opentalk.common.auth.ChatTokenCodec;
+import com.opentalk.common.id.SnowflakeIdGenerator;
+import com.opentalk.netty.auth.TokenAuthHandler;
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.compress.BodyCompressors;
+import com.opentalk.netty.compress.CompressionDictionary;
+import com.opentalk.netty.compress.DeflateExtensionStats;
 import com.opentalk.netty.config.NettyServerConfig;
+import com.opentalk.netty.dispatch.CommandDispatcher;
 import com.opentalk.netty.factory.NettyFactory;
+import com.opentalk.netty.handler.OutboundStats;
+import com.opentalk.netty.limit.AdmissionStats;
+import com.opentalk.netty.mailbox.MailboxStore;
+import com.opentalk.netty.mailbox.P2pCommandHandlers;
+import com.opentalk.netty.metrics.ChatMetrics;
+import com.opentalk.netty.metrics.EventLoopWatchdog;
+import com.opentalk.netty.metrics.MetricsHttpHandler;
+import com.opentalk.netty.reliable.ReliableDelivery;
+import com.opentalk.netty.room.RoomCommandHandlers;
+import com.opentalk.netty.room.RoomFanout;
+import com.opentalk.netty.session.IdleReaper;
+import com.opentalk.netty.session.SessionRegistry;
+import com.opentalk.netty.store.CommitLog;
+import com.opentalk.netty.store.MessageLog;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.*;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.ApplicationListener;
@@ -16,6 +42,12 @@ import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @Slf4j
@@ -24,27 +56,108 @@ public class NettyServerBoot implements ApplicationListener<ContextClosedEvent>,
     @Resource
     NettyServerConfig properties;
 
+    private CommandDispatcher dispatcher;
+    private SessionRegistry sessionRegistry;
+    private IdleReaper idleReaper;
+    private final OutboundStats outboundStats = new OutboundStats();
+    private final DeflateExtensionStats deflateStats = new DeflateExtensionStats();
+    private final AdmissionStats admissionStats = new AdmissionStats();
+    private TokenAuthHandler tokenAuthHandler;
+    private EventLoopWatchdog watchdog;
+    private RoomFanout roomFanout;
+    private MessageLog messageLog;
+    private SnowflakeIdGenerator idGenerator;
+    private ReliableDelivery reliableDelivery;
+    private MailboxStore mailbox;
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
-    private Channel channelWs;
+    private final List<Channel> serverChannels = new ArrayList<>();
+
+    public NettyServerBoot() {
+    }
+
+    /**
+     * 脱离 Spring 容器嵌入启动（压测等场景），随后调用 {@link #run} 启动、{@link #shutdown} 关闭
+     */
+    public NettyServerBoot(NettyServerConfig properties) {
+        this.properties = properties;
+    }
 
     @Override
     public void onApplicationEvent(ContextClosedEvent event) {
+        shutdown();
+    }
+
+    public void shutdown() {
         log.info("Shutdown Netty Server...");
+        BodyCompressors.allStats().forEach(stats -> log.info("body compression stats: {}", stats));
+        if (dispatcher != null) {
+            dispatcher.allStats().forEach(stats -> log.info("command stats: {}", stats));
+            dispatcher.shutdown();
+        }
+        log.info("outbound policy stats: {}", outboundStats);
+        log.info("websocket compression stats: {}", deflateStats);
+        log.info("admission stats: {}", admissionStats);
+        if (roomFanout != null) {
+            log.info("room fan-out stats: {}", roomFanout);
+        }
+        if (tokenAuthHandler != null) {
+            log.info("handshake auth stats: {}", tokenAuthHandler);
+        }
+        if (reliableDelivery != null) {
+            log.info("reliable delivery stats: {}", reliableDelivery);
+            reliableDelivery.stop();
+        }
+        if (mailbox != null) {
+            log.info("offline mailbox stats: {}", mailbox);
+        }
+        if (watchdog != null) {
+            watchdog.stop();
+        }
+        if (idleReaper != null) {
+            log.info("idle channels reaped: {}", idleReaper.getReaped());
+            idleReaper.stop();
+        }
         try {
-            channelWs.close();
+            for (Channel channel : serverChannels) {
+                channel.close().syncUninterruptibly();
+            }
         }catch (Throwable e){
             log.error("websocket channel close failed !",e);
         }
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+        }
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully();
+        }
+        if (messageLog != null) {
+            // 等 worker 上已入队的消息写完再关闭，关闭时做最后一次刷盘
+            if (workerGroup != null) {
+                workerGroup.terminationFuture().awaitUninterruptibly();
+            }
+            messageLog.getCommitLog().close();
+        }
     }
 
     @Override
     public void run(String... args) {
-        ChannelFuture cfWs;
         try {
+            initBodyCompression();
+            initDispatcher();
+            initAuth();
+            initMessageLog();
+            initIdGenerator();
+            initReliableDelivery();
+            sessionRegistry = new SessionRegistry(properties.getSessionInitialCapacity());
+            idleReaper = new IdleReaper(properties.getIdleTimeoutMillis(), properties.getIdleTickMillis(), properties.getIdleTicksPerWheel());
+            initMailbox();
             ServerBootstrap bootstrap = new ServerBootstrap();
-            bossGroup = NettyFactory.eventLoopGroup(1, "bossLoopGroup");
-            workerGroup = NettyFactory.eventLoopGroup(4, "workerLoopGroup");
+            bossGroup = NettyFactory.eventLoopGroup(properties.getBossThreads(), "bossLoopGroup", properties.getAffinityStrategy());
+            workerGroup = NettyFactory.eventLoopGroup(properties.getWorkerThreads(), "workerLoopGroup", properties.getAffinityStrategy());
+            roomFanout = new RoomFanout(workerGroup, properties.getHotRoomThreshold());
+            RoomCommandHandlers.register(dispatcher, roomFanout, messageLog, idGenerator);
+            P2pCommandHandlers.register(dispatcher, sessionRegistry, messageLog, mailbox, idGenerator);
             bootstrap.group(bossGroup,workerGroup)
                     .channel(NettyFactory.serverSocketChannelClass())
                     .option(ChannelOption.SO_BACKLOG,properties.getMaxQueueSize())
@@ -53,11 +166,213 @@ public class NettyServerBoot implements ApplicationListener<ContextClosedEvent>,
                     .option(ChannelOption.SO_REUSEADDR,true)
                     .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
                     .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK,new WriteBufferWaterMark(64*1024,128 * 1024))
-                    .childHandler(new NettyServerInitializer());
-            cfWs = bootstrap.bind(properties.getPort()).sync();
-            channelWs = cfWs.channel();
+                    .childHandler(new NettyServerInitializer(properties, dispatcher, sessionRegistry, idleReaper, outboundStats, deflateStats, tokenAuthHandler, admissionStats, reliableDelivery, mailbox, roomFanout));
+            // SO_REUSEPORT 下每次 bind 都是独立的监听 socket，依次注册到不同的 boss 线程上
+            int acceptors = applyEpollOptions(bootstrap) && properties.isReusePort() ? properties.getBossThreads() : 1;
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(bootstrap.bind(properties.getPort()).sync().channel());
+            }
+            log.info("Netty server started on port {} with {} acceptor(s), {} worker(s), epoll={}",
+                    properties.getPort(), acceptors, properties.getWorkerThreads(), NettyFactory.supportEpoll());
+            initMetrics();
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * 设置 epoll 专有选项，epoll 不可用时返回 false
+     */
+    private boolean applyEpollOptions(ServerBootstrap bootstrap) {
+        if (!NettyFactory.supportEpoll()) {
+            return false;
+        }
+        EpollMode mode = EpollMode.valueOf(properties.getEpollMode().toUpperCase());
+        bootstrap.option(EpollChannelOption.EPOLL_MODE, mode)
+                .childOption(EpollChannelOption.EPOLL_MODE, mode);
+        if (properties.isReusePort()) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        if (properties.getTcpFastOpen() > 0) {
+            bootstrap.option(EpollChannelOption.TCP_FASTOPEN, properties.getTcpFastOpen());
+        }
+        if (properties.getBusyPollMicros() > 0) {
+            bootstrap.childOption(EpollChannelOption.SO_BUSY_POLL, properties.getBusyPollMicros());
+        }
+        if (properties.isTcpQuickAck()) {
+            bootstrap.childOption(EpollChannelOption.TCP_QUICKACK, true);
+        }
+        return true;
+    }
+
+    /**
+     * 指标端点复用聊天端口的 boss/worker 线程，单独监听一个端口
+     */
+    private void initMetrics() throws InterruptedException {
+        ChatMetrics.setTimingEnabled(properties.isMetricsTiming());
+        ChatMetrics.register(dispatcher);
+        ChatMetrics.register(roomFanout);
+        if (messageLog != null) {
+            ChatMetrics.register(messageLog.getCommitLog());
+        }
+        if (reliableDelivery != null) {
+            ChatMetrics.register(reliableDelivery);
+        }
+        if (mailbox != null) {
+            ChatMetrics.register(mailbox);
+        }
+        if (properties.getWatchdogIntervalMillis() > 0) {
+            watchdog = new EventLoopWatchdog(workerGroup, "worker", properties.getWatchdogIntervalMillis(), properties.getWatchdogStallMillis());
+            ChatMetrics.register(watchdog);
+        }
+        ChatMetrics.register(writer -> writer
+                .gauge("opentalk_sessions", "Bound user sessions", sessionRegistry.size())
+                .counter("opentalk_idle_reaped_total", "Channels closed by the idle reaper", idleReaper.getReaped())
+                .gauge("opentalk_outbound_throttled", "Channels currently over the write watermark", outboundStats.getThrottled())
+                .counter("opentalk_outbound_dropped_total", "Ephemeral messages dropped for slow consumers", outboundStats.getDropped())
+                .counter("opentalk_outbound_closed_total", "Slow consumers closed", "reason=\"overflow\"", outboundStats.getOverflowClosed())
+                .counter("opentalk_outbound_closed_total", "Slow consumers closed", "reason=\"stall\"", outboundStats.getStallClosed())
+                .counter("opentalk_admission_total", "Connection admission decisions", "result=\"admitted\"", admissionStats.getAdmitted())
+                .counter("opentalk_admission_total", "Connection admission decisions", "result=\"rate\"", admissionStats.getRejectedRate())
+                .counter("opentalk_admission_total", "Connection admission decisions", "result=\"concurrency\"", admissionStats.getRejectedConcurrency())
+                .counter("opentalk_handshake_timeout_total", "Admitted connections closed before completing the upgrade", admissionStats.getHandshakeTimedOut())
+                .counter("opentalk_frame_throttled_total", "Times a connection was paused by the frame limiter", admissionStats.getFrameThrottled()));
+        if (properties.getMetricsPort() <= 0) {
+            return;
+        }
+        MetricsHttpHandler metricsHandler = new MetricsHttpHandler();
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(NettyFactory.serverSocketChannelClass())
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(1024), metricsHandler);
+                    }
+                });
+        serverChannels.add(bootstrap.bind(properties.getMetricsPort()).sync().channel());
+        log.info("metrics endpoint listening on port {}{}", properties.getMetricsPort(), MetricsHttpHandler.PATH);
+    }
+
+    private void initMessageLog() {
+        String dir = properties.getCommitLogDir();
+        if (dir == null || dir.isEmpty()) {
+            log.warn("commit log disabled, chat messages are not persisted");
+            return;
+        }
+        try {
+            messageLog = new MessageLog(new CommitLog(Paths.get(dir), properties.getCommitLogSegmentBytes(),
+                    properties.getCommitLogIndexInterval(), properties.getCommitLogFlushMillis(),
+                    TimeUnit.HOURS.toMillis(properties.getCommitLogRetentionHours()), properties.getCommitLogRetentionBytes()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("open commit log failed: " + dir, e);
+        }
+    }
+
+    private void initIdGenerator() {
+        if (properties.getNodeId() < 0) {
+            throw new IllegalStateException("opentalk.netty.node-id must be configured explicitly and be unique across "
+                    + "platform and chat nodes, range [0, " + SnowflakeIdGenerator.MAX_NODE_ID + "]");
+        }
+        idGenerator = new SnowflakeIdGenerator(properties.getNodeId());
+    }
+
+    private void initReliableDelivery() {
+        if (!properties.isReliableEnabled()) {
+            return;
+        }
+        reliableDelivery = new ReliableDelivery(properties.getReliableWindow(), properties.getRetransmitTimeoutMillis(),
+                properties.getRetransmitMaxRetries(), properties.getDedupWindowBits(),
+                properties.getRetransmitTickMillis(), properties.getRetransmitTicksPerWheel(),
+                properties.getDedupRetentionMillis(), properties.getDedupMaxSessions());
+        reliableDelivery.register(dispatcher);
+    }
+
+    private void initMailbox() {
+        if (!properties.isMailboxEnabled()) {
+            return;
+        }
+        if (messageLog == null) {
+            log.warn("offline mailbox requires the commit log, offline messages are dropped");
+            return;
+        }
+        mailbox = new MailboxStore(messageLog, sessionRegistry, properties.getMailboxInitialCapacity(),
+                properties.getMailboxMaxPending(), properties.getMailboxDrainBatchMessages(), properties.getMailboxDrainFrameBytes());
+    }
+
+    private void initAuth() {
+        if (!properties.isAuthEnabled()) {
+            log.warn("handshake auth disabled, clients bind uid by query parameter");
+            return;
+        }
+        if (properties.getAuthKeys().isEmpty()) {
+            throw new IllegalStateException("handshake auth enabled but no auth keys configured");
+        }
+        tokenAuthHandler = new TokenAuthHandler(new ChatTokenCodec(properties.getAuthKeys(), null),
+                properties.getAuthCacheSize(), properties.getAuthCacheSeconds());
+    }
+
+    private void initDispatcher() {
+        // 心跳在解码器内应答，不会进入分发器
+        dispatcher = new CommandDispatcher(properties.getBusinessThreads(), properties.getBusinessQueueSize());
+    }
+
+    /**
+     * 业务模块通过分发器注册命令处理逻辑
+     */
+    public CommandDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public OutboundStats getOutboundStats() {
+        return outboundStats;
+    }
+
+    public DeflateExtensionStats getDeflateStats() {
+        return deflateStats;
+    }
+
+    public AdmissionStats getAdmissionStats() {
+        return admissionStats;
+    }
+
+    public RoomFanout getRoomFanout() {
+        return roomFanout;
+    }
+
+    /**
+     * 关闭离线信箱或未配置提交日志时为 null
+     */
+    public MailboxStore getMailbox() {
+        return mailbox;
+    }
+
+    /**
+     * 未配置提交日志目录时为 null
+     */
+    public MessageLog getMessageLog() {
+        return messageLog;
+    }
+
+    public SnowflakeIdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    public SessionRegistry getSessionRegistry() {
+        return sessionRegistry;
+    }
+
+    private void initBodyCompression() {
+        MessageCodec.setCompressThreshold(properties.getCompressThreshold());
+        String dictionaryPath = properties.getCompressDictionaryPath();
+        if (dictionaryPath == null || dictionaryPath.isEmpty()) {
+            return;
+        }
+        try {
+            BodyCompressors.registerDictionary(CompressionDictionary.load(Paths.get(dictionaryPath)));
+        } catch (IOException e) {
+            log.error("load compression dictionary failed: {}", dictionaryPath, e);
+        }
+    }
 }
\ No newline at end of file
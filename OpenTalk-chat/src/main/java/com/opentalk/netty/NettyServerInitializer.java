@@ -1,14 +1,40 @@
 package com.opentalk.netty;
 
+import com.opentalk.netty.auth.TokenAuthHandler;
+import com.opentalk.netty.codec.MessageBatchingHandler;
 import com.opentalk.netty.codec.ServerMessageWebSocketDecoder;
 import com.opentalk.netty.codec.ServerMessageWebSocketEncoder;
+import com.opentalk.netty.codec.StreamingMessageWebSocketDecoder;
+import com.opentalk.netty.compress.DeflateExtensionHandshaker;
+import com.opentalk.netty.compress.DeflateExtensionStats;
+import com.opentalk.netty.compress.DeflateFrameFilter;
+import com.opentalk.netty.compress.DeflateStatsHandler;
+import com.opentalk.netty.config.NettyServerConfig;
+import com.opentalk.netty.dispatch.CommandDispatcher;
 import com.opentalk.netty.handler.NettyCenterHandler;
+import com.opentalk.netty.handler.OutboundPolicyHandler;
+import com.opentalk.netty.handler.OutboundStats;
+import com.opentalk.netty.limit.AdmissionHandler;
+import com.opentalk.netty.limit.AdmissionStats;
+import com.opentalk.netty.limit.FrameRateLimiter;
+import com.opentalk.netty.limit.TokenBucket;
+import com.opentalk.netty.mailbox.MailboxStore;
+import com.opentalk.netty.metrics.TrafficMetricsHandler;
+import com.opentalk.netty.reliable.ReliableDelivery;
+import com.opentalk.netty.room.RoomFanout;
+import com.opentalk.netty.room.RoomPlacementHandler;
+import com.opentalk.netty.session.IdleReaper;
+import com.opentalk.netty.session.SessionRegistry;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
 
 /**
@@ -18,22 +44,124 @@ import io.netty.handler.stream.ChunkedWriteHandler;
  */
 public class NettyServerInitializer extends ChannelInitializer<SocketChannel> {
 
+    private static final ServerMessageWebSocketEncoder WEBSOCKET_ENCODER = new ServerMessageWebSocketEncoder();
+
+    private static final TrafficMetricsHandler TRAFFIC_METRICS = new TrafficMetricsHandler();
+
+    private final NettyServerConfig config;
+
+    private final ServerMessageWebSocketDecoder websocketDecoder;
+
     //Netty事件统一处理器
-    private static final NettyCenterHandler NETTY_CENTER_HANDLER = new NettyCenterHandler();
+    private final NettyCenterHandler nettyCenterHandler;
 
-    private static final ServerMessageWebSocketEncoder WEBSOCKET_ENCODER = new ServerMessageWebSocketEncoder();
+    private final OutboundStats outboundStats;
+
+    private final DeflateExtensionStats deflateStats;
+
+    private final DeflateStatsHandler deflateStatsHandler;
 
-    private static final ServerMessageWebSocketDecoder WEBSOCKET_DECODER = new ServerMessageWebSocketDecoder();
+    private final PerMessageDeflateServerExtensionHandshaker deflateHandshaker;
+
+    /**
+     * 握手鉴权，关闭鉴权时为 null
+     */
+    private final TokenAuthHandler tokenAuthHandler;
+
+    /**
+     * 建连准入，关闭限流时为 null
+     */
+    private final AdmissionHandler admissionHandler;
+
+    private final AdmissionStats admissionStats;
+
+    /**
+     * 可靠投递，关闭时为 null
+     */
+    private final ReliableDelivery reliableDelivery;
+
+    /**
+     * 热点房间放置，关闭时为 null
+     */
+    private final RoomPlacementHandler roomPlacementHandler;
+
+    public NettyServerInitializer(NettyServerConfig config, CommandDispatcher dispatcher,
+                                  SessionRegistry sessionRegistry, IdleReaper idleReaper, OutboundStats outboundStats,
+                                  DeflateExtensionStats deflateStats, TokenAuthHandler tokenAuthHandler,
+                                  AdmissionStats admissionStats, ReliableDelivery reliableDelivery, MailboxStore mailbox,
+                                  RoomFanout roomFanout) {
+        this.config = config;
+        this.reliableDelivery = reliableDelivery;
+        this.tokenAuthHandler = tokenAuthHandler;
+        this.admissionStats = admissionStats;
+        if (config.isAdmissionEnabled()) {
+            // 帧限流器每个连接一个实例，配置错误在启动时暴露，而不是在每次建连时
+            TokenBucket.checkArguments(config.getFrameRatePerConnection(), config.getFrameBurst());
+            TokenBucket.checkArguments(config.getByteRatePerConnection(), config.getByteBurst());
+        }
+        this.admissionHandler = config.isAdmissionEnabled()
+                ? new AdmissionHandler(config.isTrustForwardedFor(), config.getConnectRatePerIp(), config.getConnectBurstPerIp(),
+                        config.getMaxHandshaking(), config.getMaxTrackedIps(), config.getHandshakeTimeoutMillis(), config.getWorkerThreads(), admissionStats)
+                : null;
+        this.roomPlacementHandler = config.getHotRoomThreshold() > 0 ? new RoomPlacementHandler(roomFanout) : null;
+        this.outboundStats = outboundStats;
+        this.deflateStats = deflateStats;
+        this.deflateStatsHandler = new DeflateStatsHandler(deflateStats);
+        this.deflateHandshaker = new PerMessageDeflateServerExtensionHandshaker(config.getDeflateLevel(),
+                ZlibCodecFactory.isSupportingWindowSizeAndMemLevel(), PerMessageDeflateServerExtensionHandshaker.MAX_WINDOW_SIZE,
+                true, false, new DeflateFrameFilter(config.getDeflateThreshold(), deflateStats));
+        this.websocketDecoder = new ServerMessageWebSocketDecoder(config.isZeroCopyDecode());
+        this.nettyCenterHandler = new NettyCenterHandler(dispatcher, sessionRegistry, idleReaper, reliableDelivery, mailbox);
+    }
 
     @Override
     protected void initChannel(SocketChannel socketChannel) {
         ChannelPipeline pipeline = socketChannel.pipeline();
+        // 紧贴 socket，统计的是线上字节与实际 flush
+        pipeline.addLast("trafficMetrics", TRAFFIC_METRICS);
+        // 读循环内的多次 flush 合并到 channelReadComplete 时一次写出
+        pipeline.addLast("flushConsolidation", new FlushConsolidationHandler(256, true));
         pipeline.addLast("httpServerCodec", new HttpServerCodec());
+        if (config.isPerMessageDeflate()) {
+            pipeline.addLast("deflateStats", deflateStatsHandler);
+        }
         pipeline.addLast("httpObjectAggregator", new HttpObjectAggregator(2048));
-        pipeline.addLast("webSocketServerProtocolHandler", new WebSocketServerProtocolHandler("/chat"));
+        if (admissionHandler != null) {
+            // 按 socket 地址限流时在 channelActive 即拒绝，尚未读取任何数据；按转发头限流时需要聚合后的完整请求
+            pipeline.addLast("admission", admissionHandler);
+        }
+        if (tokenAuthHandler != null) {
+            pipeline.addLast("tokenAuth", tokenAuthHandler);
+        }
+        if (roomPlacementHandler != null) {
+            // 鉴权通过后才按 room 参数迁移 event loop，升级相关的 handler 都在新的 event loop 上开始工作
+            pipeline.addLast("roomPlacement", roomPlacementHandler);
+        }
+        if (config.isPerMessageDeflate()) {
+            // 握手时按策略决定该连接是否保持压缩上下文，完成后扩展编解码器插入到此位置
+            pipeline.addLast("webSocketExtension", new WebSocketServerExtensionHandler(new DeflateExtensionHandshaker(deflateHandshaker,
+                    socketChannel, deflateStats, DeflateExtensionHandshaker.ContextTakeover.valueOf(config.getDeflateContextTakeover().toUpperCase()),
+                    config.getDeflateMemoryBudget())));
+        }
+        pipeline.addLast("webSocketServerProtocolHandler", new WebSocketServerProtocolHandler("/chat", null, config.isPerMessageDeflate(), config.getMaxFramePayloadLength(), false, true));
         pipeline.addLast("chunkedWriteHandler",new ChunkedWriteHandler());
+        if (reliableDelivery != null) {
+            // 出站方向位于 encoder 与批量合并之后，按帧分配序号
+            pipeline.addLast("reliable", reliableDelivery.newHandler());
+        }
         pipeline.addLast("encoder", WEBSOCKET_ENCODER);
-        pipeline.addLast("decoder", WEBSOCKET_DECODER);
-        pipeline.addLast("handler", NETTY_CENTER_HANDLER);
+        if (config.isBatchEnabled()) {
+            pipeline.addLast("batcher", new MessageBatchingHandler(config.getMaxBatchBytes(), config.getMaxBatchMessages()));
+        }
+        pipeline.addLast("outboundPolicy", new OutboundPolicyHandler(outboundStats, config.getOutboundQueueBytes(), config.getOutboundStallMillis()));
+        if (config.isAdmissionEnabled()) {
+            pipeline.addLast("frameLimiter", new FrameRateLimiter(config.getFrameRatePerConnection(), config.getFrameBurst(),
+                    config.getByteRatePerConnection(), config.getByteBurst(), admissionStats));
+        }
+        // 分片消息以 chunk 流的形式交给业务，解码器持有单连接状态，需每个连接一个实例
+        pipeline.addLast("decoder", config.isStreamingDecode()
+                ? new StreamingMessageWebSocketDecoder(config.isZeroCopyDecode(), config.getStreamMemoryCap(), config.getMaxStreamBodySize())
+                : websocketDecoder);
+        pipeline.addLast("handler", nettyCenterHandler);
     }
 }
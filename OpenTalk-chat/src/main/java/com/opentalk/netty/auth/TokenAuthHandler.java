@@ -0,0 +1,113 @@
+package com.opentalk.netty.auth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.opentalk.common.auth.ChatToken;
+import com.opentalk.common.auth.ChatTokenCodec;
+import com.opentalk.common.auth.ChatTokenException;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 握手鉴权，位于 WebSocket 升级之前：从 /chat?token=xxx 取出平台签发的 token，
+ * 本地校验 HMAC 签名与有效期，通过后把 uid 挂到 channel 上并把自身移出 pipeline；
+ * 失败直接返回 401 并关闭连接，不进入升级流程。
+ * 最近校验通过的 token 缓存一段时间，断线重连风暴时同一 token 只做一次 HMAC；轮换密钥时缓存整体失效。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class TokenAuthHandler extends ChannelInboundHandlerAdapter {
+
+    public static final AttributeKey<String> AUTH_UID = AttributeKey.valueOf("authUid");
+    public static final String TOKEN_PARAM = "token";
+
+    private final ChatTokenCodec codec;
+    private final Cache<String, ChatToken> verified;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public TokenAuthHandler(ChatTokenCodec codec, int cacheSize, long cacheSeconds) {
+        this.codec = codec;
+        this.verified = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof FullHttpRequest)) {
+            super.channelRead(ctx, msg);
+            return;
+        }
+        FullHttpRequest request = (FullHttpRequest) msg;
+        List<String> tokens = new QueryStringDecoder(request.uri()).parameters().get(TOKEN_PARAM);
+        String token = tokens == null || tokens.isEmpty() ? null : tokens.get(0);
+        ChatToken chatToken;
+        try {
+            chatToken = verify(token);
+        } catch (ChatTokenException e) {
+            rejected.increment();
+            log.debug("The client({}) handshake rejected: {}", ctx.channel().remoteAddress(), e.getMessage());
+            ReferenceCountUtil.release(request);
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.UNAUTHORIZED);
+            response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+            response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+            return;
+        }
+        accepted.increment();
+        ctx.channel().attr(AUTH_UID).set(chatToken.getUid());
+        ctx.pipeline().remove(this);
+        ctx.fireChannelRead(request);
+    }
+
+    private ChatToken verify(String token) {
+        long now = System.currentTimeMillis() / 1000;
+        if (token != null) {
+            ChatToken cached = verified.getIfPresent(token);
+            if (cached != null && cached.getExpireAt() > now) {
+                cacheHits.increment();
+                return cached;
+            }
+        }
+        ChatToken chatToken = codec.verify(token, now);
+        verified.put(token, chatToken);
+        return chatToken;
+    }
+
+    /**
+     * 密钥轮换：替换校验使用的密钥环并清空缓存，已移除的 kid 签发的 token 立即失效
+     */
+    public void updateKeys(Map<String, String> keys) {
+        codec.updateKeys(keys, null);
+        verified.invalidateAll();
+    }
+
+    @Override
+    public String toString() {
+        return "auth{accepted=" + accepted.sum() + ", cacheHits=" + cacheHits.sum() + ", rejected=" + rejected.sum() + "}";
+    }
+}
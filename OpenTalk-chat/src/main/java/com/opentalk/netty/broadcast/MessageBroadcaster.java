@@ -0,0 +1,75 @@
+package com.opentalk.netty.broadcast;
+
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.compress.BodyCompressor;
+import com.opentalk.netty.compress.BodyCompressors;
+import com.opentalk.netty.dispatch.CommandType;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.metrics.ChatMetrics;
+import com.opentalk.netty.reliable.ReliableDeliveryHandler;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+
+/**
+ * @author welsir
+ * @description : 编码一次、多次写出的广播。同一条消息对每种协商出的压缩算法只编码一次，
+ *                各目标 channel 写出帧的 retainedDuplicate；编码器只处理 MetaMessage，
+ *                预编码的 WebSocketFrame 会直接穿过编码器。
+ * @date 2026/10/17
+ */
+public class MessageBroadcaster {
+
+    /**
+     * 向 channels 广播 msg，返回实际写出的 channel 数。msg 的所有权仍归调用方。
+     */
+    public static int broadcast(MetaMessage msg, Iterable<Channel> channels) {
+        return broadcast(msg, channels, null);
+    }
+
+    /**
+     * 同 {@link #broadcast(MetaMessage, Iterable)}，启用可靠投递的 channel 以非 void 的 promise 写出，
+     * reliableListener 在客户端确认或投递失败（含确认前断开）时收到结果；其余 channel 不通知
+     */
+    public static int broadcast(MetaMessage msg, Iterable<Channel> channels, ChannelFutureListener reliableListener) {
+        // 下标为压缩算法 id，0 表示不压缩
+        BinaryWebSocketFrame[] frames = new BinaryWebSocketFrame[BodyCompressors.MAX_ID + 1];
+        boolean ephemeral = CommandType.isEphemeral(msg.getCmd());
+        int written = 0;
+        try {
+            for (Channel channel : channels) {
+                if (!channel.isActive()) {
+                    continue;
+                }
+                // 慢连接上的短暂状态直接丢弃，预编码帧绕过了出站策略的合并
+                if (ephemeral && !channel.isWritable()) {
+                    continue;
+                }
+                BodyCompressor compressor = channel.attr(BodyCompressors.CHANNEL_COMPRESSOR).get();
+                int slot = compressor == null ? 0 : compressor.id();
+                BinaryWebSocketFrame frame = frames[slot];
+                if (frame == null) {
+                    long start = ChatMetrics.startTimer();
+                    frame = new BinaryWebSocketFrame(MessageCodec.encode(channel.alloc(), msg, compressor));
+                    frames[slot] = frame;
+                    ChatMetrics.recordEncode(start, 0);
+                }
+                if (reliableListener != null && channel.attr(ReliableDeliveryHandler.RELIABLE_ENABLED).get() == Boolean.TRUE) {
+                    channel.writeAndFlush(frame.retainedDuplicate()).addListener(reliableListener);
+                } else {
+                    channel.writeAndFlush(frame.retainedDuplicate(), channel.voidPromise());
+                }
+                written++;
+            }
+        } finally {
+            // 预编码帧绕过了 encoder，按实际写出的 channel 数计入出站消息
+            ChatMetrics.recordEncode(0, written);
+            for (BinaryWebSocketFrame frame : frames) {
+                if (frame != null) {
+                    frame.release();
+                }
+            }
+        }
+        return written;
+    }
+}
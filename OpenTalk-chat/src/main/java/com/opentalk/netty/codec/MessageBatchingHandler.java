@@ -0,0 +1,214 @@
+package com.opentalk.netty.codec;
+
+import com.opentalk.netty.compress.BodyCompressor;
+import com.opentalk.netty.compress.BodyCompressors;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.metrics.ChatMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.PromiseNotifier;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 出站合并：位于 encoder 之后（出站方向先于 encoder 执行），同一轮 event loop 内写入的多条
+ * MetaMessage 与预编码的单条消息帧（广播、房间扇出写出的 BinaryWebSocketFrame）合并为一个批量帧，
+ * 预编码帧只 retain 其内容、不重新编码，有未封帧的消息时 flush 推迟到当前已排队任务执行完之后统一下发，
+ * 广播等跨线程 writeAndFlush 因此在一次 syscall 中写出；没有待合并的消息时 flush 直接下发。
+ * 只有握手时声明支持批量帧（?batch=1）的连接才合并，其余连接的 flush 直接透传。
+ * 累计字节数或条数达到上限时立即封帧，单帧大小不会超过客户端的帧长限制。
+ * 每个连接一个实例，不可共享。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class MessageBatchingHandler extends ChannelDuplexHandler {
+
+    public static final AttributeKey<Boolean> BATCH_ENABLED = AttributeKey.valueOf("batchEnabled");
+    public static final String NEGOTIATE_PARAM = "batch";
+
+    private final int maxBatchBytes;
+    private final int maxBatchMessages;
+
+    /**
+     * 待合并的 MetaMessage 或预编码的 BinaryWebSocketFrame
+     */
+    private final List<Object> pending = new ArrayList<>();
+    private final List<ChannelPromise> promises = new ArrayList<>();
+    private int pendingBytes;
+    private boolean flushScheduled;
+
+    public MessageBatchingHandler(int maxBatchBytes, int maxBatchMessages) {
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchMessages = maxBatchMessages;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        int size = batchSize(ctx, msg);
+        if (size >= 0) {
+            if (!pending.isEmpty() && pendingBytes + size > maxBatchBytes) {
+                emit(ctx);
+            }
+            pending.add(msg);
+            promises.add(promise);
+            pendingBytes += size;
+            if (pendingBytes >= maxBatchBytes || pending.size() >= maxBatchMessages) {
+                emit(ctx);
+            }
+            return;
+        }
+        // 其他出站对象（心跳、批量帧、序号信封等）不参与合并，先写出已攒的批次以保证顺序
+        emit(ctx);
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        // 没有待合并的消息时推迟只会增加延迟，直接下发；达到上限的批次在 write 时已经封帧，不会留在 pending 里
+        if (pending.isEmpty()) {
+            ctx.flush();
+            return;
+        }
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        ctx.executor().execute(() -> {
+            flushScheduled = false;
+            emit(ctx);
+            ctx.flush();
+        });
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        emit(ctx);
+        ctx.flush();
+        super.close(ctx, promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        discard(new ClosedChannelException());
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        discard(new ClosedChannelException());
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * msg 可以合并时返回其编码后的字节数，否则返回 -1
+     */
+    private static int batchSize(ChannelHandlerContext ctx, Object msg) {
+        if (!Boolean.TRUE.equals(ctx.channel().attr(BATCH_ENABLED).get())) {
+            return -1;
+        }
+        if (msg instanceof MetaMessage) {
+            MetaMessage message = (MetaMessage) msg;
+            return message.isHeartBeat() || message.isStreaming() ? -1 : MessageCodec.computeFrameSize(message);
+        }
+        if (msg instanceof BinaryWebSocketFrame) {
+            BinaryWebSocketFrame frame = (BinaryWebSocketFrame) msg;
+            return frame.isFinalFragment() && frame.rsv() == 0 && MessageCodec.isSingleMessage(frame.content())
+                    ? frame.content().readableBytes() : -1;
+        }
+        return -1;
+    }
+
+    private void emit(ChannelHandlerContext ctx) {
+        int count = pending.size();
+        if (count == 0) {
+            return;
+        }
+        if (count == 1) {
+            // 单条消息不值得额外的批量帧头，MetaMessage 交给 encoder 按普通帧编码，预编码帧原样写出
+            Object msg = pending.get(0);
+            ChannelPromise promise = promises.get(0);
+            reset();
+            ctx.write(msg, promise);
+            return;
+        }
+        ChannelPromise[] targets = new ChannelPromise[count];
+        int notify = 0;
+        ByteBuf buf = null;
+        Throwable cause = null;
+        long start = ChatMetrics.startTimer();
+        List<ByteBuf> encoded = new ArrayList<>(count);
+        try {
+            BodyCompressor compressor = ctx.channel().attr(BodyCompressors.CHANNEL_COMPRESSOR).get();
+            int messages = 0;
+            for (Object msg : pending) {
+                if (msg instanceof MetaMessage) {
+                    encoded.add(MessageCodec.encode(ctx.alloc(), (MetaMessage) msg, compressor));
+                    messages++;
+                } else {
+                    encoded.add(((BinaryWebSocketFrame) msg).content().retainedSlice());
+                }
+            }
+            List<ByteBuf> batch = encoded;
+            encoded = null;
+            buf = MessageCodec.encodeBatchEncoded(ctx.alloc(), batch);
+            if (messages > 0) {
+                // 预编码帧已由写出方计入出站消息
+                ChatMetrics.recordEncode(start, messages);
+            }
+        } catch (Throwable t) {
+            cause = t;
+            if (encoded != null) {
+                for (ByteBuf one : encoded) {
+                    one.release();
+                }
+            }
+        } finally {
+            for (int i = 0; i < count; i++) {
+                ReferenceCountUtil.release(pending.get(i));
+                ChannelPromise promise = promises.get(i);
+                if (!promise.isVoid()) {
+                    targets[notify++] = promise;
+                }
+            }
+            reset();
+        }
+        if (cause != null) {
+            for (int i = 0; i < notify; i++) {
+                targets[i].tryFailure(cause);
+            }
+            return;
+        }
+        if (notify == 0) {
+            ctx.write(new BinaryWebSocketFrame(buf), ctx.voidPromise());
+            return;
+        }
+        ChannelPromise batchPromise = ctx.newPromise();
+        batchPromise.addListener(new PromiseNotifier<Void, ChannelFuture>(
+                notify == count ? targets : Arrays.copyOf(targets, notify)));
+        ctx.write(new BinaryWebSocketFrame(buf), batchPromise);
+    }
+
+    private void discard(Throwable cause) {
+        for (int i = 0; i < pending.size(); i++) {
+            ReferenceCountUtil.release(pending.get(i));
+            promises.get(i).tryFailure(cause);
+        }
+        reset();
+    }
+
+    private void reset() {
+        pending.clear();
+        promises.clear();
+        pendingBytes = 0;
+    }
+}
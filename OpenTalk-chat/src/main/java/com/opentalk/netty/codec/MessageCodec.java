@@ -1,12 +1,20 @@
 package com.opentalk.netty.codec;
 
+import com.opentalk.netty.compress.BodyCompressor;
+import com.opentalk.netty.compress.BodyCompressors;
 import com.opentalk.netty.compress.VarInt;
 import com.opentalk.netty.message.MetaMessage;
 import com.opentalk.netty.message.MetaMessageHead;
 import io.netty.buffer.ByteBuf;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.TooLongFrameException;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,8 +25,37 @@ import java.util.List;
  */
 public class MessageCodec {
 
-    private static Logger log = LoggerFactory.getLogger(MessageCodec.class);
-    private static final int MAX_BODY_SIZE_TO_COMPRESS = 2048;
+    /**
+     * 超过该长度的消息体才尝试压缩，可通过 {@link #setCompressThreshold(int)} 调整
+     */
+    public static final int MAX_BODY_SIZE_TO_COMPRESS = 2048;
+    private static final int MAX_DECOMPRESSED_BODY_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * 第二个字节为标志位：bit0 心跳，bit1 批量帧，bit2 序号信封，bit4~6 消息体压缩算法 id（0 表示未压缩）
+     */
+    public static final int FLAG_HEARTBEAT = 0x01;
+    /**
+     * 批量帧：[version][flags][VarInt 条数] 后接 N 个 [VarInt 长度][单条消息编码]
+     */
+    public static final int FLAG_BATCH = 0x02;
+    /**
+     * 序号信封：[version][flags][8 字节会话序号] 后接一个完整的普通帧或批量帧，
+     * 信封的压缩位与内层帧一致，WebSocket 层据此跳过已压缩的帧
+     */
+    public static final int FLAG_SEQ = 0x04;
+    private static final int CODEC_SHIFT = 4;
+    public static final int CODEC_MASK = 0x70;
+
+    private static volatile int compressThreshold = MAX_BODY_SIZE_TO_COMPRESS;
+    /**
+     * 数据不小于该长度的 header/body 作为 CompositeByteBuf 的独立组件挂载，不做内存拷贝
+     */
+    private static final int MIN_SIZE_TO_ATTACH = 256;
+
+    public static void setCompressThreshold(int threshold) {
+        compressThreshold = threshold;
+    }
 
     public static void encode(ByteBuf buf, MetaMessage msg) {
         buf.writeByte(msg.getVersion());
@@ -34,8 +71,7 @@ public class MessageCodec {
         for (int i = 0; i < headerCount; i++) {
             headerLength += headers.get(i).calculateTotalLength();
         }
-        byte[] body = msg.getBody();
-        int bodyLength = body == null ? 0 : body.length;
+        int bodyLength = msg.calculateBodyLength();
         msg.setLength(headerLength + bodyLength);
         VarInt.writeVarInt32(buf, msg.getLength());
 
@@ -44,43 +80,503 @@ public class MessageCodec {
             MetaMessageHead header = headers.get(i);
             VarInt.writeVarInt32(buf, header.calculateDataLength());
             buf.writeByte(header.getType());
-            buf.writeBytes(header.getData());
+            header.writeData(buf);
         }
 
         if (bodyLength != 0) {
-            buf.writeBytes(body);
+            msg.writeBody(buf);
+        }
+
+    }
+
+    /**
+     * 计算消息编码后的帧长度，同时回填 msg.length
+     */
+    public static int computeFrameSize(MetaMessage msg) {
+        if (msg.isHeartBeat()) {
+            return 2;
+        }
+        List<MetaMessageHead> headers = msg.getHeaders();
+        int headerCount = headers == null ? 0 : headers.size();
+        int headerLength = 0;
+        for (int i = 0; i < headerCount; i++) {
+            headerLength += headers.get(i).calculateTotalLength();
+        }
+        msg.setLength(headerLength + msg.calculateBodyLength());
+        return 4 + VarInt.computeVarInt32Size(msg.getLength()) + msg.getLength();
+    }
+
+    /**
+     * 按精确长度编码：固定前缀、VarInt 长度和小块数据写入一个恰好大小的缓冲区，
+     * 大块 header 与 body 作为 CompositeByteBuf 组件直接挂载，写路径上既不扩容也不拷贝。
+     * 返回的缓冲区由调用方负责 release；以 byte[] 提供的 body 被包装引用，写出前不可再修改。
+     */
+    public static ByteBuf encode(ByteBufAllocator alloc, MetaMessage msg) {
+        return encode(alloc, msg, null);
+    }
+
+    /**
+     * 同上，compressor 不为空且消息体超过压缩阈值时压缩消息体，
+     * 压缩无收益（结果不比原文短）时按原文发送
+     */
+    public static ByteBuf encode(ByteBufAllocator alloc, MetaMessage msg, BodyCompressor compressor) {
+        if (msg.isHeartBeat()) {
+            ByteBuf buf = alloc.ioBuffer(2, 2);
+            buf.writeByte(msg.getVersion());
+            buf.writeByte(FLAG_HEARTBEAT);
+            return buf;
+        }
+        int rawLength = msg.calculateBodyLength();
+        ByteBuf compressed = null;
+        if (compressor != null && rawLength > compressThreshold) {
+            ByteBuf raw = msg.retainedBodyBuf();
+            try {
+                compressed = BodyCompressors.compress(compressor, alloc, raw, rawLength - VarInt.computeVarInt32Size(rawLength));
+            } finally {
+                raw.release();
+            }
+        }
+        try {
+            return encodeFrame(alloc, msg, compressed, compressed == null ? 0 : compressor.id(), rawLength);
+        } finally {
+            if (compressed != null) {
+                compressed.release();
+            }
+        }
+    }
+
+    private static ByteBuf encodeFrame(ByteBufAllocator alloc, MetaMessage msg, ByteBuf compressed, int codec, int rawLength) {
+        List<MetaMessageHead> headers = msg.getHeaders();
+        int headerCount = headers == null ? 0 : headers.size();
+        int headerLength = 0;
+        for (int i = 0; i < headerCount; i++) {
+            headerLength += headers.get(i).calculateTotalLength();
+        }
+        // 压缩后的消息体前带一个原文长度的 VarInt，便于接收端一次分配到位
+        int bodyLength = compressed == null ? rawLength : compressed.readableBytes();
+        int bodyPrefix = compressed == null ? 0 : VarInt.computeVarInt32Size(rawLength);
+        msg.setLength(headerLength + bodyPrefix + bodyLength);
+
+        int inlineSize = 4 + VarInt.computeVarInt32Size(msg.getLength()) + msg.getLength();
+        int attached = 0;
+        for (int i = 0; i < headerCount; i++) {
+            int dataLength = headers.get(i).calculateDataLength();
+            if (dataLength >= MIN_SIZE_TO_ATTACH) {
+                inlineSize -= dataLength;
+                attached++;
+            }
+        }
+        boolean attachBody = bodyLength >= MIN_SIZE_TO_ATTACH;
+        if (attachBody) {
+            inlineSize -= bodyLength;
+            attached++;
+        }
+
+        ByteBuf head = alloc.ioBuffer(inlineSize, inlineSize);
+        CompositeByteBuf composite = attached == 0 ? null : alloc.compositeBuffer(attached * 2 + 1);
+        boolean success = false;
+        try {
+            head.writeByte(msg.getVersion());
+            head.writeByte(codec << CODEC_SHIFT);
+            head.writeByte(msg.getCmd());
+            VarInt.writeVarInt32(head, msg.getLength());
+            head.writeByte(headerCount);
+            int mark = 0;
+            for (int i = 0; i < headerCount; i++) {
+                MetaMessageHead header = headers.get(i);
+                int dataLength = header.calculateDataLength();
+                VarInt.writeVarInt32(head, dataLength);
+                head.writeByte(header.getType());
+                if (dataLength < MIN_SIZE_TO_ATTACH) {
+                    header.writeData(head);
+                } else {
+                    mark = attachInline(composite, head, mark);
+                    composite.addComponent(true, header.retainedDataBuf());
+                }
+            }
+            if (bodyPrefix != 0) {
+                VarInt.writeVarInt32(head, rawLength);
+            }
+            if (attachBody) {
+                attachInline(composite, head, mark);
+                composite.addComponent(true, compressed == null ? msg.retainedBodyBuf() : compressed.retainedSlice());
+            } else {
+                if (compressed == null) {
+                    msg.writeBody(head);
+                } else {
+                    head.writeBytes(compressed, compressed.readerIndex(), compressed.readableBytes());
+                }
+                if (composite != null) {
+                    attachInline(composite, head, mark);
+                }
+            }
+            success = true;
+            return composite == null ? head : composite;
+        } finally {
+            if (composite != null) {
+                head.release();
+                if (!success) {
+                    composite.release();
+                }
+            } else if (!success) {
+                head.release();
+            }
+        }
+    }
+
+    /**
+     * 将多条消息打包为一个批量帧。小消息拷贝进同一块连续缓冲区，大消息以组件形式挂载。
+     * msgs 的所有权仍归调用方。
+     */
+    public static ByteBuf encodeBatch(ByteBufAllocator alloc, List<MetaMessage> msgs, BodyCompressor compressor) {
+        List<ByteBuf> encoded = new ArrayList<>(msgs.size());
+        try {
+            for (MetaMessage msg : msgs) {
+                encoded.add(encode(alloc, msg, compressor));
+            }
+        } catch (RuntimeException e) {
+            for (ByteBuf one : encoded) {
+                one.release();
+            }
+            throw e;
+        }
+        return encodeBatchEncoded(alloc, encoded);
+    }
+
+    /**
+     * 将已编码的单条消息打包为一个批量帧，布局同 {@link #encodeBatch}：小消息拷贝，大消息以组件形式挂载（只 retain 不拷贝）。
+     * 无论成功与否 encoded 中的缓冲区都会被释放。
+     */
+    public static ByteBuf encodeBatchEncoded(ByteBufAllocator alloc, List<ByteBuf> encoded) {
+        int count = encoded.size();
+        try {
+            int inlineSize = 2 + VarInt.computeVarInt32Size(count);
+            int attached = 0;
+            for (int i = 0; i < count; i++) {
+                int size = encoded.get(i).readableBytes();
+                inlineSize += VarInt.computeVarInt32Size(size);
+                if (size >= MIN_SIZE_TO_ATTACH) {
+                    attached++;
+                } else {
+                    inlineSize += size;
+                }
+            }
+            ByteBuf head = alloc.ioBuffer(inlineSize, inlineSize);
+            CompositeByteBuf composite = attached == 0 ? null : alloc.compositeBuffer(attached * 2 + 1);
+            boolean success = false;
+            try {
+                head.writeByte(count == 0 ? 0 : encoded.get(0).getByte(encoded.get(0).readerIndex()));
+                head.writeByte(FLAG_BATCH);
+                VarInt.writeVarInt32(head, count);
+                int mark = 0;
+                for (int i = 0; i < count; i++) {
+                    ByteBuf one = encoded.get(i);
+                    int size = one.readableBytes();
+                    VarInt.writeVarInt32(head, size);
+                    if (size < MIN_SIZE_TO_ATTACH) {
+                        head.writeBytes(one, one.readerIndex(), size);
+                    } else {
+                        mark = attachInline(composite, head, mark);
+                        composite.addComponent(true, one.retain());
+                    }
+                }
+                if (composite != null) {
+                    attachInline(composite, head, mark);
+                }
+                success = true;
+                return composite == null ? head : composite;
+            } finally {
+                if (composite != null) {
+                    head.release();
+                    if (!success) {
+                        composite.release();
+                    }
+                } else if (!success) {
+                    head.release();
+                }
+            }
+        } finally {
+            for (ByteBuf one : encoded) {
+                one.release();
+            }
+        }
+    }
+
+    /**
+     * 把已编码的单条帧原样打包为批量帧，不解码也不重新编码，用于离线补发直接转发提交日志里的帧。
+     * 帧内容拷贝进一块连续缓冲区，frames 不会被修改
+     */
+    public static ByteBuf encodeBatchFrames(ByteBufAllocator alloc, List<ByteBuffer> frames) {
+        int count = frames.size();
+        int size = 2 + VarInt.computeVarInt32Size(count);
+        for (int i = 0; i < count; i++) {
+            int length = frames.get(i).remaining();
+            size += VarInt.computeVarInt32Size(length) + length;
+        }
+        ByteBuf buf = alloc.ioBuffer(size, size);
+        buf.writeByte(count == 0 ? 0 : frames.get(0).get(frames.get(0).position()));
+        buf.writeByte(FLAG_BATCH);
+        VarInt.writeVarInt32(buf, count);
+        for (int i = 0; i < count; i++) {
+            ByteBuffer frame = frames.get(i);
+            VarInt.writeVarInt32(buf, frame.remaining());
+            buf.writeBytes(frame.duplicate());
+        }
+        return buf;
+    }
+
+    /**
+     * 给已编码的帧套上序号信封，不拷贝 frame，frame 的所有权转移给返回的缓冲区
+     */
+    public static ByteBuf encodeSequenced(ByteBufAllocator alloc, long seq, ByteBuf frame) {
+        ByteBuf head = alloc.ioBuffer(10, 10);
+        head.writeByte(frame.getUnsignedByte(frame.readerIndex()));
+        head.writeByte(FLAG_SEQ | (frame.getUnsignedByte(frame.readerIndex() + 1) & CODEC_MASK));
+        head.writeLong(seq);
+        return alloc.compositeBuffer(2).addComponents(true, head, frame);
+    }
+
+    /**
+     * buf 是否为单条消息的编码（不是心跳、批量帧或序号信封），这样的预编码帧可以并入批量帧
+     */
+    public static boolean isSingleMessage(ByteBuf buf) {
+        return buf.readableBytes() >= 3
+                && (buf.getUnsignedByte(buf.readerIndex() + 1) & (FLAG_HEARTBEAT | FLAG_BATCH | FLAG_SEQ)) == 0;
+    }
+
+    public static boolean isSequenced(ByteBuf buf) {
+        return buf.readableBytes() >= 10 && (buf.getUnsignedByte(buf.readerIndex() + 1) & FLAG_SEQ) != 0;
+    }
+
+    /**
+     * 解码一个完整的 WebSocket 帧负载，普通帧产出一条消息，批量帧逐条产出，
+     * 序号信封内的消息都带上信封的序号
+     */
+    public static void decodeFrame(ByteBuf buf, boolean zeroCopy, List<Object> out) {
+        if (isSequenced(buf)) {
+            buf.skipBytes(2);
+            long seq = buf.readLong();
+            int from = out.size();
+            decodeFrame(buf, zeroCopy, out);
+            for (int i = from; i < out.size(); i++) {
+                ((MetaMessage) out.get(i)).setSeq(seq);
+            }
+            return;
+        }
+        if (isBatch(buf)) {
+            buf.skipBytes(2);
+            int count = VarInt.readVarInt32(buf);
+            for (int i = 0; i < count; i++) {
+                ByteBuf one = buf.readSlice(VarInt.readVarInt32(buf));
+                out.add(zeroCopy ? decodeRetained(one) : decode(one));
+            }
+            return;
         }
+        out.add(zeroCopy ? decodeRetained(buf) : decode(buf));
+    }
+
+    /**
+     * 预编码的心跳应答，下标为 version * 2，不可释放，所有连接共享
+     */
+    private static final ByteBuf PONGS;
 
+    static {
+        ByteBuf pongs = Unpooled.directBuffer(512, 512);
+        for (int version = 0; version < 256; version++) {
+            pongs.writeByte(version);
+            pongs.writeByte(FLAG_HEARTBEAT);
+        }
+        PONGS = Unpooled.unreleasableBuffer(pongs.asReadOnly());
+    }
+
+    /**
+     * 判断 buf 是否为心跳帧，不移动读指针
+     */
+    public static boolean isHeartbeat(ByteBuf buf) {
+        return buf.readableBytes() >= 2 && (buf.getUnsignedByte(buf.readerIndex() + 1) & FLAG_HEARTBEAT) != 0;
+    }
+
+    /**
+     * 与心跳帧 ping 同版本的应答，返回共享预编码缓冲区的切片，无需编码也不占用池化内存
+     */
+    public static ByteBuf pong(ByteBuf ping) {
+        return PONGS.slice(ping.getUnsignedByte(ping.readerIndex()) << 1, 2);
+    }
+
+    public static boolean isBatch(ByteBuf buf) {
+        return buf.readableBytes() >= 2 && (buf.getUnsignedByte(buf.readerIndex() + 1) & FLAG_BATCH) != 0;
+    }
+
+    private static int attachInline(CompositeByteBuf composite, ByteBuf head, int mark) {
+        int end = head.writerIndex();
+        if (end > mark) {
+            composite.addComponent(true, head.retainedSlice(mark, end - mark));
+        }
+        return end;
     }
 
     public static MetaMessage decode(ByteBuf buf) {
-        MetaMessage msg = new MetaMessage();
+        return decode(buf, false);
+    }
+
+    /**
+     * 零拷贝解码：header 与 body 均为 buf 的切片，返回的消息持有 buf 的一次 retain，
+     * 调用方处理完后需 release 消息
+     */
+    public static MetaMessage decodeRetained(ByteBuf buf) {
+        return decode(buf, true);
+    }
+
+    /**
+     * 帧被截断或 header 表与长度字段不符时抛出 {@link CorruptedFrameException}，
+     * 已解析的部分随之释放，残缺的消息不会交给下游
+     */
+    private static MetaMessage decode(ByteBuf buf, boolean zeroCopy) {
+        MetaMessage msg = MetaMessage.newInstance();
         try {
-            msg.setVersion(buf.readByte());
-            msg.setHeartBeat(buf.readBoolean());
-            if(msg.isHeartBeat()){
+            int totalLength = decodeHead(buf, msg, zeroCopy);
+            if (msg.isHeartBeat()) {
                 return msg;
             }
-            msg.setCmd(buf.readByte());
-            msg.setLength(VarInt.readVarInt32(buf));
-            int totalLength = msg.getLength();
-            List<MetaMessageHead> headers = new ArrayList<>();
-            int headerCount = buf.readByte();
-            for (int i = 0; i < headerCount; i++) {
-                int headerLength = VarInt.readVarInt32(buf);
-                int headerType = buf.readByte();
-                MetaMessageHead header = new MetaMessageHead(headerType, getFromBuf(buf, headerLength));
-                headers.add(header);
-                totalLength-=header.calculateTotalLength();
-            }
-            msg.setHeaders(headers);
-            byte[] body = getFromBuf(buf, totalLength);
-            msg.setBody(body);
-        }catch (Exception e){
-            log.error("msg decoder failed:{}",e.getMessage());
-            //todo: 抛异常
-        }
-        return msg;
+            if (totalLength < 0) {
+                throw new CorruptedFrameException("header table exceeds message length " + msg.getLength());
+            }
+            if (msg.getCodec() != 0) {
+                decodeCompressedBody(buf, msg, msg.getCodec(), totalLength, zeroCopy);
+            } else if (zeroCopy) {
+                msg.setBodyBuf(totalLength == 0 ? Unpooled.EMPTY_BUFFER : buf.readSlice(totalLength));
+            } else {
+                msg.setBody(getFromBuf(buf, totalLength));
+            }
+            return msg;
+        } catch (DecoderException e) {
+            msg.release();
+            throw e;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            // 截断的帧读越界，长度字段溢出为负数时切片参数非法
+            msg.release();
+            throw new CorruptedFrameException("truncated message", e);
+        }
+    }
+
+    /**
+     * 只解析固定前缀与 header 表（零拷贝），buf 停在消息体起始处，
+     * 消息体长度为 length - calculateHeaderLength()。用于分片消息的首帧：消息体随后以分片形式到达。
+     * 解析失败直接抛出，成功时调用方负责 release 消息。
+     */
+    public static MetaMessage decodeHeadRetained(ByteBuf buf) {
+        MetaMessage msg = MetaMessage.newInstance();
+        try {
+            decodeHead(buf, msg, true);
+            return msg;
+        } catch (RuntimeException e) {
+            msg.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 判断 buf 的可读部分是否已包含完整的固定前缀与 header 表
+     */
+    public static boolean isHeadComplete(ByteBuf buf) {
+        int index = buf.readerIndex();
+        int end = buf.writerIndex();
+        if (end - index < 2) {
+            return false;
+        }
+        if ((buf.getUnsignedByte(index + 1) & FLAG_HEARTBEAT) != 0) {
+            return true;
+        }
+        index += 3;
+        int length = readableVarInt(buf, index);
+        if (length < 0) {
+            return false;
+        }
+        index += VarInt.computeVarInt32Size(length);
+        if (index >= end) {
+            return false;
+        }
+        int headerCount = buf.getUnsignedByte(index++);
+        for (int i = 0; i < headerCount; i++) {
+            int dataLength = readableVarInt(buf, index);
+            if (dataLength < 0) {
+                return false;
+            }
+            index += VarInt.computeVarInt32Size(dataLength) + 1 + dataLength;
+            if (index > end) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readableVarInt(ByteBuf buf, int index) {
+        int end = buf.writerIndex();
+        for (int i = 0; i < 5; i++) {
+            if (index + i >= end) {
+                return -1;
+            }
+            if (buf.getByte(index + i) >= 0) {
+                return VarInt.getVarInt32(buf, index);
+            }
+        }
+        return VarInt.getVarInt32(buf, index);
+    }
+
+    /**
+     * 解析固定前缀与 header 表，返回剩余的消息体长度；心跳帧返回 -1
+     */
+    private static int decodeHead(ByteBuf buf, MetaMessage msg, boolean zeroCopy) {
+        int frameOffset = buf.readerIndex();
+        msg.setVersion(buf.readByte());
+        int flags = buf.readUnsignedByte();
+        msg.setHeartBeat((flags & FLAG_HEARTBEAT) != 0);
+        if (msg.isHeartBeat()) {
+            return -1;
+        }
+        msg.setCodec((flags & CODEC_MASK) >>> CODEC_SHIFT);
+        if (zeroCopy) {
+            msg.setFrame(buf.retain());
+            msg.setFrameOffset(frameOffset);
+        }
+        msg.setCmd(buf.readByte());
+        msg.setLength(VarInt.readVarInt32(buf));
+        int totalLength = msg.getLength();
+        List<MetaMessageHead> headers = msg.reuseHeaders();
+        int headerCount = buf.readUnsignedByte();
+        for (int i = 0; i < headerCount; i++) {
+            int headerLength = VarInt.readVarInt32(buf);
+            int headerType = buf.readByte();
+            MetaMessageHead header = zeroCopy
+                    ? MetaMessageHead.newInstance(headerType, buf.readSlice(headerLength))
+                    : MetaMessageHead.newInstance(headerType, getFromBuf(buf, headerLength));
+            headers.add(header);
+            totalLength-=header.calculateTotalLength();
+        }
+        return totalLength;
+    }
+
+    private static void decodeCompressedBody(ByteBuf buf, MetaMessage msg, int codec, int totalLength, boolean zeroCopy) {
+        BodyCompressor compressor = BodyCompressors.get(codec);
+        if (compressor == null) {
+            throw new CorruptedFrameException("unsupported body codec: " + codec);
+        }
+        int start = buf.readerIndex();
+        int rawLength = VarInt.readVarInt32(buf);
+        if (rawLength > MAX_DECOMPRESSED_BODY_SIZE) {
+            throw new TooLongFrameException("decompressed body too large: " + rawLength);
+        }
+        ByteBuf compressed = buf.readSlice(totalLength - (buf.readerIndex() - start));
+        ByteBuf raw = BodyCompressors.decompress(compressor, buf.alloc(), compressed, rawLength);
+        if (zeroCopy) {
+            msg.setOwnedBody(raw);
+        } else {
+            try {
+                msg.setBody(ByteBufUtil.getBytes(raw));
+            } finally {
+                raw.release();
+            }
+        }
     }
 
     private static final byte[] EMPTY_BYTE_ARRAY = new byte[0];
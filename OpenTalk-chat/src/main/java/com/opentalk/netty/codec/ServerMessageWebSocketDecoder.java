@@ -1,6 +1,7 @@
 package com.opentalk.netty.codec;
 
-import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.metrics.ChatMetrics;
+import com.opentalk.netty.session.IdleReaper;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -17,6 +18,20 @@ import java.util.List;
  */
 @ChannelHandler.Sharable
 public class ServerMessageWebSocketDecoder extends MessageToMessageDecoder<WebSocketFrame> {
+
+    /**
+     * 开启后解出的 MetaMessage 直接引用入站帧（零拷贝），由下游处理器负责 release
+     */
+    private final boolean zeroCopy;
+
+    public ServerMessageWebSocketDecoder() {
+        this(false);
+    }
+
+    public ServerMessageWebSocketDecoder(boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
     @Override
     protected void decode(ChannelHandlerContext channelHandlerContext, WebSocketFrame msg, List<Object> list) throws Exception {
         if (msg instanceof BinaryWebSocketFrame) {
@@ -24,10 +39,25 @@ public class ServerMessageWebSocketDecoder extends MessageToMessageDecoder<WebSo
             if (buf == null) {
                 return;
             }
-            MetaMessage message = MessageCodec.decode(buf);
-            list.add(message);
+            IdleReaper.touch(channelHandlerContext.channel());
+            decodeComplete(channelHandlerContext, buf, zeroCopy, list);
         } else {
             throw new RuntimeException("unsupported frame type: " + msg.getClass().getName());
         }
     }
+
+    /**
+     * 解码一个完整的帧负载，两种解码器共用：心跳在此直接应答，不创建 MetaMessage；
+     * 父类在 decode 返回后会 release 帧，零拷贝模式下消息自身持有一次 retain
+     */
+    static void decodeComplete(ChannelHandlerContext ctx, ByteBuf buf, boolean zeroCopy, List<Object> out) {
+        if (MessageCodec.isHeartbeat(buf)) {
+            ctx.writeAndFlush(new BinaryWebSocketFrame(MessageCodec.pong(buf)), ctx.voidPromise());
+            return;
+        }
+        long start = ChatMetrics.startTimer();
+        int before = out.size();
+        MessageCodec.decodeFrame(buf, zeroCopy, out);
+        ChatMetrics.recordDecode(start, out.size() - before);
+    }
 }
@@ -1,12 +1,14 @@
 package com.opentalk.netty.codec;
 
+import com.opentalk.netty.compress.BodyCompressor;
+import com.opentalk.netty.compress.BodyCompressors;
 import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.metrics.ChatMetrics;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageEncoder;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
-import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 
 import java.util.List;
 
@@ -19,17 +21,11 @@ import java.util.List;
 public class ServerMessageWebSocketEncoder extends MessageToMessageEncoder<MetaMessage> {
     @Override
     protected void encode(ChannelHandlerContext ctx, MetaMessage msg, List<Object> list) {
-        ByteBuf buf = null;
-        try {
-            buf = ctx.alloc().ioBuffer();
-            MessageCodec.encode(buf, msg);
-            WebSocketFrame frame = new BinaryWebSocketFrame(buf);
-            list.add(frame);
-            buf = null;
-        } finally {
-            if (buf != null) {
-                buf.release();
-            }
-        }
+        // 精确长度 + 组合缓冲区编码，大块 body 以组件形式挂载，无扩容无拷贝；压缩算法在握手时协商
+        long start = ChatMetrics.startTimer();
+        BodyCompressor compressor = ctx.channel().attr(BodyCompressors.CHANNEL_COMPRESSOR).get();
+        ByteBuf buf = MessageCodec.encode(ctx.alloc(), msg, compressor);
+        list.add(new BinaryWebSocketFrame(buf));
+        ChatMetrics.recordEncode(start, 1);
     }
 }
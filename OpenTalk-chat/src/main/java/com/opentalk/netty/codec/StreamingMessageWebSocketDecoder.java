@@ -0,0 +1,219 @@
+package com.opentalk.netty.codec;
+
+import com.opentalk.netty.message.MessageBodyChunk;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.metrics.ChatMetrics;
+import com.opentalk.netty.session.IdleReaper;
+import com.opentalk.netty.util.ReadPause;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 支持分片的解码器：完整的 BinaryWebSocketFrame 与 {@link ServerMessageWebSocketDecoder} 行为一致；
+ * 分片消息（首帧 FIN=0 + ContinuationWebSocketFrame）先送出 streaming=true 的 MetaMessage（只含 header），
+ * 随后每个分片的负载作为 {@link MessageBodyChunk} 按序送出，不在内存中拼装整条消息体。
+ * 尚未释放的 chunk 总字节数超过 memoryCap 时经由 {@link ReadPause} 暂停读取，释放过半后解除，
+ * 单连接占用的内存因此被限制在 memoryCap 加一个帧的大小以内。
+ * 分片序列出错（乱序、长度不符、header 过长）时清空分片状态并关闭连接。
+ * 每个连接一个实例，不可共享。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class StreamingMessageWebSocketDecoder extends MessageToMessageDecoder<WebSocketFrame>
+        implements MessageBodyChunk.ReleaseListener {
+
+    /**
+     * 首帧不足以解析 header 表时最多暂存的字节数
+     */
+    private static final int MAX_PENDING_HEAD = 64 * 1024;
+
+    private final boolean zeroCopy;
+    private final long memoryCap;
+    private final long maxBodySize;
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private ChannelHandlerContext ctx;
+    private CompositeByteBuf pendingHead;
+    private boolean fragmented;
+    private boolean streaming;
+    private long offset;
+    private long remaining;
+
+    public StreamingMessageWebSocketDecoder(boolean zeroCopy, long memoryCap, long maxBodySize) {
+        this.zeroCopy = zeroCopy;
+        this.memoryCap = memoryCap;
+        this.maxBodySize = maxBodySize;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) throws Exception {
+        IdleReaper.touch(ctx.channel());
+        try {
+            decodeFrame(ctx, msg, out);
+        } catch (Exception e) {
+            // 分片序列已无法对齐，后续 continuation 帧都会被误判：清空状态并关闭连接，已送出的 chunk 由下游照常释放
+            if (fragmented || pendingHead != null) {
+                reset();
+                ctx.close();
+            }
+            throw e;
+        }
+    }
+
+    private void decodeFrame(ChannelHandlerContext ctx, WebSocketFrame msg, List<Object> out) {
+        if (msg instanceof BinaryWebSocketFrame) {
+            if (fragmented) {
+                throw new CorruptedFrameException("new message started before the fragmented one finished");
+            }
+            ByteBuf buf = msg.content();
+            if (msg.isFinalFragment()) {
+                ServerMessageWebSocketDecoder.decodeComplete(ctx, buf, zeroCopy, out);
+                return;
+            }
+            fragmented = true;
+            onFragment(buf, false, out);
+        } else if (msg instanceof ContinuationWebSocketFrame) {
+            if (!fragmented) {
+                throw new CorruptedFrameException("continuation frame without a started message");
+            }
+            onFragment(msg.content(), msg.isFinalFragment(), out);
+        } else {
+            throw new RuntimeException("unsupported frame type: " + msg.getClass().getName());
+        }
+    }
+
+    private void onFragment(ByteBuf content, boolean last, List<Object> out) {
+        if (streaming) {
+            emitChunk(content, last, out);
+        } else {
+            ByteBuf head = content;
+            if (pendingHead != null || !MessageCodec.isHeadComplete(content)) {
+                // header 表跨越了分片，先暂存直到可以完整解析
+                if (pendingHead == null) {
+                    pendingHead = ctx.alloc().compositeBuffer();
+                }
+                if (pendingHead.readableBytes() + content.readableBytes() > MAX_PENDING_HEAD) {
+                    throw new TooLongFrameException("message head exceeds " + MAX_PENDING_HEAD + " bytes");
+                }
+                pendingHead.addComponent(true, content.retain());
+                if (!MessageCodec.isHeadComplete(pendingHead)) {
+                    if (last) {
+                        throw new CorruptedFrameException("message ended before its head was complete");
+                    }
+                    return;
+                }
+                head = pendingHead;
+            }
+            try {
+                startMessage(head, out);
+                emitChunk(head, last, out);
+            } finally {
+                if (head == pendingHead) {
+                    pendingHead.release();
+                    pendingHead = null;
+                }
+            }
+        }
+        if (last) {
+            if (remaining != 0) {
+                throw new CorruptedFrameException("fragmented message body short by " + remaining + " bytes");
+            }
+            fragmented = false;
+            streaming = false;
+        }
+    }
+
+    private void startMessage(ByteBuf head, List<Object> out) {
+        if (MessageCodec.isBatch(head)) {
+            throw new CorruptedFrameException("batch frame cannot be fragmented");
+        }
+        MetaMessage msg = MessageCodec.decodeHeadRetained(head);
+        long bodyLength = (long) msg.getLength() - msg.calculateHeaderLength();
+        if (msg.isHeartBeat() || msg.getCodec() != 0) {
+            msg.release();
+            throw new CorruptedFrameException("heartbeat or compressed message cannot be fragmented");
+        }
+        if (bodyLength < 0 || bodyLength > maxBodySize) {
+            msg.release();
+            throw new TooLongFrameException("fragmented message body length invalid: " + bodyLength);
+        }
+        msg.setStreaming(true);
+        ChatMetrics.recordDecode(0, 1);
+        streaming = true;
+        offset = 0;
+        remaining = bodyLength;
+        out.add(msg);
+    }
+
+    private void emitChunk(ByteBuf buf, boolean last, List<Object> out) {
+        int n = buf.readableBytes();
+        if (n > remaining) {
+            throw new CorruptedFrameException("fragmented message body exceeds declared length");
+        }
+        if (n == 0 && !last) {
+            return;
+        }
+        ByteBuf content = n == 0 ? Unpooled.EMPTY_BUFFER : buf.readRetainedSlice(n);
+        MessageBodyChunk chunk = new MessageBodyChunk(content, offset, last, this);
+        offset += n;
+        remaining -= n;
+        if (inFlight.addAndGet(n) > memoryCap && !ReadPause.isPaused(ctx.channel(), ReadPause.STREAM_MEMORY)) {
+            ReadPause.pause(ctx.channel(), ReadPause.STREAM_MEMORY);
+        }
+        out.add(chunk);
+    }
+
+    /**
+     * chunk 可能在业务线程上释放，恢复读取统一切回 event loop
+     */
+    @Override
+    public void onRelease(int bytes) {
+        if (inFlight.addAndGet(-bytes) <= memoryCap / 2 && ReadPause.isPaused(ctx.channel(), ReadPause.STREAM_MEMORY)) {
+            ctx.channel().eventLoop().execute(() -> {
+                if (inFlight.get() <= memoryCap / 2) {
+                    ReadPause.resume(ctx.channel(), ReadPause.STREAM_MEMORY);
+                }
+            });
+        }
+    }
+
+    private void reset() {
+        if (pendingHead != null) {
+            pendingHead.release();
+            pendingHead = null;
+        }
+        fragmented = false;
+        streaming = false;
+        offset = 0;
+        remaining = 0;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        reset();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        handlerRemoved(ctx);
+        super.channelInactive(ctx);
+    }
+}
@@ -0,0 +1,26 @@
+package com.opentalk.netty.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * @author welsir
+ * @description : 消息体压缩算法扩展点，id 写入帧标志位，取值 1~7
+ * @date 2026/10/17
+ */
+public interface BodyCompressor {
+
+    int id();
+
+    String name();
+
+    /**
+     * 压缩 raw 的可读部分（不改变其 readerIndex），结果不小于 maxLength 时返回 null 表示放弃压缩
+     */
+    ByteBuf compress(ByteBufAllocator alloc, ByteBuf raw, int maxLength);
+
+    /**
+     * 解压 compressed 的可读部分，rawLength 为压缩前长度，由帧中的 VarInt 前缀给出
+     */
+    ByteBuf decompress(ByteBufAllocator alloc, ByteBuf compressed, int rawLength);
+}
@@ -0,0 +1,100 @@
+package com.opentalk.netty.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.AttributeKey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * @author welsir
+ * @description : 消息体压缩算法注册表。算法 id 写在帧标志位里，入站按 id 解压；
+ *                出站算法在握手时按客户端 ?codec=a,b 的顺序协商，结果挂在 channel 上
+ * @date 2026/10/17
+ */
+public class BodyCompressors {
+
+    public static final AttributeKey<BodyCompressor> CHANNEL_COMPRESSOR = AttributeKey.valueOf("bodyCompressor");
+    public static final String NEGOTIATE_PARAM = "codec";
+
+    public static final int DEFLATE_ID = 1;
+    public static final int DEFLATE_DICT_ID = 3;
+    public static final int MAX_ID = 7;
+
+    private static final BodyCompressor[] COMPRESSORS = new BodyCompressor[MAX_ID + 1];
+    private static final CompressionStats[] STATS = new CompressionStats[MAX_ID + 1];
+
+    static {
+        register(new DeflateBodyCompressor(DEFLATE_ID, "deflate", Deflater.DEFAULT_COMPRESSION, null));
+        register(new SnappyBodyCompressor());
+    }
+
+    public static synchronized void register(BodyCompressor compressor) {
+        int id = compressor.id();
+        if (id <= 0 || id > MAX_ID) {
+            throw new IllegalArgumentException("compressor id out of range [1," + MAX_ID + "]: " + id);
+        }
+        STATS[id] = new CompressionStats(compressor.name());
+        COMPRESSORS[id] = compressor;
+    }
+
+    public static void registerDictionary(CompressionDictionary dictionary) {
+        register(new DeflateBodyCompressor(DEFLATE_DICT_ID, "deflate-dict", Deflater.DEFAULT_COMPRESSION, dictionary.getBytes()));
+    }
+
+    public static BodyCompressor get(int id) {
+        return id <= 0 || id > MAX_ID ? null : COMPRESSORS[id];
+    }
+
+    /**
+     * 按客户端给出的偏好顺序选取第一个本端支持的算法，都不支持时返回 null（不压缩）
+     */
+    public static BodyCompressor negotiate(List<String> offered) {
+        if (offered == null) {
+            return null;
+        }
+        for (String value : offered) {
+            for (String name : value.split(",")) {
+                for (int i = 1; i <= MAX_ID; i++) {
+                    BodyCompressor compressor = COMPRESSORS[i];
+                    if (compressor != null && compressor.name().equalsIgnoreCase(name.trim())) {
+                        return compressor;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    public static ByteBuf compress(BodyCompressor compressor, ByteBufAllocator alloc, ByteBuf raw, int maxLength) {
+        long start = System.nanoTime();
+        ByteBuf out = compressor.compress(alloc, raw, maxLength);
+        long cost = System.nanoTime() - start;
+        CompressionStats stats = STATS[compressor.id()];
+        if (out == null) {
+            stats.recordSkip(cost);
+        } else {
+            stats.recordCompress(raw.readableBytes(), out.readableBytes(), cost);
+        }
+        return out;
+    }
+
+    public static ByteBuf decompress(BodyCompressor compressor, ByteBufAllocator alloc, ByteBuf compressed, int rawLength) {
+        long start = System.nanoTime();
+        ByteBuf out = compressor.decompress(alloc, compressed, rawLength);
+        STATS[compressor.id()].recordDecompress(System.nanoTime() - start);
+        return out;
+    }
+
+    public static List<CompressionStats> allStats() {
+        List<CompressionStats> list = new ArrayList<>();
+        for (int i = 1; i <= MAX_ID; i++) {
+            if (STATS[i] != null) {
+                list.add(STATS[i]);
+            }
+        }
+        return list;
+    }
+}
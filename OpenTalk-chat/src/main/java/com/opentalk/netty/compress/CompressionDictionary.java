@@ -0,0 +1,112 @@
+package com.opentalk.netty.compress;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * @author welsir
+ * @description : deflate 预置字典，由典型聊天消息样本训练得到，客户端与服务端必须使用同一份
+ * @date 2026/10/17
+ */
+public class CompressionDictionary {
+
+    /**
+     * deflate 窗口为 32KB，超出部分不会被引用
+     */
+    public static final int MAX_SIZE = 32 * 1024;
+    private static final int SEGMENT_LENGTH = 12;
+
+    private final byte[] bytes;
+
+    private CompressionDictionary(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public static CompressionDictionary load(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length > MAX_SIZE) {
+            throw new IllegalArgumentException("dictionary larger than " + MAX_SIZE + " bytes: " + path);
+        }
+        return new CompressionDictionary(bytes);
+    }
+
+    public void save(Path path) throws IOException {
+        Files.write(path, bytes);
+    }
+
+    /**
+     * 离线训练入口：args[0] 为样本目录（每个文件一条典型消息体），args[1] 为字典输出路径
+     */
+    public static void main(String[] args) throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Paths.get(args[0]))) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    samples.add(Files.readAllBytes(file));
+                }
+            }
+        }
+        train(samples, MAX_SIZE).save(Paths.get(args[1]));
+    }
+
+    /**
+     * 统计样本中定长片段的出现次数，按 次数*长度 挑选高频片段拼接成字典。
+     * 越常用的片段放得越靠后，距离输入越近，deflate 回溯引用的编码越短。
+     */
+    public static CompressionDictionary train(Collection<byte[]> samples, int maxSize) {
+        int limit = Math.min(maxSize, MAX_SIZE);
+        Map<String, int[]> counts = new HashMap<>();
+        for (byte[] sample : samples) {
+            // 同一样本内重复的片段只计一次，避免单条长消息主导字典
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i + SEGMENT_LENGTH <= sample.length; i++) {
+                String segment = new String(sample, i, SEGMENT_LENGTH, StandardCharsets.ISO_8859_1);
+                if (seen.add(segment)) {
+                    counts.computeIfAbsent(segment, k -> new int[1])[0]++;
+                }
+            }
+        }
+        List<Map.Entry<String, int[]>> ranked = new ArrayList<>(counts.entrySet());
+        ranked.removeIf(e -> e.getValue()[0] < 2);
+        ranked.sort((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]));
+
+        List<String> picked = new ArrayList<>();
+        StringBuilder joined = new StringBuilder();
+        int size = 0;
+        for (Map.Entry<String, int[]> entry : ranked) {
+            String segment = entry.getKey();
+            if (size + SEGMENT_LENGTH > limit) {
+                break;
+            }
+            // 已被更高频片段覆盖的内容不再重复收录
+            if (joined.indexOf(segment) >= 0) {
+                continue;
+            }
+            picked.add(segment);
+            joined.append(segment);
+            size += SEGMENT_LENGTH;
+        }
+        byte[] bytes = new byte[size];
+        int pos = size;
+        for (String segment : picked) {
+            pos -= SEGMENT_LENGTH;
+            System.arraycopy(segment.getBytes(StandardCharsets.ISO_8859_1), 0, bytes, pos, SEGMENT_LENGTH);
+        }
+        return new CompressionDictionary(bytes);
+    }
+}
@@ -0,0 +1,94 @@
+package com.opentalk.netty.compress;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author welsir
+ * @description : 单个压缩算法的累计统计：压缩前后字节数与 CPU 耗时
+ * @date 2026/10/17
+ */
+public class CompressionStats {
+
+    private final String name;
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder decompressed = new LongAdder();
+    private final LongAdder decompressNanos = new LongAdder();
+
+    public CompressionStats(String name) {
+        this.name = name;
+    }
+
+    void recordCompress(int rawLength, int compressedLength, long nanos) {
+        compressed.increment();
+        rawBytes.add(rawLength);
+        compressedBytes.add(compressedLength);
+        compressNanos.add(nanos);
+    }
+
+    void recordSkip(long nanos) {
+        skipped.increment();
+        compressNanos.add(nanos);
+    }
+
+    void recordDecompress(long nanos) {
+        decompressed.increment();
+        decompressNanos.add(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCompressed() {
+        return compressed.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long getCompressNanos() {
+        return compressNanos.sum();
+    }
+
+    public long getDecompressed() {
+        return decompressed.sum();
+    }
+
+    public long getDecompressNanos() {
+        return decompressNanos.sum();
+    }
+
+    /**
+     * 压缩后/压缩前，只统计实际采用压缩结果的消息
+     */
+    public double ratio() {
+        long raw = getRawBytes();
+        return raw == 0 ? 1.0 : (double) getCompressedBytes() / raw;
+    }
+
+    @Override
+    public String toString() {
+        long total = getCompressed() + getSkipped();
+        return name + "{compressed=" + getCompressed() + ", skipped=" + getSkipped()
+                + ", rawBytes=" + getRawBytes() + ", compressedBytes=" + getCompressedBytes()
+                + ", ratio=" + String.format("%.3f", ratio())
+                + ", avgCompressUs=" + (total == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(getCompressNanos() / total))
+                + ", decompressed=" + getDecompressed()
+                + ", avgDecompressUs=" + (getDecompressed() == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(getDecompressNanos() / getDecompressed()))
+                + "}";
+    }
+}
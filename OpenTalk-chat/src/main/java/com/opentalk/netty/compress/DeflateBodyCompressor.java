@@ -0,0 +1,118 @@
+package com.opentalk.netty.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @author welsir
+ * @description : 基于 JDK zlib 的 raw deflate 压缩，可选预置字典；Deflater/Inflater 按线程复用
+ * @date 2026/10/17
+ */
+public class DeflateBodyCompressor implements BodyCompressor {
+
+    private final int id;
+    private final String name;
+    private final int level;
+    private final byte[] dictionary;
+
+    private final FastThreadLocal<Deflater> deflaters = new FastThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(level, true);
+        }
+
+        @Override
+        protected void onRemoval(Deflater value) {
+            value.end();
+        }
+    };
+
+    private final FastThreadLocal<Inflater> inflaters = new FastThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+
+        @Override
+        protected void onRemoval(Inflater value) {
+            value.end();
+        }
+    };
+
+    public DeflateBodyCompressor(int id, String name, int level, byte[] dictionary) {
+        this.id = id;
+        this.name = name;
+        this.level = level;
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public ByteBuf compress(ByteBufAllocator alloc, ByteBuf raw, int maxLength) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(raw.nioBuffer());
+        deflater.finish();
+        // 输出缓冲区只开到 maxLength，写不下说明压缩无收益，直接放弃
+        ByteBuf out = alloc.heapBuffer(maxLength, maxLength);
+        ByteBuffer nio = out.nioBuffer(0, maxLength);
+        while (!deflater.finished() && nio.hasRemaining()) {
+            deflater.deflate(nio);
+        }
+        if (!deflater.finished()) {
+            out.release();
+            return null;
+        }
+        out.writerIndex(nio.position());
+        return out;
+    }
+
+    @Override
+    public ByteBuf decompress(ByteBufAllocator alloc, ByteBuf compressed, int rawLength) {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary);
+        }
+        inflater.setInput(compressed.nioBuffer());
+        ByteBuf out = alloc.heapBuffer(rawLength, rawLength);
+        try {
+            ByteBuffer nio = out.nioBuffer(0, rawLength);
+            while (nio.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(nio) == 0 && inflater.needsInput()) {
+                    break;
+                }
+            }
+            if (nio.position() != rawLength) {
+                throw new DecompressionException("deflate body truncated: " + nio.position() + "/" + rawLength);
+            }
+            out.writerIndex(rawLength);
+            return out;
+        } catch (DataFormatException e) {
+            out.release();
+            throw new DecompressionException(e);
+        } catch (RuntimeException e) {
+            out.release();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.opentalk.netty.compress;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtension;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * permessage-deflate 握手，每个连接一个实例，按策略决定该连接的服务端是否保持压缩上下文：
+ * 保持上下文压缩率更高，但每个连接常驻一个约 256KB 的 deflate 流；
+ * 不保持时每条消息独立压缩，deflate 流只在压缩期间存在。
+ * 不保持时在客户端的请求中补上 server_no_context_takeover 后交给 Netty 的握手实现。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class DeflateExtensionHandshaker implements WebSocketServerExtensionHandshaker {
+
+    public enum ContextTakeover {
+        /**
+         * 所有连接都保持上下文
+         */
+        ALWAYS,
+        /**
+         * 所有连接都不保持上下文
+         */
+        NEVER,
+        /**
+         * 在内存预算内的连接保持上下文，超出预算后的新连接不保持
+         */
+        BUDGET
+    }
+
+    private static final String SERVER_NO_CONTEXT = "server_no_context_takeover";
+
+    private final PerMessageDeflateServerExtensionHandshaker delegate;
+    private final Channel channel;
+    private final DeflateExtensionStats stats;
+    private final ContextTakeover policy;
+    private final int maxContextTakeover;
+
+    /**
+     * @param delegate 需允许 server_no_context_takeover，可在所有连接间共享
+     */
+    public DeflateExtensionHandshaker(PerMessageDeflateServerExtensionHandshaker delegate, Channel channel,
+                                      DeflateExtensionStats stats, ContextTakeover policy, long memoryBudget) {
+        this.delegate = delegate;
+        this.channel = channel;
+        this.stats = stats;
+        this.policy = policy;
+        this.maxContextTakeover = (int) Math.min(Integer.MAX_VALUE, memoryBudget / DeflateExtensionStats.DEFLATE_STATE_BYTES);
+    }
+
+    @Override
+    public WebSocketServerExtension handshakeExtension(WebSocketExtensionData extensionData) {
+        boolean takeover = !extensionData.parameters().containsKey(SERVER_NO_CONTEXT) && acquireContext();
+        WebSocketExtensionData offer = extensionData;
+        if (!takeover && !extensionData.parameters().containsKey(SERVER_NO_CONTEXT)) {
+            Map<String, String> parameters = new HashMap<>(extensionData.parameters());
+            parameters.put(SERVER_NO_CONTEXT, null);
+            offer = new WebSocketExtensionData(extensionData.name(), parameters);
+        }
+        WebSocketServerExtension extension = delegate.handshakeExtension(offer);
+        if (extension == null) {
+            if (takeover) {
+                stats.releaseContext();
+            }
+            return null;
+        }
+        if (takeover) {
+            channel.closeFuture().addListener(future -> stats.releaseContext());
+        } else {
+            stats.noContextOpened();
+            channel.closeFuture().addListener(future -> stats.noContextClosed());
+        }
+        return extension;
+    }
+
+    private boolean acquireContext() {
+        switch (policy) {
+            case ALWAYS:
+                return stats.tryAcquireContext(Integer.MAX_VALUE);
+            case BUDGET:
+                return stats.tryAcquireContext(maxContextTakeover);
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.opentalk.netty.compress;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author welsir
+ * @description : permessage-deflate 的全局统计：出站压缩前后字节数、跳过的帧数，
+ *                以及按连接模式估算的常驻 zlib 内存
+ * @date 2026/10/17
+ */
+public class DeflateExtensionStats {
+
+    /**
+     * windowBits=15、memLevel=8 时一个 deflate 流常驻的状态大小：(1 << 17) + (1 << 17)
+     */
+    public static final long DEFLATE_STATE_BYTES = 256 * 1024;
+    /**
+     * 一个 inflate 流常驻的滑动窗口与状态大小
+     */
+    public static final long INFLATE_STATE_BYTES = 44 * 1024;
+
+    private final AtomicInteger contextTakeover = new AtomicInteger();
+    private final AtomicInteger noContext = new AtomicInteger();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * 在预算内尝试为新连接占用一个上下文保持名额
+     */
+    boolean tryAcquireContext(int maxContextTakeover) {
+        for (;;) {
+            int current = contextTakeover.get();
+            if (current >= maxContextTakeover) {
+                return false;
+            }
+            if (contextTakeover.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void releaseContext() {
+        contextTakeover.decrementAndGet();
+    }
+
+    void noContextOpened() {
+        noContext.incrementAndGet();
+    }
+
+    void noContextClosed() {
+        noContext.decrementAndGet();
+    }
+
+    void recordRaw(int bytes) {
+        rawBytes.add(bytes);
+    }
+
+    void recordCompressed(int bytes) {
+        compressedBytes.add(bytes);
+    }
+
+    void recordSkipped() {
+        skipped.increment();
+    }
+
+    public int getContextTakeoverConnections() {
+        return contextTakeover.get();
+    }
+
+    public int getNoContextConnections() {
+        return noContext.get();
+    }
+
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    public double ratio() {
+        long raw = getRawBytes();
+        return raw == 0 ? 1.0 : (double) getCompressedBytes() / raw;
+    }
+
+    /**
+     * 估算的常驻内存：上下文保持连接各持有一个 deflate 流，所有协商成功的连接各持有一个 inflate 流；
+     * 无上下文连接的 deflate 流只在单条消息压缩期间存在，不计入
+     */
+    public long estimatedHeldBytes() {
+        int takeover = getContextTakeoverConnections();
+        return takeover * DEFLATE_STATE_BYTES + (takeover + getNoContextConnections()) * INFLATE_STATE_BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return "permessage-deflate{contextTakeover=" + getContextTakeoverConnections()
+                + ", noContext=" + getNoContextConnections()
+                + ", rawBytes=" + getRawBytes() + ", compressedBytes=" + getCompressedBytes()
+                + ", ratio=" + String.format("%.3f", ratio()) + ", skipped=" + getSkipped()
+                + ", estimatedHeldBytes=" + estimatedHeldBytes() + "}";
+    }
+}
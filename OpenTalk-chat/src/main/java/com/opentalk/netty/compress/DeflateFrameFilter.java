@@ -0,0 +1,51 @@
+package com.opentalk.netty.compress;
+
+import com.opentalk.netty.codec.MessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+
+/**
+ * @author welsir
+ * @description : permessage-deflate 出站过滤：小于阈值的帧、消息体已按协商算法压缩过的帧不再压缩；
+ *                续帧的取舍由编码器按首帧决定。入站不过滤
+ * @date 2026/10/17
+ */
+public class DeflateFrameFilter implements WebSocketExtensionFilterProvider {
+
+    private final int threshold;
+    private final DeflateExtensionStats stats;
+    private final WebSocketExtensionFilter encoderFilter = this::mustSkip;
+
+    public DeflateFrameFilter(int threshold, DeflateExtensionStats stats) {
+        this.threshold = threshold;
+        this.stats = stats;
+    }
+
+    @Override
+    public WebSocketExtensionFilter encoderFilter() {
+        return encoderFilter;
+    }
+
+    @Override
+    public WebSocketExtensionFilter decoderFilter() {
+        return WebSocketExtensionFilter.NEVER_SKIP;
+    }
+
+    private boolean mustSkip(WebSocketFrame frame) {
+        if (frame instanceof ContinuationWebSocketFrame) {
+            return false;
+        }
+        ByteBuf content = frame.content();
+        int length = content.readableBytes();
+        if (length < threshold || (length >= 2
+                && (content.getUnsignedByte(content.readerIndex() + 1) & MessageCodec.CODEC_MASK) != 0)) {
+            stats.recordSkipped();
+            return true;
+        }
+        stats.recordRaw(length);
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+package com.opentalk.netty.compress;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+
+/**
+ * @author welsir
+ * @description : 位于 permessage-deflate 编码器与 WebSocket 帧编码器之间，统计压缩后的出站字节数
+ * @date 2026/10/17
+ */
+@ChannelHandler.Sharable
+public class DeflateStatsHandler extends ChannelOutboundHandlerAdapter {
+
+    private final DeflateExtensionStats stats;
+
+    public DeflateStatsHandler(DeflateExtensionStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof WebSocketFrame && (((WebSocketFrame) msg).rsv() & WebSocketExtension.RSV1) != 0) {
+            stats.recordCompressed(((WebSocketFrame) msg).content().readableBytes());
+        }
+        ctx.write(msg, promise);
+    }
+}
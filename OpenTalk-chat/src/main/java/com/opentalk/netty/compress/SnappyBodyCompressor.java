@@ -0,0 +1,69 @@
+package com.opentalk.netty.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.compression.DecompressionException;
+import io.netty.handler.codec.compression.Snappy;
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * @author welsir
+ * @description : 基于 Netty 内置 Snappy 的快速压缩，压缩率低于 deflate，CPU 开销小得多
+ * @date 2026/10/17
+ */
+public class SnappyBodyCompressor implements BodyCompressor {
+
+    public static final int ID = 2;
+
+    private static final FastThreadLocal<Snappy> SNAPPY = new FastThreadLocal<Snappy>() {
+        @Override
+        protected Snappy initialValue() {
+            return new Snappy();
+        }
+    };
+
+    @Override
+    public int id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "snappy";
+    }
+
+    @Override
+    public ByteBuf compress(ByteBufAllocator alloc, ByteBuf raw, int maxLength) {
+        Snappy snappy = SNAPPY.get();
+        snappy.reset();
+        ByteBuf out = alloc.heapBuffer(maxLength);
+        try {
+            snappy.encode(raw.duplicate(), out, raw.readableBytes());
+        } catch (RuntimeException e) {
+            out.release();
+            throw e;
+        }
+        if (out.readableBytes() >= maxLength) {
+            out.release();
+            return null;
+        }
+        return out;
+    }
+
+    @Override
+    public ByteBuf decompress(ByteBufAllocator alloc, ByteBuf compressed, int rawLength) {
+        Snappy snappy = SNAPPY.get();
+        snappy.reset();
+        ByteBuf out = alloc.heapBuffer(rawLength, rawLength);
+        try {
+            snappy.decode(compressed.duplicate(), out);
+            if (out.readableBytes() != rawLength) {
+                throw new DecompressionException("snappy body length mismatch: " + out.readableBytes() + "/" + rawLength);
+            }
+            return out;
+        } catch (RuntimeException e) {
+            out.release();
+            throw e;
+        }
+    }
+}
@@ -32,6 +32,24 @@ public class VarInt {
         return 0;
     }
 
+    /**
+     * 按绝对下标读取 VarInt，不移动 readerIndex；编码长度可由 {@link #computeVarInt32Size(int)} 得到
+     */
+    public static int getVarInt32(ByteBuf buffer, int index) {
+        int res = 0;
+        int shift = 0;
+        int end = buffer.writerIndex();
+        for (int i = 0; i < 5 && index < end; i++) {
+            byte tmp = buffer.getByte(index++);
+            res |= (tmp & 127) << shift;
+            if (tmp >= 0) {
+                return res;
+            }
+            shift += 7;
+        }
+        return 0;
+    }
+
     public static void writeVarInt32(ByteBuf out, int value) {
         while (true) {
             if ((value & ~0x7F) == 0) {
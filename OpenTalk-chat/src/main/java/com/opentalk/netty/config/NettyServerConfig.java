@@ -1,16 +1,278 @@
 package com.opentalk.netty.config;
 
+import com.opentalk.netty.codec.MessageCodec;
 import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
 
 /**
+ * 配置前缀 opentalk.netty
+ *
  * @author welsir
  * @description :
  * @date 2025/7/20
  */
 @Data
+@Component
+@ConfigurationProperties(prefix = "opentalk.netty")
 public class NettyServerConfig {
 
     private int port = 9989;
+    /**
+     * ID 生成的节点号，集群内（含平台服务）唯一，取值 0~1023；没有默认值，-1 表示未配置，启动时拒绝
+     */
+    private long nodeId = -1;
     private int maxQueueSize = 1024;
+    /**
+     * accept 线程数；开启 reusePort 时同时也是绑定同一端口的监听 socket 数
+     */
+    private int bossThreads = 1;
+    /**
+     * I/O 线程数
+     */
+    private int workerThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * 成员数达到该值的房间成为热点，握手带 room 参数的新连接放到房间的归属 event loop 上，0 表示不放置
+     */
+    private int hotRoomThreshold = 0;
+    /**
+     * I/O 线程的 CPU 亲和策略：AffinityStrategies 的枚举名（DIFFERENT_CORE、SAME_SOCKET、ANY 等），NONE 表示不绑核
+     */
+    private String affinityStrategy = "DIFFERENT_CORE";
+    /**
+     * 以下为 epoll 专有选项，非 Linux 或 epoll 不可用时忽略。
+     * SO_REUSEPORT：bossThreads 个监听 socket 绑定同一端口，由内核把新连接分散到各 accept 线程
+     */
+    private boolean reusePort = false;
+    /**
+     * EDGE_TRIGGERED 或 LEVEL_TRIGGERED
+     */
+    private String epollMode = "EDGE_TRIGGERED";
+    /**
+     * SO_BUSY_POLL 微秒数，0 表示关闭
+     */
+    private int busyPollMicros = 0;
+    /**
+     * TCP_FASTOPEN 的 pending 队列长度，0 表示关闭
+     */
+    private int tcpFastOpen = 0;
+    private boolean tcpQuickAck = false;
+    /**
+     * 解码时 MetaMessage 直接持有入站帧切片，避免逐个 header/body 拷贝
+     */
+    private boolean zeroCopyDecode = true;
+    /**
+     * 超过该长度的消息体才尝试压缩
+     */
+    private int compressThreshold = MessageCodec.MAX_BODY_SIZE_TO_COMPRESS;
+    /**
+     * deflate 预置字典文件路径，配置后注册 deflate-dict 算法
+     */
+    private String compressDictionaryPath;
+    /**
+     * 单个 WebSocket 帧的最大负载，更大的消息需由客户端分片发送
+     */
+    private int maxFramePayloadLength = 64 * 1024;
+    /**
+     * 分片消息以 chunk 流的方式交付，不在内存中拼装整条消息体。
+     * 目前没有命令消费 chunk 流，开启后分片消息在 handler 处被丢弃，默认关闭（分片帧按不支持的帧类型拒绝）
+     */
+    private boolean streamingDecode = false;
+    /**
+     * 单连接尚未释放的 chunk 字节上限，超过后暂停读取
+     */
+    private long streamMemoryCap = 1024 * 1024;
+    /**
+     * 分片消息体的最大长度
+     */
+    private long maxStreamBodySize = 64L * 1024 * 1024;
+    /**
+     * 出站合并为批量帧（仅对握手时声明支持的连接生效）
+     */
+    private boolean batchEnabled = true;
+    /**
+     * 单个批量帧的字节预算，需小于客户端的帧长限制
+     */
+    private int maxBatchBytes = 16 * 1024;
+    /**
+     * 单个批量帧最多包含的消息条数
+     */
+    private int maxBatchMessages = 64;
+    /**
+     * 业务线程数，BUSINESS 模式的命令在这些线程上执行
+     */
+    private int businessThreads = Runtime.getRuntime().availableProcessors() * 2;
+    /**
+     * 每个业务线程的队列长度，同时也是单个命令默认的排队上限
+     */
+    private int businessQueueSize = 10000;
+    /**
+     * 会话路由表的初始容量，按预期在线人数设置可避免扩容
+     */
+    private int sessionInitialCapacity = 1 << 16;
+    /**
+     * 超过该时长未收到任何入站帧（含心跳）的连接会被关闭
+     */
+    private long idleTimeoutMillis = 180_000;
+    /**
+     * 空闲检测时间轮的 tick 间隔，决定关闭时间的精度
+     */
+    private long idleTickMillis = 1000;
+    /**
+     * 空闲检测时间轮的槽数
+     */
+    private int idleTicksPerWheel = 512;
+    /**
+     * channel 不可写期间本地出站队列的字节上限，超过后断开慢连接
+     */
+    private long outboundQueueBytes = 256 * 1024;
+    /**
+     * channel 持续不可写且队列无进展超过该时长后断开
+     */
+    private long outboundStallMillis = 30_000;
+    /**
+     * 协商 WebSocket permessage-deflate 扩展
+     */
+    private boolean perMessageDeflate = true;
+    private int deflateLevel = 6;
+    /**
+     * 小于该字节数的帧不做 permessage-deflate 压缩
+     */
+    private int deflateThreshold = 256;
+    /**
+     * 服务端压缩上下文保持策略：ALWAYS、NEVER、BUDGET
+     */
+    private String deflateContextTakeover = "BUDGET";
+    /**
+     * BUDGET 策略下所有保持上下文的连接常驻 deflate 内存的上限
+     */
+    private long deflateMemoryBudget = 256L * 1024 * 1024;
+    /**
+     * 握手时校验平台签发的 token；关闭后以 ?uid= 直接绑定，仅用于本地调试。
+     * 默认关闭，与平台未配置 opentalk.chat-token.keys 时不签发 token 保持一致；生产部署需开启并配置 authKeys
+     */
+    private boolean authEnabled = false;
+    /**
+     * kid 到 base64 编码密钥的映射，需与平台签发端的密钥环一致
+     */
+    private Map<String, String> authKeys = new HashMap<>();
+    /**
+     * 最近校验通过的 token 缓存条数与时长
+     */
+    private int authCacheSize = 100_000;
+    private long authCacheSeconds = 300;
+    /**
+     * 建连与入站帧限流
+     */
+    private boolean admissionEnabled = true;
+    /**
+     * 部署在代理之后时开启，按 X-Forwarded-For 解析真实 IP；否则直接使用 socket 地址
+     */
+    private boolean trustForwardedFor = false;
+    /**
+     * 单 IP 每秒建连数与突发量
+     */
+    private double connectRatePerIp = 10;
+    private double connectBurstPerIp = 20;
+    /**
+     * 同时处于握手阶段的连接数上限
+     */
+    private int maxHandshaking = 1024;
+    /**
+     * 建连后完成 WebSocket 升级的期限，超时关闭连接并归还握手名额
+     */
+    private long handshakeTimeoutMillis = 10_000;
+    /**
+     * 限流状态最多跟踪的 IP 数
+     */
+    private int maxTrackedIps = 100_000;
+    /**
+     * 单连接每秒入站帧数、字节数及各自的突发量
+     */
+    private double frameRatePerConnection = 100;
+    private double frameBurst = 200;
+    private double byteRatePerConnection = 1024 * 1024;
+    private double byteBurst = 2 * 1024 * 1024;
+    /**
+     * Prometheus 抓取端口（GET /metrics），0 表示不开启
+     */
+    private int metricsPort = 9990;
+    /**
+     * 编解码与 flush 计时，关闭后只保留计数
+     */
+    private boolean metricsTiming = true;
+    /**
+     * worker event loop 卡顿检测的探测间隔与判定阈值，间隔为 0 表示不开启
+     */
+    private long watchdogIntervalMillis = 100;
+    private long watchdogStallMillis = 500;
+    /**
+     * 消息提交日志目录，为空表示不持久化
+     */
+    private String commitLogDir = "data/commitlog";
+    /**
+     * 单个分段文件大小，预分配并整体 mmap
+     */
+    private int commitLogSegmentBytes = 128 * 1024 * 1024;
+    /**
+     * 稀疏索引间隔字节数
+     */
+    private int commitLogIndexInterval = 4096;
+    /**
+     * 没有等待落盘确认时的周期刷盘间隔
+     */
+    private long commitLogFlushMillis = 10;
+    /**
+     * 已封存分段的保留时长，0 表示不按时间清理
+     */
+    private long commitLogRetentionHours = 7 * 24;
+    /**
+     * 分段文件总大小上限，0 表示不按大小清理
+     */
+    private long commitLogRetentionBytes = 0;
+    /**
+     * 可靠投递：为客户端声明 ?reliable=1 的连接分配会话序号、等待确认并超时重发
+     */
+    private boolean reliableEnabled = true;
+    /**
+     * 单连接未确认帧数上限，超过后断开连接
+     */
+    private int reliableWindow = 1024;
+    /**
+     * 首次重发超时，需大于客户端的确认间隔；之后按次数指数退避
+     */
+    private long retransmitTimeoutMillis = 10_000;
+    private int retransmitMaxRetries = 3;
+    private long retransmitTickMillis = 100;
+    private int retransmitTicksPerWheel = 512;
+    /**
+     * 入站消息去重窗口的位数，2 的幂
+     */
+    private int dedupWindowBits = 1024;
+    /**
+     * 断开后入站去重窗口的保留时长（需大于客户端重连间隔）与保留个数上限
+     */
+    private long dedupRetentionMillis = 10 * 60 * 1000;
+    private long dedupMaxSessions = 1 << 18;
+    /**
+     * 离线信箱：离线用户的点对点消息只记录提交日志 offset，上线后补发；依赖提交日志
+     */
+    private boolean mailboxEnabled = true;
+    /**
+     * 信箱索引表的初始容量，只有存在未投递消息的用户才占一项
+     */
+    private int mailboxInitialCapacity = 1 << 16;
+    /**
+     * 单个信箱的指针上限，超过后丢弃最旧的
+     */
+    private int mailboxMaxPending = 100_000;
+    /**
+     * 每轮补发的最大条数与字节预算，字节预算需小于客户端的帧长限制；未声明批量帧的可靠连接每轮另外不超过重发窗口的一半
+     */
+    private int mailboxDrainBatchMessages = 4096;
+    private int mailboxDrainFrameBytes = 256 * 1024;
 
-}
\ No newline at end of file
+}
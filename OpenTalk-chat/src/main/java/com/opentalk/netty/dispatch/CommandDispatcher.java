@@ -0,0 +1,164 @@
+package com.opentalk.netty.dispatch;
+
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.metrics.MetricsSource;
+import com.opentalk.netty.metrics.PrometheusWriter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 cmd 字节分发入站消息，分发表为长度 256 的数组，查找为一次下标访问。
+ * <p>
+ * INLINE 命令在 event loop 上直接执行；BUSINESS 命令投递到业务线程：
+ * 业务线程池由若干单线程 executor 组成，同一 channel 固定落在同一个线程上以保证消息顺序，
+ * 每个 executor 的队列有界，每个命令另有独立的排队上限，慢命令堆积时只拒绝自身，不会拖住其他命令与 I/O 线程。
+ * 消息在 handler 返回、被拒绝或无人处理时由分发器 release。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Slf4j
+public class CommandDispatcher implements MetricsSource {
+
+    private final Registration[] table = new Registration[CommandType.MAX_CMD + 1];
+    private final ThreadPoolExecutor[] executors;
+    private final int defaultMaxQueued;
+
+    public CommandDispatcher(int businessThreads, int businessQueueSize) {
+        this.executors = new ThreadPoolExecutor[businessThreads];
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory("business");
+        for (int i = 0; i < businessThreads; i++) {
+            executors[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(businessQueueSize), threadFactory);
+        }
+        this.defaultMaxQueued = businessQueueSize;
+    }
+
+    public void register(int cmd, ExecutionMode mode, CommandHandler handler) {
+        register(cmd, mode, defaultMaxQueued, handler);
+    }
+
+    /**
+     * @param maxQueued 该命令在业务线程上允许同时排队的消息数，INLINE 模式忽略
+     */
+    public synchronized void register(int cmd, ExecutionMode mode, int maxQueued, CommandHandler handler) {
+        if (cmd < 0 || cmd > CommandType.MAX_CMD) {
+            throw new IllegalArgumentException("cmd out of range [0," + CommandType.MAX_CMD + "]: " + cmd);
+        }
+        if (table[cmd] != null) {
+            throw new IllegalStateException("cmd already registered: " + cmd);
+        }
+        table[cmd] = new Registration(handler, mode, maxQueued, new CommandStats(cmd, mode));
+    }
+
+    /**
+     * 在 event loop 上调用，接管 msg 的所有权
+     */
+    public void dispatch(ChannelHandlerContext ctx, MetaMessage msg) {
+        int cmd = msg.isHeartBeat() ? CommandType.HEARTBEAT : msg.getCmd() & 0xFF;
+        Registration registration = cmd == CommandType.HEARTBEAT && !msg.isHeartBeat() ? null : table[cmd];
+        if (registration == null) {
+            log.debug("no handler for cmd {}, message dropped", cmd);
+            msg.release();
+            return;
+        }
+        if (registration.mode == ExecutionMode.INLINE) {
+            invoke(registration, ctx, msg);
+            return;
+        }
+        CommandStats stats = registration.stats;
+        if (stats.tryEnqueue(registration.maxQueued) < 0) {
+            stats.recordRejected();
+            msg.release();
+            return;
+        }
+        try {
+            executorOf(ctx).execute(() -> {
+                stats.dequeue();
+                invoke(registration, ctx, msg);
+            });
+        } catch (RejectedExecutionException e) {
+            stats.dequeue();
+            stats.recordRejected();
+            msg.release();
+        }
+    }
+
+    private void invoke(Registration registration, ChannelHandlerContext ctx, MetaMessage msg) {
+        long start = System.nanoTime();
+        try {
+            registration.handler.handle(ctx, msg);
+            registration.stats.recordHandled(System.nanoTime() - start);
+        } catch (Throwable t) {
+            registration.stats.recordFailed();
+            log.error("handle cmd {} failed", registration.stats.getCmd(), t);
+        } finally {
+            msg.release();
+        }
+    }
+
+    private ThreadPoolExecutor executorOf(ChannelHandlerContext ctx) {
+        int hash = ctx.channel().hashCode();
+        return executors[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % executors.length];
+    }
+
+    public List<CommandStats> allStats() {
+        List<CommandStats> stats = new ArrayList<>();
+        for (Registration registration : table) {
+            if (registration != null) {
+                stats.add(registration.stats);
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public void writeTo(PrometheusWriter writer) {
+        List<CommandStats> all = allStats();
+        for (CommandStats stats : all) {
+            writer.summary("opentalk_dispatch_latency_seconds", "Command handling time by cmd", label(stats), stats.getLatency().snapshot());
+        }
+        for (CommandStats stats : all) {
+            writer.counter("opentalk_dispatch_failed_total", "Commands whose handler threw", label(stats), stats.getFailed());
+        }
+        for (CommandStats stats : all) {
+            writer.counter("opentalk_dispatch_rejected_total", "Commands rejected by the business queue limit", label(stats), stats.getRejected());
+        }
+        for (CommandStats stats : all) {
+            writer.gauge("opentalk_dispatch_queued", "Commands waiting on business threads", label(stats), stats.getQueued());
+        }
+    }
+
+    private static String label(CommandStats stats) {
+        return "cmd=\"" + stats.getCmd() + "\",mode=\"" + stats.getMode().name().toLowerCase() + "\"";
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor executor : executors) {
+            executor.shutdown();
+        }
+    }
+
+    private static final class Registration {
+        final CommandHandler handler;
+        final ExecutionMode mode;
+        final int maxQueued;
+        final CommandStats stats;
+
+        Registration(CommandHandler handler, ExecutionMode mode, int maxQueued, CommandStats stats) {
+            this.handler = handler;
+            this.mode = mode;
+            this.maxQueued = maxQueued;
+            this.stats = stats;
+        }
+    }
+}
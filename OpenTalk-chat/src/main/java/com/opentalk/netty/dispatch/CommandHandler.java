@@ -0,0 +1,16 @@
+package com.opentalk.netty.dispatch;
+
+import com.opentalk.netty.message.MetaMessage;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * @author welsir
+ * @description : 单个命令的处理逻辑。msg 在 handle 返回后由分发器 release，
+ *                需要在返回后继续使用时自行 retain
+ * @date 2026/10/17
+ */
+@FunctionalInterface
+public interface CommandHandler {
+
+    void handle(ChannelHandlerContext ctx, MetaMessage msg) throws Exception;
+}
@@ -0,0 +1,108 @@
+package com.opentalk.netty.dispatch;
+
+import com.opentalk.netty.metrics.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author welsir
+ * @description : 单个命令的累计统计：处理数、失败数、拒绝数、排队深度与处理耗时分布
+ * @date 2026/10/17
+ */
+public class CommandStats {
+
+    private final int cmd;
+    private final ExecutionMode mode;
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder handleNanos = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile int maxQueued;
+
+    public CommandStats(int cmd, ExecutionMode mode) {
+        this.cmd = cmd;
+        this.mode = mode;
+    }
+
+    void recordHandled(long nanos) {
+        handled.increment();
+        handleNanos.add(nanos);
+        latency.record(nanos);
+    }
+
+    void recordFailed() {
+        failed.increment();
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * 入队成功返回当前深度，超过 limit 时回滚并返回 -1
+     */
+    int tryEnqueue(int limit) {
+        int depth = queued.incrementAndGet();
+        if (depth > limit) {
+            queued.decrementAndGet();
+            return -1;
+        }
+        if (depth > maxQueued) {
+            maxQueued = depth;
+        }
+        return depth;
+    }
+
+    void dequeue() {
+        queued.decrementAndGet();
+    }
+
+    public int getCmd() {
+        return cmd;
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    public long getHandled() {
+        return handled.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getHandleNanos() {
+        return handleNanos.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    @Override
+    public String toString() {
+        long count = getHandled();
+        return "cmd" + cmd + "{mode=" + mode + ", handled=" + count + ", failed=" + getFailed()
+                + ", rejected=" + getRejected() + ", queued=" + getQueued() + ", maxQueued=" + getMaxQueued()
+                + ", avgHandleUs=" + (count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(getHandleNanos() / count))
+                + "}";
+    }
+}
@@ -0,0 +1,43 @@
+package com.opentalk.netty.dispatch;
+
+/**
+ * @author welsir
+ * @description : 帧头 cmd 字节的取值，分发表以 cmd & 0xFF 为下标
+ * @date 2026/10/17
+ */
+public final class CommandType {
+
+    /**
+     * 心跳帧不带 cmd，统一按该值分发。取 cmd 空间的最后一个值，
+     * 0 保留给未设置 cmd 的帧，不与任何命令对应；普通帧的 cmd 字节即使是 0xFF 也不会按心跳分发
+     */
+    public static final int HEARTBEAT = 0xFF;
+    public static final int P2P_CHAT = 1;
+    public static final int ROOM_CHAT = 2;
+    public static final int TYPING = 3;
+    public static final int PRESENCE = 4;
+    public static final int ACK = 5;
+    public static final int JOIN_ROOM = 6;
+    public static final int LEAVE_ROOM = 7;
+
+    public static final int MAX_CMD = 255;
+
+    /**
+     * 短暂状态类命令：只有最新一条有意义，慢连接上可以合并或丢弃
+     */
+    public static boolean isEphemeral(int cmd) {
+        cmd &= 0xFF;
+        return cmd == TYPING || cmd == PRESENCE;
+    }
+
+    /**
+     * 需要可靠投递的命令：出站时分配会话序号并等待客户端确认，入站时按客户端消息 id 去重
+     */
+    public static boolean isReliable(int cmd) {
+        cmd &= 0xFF;
+        return cmd == P2P_CHAT || cmd == ROOM_CHAT;
+    }
+
+    private CommandType() {
+    }
+}
@@ -0,0 +1,19 @@
+package com.opentalk.netty.dispatch;
+
+/**
+ * @author welsir
+ * @description : 命令的执行线程模型
+ * @date 2026/10/17
+ */
+public enum ExecutionMode {
+
+    /**
+     * 直接在 channel 所属的 event loop 上执行，只适用于不阻塞、耗时在微秒级的命令（心跳、输入状态等）
+     */
+    INLINE,
+
+    /**
+     * 投递到有界业务线程池执行，涉及持久化或远程调用的命令必须使用该模式
+     */
+    BUSINESS
+}
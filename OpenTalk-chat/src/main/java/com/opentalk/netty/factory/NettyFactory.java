@@ -4,8 +4,12 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.epoll.Epoll;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.internal.SystemPropertyUtil;
 import net.openhft.affinity.AffinityStrategies;
 import net.openhft.affinity.AffinityThreadFactory;
@@ -15,16 +19,34 @@ import java.util.concurrent.ThreadFactory;
 
 public class NettyFactory {
 
+    /**
+     * 不绑定 CPU 核心
+     */
+    public static final String AFFINITY_NONE = "NONE";
+
     public static EventLoopGroup eventLoopGroup(int threads, String threadName) {
-        ThreadFactory threadFactory = new AffinityThreadFactory(threadName, AffinityStrategies.DIFFERENT_CORE);
+        return eventLoopGroup(threads, threadName, AffinityStrategies.DIFFERENT_CORE.name());
+    }
+
+    /**
+     * @param affinityStrategy {@link AffinityStrategies} 的枚举名，或 {@link #AFFINITY_NONE}
+     */
+    public static EventLoopGroup eventLoopGroup(int threads, String threadName, String affinityStrategy) {
+        ThreadFactory threadFactory = AFFINITY_NONE.equalsIgnoreCase(affinityStrategy)
+                ? new DefaultThreadFactory(threadName)
+                : new AffinityThreadFactory(threadName, AffinityStrategies.valueOf(affinityStrategy.toUpperCase()));
         return supportEpoll() ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
     }
 
-    private static boolean supportEpoll() {
+    public static boolean supportEpoll() {
         return SystemPropertyUtil.get("os.name").toLowerCase().contains("linux") && Epoll.isAvailable();
     }
 
     public static Class<? extends ServerSocketChannel> serverSocketChannelClass() {
         return supportEpoll() ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
     }
-}
\ No newline at end of file
+
+    public static Class<? extends SocketChannel> socketChannelClass() {
+        return supportEpoll() ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+}
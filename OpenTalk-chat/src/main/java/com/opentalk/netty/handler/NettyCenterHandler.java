@@ -1,15 +1,31 @@
 package com.opentalk.netty.handler;
 
+import com.opentalk.netty.auth.TokenAuthHandler;
+import com.opentalk.netty.codec.MessageBatchingHandler;
+import com.opentalk.netty.compress.BodyCompressor;
+import com.opentalk.netty.compress.BodyCompressors;
+import com.opentalk.netty.dispatch.CommandDispatcher;
+import com.opentalk.netty.mailbox.MailboxStore;
+import com.opentalk.netty.message.MessageBodyChunk;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.reliable.ReliableDelivery;
+import com.opentalk.netty.reliable.ReliableDeliveryHandler;
+import com.opentalk.netty.session.IdleReaper;
+import com.opentalk.netty.session.SessionRegistry;
 import com.opentalk.netty.util.NetUtils;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.QueryStringDecoder;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.netty.util.NetUtil;
+import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @Description
@@ -21,6 +37,29 @@ import java.net.InetSocketAddress;
 @Slf4j
 public class NettyCenterHandler extends ChannelDuplexHandler {
 
+    public static final String UID_PARAM = "uid";
+
+    private final CommandDispatcher dispatcher;
+    private final SessionRegistry sessionRegistry;
+    private final IdleReaper idleReaper;
+    /**
+     * 可靠投递，关闭时为 null
+     */
+    private final ReliableDelivery reliableDelivery;
+    /**
+     * 离线信箱，关闭时为 null
+     */
+    private final MailboxStore mailbox;
+
+    public NettyCenterHandler(CommandDispatcher dispatcher, SessionRegistry sessionRegistry, IdleReaper idleReaper,
+                              ReliableDelivery reliableDelivery, MailboxStore mailbox) {
+        this.dispatcher = dispatcher;
+        this.sessionRegistry = sessionRegistry;
+        this.idleReaper = idleReaper;
+        this.reliableDelivery = reliableDelivery;
+        this.mailbox = mailbox;
+    }
+
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         // 握手超时事件
@@ -36,6 +75,46 @@ public class NettyCenterHandler extends ChannelDuplexHandler {
         if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
             WebSocketServerProtocolHandler.HandshakeComplete event = (WebSocketServerProtocolHandler.HandshakeComplete) evt;
             InetSocketAddress remoteAddr = NetUtils.getWsRemoteAddrFromHeader(event.requestHeaders(), ctx.channel());
+            Map<String, List<String>> params = new QueryStringDecoder(event.requestUri()).parameters();
+            // 绑定 uid 与 channel：uid 来自握手鉴权校验过的 token，关闭鉴权时取 /chat?uid=xxx
+            String uid = ctx.channel().attr(TokenAuthHandler.AUTH_UID).get();
+            if (uid == null) {
+                List<String> uids = params.get(UID_PARAM);
+                uid = uids == null || uids.isEmpty() ? null : uids.get(0);
+            }
+            if (uid == null || uid.isEmpty()) {
+                log.warn("The client({}) handshake without uid, the channel is about to close.",
+                        NetUtil.toSocketAddressString(remoteAddr));
+                ctx.close();
+                return;
+            }
+            sessionRegistry.bind(uid, ctx.channel());
+            idleReaper.watch(ctx.channel());
+            // 协商出站消息体压缩算法：/chat?codec=snappy,deflate
+            List<String> offered = params.get(BodyCompressors.NEGOTIATE_PARAM);
+            BodyCompressor compressor = BodyCompressors.negotiate(offered);
+            if (compressor != null) {
+                ctx.channel().attr(BodyCompressors.CHANNEL_COMPRESSOR).set(compressor);
+            }
+            // 客户端声明能解析批量帧（?batch=1）后，出站才会合并多条消息
+            List<String> batch = params.get(MessageBatchingHandler.NEGOTIATE_PARAM);
+            if (batch != null && batch.contains("1")) {
+                ctx.channel().attr(MessageBatchingHandler.BATCH_ENABLED).set(Boolean.TRUE);
+            }
+            // 客户端声明能解析序号信封并会发送确认（?reliable=1）后，可靠命令才分配序号、等待确认
+            List<String> reliable = params.get(ReliableDeliveryHandler.NEGOTIATE_PARAM);
+            if (reliableDelivery != null && reliable != null && reliable.contains("1")) {
+                ctx.channel().attr(ReliableDeliveryHandler.RELIABLE_ENABLED).set(Boolean.TRUE);
+            }
+            // 入站去重窗口按 uid 与客户端会话标识（?session=）跨重连保留，未带会话标识时只属于当前连接
+            if (reliableDelivery != null) {
+                List<String> session = params.get(ReliableDelivery.SESSION_PARAM);
+                reliableDelivery.bindSession(ctx.channel(), uid, session == null || session.isEmpty() ? null : session.get(0));
+            }
+            // 协商完成后再补发离线消息，补发帧按协商结果合并批量、分配序号
+            if (mailbox != null) {
+                mailbox.drain(ctx.channel(), uid);
+            }
             log.info("The client({}) handshake was completed successfully and the channel was upgraded to websockets.",
                     NetUtil.toSocketAddressString((InetSocketAddress)ctx.channel().remoteAddress()));
         }
@@ -50,7 +129,27 @@ public class NettyCenterHandler extends ChannelDuplexHandler {
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-
+        if (msg instanceof MetaMessage) {
+            if (((MetaMessage) msg).isStreaming()) {
+                // 分片消息的 header 只有元数据没有消息体，交给命令处理器会当作空消息转发；暂无流式消费者，连同后续 chunk 一起丢弃
+                log.debug("channel {} sent fragmented cmd {}, no stream consumer, message dropped",
+                        ctx.channel().id().asShortText(), ((MetaMessage) msg).getCmd());
+                ReferenceCountUtil.release(msg);
+                return;
+            }
+            if (reliableDelivery != null && !reliableDelivery.acceptInbound(ctx.channel(), (MetaMessage) msg)) {
+                ReferenceCountUtil.release(msg);
+                return;
+            }
+            // 分发器接管消息，处理完毕后负责 release
+            dispatcher.dispatch(ctx, (MetaMessage) msg);
+            return;
+        }
+        if (msg instanceof MessageBodyChunk) {
+            // 分片 chunk 暂无消费者，作为入站链路的最后一环直接释放，归还解码器的在途内存配额
+            ReferenceCountUtil.release(msg);
+            return;
+        }
         super.channelRead(ctx, msg);
     }
 
@@ -60,8 +159,9 @@ public class NettyCenterHandler extends ChannelDuplexHandler {
         super.channelActive(ctx);
     }
     @Override
-    public void channelInactive(ChannelHandlerContext ctx) {
-
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        sessionRegistry.unbind(ctx.channel());
+        super.channelInactive(ctx);
     }
 
 }
@@ -0,0 +1,259 @@
+package com.opentalk.netty.handler;
+
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.dispatch.CommandType;
+import com.opentalk.netty.message.HeaderType;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.message.MetaMessageHead;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 慢连接出站策略，由 WRITE_BUFFER_WATER_MARK 驱动：
+ * <ul>
+ *     <li>channel 可写时直接放行，不产生任何额外开销；</li>
+ *     <li>不可写后出站消息进入本地队列，累计字节数超过 maxQueuedBytes 时判定为慢消费者并断开；</li>
+ *     <li>输入状态、在线状态等短暂消息不入队，按 cmd + 发送方只保留最新一条，恢复可写时最后写出；</li>
+ *     <li>持续不可写超过 stallMillis 时断开，单个慢连接占用的内存因此有上限。</li>
+ * </ul>
+ * 位于 batcher 之后（出站方向先于 batcher 执行），每个连接一个实例。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Slf4j
+public class OutboundPolicyHandler extends ChannelDuplexHandler {
+
+    /**
+     * 不可写期间最多保留的短暂状态条数（按 cmd + 发送方计），超出的直接丢弃
+     */
+    private static final int MAX_EPHEMERAL = 256;
+
+    private final OutboundStats stats;
+    private final long maxQueuedBytes;
+    private final long stallMillis;
+
+    private final ArrayDeque<PendingWrite> queue = new ArrayDeque<>();
+    private Map<String, PendingWrite> ephemeral;
+    private long queuedBytes;
+    private boolean throttled;
+    private long lastProgress;
+    private ScheduledFuture<?> stallFuture;
+
+    public OutboundPolicyHandler(OutboundStats stats, long maxQueuedBytes, long stallMillis) {
+        this.stats = stats;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.stallMillis = stallMillis;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!throttled && ctx.channel().isWritable()) {
+            ctx.write(msg, promise);
+            return;
+        }
+        if (!throttled) {
+            startThrottle(ctx);
+        }
+        if (msg instanceof MetaMessage && CommandType.isEphemeral(((MetaMessage) msg).getCmd())) {
+            mergeEphemeral((MetaMessage) msg, promise);
+            return;
+        }
+        int size = sizeOf(msg);
+        if (queuedBytes + size > maxQueuedBytes) {
+            ReferenceCountUtil.release(msg);
+            promise.tryFailure(new ClosedChannelException());
+            stats.recordOverflowClosed();
+            log.warn("channel {} outbound queue exceeds {} bytes, closing slow consumer", ctx.channel().id().asShortText(), maxQueuedBytes);
+            ctx.close();
+            return;
+        }
+        queue.add(new PendingWrite(msg, promise, size));
+        queuedBytes += size;
+        stats.recordQueued();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            drain(ctx);
+        } else if (!throttled) {
+            startThrottle(ctx);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        discard();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        discard();
+        super.channelInactive(ctx);
+    }
+
+    private void mergeEphemeral(MetaMessage msg, ChannelPromise promise) {
+        if (ephemeral == null) {
+            ephemeral = new LinkedHashMap<>();
+        }
+        String key = mergeKey(msg);
+        PendingWrite old = ephemeral.get(key);
+        if (old == null && ephemeral.size() >= MAX_EPHEMERAL) {
+            ReferenceCountUtil.release(msg);
+            promise.trySuccess();
+            stats.recordDropped();
+            return;
+        }
+        ephemeral.put(key, new PendingWrite(msg, promise, 0));
+        if (old != null) {
+            // 被更新的状态取代，视为已送达
+            ReferenceCountUtil.release(old.msg);
+            old.promise.trySuccess();
+            stats.recordMerged();
+        }
+    }
+
+    private void drain(ChannelHandlerContext ctx) {
+        if (!throttled) {
+            return;
+        }
+        while (ctx.channel().isWritable()) {
+            PendingWrite pending = queue.poll();
+            if (pending == null) {
+                break;
+            }
+            queuedBytes -= pending.size;
+            lastProgress = System.currentTimeMillis();
+            ctx.write(pending.msg, pending.promise);
+        }
+        if (!queue.isEmpty()) {
+            ctx.flush();
+            return;
+        }
+        if (ephemeral != null) {
+            for (PendingWrite pending : ephemeral.values()) {
+                ctx.write(pending.msg, pending.promise);
+            }
+            ephemeral.clear();
+        }
+        ctx.flush();
+        endThrottle();
+    }
+
+    private void startThrottle(ChannelHandlerContext ctx) {
+        throttled = true;
+        lastProgress = System.currentTimeMillis();
+        stats.throttleStarted();
+        scheduleStallCheck(ctx, stallMillis);
+    }
+
+    /**
+     * 队列仍在缓慢消化时不算停滞，按最近一次写出重新计时
+     */
+    private void scheduleStallCheck(ChannelHandlerContext ctx, long delayMillis) {
+        stallFuture = ctx.executor().schedule(() -> {
+            if (!throttled) {
+                return;
+            }
+            long stalled = System.currentTimeMillis() - lastProgress;
+            if (stalled < stallMillis) {
+                scheduleStallCheck(ctx, stallMillis - stalled);
+                return;
+            }
+            stats.recordStallClosed();
+            log.warn("channel {} stalled for {}ms, closing slow consumer", ctx.channel().id().asShortText(), stalled);
+            ctx.close();
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void endThrottle() {
+        if (!throttled) {
+            return;
+        }
+        throttled = false;
+        stats.throttleEnded();
+        if (stallFuture != null) {
+            stallFuture.cancel(false);
+            stallFuture = null;
+        }
+    }
+
+    private void discard() {
+        if (!queue.isEmpty() || (ephemeral != null && !ephemeral.isEmpty())) {
+            ClosedChannelException cause = new ClosedChannelException();
+            for (PendingWrite pending : queue) {
+                ReferenceCountUtil.release(pending.msg);
+                pending.promise.tryFailure(cause);
+            }
+            queue.clear();
+            queuedBytes = 0;
+            if (ephemeral != null) {
+                for (PendingWrite pending : ephemeral.values()) {
+                    ReferenceCountUtil.release(pending.msg);
+                    pending.promise.tryFailure(cause);
+                    stats.recordDropped();
+                }
+                ephemeral.clear();
+            }
+        }
+        endThrottle();
+    }
+
+    /**
+     * 同一发送方的同类状态互相覆盖，没有发送方时按 cmd 合并
+     */
+    private static String mergeKey(MetaMessage msg) {
+        List<MetaMessageHead> headers = msg.getHeaders();
+        if (headers != null) {
+            for (int i = 0; i < headers.size(); i++) {
+                MetaMessageHead head = headers.get(i);
+                if (head.getType() == HeaderType.FROM_UID) {
+                    return msg.getCmd() + "/" + new String(head.getData(), StandardCharsets.US_ASCII);
+                }
+            }
+        }
+        return String.valueOf(msg.getCmd());
+    }
+
+    private static int sizeOf(Object msg) {
+        if (msg instanceof MetaMessage) {
+            return MessageCodec.computeFrameSize((MetaMessage) msg);
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        return 0;
+    }
+
+    private static final class PendingWrite {
+        final Object msg;
+        final ChannelPromise promise;
+        final int size;
+
+        PendingWrite(Object msg, ChannelPromise promise, int size) {
+            this.msg = msg;
+            this.promise = promise;
+            this.size = size;
+        }
+    }
+}
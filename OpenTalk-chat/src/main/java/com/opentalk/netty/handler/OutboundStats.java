@@ -0,0 +1,81 @@
+package com.opentalk.netty.handler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author welsir
+ * @description : 慢连接出站策略的全局统计，所有连接共享一个实例
+ * @date 2026/10/17
+ */
+public class OutboundStats {
+
+    private final AtomicInteger throttled = new AtomicInteger();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder overflowClosed = new LongAdder();
+    private final LongAdder stallClosed = new LongAdder();
+
+    void throttleStarted() {
+        throttled.incrementAndGet();
+    }
+
+    void throttleEnded() {
+        throttled.decrementAndGet();
+    }
+
+    void recordQueued() {
+        queued.increment();
+    }
+
+    void recordMerged() {
+        merged.increment();
+    }
+
+    public void recordDropped() {
+        dropped.increment();
+    }
+
+    void recordOverflowClosed() {
+        overflowClosed.increment();
+    }
+
+    void recordStallClosed() {
+        stallClosed.increment();
+    }
+
+    /**
+     * 当前处于不可写状态的连接数
+     */
+    public int getThrottled() {
+        return throttled.get();
+    }
+
+    public long getQueued() {
+        return queued.sum();
+    }
+
+    public long getMerged() {
+        return merged.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getOverflowClosed() {
+        return overflowClosed.sum();
+    }
+
+    public long getStallClosed() {
+        return stallClosed.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "outbound{throttled=" + getThrottled() + ", queued=" + getQueued() + ", merged=" + getMerged()
+                + ", dropped=" + getDropped() + ", overflowClosed=" + getOverflowClosed()
+                + ", stallClosed=" + getStallClosed() + "}";
+    }
+}
@@ -0,0 +1,211 @@
+package com.opentalk.netty.limit;
+
+import com.opentalk.netty.util.NetUtils;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 建连准入：单 IP 建连令牌桶 + 同时握手数上限，在 WebSocket 升级之前拒绝。
+ * 限流状态按 event loop 分片（FastThreadLocal），每个连接的事件都在其所属 event loop 上处理，
+ * 分片内读写无需同步；每个分片的速率与并发上限为配置值除以分片数。
+ * <p>
+ * 不信任 X-Forwarded-For 时在 channelActive 按 socket 地址判断，连 HTTP 请求都不会解析；
+ * 部署在代理之后时等到完整的 HTTP 请求，按 {@link NetUtils#getWsRemoteAddrFromHeader} 解析的真实 IP 判断。
+ * 升级响应（101）写出或连接关闭时归还握手名额，之后把自身移出 pipeline。
+ * 占用名额的同时在 event loop 上挂一个握手期限：升级前没有别的超时在运行（WebSocket 握手超时要等请求到达才开始计时，
+ * 空闲检测在握手完成后才开始），只建连不发请求的连接到期后被关闭并归还名额，不会长期占满握手上限。
+ * 位于 HttpObjectAggregator 之后、握手鉴权之前，被拒绝的连接不会走到 token 校验与 WebSocket 升级。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class AdmissionHandler extends ChannelDuplexHandler {
+
+    private static final AttributeKey<Boolean> HANDSHAKING = AttributeKey.valueOf("admissionHandshaking");
+    private static final AttributeKey<ScheduledFuture<?>> DEADLINE = AttributeKey.valueOf("admissionDeadline");
+    /**
+     * 每新增这么多 IP 清理一次分片内已闲置（桶已满）的条目
+     */
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final boolean trustForwardedFor;
+    private final double ratePerIp;
+    private final double burstPerIp;
+    private final int maxHandshakingPerShard;
+    private final int maxTrackedIpsPerShard;
+    private final long handshakeTimeoutMillis;
+    private final AdmissionStats stats;
+
+    private final FastThreadLocal<Shard> shards = new FastThreadLocal<Shard>() {
+        @Override
+        protected Shard initialValue() {
+            return new Shard();
+        }
+    };
+
+    /**
+     * @param handshakeTimeoutMillis 占用握手名额到完成升级的最长时间
+     * @param shards                 event loop 数，用于把全局配置均分到各分片
+     */
+    public AdmissionHandler(boolean trustForwardedFor, double connectRatePerIp, double connectBurstPerIp,
+                            int maxHandshaking, int maxTrackedIps, long handshakeTimeoutMillis, int shards, AdmissionStats stats) {
+        shards = Math.max(1, shards);
+        this.trustForwardedFor = trustForwardedFor;
+        // 同一 IP 的连接轮询落在各个 event loop 上，单 IP 速率同样按分片均分
+        this.ratePerIp = connectRatePerIp / shards;
+        // 向上取整，各分片的突发量之和不少于配置值
+        this.burstPerIp = Math.max(1, Math.ceil(connectBurstPerIp / shards));
+        TokenBucket.checkArguments(ratePerIp, burstPerIp);
+        this.maxHandshakingPerShard = Math.max(1, maxHandshaking / shards);
+        this.maxTrackedIpsPerShard = Math.max(SWEEP_INTERVAL, maxTrackedIps / shards);
+        this.handshakeTimeoutMillis = handshakeTimeoutMillis;
+        this.stats = stats;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (!trustForwardedFor) {
+            String ip = ((InetSocketAddress) ctx.channel().remoteAddress()).getHostString();
+            if (!admit(ctx, ip)) {
+                ctx.close();
+                return;
+            }
+        }
+        super.channelActive(ctx);
+    }
+
+    /**
+     * 热点房间放置会把握手中的连接迁到别的 event loop，离开时在原分片归还名额，之后由 WebSocket 握手超时兜底
+     */
+    @Override
+    public void channelUnregistered(ChannelHandlerContext ctx) throws Exception {
+        release(ctx);
+        super.channelUnregistered(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (trustForwardedFor && msg instanceof FullHttpRequest && !ctx.channel().hasAttr(HANDSHAKING)) {
+            FullHttpRequest request = (FullHttpRequest) msg;
+            String ip = NetUtils.getWsRemoteAddrFromHeader(request.headers(), ctx.channel()).getHostString();
+            if (!admit(ctx, ip)) {
+                ReferenceCountUtil.release(request);
+                DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.TOO_MANY_REQUESTS);
+                response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+                response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+                ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+                return;
+            }
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof HttpResponse && ((HttpResponse) msg).status().code() == HttpResponseStatus.SWITCHING_PROTOCOLS.code()) {
+            release(ctx);
+            ctx.write(msg, promise);
+            ctx.pipeline().remove(this);
+            return;
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    private boolean admit(ChannelHandlerContext ctx, String ip) {
+        Shard shard = shards.get();
+        long now = System.nanoTime();
+        TokenBucket bucket = shard.buckets.get(ip);
+        if (bucket == null) {
+            if (++shard.inserts % SWEEP_INTERVAL == 0 || shard.buckets.size() >= maxTrackedIpsPerShard) {
+                shard.sweep(now);
+            }
+            bucket = new TokenBucket(ratePerIp, burstPerIp, now);
+            shard.buckets.put(ip, bucket);
+        }
+        if (!bucket.tryAcquire(1, now)) {
+            stats.recordRejectedRate();
+            log.debug("connection from {} rejected: connect rate exceeded", ip);
+            return false;
+        }
+        if (shard.handshaking >= maxHandshakingPerShard) {
+            stats.recordRejectedConcurrency();
+            log.debug("connection from {} rejected: too many concurrent handshakes", ip);
+            return false;
+        }
+        shard.handshaking++;
+        ctx.channel().attr(HANDSHAKING).set(Boolean.TRUE);
+        ctx.channel().attr(DEADLINE).set(ctx.executor().schedule(() -> {
+            if (ctx.channel().attr(HANDSHAKING).get() == Boolean.TRUE) {
+                stats.recordHandshakeTimedOut();
+                log.debug("connection from {} closed: handshake not completed in {} ms", ip, handshakeTimeoutMillis);
+                release(ctx);
+                ctx.close();
+            }
+        }, handshakeTimeoutMillis, TimeUnit.MILLISECONDS));
+        ctx.channel().closeFuture().addListener(future -> release(ctx));
+        stats.recordAdmitted();
+        return true;
+    }
+
+    /**
+     * 只在 channel 所属 event loop 上调用，确保归还到占用时的分片
+     */
+    private void release(ChannelHandlerContext ctx) {
+        if (ctx.channel().attr(HANDSHAKING).getAndSet(Boolean.FALSE) == Boolean.TRUE) {
+            shards.get().handshaking--;
+        }
+        ScheduledFuture<?> deadline = ctx.channel().attr(DEADLINE).getAndSet(null);
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+    }
+
+    /**
+     * 当前 event loop 分片内占用的握手名额
+     */
+    int handshaking() {
+        return shards.get().handshaking;
+    }
+
+    private final class Shard {
+        final HashMap<String, TokenBucket> buckets = new HashMap<>();
+        int handshaking;
+        int inserts;
+
+        void sweep(long now) {
+            Iterator<TokenBucket> it = buckets.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().isFull(now)) {
+                    it.remove();
+                }
+            }
+            // 仍然超出上限说明在遭受大范围 IP 的冲击，整体清空以保证内存有界
+            if (buckets.size() >= maxTrackedIpsPerShard) {
+                buckets.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.opentalk.netty.limit;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author welsir
+ * @description : 准入控制的全局统计
+ * @date 2026/10/17
+ */
+public class AdmissionStats {
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejectedRate = new LongAdder();
+    private final LongAdder rejectedConcurrency = new LongAdder();
+    private final LongAdder frameThrottled = new LongAdder();
+    private final LongAdder handshakeTimedOut = new LongAdder();
+
+    void recordAdmitted() {
+        admitted.increment();
+    }
+
+    void recordRejectedRate() {
+        rejectedRate.increment();
+    }
+
+    void recordRejectedConcurrency() {
+        rejectedConcurrency.increment();
+    }
+
+    void recordFrameThrottled() {
+        frameThrottled.increment();
+    }
+
+    void recordHandshakeTimedOut() {
+        handshakeTimedOut.increment();
+    }
+
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    /**
+     * 因单 IP 建连速率超限被拒绝的连接数
+     */
+    public long getRejectedRate() {
+        return rejectedRate.sum();
+    }
+
+    /**
+     * 因同时握手数超限被拒绝的连接数
+     */
+    public long getRejectedConcurrency() {
+        return rejectedConcurrency.sum();
+    }
+
+    /**
+     * 因入站帧数或字节数超限暂停读取的次数
+     */
+    public long getFrameThrottled() {
+        return frameThrottled.sum();
+    }
+
+    /**
+     * 占用握手名额后未在期限内完成升级而被关闭的连接数
+     */
+    public long getHandshakeTimedOut() {
+        return handshakeTimedOut.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "admission{admitted=" + getAdmitted() + ", rejectedRate=" + getRejectedRate()
+                + ", rejectedConcurrency=" + getRejectedConcurrency() + ", handshakeTimedOut=" + getHandshakeTimedOut()
+                + ", frameThrottled=" + getFrameThrottled() + "}";
+    }
+}
@@ -0,0 +1,60 @@
+package com.opentalk.netty.limit;
+
+import com.opentalk.netty.util.ReadPause;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单连接入站限流：帧数与字节数各一个令牌桶。
+ * 已读到的帧照常向后传递，超出配额时关闭 autoRead，等令牌补足后再恢复读取，
+ * 背压经由 TCP 接收窗口传回客户端，不丢消息也不额外缓存。autoRead 经由 {@link ReadPause} 与其他暂停原因共同控制。
+ * 位于 decoder 之前，每个连接一个实例，状态只在所属 event loop 上访问。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class FrameRateLimiter extends ChannelInboundHandlerAdapter {
+
+    private final TokenBucket frames;
+    private final TokenBucket bytes;
+    private final AdmissionStats stats;
+    private boolean paused;
+
+    public FrameRateLimiter(double frameRate, double frameBurst, double byteRate, double byteBurst, AdmissionStats stats) {
+        long now = System.nanoTime();
+        this.frames = new TokenBucket(frameRate, frameBurst, now);
+        this.bytes = new TokenBucket(byteRate, byteBurst, now);
+        this.stats = stats;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof WebSocketFrame) {
+            long now = System.nanoTime();
+            frames.consume(1, now);
+            bytes.consume(((WebSocketFrame) msg).content().readableBytes(), now);
+            if (!paused) {
+                // 透支后等待余额回到 0 以上
+                long waitNanos = Math.max(frames.nanosUntil(0, now), bytes.nanosUntil(0, now));
+                if (waitNanos > 0) {
+                    pause(ctx, waitNanos);
+                }
+            }
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    private void pause(ChannelHandlerContext ctx, long waitNanos) {
+        paused = true;
+        stats.recordFrameThrottled();
+        ReadPause.pause(ctx.channel(), ReadPause.RATE_LIMIT);
+        ctx.executor().schedule(() -> {
+            paused = false;
+            ReadPause.resume(ctx.channel(), ReadPause.RATE_LIMIT);
+        }, waitNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,79 @@
+package com.opentalk.netty.limit;
+
+/**
+ * @author welsir
+ * @description : 令牌桶，按时间差惰性补充令牌，不依赖定时任务。非线程安全，只在单个 event loop 上使用
+ * @date 2026/10/17
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param burst 桶容量，即允许的突发量
+     */
+    public TokenBucket(double ratePerSecond, double burst, long nowNanos) {
+        checkArguments(ratePerSecond, burst);
+        this.capacity = burst;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = burst;
+        this.lastRefill = nowNanos;
+    }
+
+    /**
+     * 速率为 0 时 nanosUntil 会除以 0，容量为 0 时永远取不到令牌，构造前校验以便在启动时暴露配置错误
+     */
+    public static void checkArguments(double ratePerSecond, double burst) {
+        if (!(ratePerSecond > 0) || Double.isInfinite(ratePerSecond)) {
+            throw new IllegalArgumentException("token bucket rate must be positive: " + ratePerSecond);
+        }
+        if (!(burst >= 1) || Double.isInfinite(burst)) {
+            throw new IllegalArgumentException("token bucket burst must be at least 1: " + burst);
+        }
+    }
+
+    public boolean tryAcquire(double permits, long nowNanos) {
+        refill(nowNanos);
+        if (tokens < permits) {
+            return false;
+        }
+        tokens -= permits;
+        return true;
+    }
+
+    /**
+     * 无条件扣除，允许透支，透支部分需等待补充后才能再次获取
+     */
+    public void consume(double permits, long nowNanos) {
+        refill(nowNanos);
+        tokens -= permits;
+    }
+
+    /**
+     * 令牌恢复到至少 permits 个还需等待的纳秒数
+     */
+    public long nanosUntil(double permits, long nowNanos) {
+        refill(nowNanos);
+        return tokens >= permits ? 0 : (long) Math.ceil((permits - tokens) / tokensPerNano);
+    }
+
+    /**
+     * 桶已满说明长时间没有请求，可以回收
+     */
+    public boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= capacity;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefill;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefill = nowNanos;
+        }
+    }
+}
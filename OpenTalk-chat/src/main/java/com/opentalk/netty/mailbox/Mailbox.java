@@ -0,0 +1,190 @@
+package com.opentalk.netty.mailbox;
+
+/**
+ * 单个用户的信箱：提交日志 offset 的有序列表，只存指针不存消息。
+ * 相邻 offset 的差值按 zigzag + varint 编码在一个 byte[] 里，同一用户的消息在日志里通常相距不远，
+ * 每个指针一般只占 1~3 字节；读游标（head）之前的部分已投递，游标越过一半容量时整体前移回收空间。
+ * <p>
+ * 所有方法由调用方持有本对象的锁后调用，见 {@link MailboxStore}。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+final class Mailbox {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private byte[] data = new byte[INITIAL_CAPACITY];
+    /**
+     * 读游标：第一个未投递指针的字节位置，以及它的差值基准（前一个指针的 offset）
+     */
+    private int head;
+    private long headBase;
+    private int tail;
+    private long last;
+    private int size;
+
+    /**
+     * 正在向某个连接补发，同一时刻只有一个补发流程推进游标
+     */
+    boolean draining;
+    /**
+     * 已从索引表移除，持有旧引用的投递方需要重新获取
+     */
+    boolean removed;
+    /**
+     * 当前补发轮次已从读游标起取走、等待确认后 skip 的指针数，信箱满时只能丢弃这之后的指针
+     */
+    int inFlight;
+
+    void add(long offset) {
+        if (tail + 10 > data.length) {
+            grow();
+        }
+        tail = encode(data, tail, offset - last);
+        last = offset;
+        size++;
+    }
+
+    /**
+     * 删除读游标起第 index 个指针（0 表示游标处），后一个指针的差值改为相对被删指针的前一个，其后的字节整体前移。
+     * 合并后的差值编码不会长于原来两个差值之和，原地重写即可
+     */
+    void dropAt(int index) {
+        if (index <= 0) {
+            skip(1);
+            return;
+        }
+        int pos = head;
+        long base = headBase;
+        for (int i = 0; i < index; i++) {
+            base += decode(pos);
+            pos = next(pos);
+        }
+        int start = pos;
+        long dropped = decode(start);
+        int end = next(start);
+        size--;
+        if (index == size) {
+            tail = start;
+            last = base;
+            return;
+        }
+        long merged = dropped + decode(end);
+        end = next(end);
+        byte[] encoded = new byte[10];
+        int length = encode(encoded, 0, merged);
+        System.arraycopy(encoded, 0, data, start, length);
+        System.arraycopy(data, end, data, start + length, tail - end);
+        tail -= end - start - length;
+    }
+
+    private static int encode(byte[] out, int pos, long delta) {
+        long zigzag = (delta << 1) ^ (delta >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out[pos++] = (byte) zigzag;
+        return pos;
+    }
+
+    private long decode(int pos) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos++];
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private int next(int pos) {
+        while (data[pos] < 0) {
+            pos++;
+        }
+        return pos + 1;
+    }
+
+    /**
+     * 从读游标起取最多 out.length 个指针，不移动游标，返回实际个数
+     */
+    int peek(long[] out) {
+        int n = Math.min(out.length, size);
+        int pos = head;
+        long base = headBase;
+        for (int i = 0; i < n; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            base += (zigzag >>> 1) ^ -(zigzag & 1);
+            out[i] = base;
+        }
+        return n;
+    }
+
+    /**
+     * 读游标前移 n 个指针
+     */
+    void skip(int n) {
+        n = Math.min(n, size);
+        for (int i = 0; i < n; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[head++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            headBase += (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        size -= n;
+        if (size == 0) {
+            head = 0;
+            tail = 0;
+            if (data.length > INITIAL_CAPACITY) {
+                data = new byte[INITIAL_CAPACITY];
+            }
+        } else if (head > data.length >>> 1) {
+            System.arraycopy(data, head, data, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 编码后占用的字节数
+     */
+    int bytes() {
+        return tail - head;
+    }
+
+    /**
+     * 编码缓冲区的容量
+     */
+    int capacity() {
+        return data.length;
+    }
+
+    private void grow() {
+        int used = tail - head;
+        byte[] grown = new byte[Math.max(INITIAL_CAPACITY, (used + 10) * 3 / 2)];
+        System.arraycopy(data, head, grown, 0, used);
+        data = grown;
+        tail = used;
+        head = 0;
+    }
+}
@@ -0,0 +1,376 @@
+package com.opentalk.netty.mailbox;
+
+import com.opentalk.netty.broadcast.MessageBroadcaster;
+import com.opentalk.netty.codec.MessageBatchingHandler;
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.metrics.ChatMetrics;
+import com.opentalk.netty.metrics.MetricsSource;
+import com.opentalk.netty.metrics.PrometheusWriter;
+import com.opentalk.netty.reliable.ReliableDeliveryHandler;
+import com.opentalk.netty.session.SessionRegistry;
+import com.opentalk.netty.store.MessageLog;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 离线信箱。消息本身只在提交日志里存一份，信箱只记录 offset（{@link Mailbox}），
+ * 空信箱不占任何内存：只有存在未投递消息的用户才在索引表里有一项，投递完毕即移除。
+ * <p>
+ * 补发：用户上线（握手完成）后按读游标分轮补发，每轮从提交日志取最多 drainBatchMessages 条线上帧，不解码，
+ * 原样拼成一个批量帧（未声明 ?batch=1 的连接逐帧写出、一次 flush），单轮字节数不超过 drainFrameBytes；
+ * 未声明批量帧的可靠连接每条消息占一个重发窗口位置，单轮条数另外限制在窗口的一半以内。
+ * 本轮成功后游标才前移并开始下一轮：普通连接以写出成功为准，可靠连接（?reliable=1）以客户端确认为准，
+ * 失败时游标不动，下次上线重新补发；一万条积压只需要几次写，同时任意时刻最多只有一轮数据在出站缓冲区里，不会触发慢连接断开。
+ * 已被提交日志清理掉的消息直接跳过。
+ * <p>
+ * 多端登录时在线投递与补发采用同一策略：写给用户当前的全部在线连接，任一连接收到（可靠连接为已确认）即视为送达该用户，
+ * 补发进行中才上线的连接只收到之后的轮次。
+ * 投递与上线交错时（投递方看到离线，写入信箱时用户已上线），写入后再检查一次在线状态并触发补发；
+ * 补发尚未结束时新到的消息也进入信箱，保证先于它们的离线消息先送达。
+ * 在线投递（{@link #deliver}）中声明了可靠投递的连接在确认前断开、且没有其他在线连接时，
+ * 该消息的 offset 交回信箱，重连后补发。交回的消息可能排在断开期间新到的消息之后，客户端按 MESSAGE_ID 排序。
+ * 信箱索引只在内存中，进程重启后未投递的指针丢失，消息仍保留在提交日志里。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Slf4j
+public class MailboxStore implements MetricsSource {
+
+    private final ConcurrentHashMap<String, Mailbox> boxes;
+    private final MessageLog messageLog;
+    private final SessionRegistry sessionRegistry;
+    private final int maxPending;
+    private final int drainBatchMessages;
+    private final int drainFrameBytes;
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder requeued = new LongAdder();
+    private final LongAdder drainWrites = new LongAdder();
+
+    /**
+     * @param maxPending         单个信箱的指针上限，超过后丢弃最旧的；补发进行中丢弃本轮未取走的最旧的
+     * @param drainBatchMessages 每轮补发的最大条数
+     * @param drainFrameBytes    每轮补发的字节预算，需小于客户端的帧长限制
+     */
+    public MailboxStore(MessageLog messageLog, SessionRegistry sessionRegistry, int initialCapacity,
+                        int maxPending, int drainBatchMessages, int drainFrameBytes) {
+        this.boxes = new ConcurrentHashMap<>(initialCapacity);
+        this.messageLog = messageLog;
+        this.sessionRegistry = sessionRegistry;
+        this.maxPending = maxPending;
+        this.drainBatchMessages = drainBatchMessages;
+        this.drainFrameBytes = drainFrameBytes;
+    }
+
+    /**
+     * 把提交日志中 offset 处的消息放入 uid 的信箱，用户此时已上线则立即补发
+     */
+    public void offer(String uid, long offset) {
+        for (;;) {
+            Mailbox box = boxes.computeIfAbsent(uid, key -> new Mailbox());
+            synchronized (box) {
+                if (box.removed) {
+                    continue;
+                }
+                if (box.size() >= maxPending) {
+                    dropped.increment();
+                    // 补发中的轮次已取走头部 inFlight 个指针，游标由补发流程推进：丢弃其后最旧的一个；
+                    // 信箱里全是在途指针时丢弃新到的这一个
+                    if (box.inFlight >= box.size()) {
+                        break;
+                    }
+                    box.dropAt(box.inFlight);
+                }
+                box.add(offset);
+                break;
+            }
+        }
+        offered.increment();
+        Channel[] channels = sessionRegistry.channels(uid);
+        if (channels.length > 0) {
+            drain(channels[0], uid);
+        }
+    }
+
+    /**
+     * 投递已追加到提交日志 offset 处的消息 msg：信箱中还有未补发的消息或目标不在线时放入信箱，
+     * 否则写给目标的全部在线连接。msg 的所有权仍归调用方
+     */
+    public void deliver(String uid, MetaMessage msg, long offset) {
+        if (hasPending(uid)) {
+            offer(uid, offset);
+            return;
+        }
+        Channel[] channels = sessionRegistry.channels(uid);
+        ChannelFutureListener requeue = future -> {
+            if (!future.isSuccess() && !otherTargetActive(channels, future.channel())) {
+                requeued.increment();
+                offer(uid, offset);
+            }
+        };
+        if (MessageBroadcaster.broadcast(msg, Arrays.asList(channels), requeue) == 0) {
+            offer(uid, offset);
+        }
+    }
+
+    /**
+     * 同一次投递的其他目标连接是否仍活跃：有则视为已送达该用户，不再交回信箱。
+     * 只看投递时的目标，同一设备在旧连接被判定断开前已重连的新连接没有收到这条消息，不算在内
+     */
+    private static boolean otherTargetActive(Channel[] targets, Channel channel) {
+        for (Channel other : targets) {
+            if (other != channel && other.isActive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * uid 是否还有未投递完的消息，有则新消息也应进入信箱以保持顺序
+     */
+    public boolean hasPending(String uid) {
+        return boxes.containsKey(uid);
+    }
+
+    /**
+     * 补发 uid 信箱中的消息，可在任意线程调用；已有补发在进行时直接返回。
+     * 补发写给 uid 当前的全部在线连接，channel 只决定首轮在哪个 event loop 上执行，通常是刚上线的连接
+     */
+    public void drain(Channel channel, String uid) {
+        if (!channel.eventLoop().inEventLoop()) {
+            try {
+                channel.eventLoop().execute(() -> drain(channel, uid));
+            } catch (RejectedExecutionException e) {
+                // event loop 已关闭，下次上线再补发
+            }
+            return;
+        }
+        Mailbox box = boxes.get(uid);
+        if (box == null) {
+            return;
+        }
+        synchronized (box) {
+            if (box.draining || box.removed) {
+                return;
+            }
+            box.draining = true;
+        }
+        drainNext(uid, box);
+    }
+
+    private void drainNext(String uid, Mailbox box) {
+        Channel[] targets = activeChannels(uid);
+        int limit = drainBatchMessages;
+        for (Channel target : targets) {
+            limit = Math.min(limit, roundLimit(target));
+        }
+        long[] offsets;
+        synchronized (box) {
+            if (box.size() == 0) {
+                box.draining = false;
+                box.removed = true;
+                boxes.remove(uid, box);
+                return;
+            }
+            if (targets.length == 0) {
+                box.draining = false;
+                return;
+            }
+            offsets = new long[Math.min(box.size(), limit)];
+            box.peek(offsets);
+            box.inFlight = offsets.length;
+        }
+        List<ByteBuffer> frames = new ArrayList<>(offsets.length);
+        int bytes = 0;
+        int consumed = 0;
+        Round round;
+        // 帧是映射区域上的切片，写出前已拷贝进出站缓冲区，读取范围到拷贝完成为止
+        messageLog.beginRead();
+        try {
+            for (long offset : offsets) {
+                ByteBuffer frame = messageLog.readFrame(offset);
+                if (frame != null && !frames.isEmpty() && bytes + frame.remaining() > drainFrameBytes) {
+                    break;
+                }
+                consumed++;
+                if (frame == null) {
+                    expired.increment();
+                    continue;
+                }
+                frames.add(frame);
+                bytes += frame.remaining();
+            }
+            round = new Round(uid, box, consumed, frames.size(), targets.length);
+            if (!frames.isEmpty()) {
+                // 预编码帧绕过了 encoder，按实际写出的条数计入出站消息
+                ChatMetrics.recordEncode(0, frames.size() * targets.length);
+                for (Channel target : targets) {
+                    write(target, frames, round);
+                }
+            }
+        } finally {
+            messageLog.endRead();
+        }
+        round.completed(null, null);
+    }
+
+    private Channel[] activeChannels(String uid) {
+        Channel[] channels = sessionRegistry.channels(uid);
+        Channel[] targets = new Channel[channels.length];
+        int n = 0;
+        for (Channel channel : channels) {
+            if (channel.isActive()) {
+                targets[n++] = channel;
+            }
+        }
+        return n == channels.length ? channels : Arrays.copyOf(targets, n);
+    }
+
+    /**
+     * 单轮补发条数上限：未声明批量帧的可靠连接每条消息占一个重发窗口位置，一轮最多用掉窗口的一半，
+     * 余下的留给补发期间到达的在线消息，避免窗口溢出断开连接
+     */
+    private int roundLimit(Channel channel) {
+        if (Boolean.TRUE.equals(channel.attr(MessageBatchingHandler.BATCH_ENABLED).get())) {
+            return drainBatchMessages;
+        }
+        int window = ReliableDeliveryHandler.window(channel);
+        return window == 0 ? drainBatchMessages : Math.max(1, window >>> 1);
+    }
+
+    private void write(Channel channel, List<ByteBuffer> frames, Round round) {
+        drainWrites.increment();
+        if (Boolean.TRUE.equals(channel.attr(MessageBatchingHandler.BATCH_ENABLED).get())) {
+            round.expect(1);
+            channel.writeAndFlush(new BinaryWebSocketFrame(MessageCodec.encodeBatchFrames(channel.alloc(), frames)))
+                    .addListener(round);
+            return;
+        }
+        // 逐帧等待结果：可靠连接可能先选择确认后面的帧，只看最后一帧会漏掉未确认的前面几帧
+        int last = frames.size() - 1;
+        round.expect(frames.size());
+        for (int i = 0; i < last; i++) {
+            channel.write(copyOf(channel, frames.get(i))).addListener(round);
+        }
+        channel.writeAndFlush(copyOf(channel, frames.get(last))).addListener(round);
+    }
+
+    private static BinaryWebSocketFrame copyOf(Channel channel, ByteBuffer frame) {
+        return new BinaryWebSocketFrame(channel.alloc().ioBuffer(frame.remaining()).writeBytes(frame.duplicate()));
+    }
+
+    /**
+     * 一轮补发的结果汇总：连接的全部帧都写出成功（可靠连接为都已确认）才算该连接收到，
+     * 任一目标连接收到即推进游标并开始下一轮，全部失败时游标不动，下次上线重新补发
+     */
+    private final class Round implements ChannelFutureListener {
+
+        private final String uid;
+        private final Mailbox box;
+        private final int skip;
+        private final int messages;
+        private final int targets;
+        private final Set<Channel> failed = new HashSet<>();
+        /**
+         * 未完成的写出数，初始的 1 在全部写出发起后由 drainNext 释放，防止写出同步完成时提前结束本轮
+         */
+        private int pending = 1;
+        private Throwable cause;
+
+        Round(String uid, Mailbox box, int skip, int messages, int targets) {
+            this.uid = uid;
+            this.box = box;
+            this.skip = skip;
+            this.messages = messages;
+            this.targets = targets;
+        }
+
+        synchronized void expect(int writes) {
+            pending += writes;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            completed(future.isSuccess() ? null : future.channel(), future.cause());
+        }
+
+        void completed(Channel failedChannel, Throwable failure) {
+            boolean received;
+            synchronized (this) {
+                if (failedChannel != null) {
+                    failed.add(failedChannel);
+                    cause = failure;
+                }
+                if (--pending != 0) {
+                    return;
+                }
+                received = failed.size() < targets;
+            }
+            if (!received) {
+                synchronized (box) {
+                    box.inFlight = 0;
+                    box.draining = false;
+                }
+                log.debug("drain mailbox of {} failed, {} pending", uid, pending(box), cause);
+                return;
+            }
+            synchronized (box) {
+                box.inFlight = 0;
+                box.skip(skip);
+            }
+            delivered.add(messages);
+            drainNext(uid, box);
+        }
+    }
+
+    private static int pending(Mailbox box) {
+        synchronized (box) {
+            return box.size();
+        }
+    }
+
+    /**
+     * 有未投递消息的用户数
+     */
+    public int size() {
+        return boxes.size();
+    }
+
+    @Override
+    public void writeTo(PrometheusWriter writer) {
+        writer.gauge("opentalk_mailbox_users", "Users with undelivered offline messages", boxes.size())
+                .counter("opentalk_mailbox_offered_total", "Message pointers put into offline mailboxes", offered.sum())
+                .counter("opentalk_mailbox_delivered_total", "Offline messages delivered on reconnect", delivered.sum())
+                .counter("opentalk_mailbox_writes_total", "Writes issued while draining mailboxes", drainWrites.sum())
+                .counter("opentalk_mailbox_dropped_total", "Pointers dropped from full mailboxes", dropped.sum())
+                .counter("opentalk_mailbox_expired_total", "Pointers skipped because the commit log was truncated", expired.sum())
+                .counter("opentalk_mailbox_requeued_total", "Live messages returned to the mailbox after an unacked disconnect", requeued.sum());
+    }
+
+    @Override
+    public String toString() {
+        return "MailboxStore{users=" + boxes.size() + ", offered=" + offered.sum() + ", delivered=" + delivered.sum()
+                + ", writes=" + drainWrites.sum() + ", dropped=" + dropped.sum() + ", expired=" + expired.sum()
+                + ", requeued=" + requeued.sum() + "}";
+    }
+}
@@ -0,0 +1,52 @@
+package com.opentalk.netty.mailbox;
+
+import com.opentalk.common.id.SnowflakeIdGenerator;
+import com.opentalk.netty.broadcast.MessageBroadcaster;
+import com.opentalk.netty.dispatch.CommandDispatcher;
+import com.opentalk.netty.dispatch.CommandType;
+import com.opentalk.netty.dispatch.ExecutionMode;
+import com.opentalk.netty.message.HeaderType;
+import com.opentalk.netty.message.MetaMessageView;
+import com.opentalk.netty.room.RoomCommandHandlers;
+import com.opentalk.netty.session.SessionRegistry;
+import com.opentalk.netty.store.MessageLog;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+
+/**
+ * 点对点消息 P2P_CHAT，目标用户取自 TARGET_UID header（零拷贝解码时直接读帧），INLINE 模式在发送方的 event loop 上执行。
+ * 与房间消息一样由服务端填充发送方和 MESSAGE_ID 并追加到提交日志；目标在线时写给其全部连接（每种压缩算法只编码一次），
+ * 离线或信箱中还有未补发的消息时只把 offset 放入信箱，由 {@link MailboxStore} 在上线时补发，
+ * 可靠连接在确认前断开时 offset 同样交回信箱（见 {@link MailboxStore#deliver}）。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Slf4j
+public class P2pCommandHandlers {
+
+    /**
+     * @param messageLog 为 null 时不持久化，离线消息随之丢弃
+     * @param mailbox    为 null 时不保留离线消息
+     */
+    public static void register(CommandDispatcher dispatcher, SessionRegistry sessionRegistry, MessageLog messageLog,
+                                MailboxStore mailbox, SnowflakeIdGenerator ids) {
+        dispatcher.register(CommandType.P2P_CHAT, ExecutionMode.INLINE, (ctx, msg) -> {
+            String target = MetaMessageView.asciiOf(msg, HeaderType.TARGET_UID);
+            if (target == null || target.isEmpty()) {
+                log.debug("channel {} sent p2p message without target, message dropped", ctx.channel().id().asShortText());
+                return;
+            }
+            RoomCommandHandlers.stampSender(ctx.channel(), msg);
+            RoomCommandHandlers.stampMessageId(msg, ids.nextId());
+            long offset = messageLog == null ? -1 : messageLog.append(msg);
+            if (mailbox != null && offset >= 0) {
+                mailbox.deliver(target, msg, offset);
+                return;
+            }
+            MessageBroadcaster.broadcast(msg, Arrays.asList(sessionRegistry.channels(target)));
+        });
+    }
+}
@@ -0,0 +1,159 @@
+package com.opentalk.netty.message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author welsir
+ * @description : 常用 header 类型注册表。类型号占一个字节（0~127），
+ *                值的编码约定：INT/LONG 为大端定长（允许更短的前缀省略高位零），ASCII 为单字节字符
+ * @date 2026/10/17
+ */
+public class HeaderType {
+
+    public enum Kind {
+        INT, LONG, ASCII, BYTES
+    }
+
+    public static final int MAX_TYPE = 127;
+
+    /**
+     * 房间 id
+     */
+    public static final int ROOM_ID = 1;
+    /**
+     * 客户端生成的消息 id，用于去重
+     */
+    public static final int CLIENT_MSG_ID = 2;
+    /**
+     * 点对点消息的目标用户 id
+     */
+    public static final int TARGET_UID = 3;
+    /**
+     * 发送方用户 id，由服务端填充
+     */
+    public static final int FROM_UID = 4;
+    /**
+     * 服务端分配的消息 id
+     */
+    public static final int MESSAGE_ID = 5;
+    /**
+     * 发送时间戳（毫秒）
+     */
+    public static final int TIMESTAMP = 6;
+    /**
+     * ACK 命令携带的累计确认序号：不大于它的帧均已收到
+     */
+    public static final int ACK_SEQ = 7;
+    /**
+     * ACK 命令携带的选择确认位图：第 i 位（字节内低位在前）表示序号 ACK_SEQ + 2 + i 已收到
+     */
+    public static final int ACK_SACK = 8;
+
+    private static final String[] NAMES = new String[MAX_TYPE + 1];
+    private static final Kind[] KINDS = new Kind[MAX_TYPE + 1];
+
+    static {
+        register(ROOM_ID, "roomId", Kind.ASCII);
+        register(CLIENT_MSG_ID, "clientMsgId", Kind.LONG);
+        register(TARGET_UID, "targetUid", Kind.ASCII);
+        register(FROM_UID, "fromUid", Kind.ASCII);
+        register(MESSAGE_ID, "messageId", Kind.LONG);
+        register(TIMESTAMP, "timestamp", Kind.LONG);
+        register(ACK_SEQ, "ackSeq", Kind.LONG);
+        register(ACK_SACK, "ackSack", Kind.BYTES);
+    }
+
+    public static synchronized void register(int type, String name, Kind kind) {
+        if (type < 0 || type > MAX_TYPE) {
+            throw new IllegalArgumentException("header type out of range [0," + MAX_TYPE + "]: " + type);
+        }
+        if (NAMES[type] != null && !NAMES[type].equals(name)) {
+            throw new IllegalStateException("header type " + type + " already registered as " + NAMES[type]);
+        }
+        NAMES[type] = name;
+        KINDS[type] = kind;
+    }
+
+    public static String nameOf(int type) {
+        return type < 0 || type > MAX_TYPE ? null : NAMES[type];
+    }
+
+    public static Kind kindOf(int type) {
+        return type < 0 || type > MAX_TYPE ? null : KINDS[type];
+    }
+
+    public static MetaMessageHead ofLong(int type, long value) {
+        byte[] data = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            data[i] = (byte) value;
+            value >>>= 8;
+        }
+        return new MetaMessageHead(type, data);
+    }
+
+    /**
+     * 按大端读取 INT/LONG 类型的值，允许省略高位零的短前缀；head 为 null 时返回 defaultValue
+     */
+    public static long longValue(MetaMessageHead head, long defaultValue) {
+        if (head == null) {
+            return defaultValue;
+        }
+        long value = 0;
+        ByteBuf buf = head.getDataBuf();
+        if (buf != null) {
+            for (int i = buf.readerIndex(); i < buf.writerIndex(); i++) {
+                value = (value << 8) | buf.getUnsignedByte(i);
+            }
+            return value;
+        }
+        byte[] data = head.getData();
+        if (data == null) {
+            return defaultValue;
+        }
+        for (byte b : data) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+
+    public static String asciiValue(MetaMessageHead head) {
+        if (head == null) {
+            return null;
+        }
+        ByteBuf buf = head.getDataBuf();
+        if (buf != null) {
+            return buf.toString(buf.readerIndex(), buf.readableBytes(), StandardCharsets.US_ASCII);
+        }
+        byte[] data = head.getData();
+        return data == null ? null : new String(data, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * BYTES 类型的值，零拷贝切片时拷贝一份；head 为 null 时返回 null
+     */
+    public static byte[] bytesValue(MetaMessageHead head) {
+        if (head == null) {
+            return null;
+        }
+        ByteBuf buf = head.getDataBuf();
+        if (buf != null) {
+            return ByteBufUtil.getBytes(buf);
+        }
+        return head.getData();
+    }
+
+    public static MetaMessageHead ofInt(int type, int value) {
+        return new MetaMessageHead(type, new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+    }
+
+    public static MetaMessageHead ofAscii(int type, CharSequence value) {
+        byte[] data = new byte[value.length()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) value.charAt(i);
+        }
+        return new MetaMessageHead(type, data);
+    }
+}
@@ -0,0 +1,70 @@
+package com.opentalk.netty.message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+
+/**
+ * @author welsir
+ * @description : 分片接收的大消息的一段消息体，紧跟在 streaming=true 的 {@link MetaMessage} 之后按序送达。
+ *                内容为入站帧的切片，处理完必须 release，否则该连接的在途内存配额不会归还。
+ *                引用计数独立于内容缓冲区，保证配额恰好在本对象释放时归还一次。
+ * @date 2026/10/17
+ */
+public class MessageBodyChunk extends AbstractReferenceCounted {
+
+    /**
+     * chunk 释放时回调，用于归还连接的在途内存配额
+     */
+    public interface ReleaseListener {
+        void onRelease(int bytes);
+    }
+
+    private final ByteBuf content;
+    private final long offset;
+    private final boolean last;
+    private final int bytes;
+    private final ReleaseListener listener;
+
+    public MessageBodyChunk(ByteBuf content, long offset, boolean last, ReleaseListener listener) {
+        this.content = content;
+        this.offset = offset;
+        this.last = last;
+        this.bytes = content.readableBytes();
+        this.listener = listener;
+    }
+
+    public ByteBuf content() {
+        return content;
+    }
+
+    /**
+     * 本段在消息体中的起始偏移
+     */
+    public long offset() {
+        return offset;
+    }
+
+    public boolean isLast() {
+        return last;
+    }
+
+    @Override
+    public ReferenceCounted touch(Object hint) {
+        content.touch(hint);
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+        content.release();
+        if (listener != null) {
+            listener.onRelease(bytes);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MessageBodyChunk(offset=" + offset + ", bytes=" + bytes + ", last=" + last + ")";
+    }
+}
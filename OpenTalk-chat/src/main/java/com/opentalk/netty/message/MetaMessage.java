@@ -1,21 +1,280 @@
 package com.opentalk.netty.message;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.Recycler;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * 消息在零拷贝解码模式下持有入站帧的引用，body 与 header 都是该帧的切片，
+ * 处理完毕后必须由最后一个使用者调用 {@link #release()}（或 ReferenceCountUtil.release）。
+ * 拷贝模式下消息不引用入站帧，body 与 header 是独立的 byte[]，但消息同样来自对象池，release 同样不可省略，
+ * 且 release 之后 body 与 header 都不得再访问（header 随消息回收复用）。
+ * <p>
+ * 解码产生的消息通过 {@link #newInstance()} 从 Recycler 池中获取，release 到 0 时连同 header 一起归还，
+ * 之后不得再访问该对象及其 header。池容量由 -Dio.netty.recycler.maxCapacityPerThread 控制，设为 0 即关闭池化。
+ * 池化消息接入 Netty 的泄漏检测，测试时以 -Dio.netty.leakDetection.level=paranoid 运行可报告每一条未 release 的消息。
+ *
  * @author welsir
  * @description :
  * @date 2025/7/20
  */
 @Data
-public class MetaMessage {
+@EqualsAndHashCode(callSuper = false)
+public class MetaMessage extends AbstractReferenceCounted {
+
+    private static final Recycler<MetaMessage> RECYCLER = new Recycler<MetaMessage>() {
+        @Override
+        protected MetaMessage newObject(Handle<MetaMessage> handle) {
+            MetaMessage msg = new MetaMessage();
+            msg.handle = handle;
+            return msg;
+        }
+    };
+
+    private static final ResourceLeakDetector<MetaMessage> LEAK_DETECTOR =
+            ResourceLeakDetectorFactory.instance().newResourceLeakDetector(MetaMessage.class);
 
     private int version;
     private boolean heartBeat;
     private int cmd;
     private int length;
+    /**
+     * 入站消息体在线路上使用的压缩算法 id，0 表示未压缩；出站压缩由协商结果决定，忽略此字段
+     */
+    private int codec;
+    /**
+     * 分片接收的大消息：消息体不在本对象中，随后以 {@link MessageBodyChunk} 序列送达
+     */
+    private boolean streaming;
     private byte[] body;
     private List<MetaMessageHead> headers;
-}
\ No newline at end of file
+    /**
+     * 接收端解码序号信封得到的会话序号，0 表示该帧不要求确认；出站序号由可靠投递层按帧分配，忽略此字段
+     */
+    private long seq;
+
+    /**
+     * 零拷贝模式下保留的入站帧，释放消息时一并释放
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private ByteBuf frame;
+
+    /**
+     * 本消息在 frame 中的起始下标，供 {@link MetaMessageView} 直接在帧上读取
+     */
+    private int frameOffset;
+
+    /**
+     * 零拷贝模式下 body 在入站帧上的切片
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private ByteBuf bodyBuf;
+
+    /**
+     * 解压得到的消息体缓冲区，归消息自身所有，释放消息时一并释放
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private ByteBuf ownedBodyBuf;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Recycler.Handle<MetaMessage> handle;
+
+    /**
+     * 池化消息复用的 header 列表，只有 headers 指向它时归还才会一并回收其中的 header
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private ArrayList<MetaMessageHead> pooledHeaders;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private ResourceLeakTracker<MetaMessage> leak;
+
+    /**
+     * 从对象池获取一条引用计数为 1 的空消息
+     */
+    public static MetaMessage newInstance() {
+        MetaMessage msg = RECYCLER.get();
+        msg.setRefCnt(1);
+        msg.leak = LEAK_DETECTOR.track(msg);
+        return msg;
+    }
+
+    /**
+     * 返回清空后的复用 header 列表并设为当前 headers，解码时代替 new ArrayList
+     */
+    public List<MetaMessageHead> reuseHeaders() {
+        if (pooledHeaders == null) {
+            pooledHeaders = new ArrayList<>(4);
+        }
+        headers = pooledHeaders;
+        return pooledHeaders;
+    }
+
+    /**
+     * 按类型查找第一个 header，不存在时返回 null
+     */
+    public MetaMessageHead header(int type) {
+        if (headers != null) {
+            for (int i = 0; i < headers.size(); i++) {
+                MetaMessageHead head = headers.get(i);
+                if (head.getType() == type) {
+                    return head;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 兼容视图：零拷贝模式下首次访问时才从切片复制出 byte[]
+     */
+    public byte[] getBody() {
+        if (body == null && bodyBuf != null) {
+            body = ByteBufUtil.getBytes(bodyBuf);
+        }
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+        this.bodyBuf = null;
+        releaseOwnedBody();
+    }
+
+    /**
+     * 以 buf 作为消息体并接管其所有权
+     */
+    public void setOwnedBody(ByteBuf buf) {
+        releaseOwnedBody();
+        this.body = null;
+        this.bodyBuf = buf;
+        this.ownedBodyBuf = buf;
+    }
+
+    private void releaseOwnedBody() {
+        if (ownedBodyBuf != null) {
+            ownedBodyBuf.release();
+            ownedBodyBuf = null;
+        }
+    }
+
+    public int calculateHeaderLength() {
+        int headerLength = 0;
+        if (headers != null) {
+            for (int i = 0; i < headers.size(); i++) {
+                headerLength += headers.get(i).calculateTotalLength();
+            }
+        }
+        return headerLength;
+    }
+
+    public int calculateBodyLength() {
+        if (body != null) {
+            return body.length;
+        }
+        return bodyBuf == null ? 0 : bodyBuf.readableBytes();
+    }
+
+    /**
+     * 将消息体写入 out，切片存在时直接从切片拷贝，避免中间 byte[]
+     */
+    public void writeBody(ByteBuf out) {
+        if (body != null) {
+            out.writeBytes(body);
+        } else if (bodyBuf != null) {
+            out.writeBytes(bodyBuf, bodyBuf.readerIndex(), bodyBuf.readableBytes());
+        }
+    }
+
+    /**
+     * 以 ByteBuf 形式返回消息体且不拷贝：切片被 retain，byte[] 被包装，调用方负责 release
+     */
+    public ByteBuf retainedBodyBuf() {
+        if (body != null) {
+            return Unpooled.wrappedBuffer(body);
+        }
+        return bodyBuf == null ? Unpooled.EMPTY_BUFFER : bodyBuf.retainedSlice();
+    }
+
+    @Override
+    public ReferenceCounted touch(Object hint) {
+        if (leak != null) {
+            leak.record(hint);
+        }
+        if (frame != null) {
+            frame.touch(hint);
+        }
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+        ByteBuf retained = frame;
+        frame = null;
+        bodyBuf = null;
+        releaseOwnedBody();
+        if (headers != null) {
+            for (int i = 0; i < headers.size(); i++) {
+                headers.get(i).setDataBuf(null);
+            }
+        }
+        if (retained != null) {
+            retained.release();
+        }
+        if (leak != null) {
+            leak.close(this);
+            leak = null;
+        }
+        if (handle != null) {
+            recycle();
+        }
+    }
+
+    private void recycle() {
+        if (headers == pooledHeaders && pooledHeaders != null) {
+            for (int i = 0; i < pooledHeaders.size(); i++) {
+                pooledHeaders.get(i).recycle();
+            }
+            pooledHeaders.clear();
+        }
+        version = 0;
+        heartBeat = false;
+        cmd = 0;
+        length = 0;
+        codec = 0;
+        streaming = false;
+        body = null;
+        headers = null;
+        seq = 0;
+        frameOffset = 0;
+        handle.recycle(this);
+    }
+}
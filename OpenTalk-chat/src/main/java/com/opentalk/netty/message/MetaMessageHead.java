@@ -1,9 +1,20 @@
 package com.opentalk.netty.message;
 
 import com.opentalk.netty.compress.VarInt;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.Recycler;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 /**
+ * 解码产生的 header 通过 {@link #newInstance} 从对象池获取，随所属 {@link MetaMessage} 一起归还
+ *
  * @author welsir
  * @description :
  * @date 2025/7/20
@@ -11,13 +22,69 @@ import lombok.Data;
 @Data
 public class MetaMessageHead {
 
+    private static final Recycler<MetaMessageHead> RECYCLER = new Recycler<MetaMessageHead>() {
+        @Override
+        protected MetaMessageHead newObject(Handle<MetaMessageHead> handle) {
+            return new MetaMessageHead(handle);
+        }
+    };
+
     private int type;
 
     private byte[] data;
 
+    /**
+     * 零拷贝模式下指向入站帧的切片，生命周期由所属的 {@link MetaMessage} 管理
+     */
+    private ByteBuf dataBuf;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final Recycler.Handle<MetaMessageHead> handle;
+
+    private MetaMessageHead(Recycler.Handle<MetaMessageHead> handle) {
+        this.handle = handle;
+    }
+
     public MetaMessageHead(int type, byte[] data) {
         this.type = type;
         this.data = data;
+        this.handle = null;
+    }
+
+    public MetaMessageHead(int type, ByteBuf dataBuf) {
+        this.type = type;
+        this.dataBuf = dataBuf;
+        this.handle = null;
+    }
+
+    public static MetaMessageHead newInstance(int type, byte[] data) {
+        MetaMessageHead head = RECYCLER.get();
+        head.type = type;
+        head.data = data;
+        return head;
+    }
+
+    public static MetaMessageHead newInstance(int type, ByteBuf dataBuf) {
+        MetaMessageHead head = RECYCLER.get();
+        head.type = type;
+        head.dataBuf = dataBuf;
+        return head;
+    }
+
+    /**
+     * 归还对象池，非池化实例为空操作
+     */
+    void recycle() {
+        if (handle == null) {
+            return;
+        }
+        type = 0;
+        data = null;
+        dataBuf = null;
+        handle.recycle(this);
     }
 
     public int getType() {
@@ -28,12 +95,19 @@ public class MetaMessageHead {
         this.type = type;
     }
 
+    /**
+     * 兼容视图：零拷贝模式下首次访问时才从切片复制出 byte[]
+     */
     public byte[] getData() {
+        if (data == null && dataBuf != null) {
+            data = ByteBufUtil.getBytes(dataBuf);
+        }
         return data;
     }
 
     public void setData(byte[] data) {
         this.data = data;
+        this.dataBuf = null;
     }
 
     public int calculateTotalLength() {
@@ -42,7 +116,31 @@ public class MetaMessageHead {
     }
 
     public int calculateDataLength(){
-        return data==null?0:data.length;
+        if (data != null) {
+            return data.length;
+        }
+        return dataBuf == null ? 0 : dataBuf.readableBytes();
+    }
+
+    /**
+     * 将头部数据写入 out，切片存在时直接从切片拷贝，避免中间 byte[]
+     */
+    public void writeData(ByteBuf out) {
+        if (data != null) {
+            out.writeBytes(data);
+        } else if (dataBuf != null) {
+            out.writeBytes(dataBuf, dataBuf.readerIndex(), dataBuf.readableBytes());
+        }
+    }
+
+    /**
+     * 以 ByteBuf 形式返回头部数据且不拷贝：切片被 retain，byte[] 被包装，调用方负责 release
+     */
+    public ByteBuf retainedDataBuf() {
+        if (data != null) {
+            return Unpooled.wrappedBuffer(data);
+        }
+        return dataBuf == null ? Unpooled.EMPTY_BUFFER : dataBuf.retainedSlice();
     }
 
-}
\ No newline at end of file
+}
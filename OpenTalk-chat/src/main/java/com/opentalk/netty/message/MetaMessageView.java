@@ -0,0 +1,285 @@
+package com.opentalk.netty.message;
+
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.compress.VarInt;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.util.concurrent.FastThreadLocal;
+
+/**
+ * @author welsir
+ * @description : 帧缓冲区上的可复用只读视图（flyweight）。wrap 时只解析固定前缀，
+ *                header 表在首次按类型访问时才扫描一次，偏移记录在复用的数组里，
+ *                路由判断全程不分配对象。视图不持有引用计数，调用方需保证帧在使用期间有效。
+ *                所有下标都按帧的 writerIndex 校验，畸形帧抛出 {@link CorruptedFrameException}。
+ * @date 2026/10/17
+ */
+public final class MetaMessageView {
+
+    private static final FastThreadLocal<MetaMessageView> LOCAL = new FastThreadLocal<MetaMessageView>() {
+        @Override
+        protected MetaMessageView initialValue() {
+            return new MetaMessageView();
+        }
+    };
+
+    private ByteBuf buf;
+    private int version;
+    private int flags;
+    private int cmd;
+    private int length;
+    private int headerCount;
+    private int headerTableOffset;
+    private int bodyOffset;
+    private boolean headersParsed;
+
+    private int[] types = new int[8];
+    private int[] offsets = new int[8];
+    private int[] lengths = new int[8];
+
+    /**
+     * 当前线程复用的视图实例，不可跨线程传递
+     */
+    public static MetaMessageView local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * 读取 msg 的 ASCII header。零拷贝解码的消息直接在入站帧上读取，不经过 header 对象；
+     * 读到的是客户端发来的原值，服务端改写的 header（FROM_UID、MESSAGE_ID）需从 header 表读取
+     */
+    public static String asciiOf(MetaMessage msg, int type) {
+        if (msg.getFrame() == null) {
+            return HeaderType.asciiValue(msg.header(type));
+        }
+        MetaMessageView view = LOCAL.get().wrap(msg);
+        try {
+            return view.getAscii(type);
+        } finally {
+            view.clear();
+        }
+    }
+
+    /**
+     * msg 的 ASCII header 是否等于 expected，零拷贝解码的消息比较过程不分配对象，约束同 {@link #asciiOf}
+     */
+    public static boolean asciiEquals(MetaMessage msg, int type, CharSequence expected) {
+        if (msg.getFrame() == null) {
+            String value = HeaderType.asciiValue(msg.header(type));
+            return value != null && value.contentEquals(expected);
+        }
+        MetaMessageView view = LOCAL.get().wrap(msg);
+        try {
+            return view.asciiEquals(type, expected);
+        } finally {
+            view.clear();
+        }
+    }
+
+    /**
+     * 以 frame 的 readerIndex 为起点包装一帧，不改变 frame 的读写下标
+     */
+    public MetaMessageView wrap(ByteBuf frame) {
+        return wrap(frame, frame.readerIndex());
+    }
+
+    /**
+     * 包装零拷贝解码得到的消息所引用的入站帧
+     */
+    public MetaMessageView wrap(MetaMessage msg) {
+        if (msg.getFrame() == null) {
+            throw new IllegalStateException("message was not decoded in zero-copy mode");
+        }
+        return wrap(msg.getFrame(), msg.getFrameOffset());
+    }
+
+    public MetaMessageView wrap(ByteBuf frame, int offset) {
+        this.buf = frame;
+        this.headersParsed = false;
+        this.headerCount = 0;
+        checkReadable(offset, 2);
+        this.version = frame.getByte(offset);
+        this.flags = frame.getUnsignedByte(offset + 1);
+        if (isHeartBeat()) {
+            this.cmd = 0;
+            this.length = 0;
+            this.headerCount = 0;
+            this.bodyOffset = offset + 2;
+            this.headersParsed = true;
+            return this;
+        }
+        checkReadable(offset + 2, 1);
+        this.cmd = frame.getByte(offset + 2);
+        this.length = readVarInt(offset + 3);
+        int countOffset = offset + 3 + VarInt.computeVarInt32Size(length);
+        checkReadable(countOffset, 1);
+        this.headerCount = frame.getUnsignedByte(countOffset);
+        this.headerTableOffset = countOffset + 1;
+        return this;
+    }
+
+    public void clear() {
+        this.buf = null;
+        this.headersParsed = false;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isHeartBeat() {
+        return (flags & MessageCodec.FLAG_HEARTBEAT) != 0;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public int getCmd() {
+        return cmd;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getHeaderCount() {
+        return headerCount;
+    }
+
+    public boolean hasHeader(int type) {
+        return indexOf(type) >= 0;
+    }
+
+    public int getInt(int type) {
+        return getInt(type, 0);
+    }
+
+    public int getInt(int type, int defaultValue) {
+        int i = indexOf(type);
+        return i < 0 ? defaultValue : (int) readBigEndian(offsets[i], Math.min(lengths[i], 4));
+    }
+
+    public long getLong(int type) {
+        return getLong(type, 0L);
+    }
+
+    public long getLong(int type, long defaultValue) {
+        int i = indexOf(type);
+        return i < 0 ? defaultValue : readBigEndian(offsets[i], Math.min(lengths[i], 8));
+    }
+
+    /**
+     * 读取 ASCII header 为字符串，会分配对象；只做比较时用 {@link #asciiEquals(int, CharSequence)}
+     */
+    public String getAscii(int type) {
+        int i = indexOf(type);
+        if (i < 0) {
+            return null;
+        }
+        char[] chars = new char[lengths[i]];
+        for (int j = 0; j < chars.length; j++) {
+            chars[j] = (char) (buf.getByte(offsets[i] + j) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    public boolean asciiEquals(int type, CharSequence expected) {
+        int i = indexOf(type);
+        if (i < 0 || lengths[i] != expected.length()) {
+            return false;
+        }
+        for (int j = 0; j < lengths[i]; j++) {
+            if ((char) (buf.getByte(offsets[i] + j) & 0xFF) != expected.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * header 数据在帧中的绝对下标，不存在时返回 -1
+     */
+    public int headerOffset(int type) {
+        int i = indexOf(type);
+        return i < 0 ? -1 : offsets[i];
+    }
+
+    public int headerLength(int type) {
+        int i = indexOf(type);
+        return i < 0 ? -1 : lengths[i];
+    }
+
+    public int bodyOffset() {
+        ensureHeaders();
+        return bodyOffset;
+    }
+
+    private int indexOf(int type) {
+        ensureHeaders();
+        for (int i = 0; i < headerCount; i++) {
+            if (types[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureHeaders() {
+        if (headersParsed) {
+            return;
+        }
+        if (types.length < headerCount) {
+            types = new int[headerCount];
+            offsets = new int[headerCount];
+            lengths = new int[headerCount];
+        }
+        int pos = headerTableOffset;
+        for (int i = 0; i < headerCount; i++) {
+            int dataLength = readVarInt(pos);
+            pos += VarInt.computeVarInt32Size(dataLength);
+            checkReadable(pos, 1 + dataLength);
+            types[i] = buf.getByte(pos++);
+            offsets[i] = pos;
+            lengths[i] = dataLength;
+            pos += dataLength;
+        }
+        bodyOffset = pos;
+        headersParsed = true;
+    }
+
+    /**
+     * 读取 offset 处的 VarInt，不完整或为负数时视为畸形帧
+     */
+    private int readVarInt(int offset) {
+        int end = buf.writerIndex();
+        for (int i = 0; i < 5; i++) {
+            if (offset + i >= end) {
+                throw new CorruptedFrameException("truncated varint at " + offset);
+            }
+            if (buf.getByte(offset + i) >= 0) {
+                int value = VarInt.getVarInt32(buf, offset);
+                if (value < 0) {
+                    throw new CorruptedFrameException("negative length at " + offset);
+                }
+                return value;
+            }
+        }
+        throw new CorruptedFrameException("malformed varint at " + offset);
+    }
+
+    private void checkReadable(int offset, int length) {
+        if (length < 0 || offset < 0 || offset > buf.writerIndex() - length) {
+            throw new CorruptedFrameException("frame truncated: need " + length + " bytes at " + offset
+                    + ", writerIndex " + buf.writerIndex());
+        }
+    }
+
+    private long readBigEndian(int offset, int count) {
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            value = (value << 8) | (buf.getByte(offset + i) & 0xFF);
+        }
+        return value;
+    }
+}
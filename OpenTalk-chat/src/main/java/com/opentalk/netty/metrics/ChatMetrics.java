@@ -0,0 +1,121 @@
+package com.opentalk.netty.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 聊天节点的全局指标：编解码与 flush 耗时、按方向的消息数与字节数、连接数。
+ * 计数使用 LongAdder，耗时使用分条带的 {@link LatencyHistogram}，记录路径上没有锁也没有共享的热点缓存行。
+ * 编解码器是全局共享实例，指标与 {@code MessageCodec} 的压缩阈值一样以静态方式持有；
+ * 其他模块通过 {@link #register} 挂载自己的指标，抓取时统一输出。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public final class ChatMetrics {
+
+    public static final LatencyHistogram DECODE_LATENCY = new LatencyHistogram();
+    public static final LatencyHistogram ENCODE_LATENCY = new LatencyHistogram();
+    public static final LatencyHistogram FLUSH_LATENCY = new LatencyHistogram();
+
+    private static final LongAdder MESSAGES_IN = new LongAdder();
+    private static final LongAdder MESSAGES_OUT = new LongAdder();
+    private static final LongAdder BYTES_IN = new LongAdder();
+    private static final LongAdder BYTES_OUT = new LongAdder();
+    private static final LongAdder CONNECTIONS_OPENED = new LongAdder();
+    private static final LongAdder CONNECTIONS_CLOSED = new LongAdder();
+
+    private static final List<MetricsSource> SOURCES = new CopyOnWriteArrayList<>();
+
+    /**
+     * 关闭后编解码路径上不再调用 System.nanoTime，仅保留计数
+     */
+    private static volatile boolean timingEnabled = true;
+
+    private ChatMetrics() {
+    }
+
+    public static boolean isTimingEnabled() {
+        return timingEnabled;
+    }
+
+    public static void setTimingEnabled(boolean enabled) {
+        timingEnabled = enabled;
+    }
+
+    public static void recordDecode(long startNanos, int messages) {
+        MESSAGES_IN.add(messages);
+        if (startNanos != 0) {
+            DECODE_LATENCY.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public static void recordEncode(long startNanos, int messages) {
+        MESSAGES_OUT.add(messages);
+        if (startNanos != 0) {
+            ENCODE_LATENCY.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * 计时开关打开时返回当前纳秒时间，否则返回 0，配合 recordXxx 使用
+     */
+    public static long startTimer() {
+        return timingEnabled ? System.nanoTime() : 0;
+    }
+
+    static void recordBytesIn(int bytes) {
+        BYTES_IN.add(bytes);
+    }
+
+    static void recordBytesOut(int bytes) {
+        BYTES_OUT.add(bytes);
+    }
+
+    static void connectionOpened() {
+        CONNECTIONS_OPENED.increment();
+    }
+
+    static void connectionClosed() {
+        CONNECTIONS_CLOSED.increment();
+    }
+
+    public static long messagesIn() {
+        return MESSAGES_IN.sum();
+    }
+
+    public static long messagesOut() {
+        return MESSAGES_OUT.sum();
+    }
+
+    public static long activeConnections() {
+        return CONNECTIONS_OPENED.sum() - CONNECTIONS_CLOSED.sum();
+    }
+
+    public static void register(MetricsSource source) {
+        SOURCES.add(source);
+    }
+
+    public static void unregister(MetricsSource source) {
+        SOURCES.remove(source);
+    }
+
+    public static String scrape() {
+        PrometheusWriter writer = new PrometheusWriter();
+        writer.gauge("opentalk_connections_active", "Currently open chat connections", activeConnections())
+                .counter("opentalk_connections_total", "Accepted chat connections", CONNECTIONS_OPENED.sum())
+                .counter("opentalk_messages_total", "Chat messages by direction", "direction=\"in\"", MESSAGES_IN.sum())
+                .counter("opentalk_messages_total", "Chat messages by direction", "direction=\"out\"", MESSAGES_OUT.sum())
+                .counter("opentalk_bytes_total", "Wire bytes by direction", "direction=\"in\"", BYTES_IN.sum())
+                .counter("opentalk_bytes_total", "Wire bytes by direction", "direction=\"out\"", BYTES_OUT.sum())
+                .summary("opentalk_decode_latency_seconds", "Time to decode one inbound frame", DECODE_LATENCY.snapshot())
+                .summary("opentalk_encode_latency_seconds", "Time to encode one outbound frame", ENCODE_LATENCY.snapshot())
+                .summary("opentalk_flush_latency_seconds", "Time spent in channel flush", FLUSH_LATENCY.snapshot());
+        for (MetricsSource source : SOURCES) {
+            source.writeTo(writer);
+        }
+        return writer.toString();
+    }
+}
@@ -0,0 +1,149 @@
+package com.opentalk.netty.metrics;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * event loop 卡顿检测：独立线程按固定间隔向每个 event loop 投递一个探针任务，
+ * 探针从投递到执行的间隔即调度延迟。上一个探针迟迟未执行且超过阈值时判定为卡顿，
+ * 抓取该 event loop 线程当前的调用栈打印一次，直到探针执行（卡顿结束）才会再次报告。
+ * 调度延迟分布、待执行任务数、卡顿次数以指标形式输出。
+ * <p>
+ * 检测线程自身从不等待 event loop，被卡住的 event loop 不会拖住检测。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Slf4j
+public class EventLoopWatchdog implements MetricsSource {
+
+    private final long stallNanos;
+    private final List<Probe> probes = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    public EventLoopWatchdog(EventExecutorGroup group, String name, long intervalMillis, long stallMillis) {
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMillis);
+        int index = 0;
+        for (EventExecutor executor : group) {
+            probes.add(new Probe(name + "-" + index++, executor));
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory(name + "-watchdog", true));
+        scheduler.scheduleAtFixedRate(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        for (Probe probe : probes) {
+            try {
+                probe.check(now);
+            } catch (Throwable t) {
+                log.warn("event loop watchdog probe {} failed", probe.name, t);
+            }
+        }
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public void writeTo(PrometheusWriter writer) {
+        long now = System.nanoTime();
+        for (Probe probe : probes) {
+            writer.summary("opentalk_eventloop_lag_seconds", "Delay between probe submission and execution",
+                    probe.label, probe.lag.snapshot());
+        }
+        for (Probe probe : probes) {
+            writer.gauge("opentalk_eventloop_blocked_seconds", "How long the pending probe has been waiting",
+                    probe.label, probe.blockedNanos(now) / 1e9);
+        }
+        for (Probe probe : probes) {
+            writer.gauge("opentalk_eventloop_pending_tasks", "Tasks queued on the event loop", probe.label, probe.pendingTasks());
+        }
+        for (Probe probe : probes) {
+            writer.counter("opentalk_eventloop_stalls_total", "Times the event loop exceeded the stall threshold",
+                    probe.label, probe.stalls.sum());
+        }
+    }
+
+    private final class Probe implements Runnable {
+        final String name;
+        final String label;
+        final EventExecutor executor;
+        final LatencyHistogram lag = new LatencyHistogram();
+        final LongAdder stalls = new LongAdder();
+        /**
+         * 未执行探针的投递时间，0 表示没有在途探针
+         */
+        volatile long submittedAt;
+        /**
+         * 由探针在 event loop 上记录，卡顿时据此抓取调用栈
+         */
+        volatile Thread thread;
+        boolean reported;
+
+        Probe(String name, EventExecutor executor) {
+            this.name = name;
+            this.label = "loop=\"" + name + "\"";
+            this.executor = executor;
+        }
+
+        void check(long now) {
+            long pending = submittedAt;
+            if (pending != 0) {
+                if (!reported && now - pending >= stallNanos) {
+                    reported = true;
+                    stalls.increment();
+                    reportStall(now - pending);
+                }
+                return;
+            }
+            if (executor.isShuttingDown()) {
+                return;
+            }
+            reported = false;
+            submittedAt = now;
+            executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            lag.record(System.nanoTime() - submittedAt);
+            thread = Thread.currentThread();
+            submittedAt = 0;
+        }
+
+        long blockedNanos(long now) {
+            long pending = submittedAt;
+            return pending == 0 ? 0 : Math.max(0, now - pending);
+        }
+
+        int pendingTasks() {
+            return executor instanceof SingleThreadEventExecutor ? ((SingleThreadEventExecutor) executor).pendingTasks() : -1;
+        }
+
+        private void reportStall(long blockedNanos) {
+            Thread stuck = thread;
+            StringBuilder sb = new StringBuilder();
+            if (stuck != null) {
+                for (StackTraceElement element : stuck.getStackTrace()) {
+                    sb.append("\n\tat ").append(element);
+                }
+            }
+            log.warn("event loop {} blocked for {}ms, {} pending tasks, thread {}:{}", name,
+                    TimeUnit.NANOSECONDS.toMillis(blockedNanos), pendingTasks(),
+                    stuck == null ? "unknown" : stuck.getName(), sb);
+        }
+    }
+}
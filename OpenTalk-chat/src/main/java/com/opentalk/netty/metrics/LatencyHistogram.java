@@ -0,0 +1,137 @@
+package com.opentalk.netty.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 对数-线性分桶的延迟直方图（与 HdrHistogram 相同的分桶方式）：按 2 的幂划分量级，
+ * 每个量级再线性切成 16 个子桶，相对误差约 6%，覆盖 1ns ~ 2^41ns（约 36 分钟），超出部分计入最后一个桶。
+ * <p>
+ * 记录路径只有一次取下标与一次原子加：按线程 id 分条带，每个条带一组独立的计数数组，
+ * event loop 线程之间互不争用；快照时把各条带累加，读取方承担合并开销。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    /**
+     * 每个条带末尾额外一个槽位累计总和
+     */
+    private static final int SUM_SLOT = BUCKETS;
+
+    private static final int STRIPES = stripeCount();
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS + 1);
+        }
+    }
+
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+        AtomicLongArray stripe = stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+        stripe.getAndIncrement(indexOf(value));
+        stripe.getAndAdd(SUM_SLOT, value);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+            sum += stripe.get(SUM_SLOT);
+        }
+        return new Snapshot(counts, sum);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+    }
+
+    /**
+     * 桶内最大值，分位数按桶上界给出，结果只会偏大不会偏小
+     */
+    static long upperBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static int stripeCount() {
+        int cpus = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+        int stripes = 1;
+        while (stripes < cpus) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        Snapshot(long[] counts, long sum) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.counts = counts;
+            this.count = total;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @param quantile 0 ~ 1
+         */
+        public long valueAt(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return MAX_VALUE;
+        }
+
+        public long max() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.opentalk.netty.metrics;
+
+/**
+ * @author welsir
+ * @description : 指标来源，抓取时把当前值写成 Prometheus 文本格式
+ * @date 2026/10/17
+ */
+@FunctionalInterface
+public interface MetricsSource {
+
+    void writeTo(PrometheusWriter writer);
+}
@@ -0,0 +1,91 @@
+package com.opentalk.netty.metrics;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Prometheus 文本格式（0.0.4）输出。同名指标的 HELP/TYPE 只写一次，带不同标签的样本可以多次追加。
+ * 延迟以 summary 形式输出，单位统一为秒。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final StringBuilder out = new StringBuilder(8192);
+    private final Set<String> described = new HashSet<>();
+
+    public PrometheusWriter counter(String name, String help, long value) {
+        return counter(name, help, null, value);
+    }
+
+    /**
+     * @param labels 形如 {@code cmd="1"}，没有标签时为 null
+     */
+    public PrometheusWriter counter(String name, String help, String labels, long value) {
+        describe(name, help, "counter");
+        sample(name, labels, Long.toString(value));
+        return this;
+    }
+
+    public PrometheusWriter gauge(String name, String help, double value) {
+        return gauge(name, help, null, value);
+    }
+
+    public PrometheusWriter gauge(String name, String help, String labels, double value) {
+        describe(name, help, "gauge");
+        sample(name, labels, format(value));
+        return this;
+    }
+
+    public PrometheusWriter summary(String name, String help, LatencyHistogram.Snapshot snapshot) {
+        return summary(name, help, null, snapshot);
+    }
+
+    public PrometheusWriter summary(String name, String help, String labels, LatencyHistogram.Snapshot snapshot) {
+        describe(name, help, "summary");
+        for (double quantile : QUANTILES) {
+            String quantileLabel = "quantile=\"" + quantile + "\"";
+            sample(name, labels == null ? quantileLabel : labels + "," + quantileLabel, seconds(snapshot.valueAt(quantile)));
+        }
+        sample(name + "_sum", labels, seconds(snapshot.getSum()));
+        sample(name + "_count", labels, Long.toString(snapshot.getCount()));
+        return this;
+    }
+
+    private void describe(String name, String help, String type) {
+        if (described.add(name)) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+    }
+
+    private void sample(String name, String labels, String value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return format(nanos / 1e9);
+    }
+
+    private static String format(double value) {
+        if (value == (long) value) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
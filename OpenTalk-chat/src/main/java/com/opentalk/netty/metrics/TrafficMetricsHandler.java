@@ -0,0 +1,59 @@
+package com.opentalk.netty.metrics;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * 位于 pipeline 最前端（紧贴 socket），统计线上收发字节数、连接数与真正落到 socket 的 flush 耗时。
+ * 无状态，所有连接共享一个实例。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@ChannelHandler.Sharable
+public class TrafficMetricsHandler extends ChannelDuplexHandler {
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        ChatMetrics.connectionOpened();
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        ChatMetrics.connectionClosed();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof ByteBuf) {
+            ChatMetrics.recordBytesIn(((ByteBuf) msg).readableBytes());
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf) {
+            ChatMetrics.recordBytesOut(((ByteBuf) msg).readableBytes());
+        } else if (msg instanceof ByteBufHolder) {
+            ChatMetrics.recordBytesOut(((ByteBufHolder) msg).content().readableBytes());
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        long start = ChatMetrics.startTimer();
+        ctx.flush();
+        if (start != 0) {
+            ChatMetrics.FLUSH_LATENCY.record(System.nanoTime() - start);
+        }
+    }
+}
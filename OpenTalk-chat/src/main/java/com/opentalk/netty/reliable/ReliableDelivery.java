@@ -0,0 +1,192 @@
+package com.opentalk.netty.reliable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.opentalk.netty.dispatch.CommandDispatcher;
+import com.opentalk.netty.dispatch.CommandType;
+import com.opentalk.netty.dispatch.ExecutionMode;
+import com.opentalk.netty.message.HeaderType;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.message.MetaMessageHead;
+import com.opentalk.netty.metrics.MetricsSource;
+import com.opentalk.netty.metrics.PrometheusWriter;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 可靠投递层的装配与统计：
+ * <ul>
+ *     <li>出站：为每个连接创建 {@link ReliableDeliveryHandler}，所有连接共用一个时间轮驱动重发；</li>
+ *     <li>确认：注册 ACK 命令（INLINE），ACK_SEQ 为累计确认，ACK_SACK 为选择确认位图。
+ *     客户端在心跳定时器上批量发送确认，有未确认的序号时用 ACK 帧代替心跳帧，ACK 同样刷新空闲时间；</li>
+ *     <li>入站：可靠命令按 CLIENT_MSG_ID 去重。去重窗口按 uid 与客户端会话标识（握手参数 ?session=，
+ *     同一设备重连时保持不变）保存，跨重连保留，断开后保留 dedupRetentionMillis；
+ *     未带会话标识的连接无法与同一 uid 的其他设备区分，去重窗口只属于这条连接，不跨重连保留；
+ *     客户端消息 id 需在会话内从 0 或 1 起递增，重连后继续递增，重复或落后窗口（dedupWindowBits）之外的消息直接丢弃。</li>
+ * </ul>
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class ReliableDelivery implements MetricsSource {
+
+    private static final AttributeKey<SequenceWindow> INBOUND = AttributeKey.valueOf("inboundDedup");
+    private static final AttributeKey<String> DEDUP_KEY = AttributeKey.valueOf("inboundDedupKey");
+
+    /**
+     * 握手参数：客户端会话标识，同一设备重连时不变
+     */
+    public static final String SESSION_PARAM = "session";
+
+    /**
+     * 客户端单个 ACK 帧最多确认的乱序区间
+     */
+    public static final int MAX_SACK_BYTES = 128;
+
+    private final HashedWheelTimer timer;
+    private final int window;
+    private final long timeoutMillis;
+    private final int maxRetries;
+    private final int dedupWindowBits;
+    /**
+     * 会话键到去重窗口，连接期间窗口缓存在 channel 属性上，断开时重新放入以重置过期时间
+     */
+    private final Cache<String, SequenceWindow> sessions;
+
+    private final LongAdder acks = new LongAdder();
+    private final LongAdder retransmits = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder overflowClosed = new LongAdder();
+    private final LongAdder retryClosed = new LongAdder();
+
+    /**
+     * @param window        单连接未确认帧数上限
+     * @param timeoutMillis 首次重发的超时，需大于客户端的确认间隔（心跳间隔）
+     * @param tickMillis    时间轮精度
+     * @param dedupRetentionMillis 断开后去重窗口的保留时长，需大于客户端的重连间隔
+     * @param dedupMaxSessions     保留的去重窗口个数上限
+     */
+    public ReliableDelivery(int window, long timeoutMillis, int maxRetries, int dedupWindowBits, long tickMillis, int ticksPerWheel,
+                            long dedupRetentionMillis, long dedupMaxSessions) {
+        if (dedupWindowBits < 64 || Integer.bitCount(dedupWindowBits) != 1) {
+            throw new IllegalArgumentException("dedup window bits must be a power of two >= 64, got " + dedupWindowBits);
+        }
+        this.window = window;
+        this.timeoutMillis = timeoutMillis;
+        this.maxRetries = maxRetries;
+        this.dedupWindowBits = dedupWindowBits;
+        this.sessions = CacheBuilder.newBuilder()
+                .maximumSize(dedupMaxSessions)
+                .expireAfterAccess(dedupRetentionMillis, TimeUnit.MILLISECONDS)
+                .build();
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("retransmit-timer", true),
+                tickMillis, TimeUnit.MILLISECONDS, ticksPerWheel);
+    }
+
+    public ReliableDeliveryHandler newHandler() {
+        return new ReliableDeliveryHandler(this, timer, window, timeoutMillis, maxRetries);
+    }
+
+    public void register(CommandDispatcher dispatcher) {
+        dispatcher.register(CommandType.ACK, ExecutionMode.INLINE, (ctx, msg) -> {
+            ReliableDeliveryHandler handler = ctx.channel().attr(ReliableDeliveryHandler.HANDLER).get();
+            long cumulative = HeaderType.longValue(msg.header(HeaderType.ACK_SEQ), -1);
+            if (handler == null || cumulative < 0) {
+                return;
+            }
+            handler.ack(cumulative, HeaderType.bytesValue(msg.header(HeaderType.ACK_SACK)));
+        });
+    }
+
+    /**
+     * 握手完成时记录 channel 的去重会话键。session 为空时不记录：多端登录的各设备各自从 0 编号，
+     * 按 uid 共用窗口会把另一台设备的新消息当作重复丢弃，此时去重窗口随连接创建
+     */
+    public void bindSession(Channel channel, String uid, String session) {
+        if (session == null || session.isEmpty()) {
+            channel.attr(DEDUP_KEY).set(null);
+            return;
+        }
+        channel.attr(DEDUP_KEY).set(uid + '/' + session);
+    }
+
+    /**
+     * 在 event loop 上对入站消息去重，需要丢弃时返回 false。不带 CLIENT_MSG_ID 的消息不参与去重
+     */
+    public boolean acceptInbound(Channel channel, MetaMessage msg) {
+        if (msg.isHeartBeat() || !CommandType.isReliable(msg.getCmd())) {
+            return true;
+        }
+        MetaMessageHead head = msg.header(HeaderType.CLIENT_MSG_ID);
+        if (head == null) {
+            return true;
+        }
+        SequenceWindow seen = channel.attr(INBOUND).get();
+        if (seen == null) {
+            // 只有发过可靠消息的连接才分配位图，纯接收方不占内存
+            seen = window(channel);
+            channel.attr(INBOUND).set(seen);
+        }
+        boolean first;
+        // 同一会话的新旧连接可能短暂并存于不同的 event loop
+        synchronized (seen) {
+            first = seen.mark(HeaderType.longValue(head, -1));
+        }
+        if (first) {
+            return true;
+        }
+        duplicates.increment();
+        return false;
+    }
+
+    private SequenceWindow window(Channel channel) {
+        String key = channel.attr(DEDUP_KEY).get();
+        if (key == null) {
+            return new SequenceWindow(dedupWindowBits, 0);
+        }
+        SequenceWindow window = sessions.asMap().computeIfAbsent(key, k -> new SequenceWindow(dedupWindowBits, 0));
+        channel.closeFuture().addListener(future -> sessions.put(key, window));
+        return window;
+    }
+
+    void recordAck() {
+        acks.increment();
+    }
+
+    void recordRetransmit() {
+        retransmits.increment();
+    }
+
+    void recordOverflow() {
+        overflowClosed.increment();
+    }
+
+    void recordRetryExhausted() {
+        retryClosed.increment();
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    @Override
+    public void writeTo(PrometheusWriter writer) {
+        writer.counter("opentalk_reliable_acks_total", "Client ack frames processed", acks.sum())
+                .counter("opentalk_reliable_retransmits_total", "Frames retransmitted after ack timeout", retransmits.sum())
+                .counter("opentalk_reliable_duplicates_total", "Inbound messages dropped as duplicates", duplicates.sum())
+                .counter("opentalk_reliable_closed_total", "Connections closed by the reliability layer", "reason=\"window\"", overflowClosed.sum())
+                .counter("opentalk_reliable_closed_total", "Connections closed by the reliability layer", "reason=\"retries\"", retryClosed.sum());
+    }
+
+    @Override
+    public String toString() {
+        return "ReliableDelivery{acks=" + acks.sum() + ", retransmits=" + retransmits.sum() + ", duplicates=" + duplicates.sum()
+                + ", overflowClosed=" + overflowClosed.sum() + ", retryClosed=" + retryClosed.sum() + "}";
+    }
+}
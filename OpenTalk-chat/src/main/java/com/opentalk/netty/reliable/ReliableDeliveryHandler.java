@@ -0,0 +1,329 @@
+package com.opentalk.netty.reliable;
+
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.compress.VarInt;
+import com.opentalk.netty.dispatch.CommandType;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.util.AttributeKey;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 出站可靠投递：位于 encoder 与 WebSocket 协议层之间（出站方向在 encoder、批量合并之后执行），
+ * 看到的都是已编码的帧，包括广播预编码的帧。含可靠命令（{@link CommandType#isReliable}）的帧
+ * 按会话递增分配序号并套上序号信封（{@link MessageCodec#encodeSequenced}），信封只是一个 10 字节的前缀组件，
+ * 广播仍然只编码一次。
+ * <p>
+ * 已发出未确认的帧保存在有界的环形窗口里，客户端确认后释放；超时未确认的帧由共享时间轮驱动重发，
+ * 每个连接在时间轮上只挂一个超时，按窗口内最早的到期时间重新挂上，重发间隔按次数指数退避。
+ * 窗口满（客户端长期不确认）或重发次数耗尽时断开连接。
+ * <p>
+ * 需要确认的帧若以非 void 的 promise 写出，promise 在客户端确认该序号后才完成，写出失败、窗口溢出
+ * 或确认前连接断开时以失败完成。重发只在本连接内进行，断开后未确认的帧随之释放，是否跨重连重投由写出方根据 promise 决定：
+ * 点对点消息把未确认的提交日志 offset 交回离线信箱，重连后补发；房间消息没有按成员的游标，不重投。
+ * <p>
+ * 只有握手时声明支持序号信封（?reliable=1）的连接才启用，其余连接直接透传。
+ * 所有状态只在 channel 所属 event loop 上访问，每个连接一个实例，不可共享。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class ReliableDeliveryHandler extends ChannelDuplexHandler {
+
+    public static final AttributeKey<Boolean> RELIABLE_ENABLED = AttributeKey.valueOf("reliableEnabled");
+    public static final String NEGOTIATE_PARAM = "reliable";
+
+    static final AttributeKey<ReliableDeliveryHandler> HANDLER = AttributeKey.valueOf("reliableHandler");
+
+    /**
+     * 退避上限为初始超时的 2^MAX_BACKOFF_SHIFT 倍
+     */
+    private static final int MAX_BACKOFF_SHIFT = 4;
+
+    private final ReliableDelivery delivery;
+    private final Timer timer;
+    private final long timeoutNanos;
+    private final int maxRetries;
+    private final Entry[] ring;
+    private final int mask;
+
+    private ChannelHandlerContext ctx;
+    /**
+     * 窗口内的序号区间为 [firstUnacked, nextSeq)
+     */
+    private long nextSeq = 1;
+    private long firstUnacked = 1;
+    private Timeout timeout;
+    private boolean closed;
+
+    ReliableDeliveryHandler(ReliableDelivery delivery, Timer timer, int window, long timeoutMillis, int maxRetries) {
+        this.delivery = delivery;
+        this.timer = timer;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.maxRetries = maxRetries;
+        int capacity = Integer.highestOneBit(Math.max(2, window - 1)) << 1;
+        this.ring = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        ctx.channel().attr(HANDLER).set(this);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (closed || !(msg instanceof BinaryWebSocketFrame) || ctx.channel().attr(RELIABLE_ENABLED).get() != Boolean.TRUE) {
+            ctx.write(msg, promise);
+            return;
+        }
+        BinaryWebSocketFrame frame = (BinaryWebSocketFrame) msg;
+        if (!needsAck(frame.content())) {
+            ctx.write(msg, promise);
+            return;
+        }
+        if (nextSeq - firstUnacked > mask) {
+            frame.release();
+            promise.tryFailure(new IllegalStateException("retransmit window full"));
+            delivery.recordOverflow();
+            ctx.close();
+            return;
+        }
+        long seq = nextSeq++;
+        ByteBuf sequenced = MessageCodec.encodeSequenced(ctx.alloc(), seq, frame.content());
+        Entry entry = new Entry(sequenced.retainedDuplicate(), System.nanoTime() + timeoutNanos);
+        ring[(int) (seq & mask)] = entry;
+        ChannelPromise wire = promise;
+        if (!promise.isVoid()) {
+            // 写出成功不代表送达，promise 留到确认时完成
+            entry.promise = promise;
+            wire = ctx.newPromise();
+            wire.addListener(future -> {
+                if (!future.isSuccess()) {
+                    promise.tryFailure(future.cause());
+                }
+            });
+        }
+        ctx.write(new BinaryWebSocketFrame(frame.isFinalFragment(), frame.rsv(), sequenced), wire);
+        if (timeout == null) {
+            schedule(timeoutNanos);
+        }
+    }
+
+    /**
+     * 帧内是否有需要确认的消息：普通帧看 cmd，批量帧逐条看 cmd，心跳与已带信封的帧不需要
+     */
+    private static boolean needsAck(ByteBuf content) {
+        int index = content.readerIndex();
+        int end = content.writerIndex();
+        if (end - index < 3) {
+            return false;
+        }
+        int flags = content.getUnsignedByte(index + 1);
+        if ((flags & (MessageCodec.FLAG_HEARTBEAT | MessageCodec.FLAG_SEQ)) != 0) {
+            return false;
+        }
+        if ((flags & MessageCodec.FLAG_BATCH) == 0) {
+            return CommandType.isReliable(content.getUnsignedByte(index + 2));
+        }
+        index += 2;
+        int count = VarInt.getVarInt32(content, index);
+        index += VarInt.computeVarInt32Size(count);
+        for (int i = 0; i < count && index < end; i++) {
+            int size = VarInt.getVarInt32(content, index);
+            index += VarInt.computeVarInt32Size(size);
+            if (size >= 3 && index + 2 < end && CommandType.isReliable(content.getUnsignedByte(index + 2))) {
+                return true;
+            }
+            index += size;
+        }
+        return false;
+    }
+
+    /**
+     * 处理客户端确认，在 event loop 上调用。sack 的第 i 位对应序号 cumulative + 2 + i
+     */
+    void ack(long cumulative, byte[] sack) {
+        if (closed) {
+            return;
+        }
+        cumulative = Math.min(cumulative, nextSeq - 1);
+        while (firstUnacked <= cumulative) {
+            release((int) (firstUnacked & mask), null);
+            firstUnacked++;
+        }
+        if (sack != null) {
+            for (int i = 0; i < sack.length * 8; i++) {
+                if ((sack[i >>> 3] & (1 << (i & 7))) == 0) {
+                    continue;
+                }
+                long seq = cumulative + 2 + i;
+                if (seq >= nextSeq) {
+                    break;
+                }
+                if (seq >= firstUnacked) {
+                    Entry entry = ring[(int) (seq & mask)];
+                    if (entry != null && entry.frame != null) {
+                        entry.frame.release();
+                        entry.frame = null;
+                        entry.complete(null);
+                    }
+                }
+            }
+        }
+        delivery.recordAck();
+    }
+
+    private void onTimeout() {
+        timeout = null;
+        if (closed || firstUnacked == nextSeq) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (!ctx.channel().isWritable()) {
+            // 出站已经积压，重发只会加重积压，交给出站策略处理慢连接
+            schedule(timeoutNanos);
+            return;
+        }
+        long earliest = Long.MAX_VALUE;
+        boolean written = false;
+        for (long seq = firstUnacked; seq < nextSeq; seq++) {
+            Entry entry = ring[(int) (seq & mask)];
+            if (entry == null || entry.frame == null) {
+                continue;
+            }
+            if (entry.deadline - now <= 0) {
+                if (entry.retries >= maxRetries) {
+                    delivery.recordRetryExhausted();
+                    ctx.close();
+                    return;
+                }
+                entry.retries++;
+                entry.deadline = now + (timeoutNanos << Math.min(entry.retries, MAX_BACKOFF_SHIFT));
+                // 从本处理器的 ctx 写出，不会再次分配序号
+                ctx.write(new BinaryWebSocketFrame(entry.frame.retainedDuplicate()), ctx.voidPromise());
+                delivery.recordRetransmit();
+                written = true;
+            }
+            earliest = Math.min(earliest, entry.deadline - now);
+        }
+        if (written) {
+            ctx.flush();
+        }
+        if (earliest != Long.MAX_VALUE) {
+            schedule(earliest);
+        }
+    }
+
+    private void schedule(long delayNanos) {
+        timeout = timer.newTimeout(t -> {
+            try {
+                ctx.executor().execute(this::onTimeout);
+            } catch (RejectedExecutionException e) {
+                // event loop 已关闭，连接随之释放
+            }
+        }, Math.max(delayNanos, 1), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 释放 index 处的帧并完成其 promise，cause 为 null 表示已确认
+     */
+    private void release(int index, Throwable cause) {
+        Entry entry = ring[index];
+        ring[index] = null;
+        if (entry == null) {
+            return;
+        }
+        if (entry.frame != null) {
+            entry.frame.release();
+            entry.frame = null;
+        }
+        entry.complete(cause);
+    }
+
+    /**
+     * channel 的重发窗口容量（未确认帧数上限），未启用可靠投递时返回 0。容量在构造时确定，可在任意线程调用
+     */
+    public static int window(Channel channel) {
+        if (channel.attr(RELIABLE_ENABLED).get() != Boolean.TRUE) {
+            return 0;
+        }
+        ReliableDeliveryHandler handler = channel.attr(HANDLER).get();
+        return handler == null ? 0 : handler.ring.length;
+    }
+
+    /**
+     * 当前未确认的帧数
+     */
+    int inFlight() {
+        return (int) (nextSeq - firstUnacked);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        close();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        close();
+        super.channelInactive(ctx);
+    }
+
+    private void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+        ClosedChannelException cause = new ClosedChannelException();
+        for (long seq = firstUnacked; seq < nextSeq; seq++) {
+            release((int) (seq & mask), cause);
+        }
+        firstUnacked = nextSeq;
+    }
+
+    private static final class Entry {
+        /**
+         * 带信封的帧内容，客户端选择确认后提前释放并置空
+         */
+        ByteBuf frame;
+        long deadline;
+        int retries;
+        /**
+         * 写出方等待确认的 promise，void 写出时为 null
+         */
+        ChannelPromise promise;
+
+        Entry(ByteBuf frame, long deadline) {
+            this.frame = frame;
+            this.deadline = deadline;
+        }
+
+        void complete(Throwable cause) {
+            if (promise == null) {
+                return;
+            }
+            if (cause == null) {
+                promise.trySuccess();
+            } else {
+                promise.tryFailure(cause);
+            }
+            promise = null;
+        }
+    }
+}
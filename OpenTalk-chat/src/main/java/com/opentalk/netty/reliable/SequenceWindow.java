@@ -0,0 +1,132 @@
+package com.opentalk.netty.reliable;
+
+import java.util.Arrays;
+
+/**
+ * 滑动位图：记录一个递增序号流中已经出现过的序号。base 及之前的序号视为全部出现过，初始 base 为流的首个序号减一，
+ * (base, base + bits] 区间按 序号 & (bits - 1) 落在环形位图上，bits 为 2 的幂。
+ * 1024 位的窗口只占 16 个 long，百万连接下也不必为每个序号分配对象。
+ * <p>
+ * 用于两处：服务端按客户端消息 id 对入站消息去重；客户端记录收到的会话序号，生成累计确认与选择确认。
+ * 超出窗口上沿的序号会把窗口强制前移，被越过的序号按已出现处理（去重时即视为过旧的重放）。
+ * 非线程安全，由 channel 所属的 event loop 独占访问。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public final class SequenceWindow {
+
+    private final long[] words;
+    private final int bits;
+    private final int mask;
+    private long base;
+
+    /**
+     * 序号从 1 开始的流，如会话序号
+     */
+    public SequenceWindow(int bits) {
+        this(bits, 1);
+    }
+
+    /**
+     * @param first 流中可能出现的最小序号，小于它的序号一律视为已出现
+     */
+    public SequenceWindow(int bits, long first) {
+        if (bits < 64 || Integer.bitCount(bits) != 1) {
+            throw new IllegalArgumentException("window bits must be a power of two >= 64, got " + bits);
+        }
+        this.words = new long[bits >>> 6];
+        this.bits = bits;
+        this.mask = bits - 1;
+        this.base = first - 1;
+    }
+
+    /**
+     * 记录 seq，首次出现返回 true，重复或已滑出窗口返回 false
+     */
+    public boolean mark(long seq) {
+        if (seq <= base) {
+            return false;
+        }
+        if (seq - base > bits) {
+            slideTo(seq - bits);
+        }
+        int bit = (int) (seq & mask);
+        long flag = 1L << bit;
+        if ((words[bit >>> 6] & flag) != 0) {
+            return false;
+        }
+        words[bit >>> 6] |= flag;
+        advance();
+        return true;
+    }
+
+    public boolean contains(long seq) {
+        if (seq <= base) {
+            return true;
+        }
+        if (seq - base > bits) {
+            return false;
+        }
+        int bit = (int) (seq & mask);
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * 累计确认：不大于它的序号全部出现过
+     */
+    public long cumulative() {
+        return base;
+    }
+
+    /**
+     * 选择确认位图：第 i 位表示 cumulative() + 2 + i 已出现（cumulative() + 1 必然未出现），
+     * 末尾的全零字节被截掉，没有乱序到达的序号时返回空数组
+     */
+    public byte[] selective(int maxBytes) {
+        int length = 0;
+        byte[] sack = new byte[Math.min(maxBytes, bits >>> 3)];
+        for (int i = 0; i < sack.length * 8; i++) {
+            long seq = base + 2 + i;
+            if (seq - base > bits) {
+                break;
+            }
+            int bit = (int) (seq & mask);
+            if ((words[bit >>> 6] & (1L << bit)) != 0) {
+                sack[i >>> 3] |= 1 << (i & 7);
+                length = (i >>> 3) + 1;
+            }
+        }
+        if (length == sack.length) {
+            return sack;
+        }
+        byte[] trimmed = new byte[length];
+        System.arraycopy(sack, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    private void advance() {
+        for (;;) {
+            int bit = (int) ((base + 1) & mask);
+            long flag = 1L << bit;
+            if ((words[bit >>> 6] & flag) == 0) {
+                return;
+            }
+            words[bit >>> 6] &= ~flag;
+            base++;
+        }
+    }
+
+    private void slideTo(long target) {
+        if (target - base >= bits) {
+            Arrays.fill(words, 0L);
+        } else {
+            for (long seq = base + 1; seq <= target; seq++) {
+                int bit = (int) (seq & mask);
+                words[bit >>> 6] &= ~(1L << bit);
+            }
+        }
+        base = target;
+    }
+}
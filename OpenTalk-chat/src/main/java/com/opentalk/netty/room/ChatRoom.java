@@ -0,0 +1,169 @@
+package com.opentalk.netty.room;
+
+import com.opentalk.netty.broadcast.MessageBroadcaster;
+import com.opentalk.netty.message.MetaMessage;
+import io.netty.channel.Channel;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 房间的在线成员，按 channel 所属 event loop 分区。每个分区只由对应的 event loop 读写，
+ * 其他线程只读取分区的 size 判断是否需要投递，因此成员增删与广播都不需要锁。
+ * 分区按需创建，只在少数 event loop 上有成员的小房间不会为其余 event loop 分配对象。
+ * 成员项记住自己在分区数组里的下标，离开房间是 O(1) 的交换删除，大量连接同时断开时不会退化成逐个线性查找。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+final class ChatRoom {
+
+    final String id;
+    final AtomicReferenceArray<Partition> partitions;
+    /**
+     * 成员总数，-1 表示房间已清空并从注册表移除，不能再加入
+     */
+    private final AtomicInteger members = new AtomicInteger();
+
+    ChatRoom(String id, int loops) {
+        this.id = id;
+        this.partitions = new AtomicReferenceArray<>(loops);
+    }
+
+    boolean tryRetain() {
+        for (;;) {
+            int n = members.get();
+            if (n < 0) {
+                return false;
+            }
+            if (members.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 返回 true 表示最后一个成员已离开，房间已关闭
+     */
+    boolean release() {
+        return members.decrementAndGet() == 0 && members.compareAndSet(0, -1);
+    }
+
+    int size() {
+        return Math.max(0, members.get());
+    }
+
+    /**
+     * 只在下标为 loop 的 event loop 上调用
+     */
+    Partition partition(int loop) {
+        Partition partition = partitions.get(loop);
+        if (partition == null) {
+            partition = new Partition();
+            partitions.set(loop, partition);
+        }
+        return partition;
+    }
+
+    /**
+     * 只在下标为 loop 的 event loop 上调用
+     */
+    Member join(int loop, Channel channel) {
+        return partition(loop).add(this, channel);
+    }
+
+    /**
+     * channel 在某个房间分区里的成员项，记录其在分区数组中的下标，离开房间时不需要查找
+     */
+    static final class Member {
+        final ChatRoom room;
+        final Channel channel;
+        final Partition partition;
+        /**
+         * 在 partition.channels 中的下标，-1 表示已移出分区
+         */
+        int slot = -1;
+
+        Member(ChatRoom room, Channel channel, Partition partition) {
+            this.room = room;
+            this.channel = channel;
+            this.partition = partition;
+        }
+    }
+
+    static final class Partition {
+        final ArrayList<Channel> channels = new ArrayList<>(4);
+        /**
+         * 与 channels 一一对应，交换删除时同步更新被搬移成员的下标
+         */
+        private final ArrayList<Member> members = new ArrayList<>(4);
+        /**
+         * 供其他线程判断分区是否为空
+         */
+        volatile int size;
+        /**
+         * 正在遍历分区广播时为 true：写出可能同步关闭连接并在同一调用栈里离开房间，
+         * 此时的删除记入 pendingRemovals，遍历结束后再执行，避免并发修改或跳过成员
+         */
+        private boolean broadcasting;
+        private ArrayList<Member> pendingRemovals;
+
+        Member add(ChatRoom room, Channel channel) {
+            Member member = new Member(room, channel, this);
+            member.slot = channels.size();
+            channels.add(channel);
+            members.add(member);
+            size = channels.size();
+            return member;
+        }
+
+        /**
+         * 向分区内全部成员写出 msg，返回实际写出的 channel 数，msg 的所有权仍归调用方
+         */
+        int broadcast(MetaMessage msg) {
+            if (broadcasting) {
+                // 写出路径上再次广播到同一分区，遍历快照
+                return MessageBroadcaster.broadcast(msg, new ArrayList<>(channels));
+            }
+            broadcasting = true;
+            try {
+                return MessageBroadcaster.broadcast(msg, channels);
+            } finally {
+                broadcasting = false;
+                if (pendingRemovals != null) {
+                    ArrayList<Member> removals = pendingRemovals;
+                    pendingRemovals = null;
+                    for (int i = 0; i < removals.size(); i++) {
+                        remove(removals.get(i));
+                    }
+                }
+            }
+        }
+
+        void remove(Member member) {
+            if (broadcasting) {
+                if (pendingRemovals == null) {
+                    pendingRemovals = new ArrayList<>(2);
+                }
+                pendingRemovals.add(member);
+                return;
+            }
+            int slot = member.slot;
+            if (slot < 0) {
+                return;
+            }
+            // 与末尾元素交换后删除，成员顺序无意义，不需要搬移数组
+            int last = channels.size() - 1;
+            Member moved = members.get(last);
+            channels.set(slot, moved.channel);
+            members.set(slot, moved);
+            moved.slot = slot;
+            channels.remove(last);
+            members.remove(last);
+            member.slot = -1;
+            size = last;
+        }
+    }
+}
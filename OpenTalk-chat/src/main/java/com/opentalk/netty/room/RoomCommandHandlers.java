@@ -0,0 +1,120 @@
+package com.opentalk.netty.room;
+
+import com.opentalk.common.id.SnowflakeIdGenerator;
+import com.opentalk.domain.session.Session;
+import com.opentalk.netty.dispatch.CommandDispatcher;
+import com.opentalk.netty.dispatch.CommandType;
+import com.opentalk.netty.dispatch.ExecutionMode;
+import com.opentalk.netty.message.HeaderType;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.message.MetaMessageHead;
+import com.opentalk.netty.message.MetaMessageView;
+import com.opentalk.netty.session.SessionRegistry;
+import com.opentalk.netty.store.MessageLog;
+import io.netty.channel.Channel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * 房间相关命令：JOIN_ROOM、LEAVE_ROOM、ROOM_CHAT，房间 id 取自 ROOM_ID header。
+ * 房间 id 在零拷贝解码的帧上直接读取（{@link MetaMessageView}），房间消息只与发送方已加入的房间逐字节比较。
+ * 三者都以 INLINE 模式在发送方的 event loop 上执行，成员变更天然落在 channel 自己的 event loop 上，
+ * 广播的编码与写出由 {@link RoomFanout} 分摊到各成员所在的 event loop。
+ * 房间消息广播前由服务端分配 MESSAGE_ID，再追加到提交日志，追加只是一次内存拷贝，落盘由提交日志的刷盘线程完成。
+ * 追加持有提交日志的全局追加锁，各 event loop 上的房间与点对点消息在此串行（见 {@link com.opentalk.netty.store.CommitLog}）。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Slf4j
+public class RoomCommandHandlers {
+
+    /**
+     * @param messageLog 为 null 时房间消息不持久化
+     */
+    public static void register(CommandDispatcher dispatcher, RoomFanout fanout, MessageLog messageLog, SnowflakeIdGenerator ids) {
+        dispatcher.register(CommandType.JOIN_ROOM, ExecutionMode.INLINE, (ctx, msg) -> {
+            String roomId = roomOf(msg);
+            if (roomId != null) {
+                fanout.join(ctx.channel(), roomId);
+            }
+        });
+        dispatcher.register(CommandType.LEAVE_ROOM, ExecutionMode.INLINE, (ctx, msg) -> {
+            String roomId = roomOf(msg);
+            if (roomId != null) {
+                fanout.leave(ctx.channel(), roomId);
+            }
+        });
+        dispatcher.register(CommandType.ROOM_CHAT, ExecutionMode.INLINE, (ctx, msg) -> {
+            String roomId = joinedRoomOf(fanout, ctx.channel(), msg);
+            if (roomId == null) {
+                log.debug("channel {} is not a member of room {}, message dropped", ctx.channel().id().asShortText(),
+                        MetaMessageView.asciiOf(msg, HeaderType.ROOM_ID));
+                return;
+            }
+            stampSender(ctx.channel(), msg);
+            stampMessageId(msg, ids.nextId());
+            if (messageLog != null) {
+                messageLog.append(msg);
+            }
+            fanout.broadcast(roomId, msg);
+        });
+    }
+
+    private static String roomOf(MetaMessage msg) {
+        String roomId = MetaMessageView.asciiOf(msg, HeaderType.ROOM_ID);
+        return roomId == null || roomId.isEmpty() ? null : roomId;
+    }
+
+    /**
+     * 在 channel 已加入的房间中找 ROOM_ID 对应的那个，返回集合里已有的实例：
+     * 路由键直接与帧内字节比较，每条房间消息不再为房间 id 分配字符串
+     */
+    private static String joinedRoomOf(RoomFanout fanout, Channel channel, MetaMessage msg) {
+        for (String roomId : fanout.joinedRooms(channel)) {
+            if (MetaMessageView.asciiEquals(msg, HeaderType.ROOM_ID, roomId)) {
+                return roomId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 消息 id 由服务端分配，按时间有序，覆盖客户端自带的值
+     */
+    public static void stampMessageId(MetaMessage msg, long id) {
+        MetaMessageHead stamped = HeaderType.ofLong(HeaderType.MESSAGE_ID, id);
+        MetaMessageHead head = msg.header(HeaderType.MESSAGE_ID);
+        if (head != null) {
+            head.setData(stamped.getData());
+            return;
+        }
+        if (msg.getHeaders() == null) {
+            msg.setHeaders(new ArrayList<>(1));
+        }
+        msg.getHeaders().add(stamped);
+    }
+
+    /**
+     * 发送方由服务端按会话填充，覆盖客户端自带的值
+     */
+    public static void stampSender(Channel channel, MetaMessage msg) {
+        Session session = SessionRegistry.sessionOf(channel);
+        if (session == null) {
+            return;
+        }
+        byte[] uid = session.getUid().getBytes(StandardCharsets.US_ASCII);
+        MetaMessageHead head = msg.header(HeaderType.FROM_UID);
+        if (head != null) {
+            head.setData(uid);
+            return;
+        }
+        if (msg.getHeaders() == null) {
+            msg.setHeaders(new ArrayList<>(1));
+        }
+        msg.getHeaders().add(new MetaMessageHead(HeaderType.FROM_UID, uid));
+    }
+}
@@ -0,0 +1,221 @@
+package com.opentalk.netty.room;
+
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.metrics.MetricsSource;
+import com.opentalk.netty.metrics.PrometheusWriter;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 房间广播引擎。房间成员按 channel 所属的 worker event loop 分区（{@link ChatRoom}），
+ * 一次广播对每个有成员的 event loop 只投递一个任务，任务在本地把消息写给该分区内的全部 channel：
+ * 跨线程交互次数等于 event loop 数而不是成员数，写 channel 时也不再经过 channel 自身的任务队列。
+ * 发送方所在 event loop 的分区直接在当前线程写出。
+ * <p>
+ * 加入、离开房间都在 channel 自己的 event loop 上执行（INLINE 命令或 closeFuture 回调），分区不需要同步。
+ * 广播写出时可能因出站积压关闭连接，closeFuture 回调在同一调用栈里离开房间，分区在遍历期间推迟删除（{@link ChatRoom.Partition}）。
+ * <p>
+ * 热点房间亲和：成员数达到 hotThreshold 的房间有一个固定的归属 event loop（按房间 id 哈希），
+ * 握手请求带 room 参数的新连接在升级之前就被放到归属 event loop 上（{@link RoomPlacementHandler}），热点房间的广播逐渐退化为一次本地循环。
+ * 只在握手阶段放置：此时连接上还没有限流恢复、出站停滞检测、重发等挂在 event loop 上的定时任务；已升级的连接不会迁移。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class RoomFanout implements MetricsSource {
+
+    /**
+     * channel 已加入的房间及其分区成员项，只在 channel 所属 event loop 上访问
+     */
+    private static final AttributeKey<Map<String, ChatRoom.Member>> JOINED = AttributeKey.valueOf("joinedRooms");
+
+    private final EventLoop[] loops;
+    private final Map<EventExecutor, Integer> loopIndex = new IdentityHashMap<>();
+    private final ConcurrentHashMap<String, ChatRoom> rooms = new ConcurrentHashMap<>();
+    private final int hotThreshold;
+
+    private final LongAdder broadcasts = new LongAdder();
+    private final LongAdder loopTasks = new LongAdder();
+    private final LongAdder placements = new LongAdder();
+
+    /**
+     * @param hotThreshold 成员数达到该值的房间把新连接放到归属 event loop 上，0 表示不放置
+     */
+    public RoomFanout(EventLoopGroup workerGroup, int hotThreshold) {
+        List<EventLoop> list = new ArrayList<>();
+        for (EventExecutor executor : workerGroup) {
+            loopIndex.put(executor, list.size());
+            list.add((EventLoop) executor);
+        }
+        this.loops = list.toArray(new EventLoop[0]);
+        this.hotThreshold = hotThreshold;
+    }
+
+    /**
+     * 在 channel 所属 event loop 上调用，重复加入返回 false
+     */
+    public boolean join(Channel channel, String roomId) {
+        Map<String, ChatRoom.Member> joined = channel.attr(JOINED).get();
+        if (joined == null) {
+            joined = new HashMap<>(4);
+            channel.attr(JOINED).set(joined);
+            channel.closeFuture().addListener(future -> leaveAll(channel));
+        }
+        if (joined.containsKey(roomId)) {
+            return false;
+        }
+        ChatRoom room;
+        do {
+            room = rooms.computeIfAbsent(roomId, id -> new ChatRoom(id, loops.length));
+        } while (!room.tryRetain());
+        joined.put(roomId, room.join(indexOf(channel), channel));
+        return true;
+    }
+
+    /**
+     * 在 channel 所属 event loop 上调用，未加入时返回 false
+     */
+    public boolean leave(Channel channel, String roomId) {
+        Map<String, ChatRoom.Member> joined = channel.attr(JOINED).get();
+        ChatRoom.Member member = joined == null ? null : joined.remove(roomId);
+        if (member == null) {
+            return false;
+        }
+        removeMember(member);
+        return true;
+    }
+
+    private void leaveAll(Channel channel) {
+        Map<String, ChatRoom.Member> joined = channel.attr(JOINED).getAndSet(null);
+        if (joined != null) {
+            for (ChatRoom.Member member : joined.values()) {
+                removeMember(member);
+            }
+        }
+    }
+
+    private void removeMember(ChatRoom.Member member) {
+        member.partition.remove(member);
+        ChatRoom room = member.room;
+        if (room.release()) {
+            rooms.remove(room.id, room);
+        }
+    }
+
+    /**
+     * 向房间所有在线成员广播 msg，可在任意线程调用，msg 的所有权仍归调用方。
+     * 返回投递到的 event loop 数，房间不存在时返回 0。
+     */
+    public int broadcast(String roomId, MetaMessage msg) {
+        ChatRoom room = rooms.get(roomId);
+        if (room == null) {
+            return 0;
+        }
+        broadcasts.increment();
+        int tasks = 0;
+        for (int i = 0; i < loops.length; i++) {
+            ChatRoom.Partition partition = room.partitions.get(i);
+            if (partition == null || partition.size == 0) {
+                continue;
+            }
+            EventLoop loop = loops[i];
+            tasks++;
+            if (loop.inEventLoop()) {
+                partition.broadcast(msg);
+                continue;
+            }
+            msg.retain();
+            try {
+                loop.execute(() -> {
+                    try {
+                        partition.broadcast(msg);
+                    } finally {
+                        msg.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                msg.release();
+                tasks--;
+            }
+        }
+        loopTasks.add(tasks);
+        return tasks;
+    }
+
+    public int memberCount(String roomId) {
+        ChatRoom room = rooms.get(roomId);
+        return room == null ? 0 : room.size();
+    }
+
+    public int roomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * 房间成员数达到 hotThreshold 时返回其归属 event loop，否则返回 null；可在任意线程调用
+     */
+    public EventLoop homeLoop(String roomId) {
+        if (hotThreshold <= 0) {
+            return null;
+        }
+        ChatRoom room = rooms.get(roomId);
+        if (room == null || room.size() < hotThreshold) {
+            return null;
+        }
+        return loops[Math.floorMod(roomId.hashCode(), loops.length)];
+    }
+
+    void recordPlacement() {
+        placements.increment();
+    }
+
+    /**
+     * channel 已加入的房间，只能在 channel 所属 event loop 上读取，调用方不可修改
+     */
+    public Set<String> joinedRooms(Channel channel) {
+        Map<String, ChatRoom.Member> joined = channel.attr(JOINED).get();
+        return joined == null ? Collections.emptySet() : joined.keySet();
+    }
+
+    public boolean isMember(Channel channel, String roomId) {
+        Map<String, ChatRoom.Member> joined = channel.attr(JOINED).get();
+        return joined != null && joined.containsKey(roomId);
+    }
+
+    private int indexOf(Channel channel) {
+        Integer index = loopIndex.get(channel.eventLoop());
+        if (index == null) {
+            throw new IllegalStateException("channel " + channel.id().asShortText() + " is not on a worker event loop");
+        }
+        return index;
+    }
+
+    @Override
+    public void writeTo(PrometheusWriter writer) {
+        writer.gauge("opentalk_rooms", "Rooms with at least one online member", rooms.size())
+                .counter("opentalk_room_broadcasts_total", "Room broadcasts", broadcasts.sum())
+                .counter("opentalk_room_loop_tasks_total", "Per event loop fan-out tasks", loopTasks.sum())
+                .counter("opentalk_room_placements_total", "Connections placed on the home loop of a hot room", placements.sum());
+    }
+
+    @Override
+    public String toString() {
+        return "RoomFanout{rooms=" + rooms.size() + ", broadcasts=" + broadcasts.sum() + ", loopTasks=" + loopTasks.sum()
+                + ", placements=" + placements.sum() + "}";
+    }
+}
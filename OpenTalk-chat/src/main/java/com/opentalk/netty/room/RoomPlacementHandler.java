@@ -0,0 +1,74 @@
+package com.opentalk.netty.room;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * 热点房间放置，位于握手鉴权之后、WebSocket 升级之前：握手请求 /chat?room=xxx 指向的房间已是热点时，
+ * 把连接 deregister 后重新 register 到该房间的归属 event loop（{@link RoomFanout#homeLoop}），再把请求交给后续 handler 完成升级。
+ * <p>
+ * 只在这里迁移：升级之前连接上还没有绑定到 event loop 的状态，握手准入在离开原 event loop 时归还名额，
+ * WebSocket 握手超时、空闲检测、出站停滞检测、重发定时器都在迁移之后才挂到新的 event loop 上。
+ * room 参数只是放置提示，不会替客户端加入房间；处理完第一个请求后把自身移出 pipeline。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Slf4j
+@ChannelHandler.Sharable
+public class RoomPlacementHandler extends ChannelInboundHandlerAdapter {
+
+    public static final String ROOM_PARAM = "room";
+
+    private final RoomFanout fanout;
+
+    public RoomPlacementHandler(RoomFanout fanout) {
+        this.fanout = fanout;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof FullHttpRequest)) {
+            super.channelRead(ctx, msg);
+            return;
+        }
+        ctx.pipeline().remove(this);
+        List<String> rooms = new QueryStringDecoder(((FullHttpRequest) msg).uri()).parameters().get(ROOM_PARAM);
+        EventLoop home = rooms == null || rooms.isEmpty() ? null : fanout.homeLoop(rooms.get(0));
+        Channel channel = ctx.channel();
+        if (home == null || home == channel.eventLoop()) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        channel.deregister().addListener(deregistered -> {
+            if (!deregistered.isSuccess()) {
+                log.warn("deregister channel {} for room placement failed", channel.id().asShortText(), deregistered.cause());
+                ReferenceCountUtil.release(msg);
+                channel.close();
+                return;
+            }
+            home.register(channel).addListener(registered -> {
+                if (!registered.isSuccess()) {
+                    log.warn("register channel {} on the home loop of room {} failed", channel.id().asShortText(), rooms.get(0), registered.cause());
+                    ReferenceCountUtil.release(msg);
+                    channel.close();
+                    return;
+                }
+                fanout.recordPlacement();
+                // 已在新的 event loop 上，请求从原位置继续向后传递
+                ctx.fireChannelRead(msg);
+                ctx.fireChannelReadComplete();
+            });
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package com.opentalk.netty.session;
+
+import com.opentalk.domain.session.Session;
+import io.netty.channel.Channel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 空闲连接回收。所有连接共用一个 HashedWheelTimer，每个连接在轮上只挂一个超时：
+ * 收到入站帧时只更新 {@link Session#getLastReadTime()}，不重新调度；
+ * 超时触发时若期间有读则按剩余时间重新挂上，否则关闭连接。
+ * 到期时间误差不超过一个 tick，对分钟级的空闲阈值可以忽略。连接关闭时取消其超时。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Slf4j
+public class IdleReaper {
+
+    private final HashedWheelTimer timer;
+    private final long idleMillis;
+    private final LongAdder reaped = new LongAdder();
+
+    public IdleReaper(long idleMillis, long tickMillis, int ticksPerWheel) {
+        this.idleMillis = idleMillis;
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("idle-reaper", true),
+                tickMillis, TimeUnit.MILLISECONDS, ticksPerWheel);
+    }
+
+    /**
+     * 开始检测 channel 的空闲，channel 需已绑定 Session
+     */
+    public void watch(Channel channel) {
+        Watch watch = new Watch(channel);
+        watch.schedule(timer, idleMillis);
+        // 连接关闭时取消轮上的超时，否则已关闭的连接要等到到期才从轮上移除
+        channel.closeFuture().addListener(future -> watch.cancel());
+    }
+
+    /**
+     * 记录一次入站读，在 event loop 上每帧调用，只做一次属性查找与 volatile 写
+     */
+    public static void touch(Channel channel) {
+        Session session = channel.attr(SessionRegistry.SESSION).get();
+        if (session != null) {
+            session.setLastReadTime(System.currentTimeMillis());
+        }
+    }
+
+    public long getReaped() {
+        return reaped.sum();
+    }
+
+    public void stop() {
+        timer.stop();
+    }
+
+    private final class Watch implements TimerTask {
+
+        private final Channel channel;
+        private volatile Timeout timeout;
+
+        Watch(Channel channel) {
+            this.channel = channel;
+        }
+
+        void schedule(Timer timer, long delayMillis) {
+            timeout = timer.newTimeout(this, delayMillis, TimeUnit.MILLISECONDS);
+            // 与关闭并发时，关闭监听器可能已取消了上一个超时
+            if (!channel.isOpen()) {
+                cancel();
+            }
+        }
+
+        void cancel() {
+            Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        @Override
+        public void run(Timeout timeout) {
+            if (!channel.isActive()) {
+                return;
+            }
+            Session session = channel.attr(SessionRegistry.SESSION).get();
+            if (session == null) {
+                return;
+            }
+            long idle = System.currentTimeMillis() - session.getLastReadTime();
+            if (idle >= idleMillis) {
+                reaped.increment();
+                log.info("session {} of uid {} idle for {}ms, the channel is about to close.",
+                        session.getId(), session.getUid(), idle);
+                channel.close();
+                return;
+            }
+            schedule(timeout.timer(), idleMillis - idle);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.opentalk.netty.session;
+
+import com.opentalk.domain.session.Session;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * uid 到 channel 的路由表。底层为 ConcurrentHashMap，读无锁，写只锁单个桶，没有全局锁。
+ * 单端登录时 value 直接存 Channel，多端登录时存 Channel[]（写时复制），避免为每个 uid 额外分配集合对象。
+ * Session 挂在 channel 的 {@link #SESSION} 属性上，由 channel 找 uid 不需要查表。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class SessionRegistry {
+
+    public static final AttributeKey<Session> SESSION = AttributeKey.valueOf("session");
+
+    private static final Channel[] EMPTY = new Channel[0];
+
+    private final ConcurrentHashMap<String, Object> routes;
+
+    public SessionRegistry(int initialCapacity) {
+        this.routes = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    /**
+     * 绑定 uid 与 channel，同一 channel 重复绑定时先解除旧绑定
+     */
+    public Session bind(String uid, Channel channel) {
+        Session old = channel.attr(SESSION).get();
+        if (old != null) {
+            unbind(channel);
+        }
+        Session session = new Session();
+        session.setId(channel.id().asShortText());
+        session.setUid(uid);
+        session.setBindTime(System.currentTimeMillis());
+        session.setLastReadTime(session.getBindTime());
+        channel.attr(SESSION).set(session);
+        routes.compute(uid, (key, value) -> {
+            if (value == null) {
+                return channel;
+            }
+            if (value instanceof Channel) {
+                return new Channel[]{(Channel) value, channel};
+            }
+            Channel[] channels = (Channel[]) value;
+            Channel[] grown = Arrays.copyOf(channels, channels.length + 1);
+            grown[channels.length] = channel;
+            return grown;
+        });
+        return session;
+    }
+
+    /**
+     * 解除 channel 的绑定并返回其 Session，未绑定时返回 null
+     */
+    public Session unbind(Channel channel) {
+        Session session = channel.attr(SESSION).getAndSet(null);
+        if (session == null) {
+            return null;
+        }
+        routes.computeIfPresent(session.getUid(), (key, value) -> {
+            if (value == channel) {
+                return null;
+            }
+            if (value instanceof Channel) {
+                return value;
+            }
+            Channel[] channels = (Channel[]) value;
+            int index = indexOf(channels, channel);
+            if (index < 0) {
+                return value;
+            }
+            if (channels.length == 2) {
+                return channels[1 - index];
+            }
+            Channel[] shrunk = new Channel[channels.length - 1];
+            System.arraycopy(channels, 0, shrunk, 0, index);
+            System.arraycopy(channels, index + 1, shrunk, index, channels.length - index - 1);
+            return shrunk;
+        });
+        return session;
+    }
+
+    public static Session sessionOf(Channel channel) {
+        return channel.attr(SESSION).get();
+    }
+
+    /**
+     * uid 的任意一个在线 channel，不在线时返回 null
+     */
+    public Channel channel(String uid) {
+        Object value = routes.get(uid);
+        if (value == null || value instanceof Channel) {
+            return (Channel) value;
+        }
+        return ((Channel[]) value)[0];
+    }
+
+    /**
+     * uid 的全部在线 channel，返回的数组不可修改
+     */
+    public Channel[] channels(String uid) {
+        Object value = routes.get(uid);
+        if (value == null) {
+            return EMPTY;
+        }
+        if (value instanceof Channel) {
+            return new Channel[]{(Channel) value};
+        }
+        return (Channel[]) value;
+    }
+
+    public boolean isOnline(String uid) {
+        return routes.containsKey(uid);
+    }
+
+    /**
+     * 在线 uid 数
+     */
+    public int size() {
+        return routes.size();
+    }
+
+    public void forEach(BiConsumer<String, Channel> action) {
+        routes.forEach((uid, value) -> {
+            if (value instanceof Channel) {
+                action.accept(uid, (Channel) value);
+            } else {
+                for (Channel channel : (Channel[]) value) {
+                    action.accept(uid, channel);
+                }
+            }
+        });
+    }
+
+    private static int indexOf(Channel[] channels, Channel channel) {
+        for (int i = 0; i < channels.length; i++) {
+            if (channels[i] == channel) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
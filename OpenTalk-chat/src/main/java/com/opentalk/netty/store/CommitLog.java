@@ -0,0 +1,535 @@
+package com.opentalk.netty.store;
+
+import com.opentalk.netty.metrics.LatencyHistogram;
+import com.opentalk.netty.metrics.MetricsSource;
+import com.opentalk.netty.metrics.PrometheusWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分段、只追加的提交日志。每条记录分配一个连续递增的 offset，写入就是在当前分段的 mmap 区域末尾顺序拷贝，
+ * 不做读-改-写，也不在写路径上发起系统调用；分段写满后滚动到以下一个 offset 命名的新分段。
+ * <p>
+ * 组提交：追加只写入页缓存，由单独的刷盘线程按 flushInterval 周期 force；
+ * 需要确认持久化的调用方通过 {@link #awaitDurable} 拿到 future，有等待者时刷盘线程连续刷盘，
+ * 一次 fsync 期间到达的追加合并到下一次，fsync 次数与写入条数无关。
+ * <p>
+ * 启动时按分段恢复，截断末尾残缺的记录（见 {@link Segment#recover}）。
+ * <p>
+ * 刷盘线程同时负责三件后台工作：提前创建并预触下一个分段，滚动时只需改名；
+ * 按保留时长和总大小删除最旧的已封存分段（见 {@link #enforceRetention}）；
+ * 解除已删除分段的映射：{@link #read} 返回映射区域上的视图，读方在 {@link #beginRead} 与 {@link #endRead} 之间使用视图，
+ * 分段移出列表后，刷盘线程等到某一时刻没有进行中的读取再解除映射，此后开始的读取已拿不到被删除的分段。
+ * <p>
+ * 追加锁是全局的：房间消息与点对点消息在各 worker event loop 上内联追加，多个 event loop 同时追加时会互相等待。
+ * 锁内只有一次内存拷贝（编码进映射区域），持有时间为微秒级，滚动的建文件与 mmap 也已移到刷盘线程；
+ * 竞争次数记在 opentalk_commitlog_append_contended_total，持续升高时应把追加移出 I/O 线程或按房间拆分日志。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Slf4j
+public class CommitLog implements MetricsSource, Closeable {
+
+    private static final CompletableFuture<Void> DURABLE = CompletableFuture.completedFuture(null);
+    private static final long RETENTION_CHECK_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * 把 payload 写入 out，写入字节数必须等于追加时声明的长度
+     */
+    public interface PayloadWriter {
+        void write(ByteBuf out);
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int indexIntervalBytes;
+    private final long flushIntervalNanos;
+    private final long retentionMillis;
+    private final long retentionBytes;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    /**
+     * 进行中的读取数，见 {@link #beginRead}
+     */
+    private final AtomicInteger readers = new AtomicInteger();
+    /**
+     * 已移出分段列表、等待解除映射的分段
+     */
+    private final ConcurrentLinkedQueue<Segment> retired = new ConcurrentLinkedQueue<>();
+    /**
+     * 刷盘线程私有：已从 retired 取出、等待没有读方时解除映射的分段
+     */
+    private final List<Segment> unmapping = new ArrayList<>();
+    private final AtomicInteger retiredCount = new AtomicInteger();
+    /**
+     * 按 baseOffset 升序，写时复制
+     */
+    private volatile Segment[] segments;
+    /**
+     * 当前写入的分段，只在追加锁内访问
+     */
+    private Segment active;
+    /**
+     * 刷盘线程预先准备好的下一个分段，由追加锁内的滚动取走
+     */
+    private volatile Segment standby;
+    private long lastRetentionCheck;
+    /**
+     * 下一条记录的 offset，小于它的记录对读方可见
+     */
+    private volatile long endOffset;
+    /**
+     * 小于它的记录已经 fsync
+     */
+    private volatile long durableOffset;
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Void>> waiters = new ConcurrentSkipListMap<>();
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    private final LongAdder appendedBytes = new LongAdder();
+    private final LongAdder appendContended = new LongAdder();
+    private final LatencyHistogram fsyncLatency = new LatencyHistogram();
+
+    /**
+     * @param segmentBytes       单个分段文件的大小，预分配
+     * @param indexIntervalBytes 稀疏索引的间隔字节数
+     * @param flushIntervalMillis 没有等待者时的周期刷盘间隔
+     * @param retentionMillis    已封存分段的保留时长，0 表示不按时间清理
+     * @param retentionBytes     全部分段文件的总大小上限，0 表示不按大小清理
+     */
+    public CommitLog(Path dir, int segmentBytes, int indexIntervalBytes, long flushIntervalMillis,
+                     long retentionMillis, long retentionBytes) throws IOException {
+        if (segmentBytes <= Segment.RECORD_HEADER || indexIntervalBytes <= 0 || flushIntervalMillis <= 0
+                || retentionMillis < 0 || retentionBytes < 0) {
+            throw new IllegalArgumentException("invalid commit log options: segmentBytes=" + segmentBytes
+                    + ", indexIntervalBytes=" + indexIntervalBytes + ", flushIntervalMillis=" + flushIntervalMillis
+                    + ", retentionMillis=" + retentionMillis + ", retentionBytes=" + retentionBytes);
+        }
+        this.dir = Files.createDirectories(dir);
+        this.segmentBytes = segmentBytes;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.retentionMillis = retentionMillis;
+        this.retentionBytes = retentionBytes;
+        this.segments = recover();
+        this.active = segments[segments.length - 1];
+        this.endOffset = active.nextOffset();
+        this.durableOffset = endOffset;
+        this.lastRetentionCheck = System.currentTimeMillis();
+        log.info("commit log {} opened with {} segment(s), offsets [{}, {})", dir, segments.length, segments[0].baseOffset, endOffset);
+        this.flusher = new Thread(this::flushLoop, "commitLogFlusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    private Segment[] recover() throws IOException {
+        // 上次未启用的预备分段只是预触过的空文件
+        Files.deleteIfExists(dir.resolve(Segment.STANDBY_LOG));
+        Files.deleteIfExists(dir.resolve(Segment.STANDBY_INDEX));
+        List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + Segment.LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - Segment.LOG_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("ignore unexpected file in commit log directory: {}", file);
+                }
+            }
+        }
+        bases.sort(null);
+        List<Segment> opened = new ArrayList<>(bases.size() + 1);
+        for (Long base : bases) {
+            opened.add(new Segment(dir, base, segmentBytes, indexIntervalBytes));
+        }
+        for (int i = 0; i < opened.size(); i++) {
+            Segment segment = opened.get(i);
+            boolean last = i == opened.size() - 1;
+            long next = segment.recover(last);
+            if (last) {
+                break;
+            }
+            segment.sealedMillis = Files.getLastModifiedTime(segment.logPath).toMillis();
+            long successor = opened.get(i + 1).baseOffset;
+            if (next != successor) {
+                next = segment.recover(true);
+            }
+            if (next != successor) {
+                // 已封存分段中间残缺：之后的分段不可能已经持久化确认过，一并丢弃
+                log.warn("commit log segment {} is torn at offset {}, dropping {} later segment(s)", segment.logPath, next, opened.size() - i - 1);
+                for (Segment later : opened.subList(i + 1, opened.size())) {
+                    later.delete();
+                    later.unmap();
+                }
+                opened.subList(i + 1, opened.size()).clear();
+                break;
+            }
+        }
+        if (opened.isEmpty()) {
+            opened.add(new Segment(dir, 0, segmentBytes, indexIntervalBytes));
+        }
+        return opened.toArray(new Segment[0]);
+    }
+
+    /**
+     * 追加一条记录，返回其 offset。writer 在追加锁内把 payload 直接写入映射区域，不经过中间缓冲。
+     * 返回时记录已对读方可见，但不保证已落盘，需要确认时调用 {@link #awaitDurable}。
+     */
+    public long append(int length, PayloadWriter writer) {
+        if (length < 0 || length > segmentBytes - Segment.RECORD_HEADER) {
+            throw new IllegalArgumentException("record length " + length + " exceeds segment size " + segmentBytes);
+        }
+        if (!appendLock.tryLock()) {
+            appendContended.increment();
+            appendLock.lock();
+        }
+        try {
+            if (closed) {
+                throw new IllegalStateException("commit log is closed");
+            }
+            if (!active.fits(length)) {
+                roll();
+            }
+            ByteBuf out = Unpooled.wrappedBuffer(active.payloadRegion(length)).clear();
+            writer.write(out);
+            if (out.writerIndex() != length) {
+                throw new IllegalStateException("payload writer wrote " + out.writerIndex() + " bytes, expected " + length);
+            }
+            long offset = endOffset;
+            active.commit(offset, length);
+            endOffset = offset + 1;
+            appendedBytes.add(length);
+            return offset;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long append(ByteBuf payload) {
+        int length = payload.readableBytes();
+        return append(length, out -> out.writeBytes(payload, payload.readerIndex(), length));
+    }
+
+    private void roll() {
+        Segment next = null;
+        Segment prepared = standby;
+        if (prepared != null) {
+            standby = null;
+            try {
+                next = prepared.activate(dir, endOffset);
+            } catch (IOException e) {
+                log.warn("activate standby commit log segment failed, creating one inline", e);
+                deleteQuietly(prepared);
+                prepared.unmap();
+            }
+        }
+        if (next == null) {
+            try {
+                next = new Segment(dir, endOffset, segmentBytes, indexIntervalBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("create commit log segment failed at offset " + endOffset, e);
+            }
+        }
+        active.sealedMillis = System.currentTimeMillis();
+        Segment[] current = segments;
+        Segment[] rolled = Arrays.copyOf(current, current.length + 1);
+        rolled[current.length] = next;
+        segments = rolled;
+        active = next;
+        LockSupport.unpark(flusher);
+    }
+
+    /**
+     * 读取 offset 对应记录的 payload，返回映射区域上的只读视图；offset 不存在或已被清理时返回 null。
+     * 视图只能在 {@link #beginRead} 与 {@link #endRead} 之间使用，之后所在分段可能已被删除并解除映射
+     */
+    public ByteBuffer read(long offset) {
+        if (offset >= endOffset) {
+            return null;
+        }
+        Segment[] current = segments;
+        int low = 0, high = current.length - 1, found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (current[mid].baseOffset <= offset) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? null : current[found].read(offset);
+    }
+
+    /**
+     * 开始一次读取，必须与 {@link #endRead} 成对调用；期间通过 {@link #read} 拿到的视图不会被解除映射。
+     * 读取应只做拷贝或解码，不要跨越阻塞或异步回调持有视图，否则已删除分段的映射会一直无法释放
+     */
+    public void beginRead() {
+        readers.incrementAndGet();
+    }
+
+    public void endRead() {
+        readers.decrementAndGet();
+    }
+
+    /**
+     * offset 及之前的记录全部落盘后完成；offset 必须是已追加的记录
+     */
+    public CompletableFuture<Void> awaitDurable(long offset) {
+        if (offset < durableOffset) {
+            return DURABLE;
+        }
+        if (offset >= endOffset) {
+            throw new IllegalArgumentException("offset " + offset + " has not been appended");
+        }
+        CompletableFuture<Void> future = waiters.computeIfAbsent(offset, key -> new CompletableFuture<>());
+        // 刷盘线程先推进 durableOffset 再唤醒等待者，这里复查避免错过唤醒
+        if (offset < durableOffset) {
+            waiters.remove(offset, future);
+            future.complete(null);
+        } else if (closed) {
+            future.completeExceptionally(new IllegalStateException("commit log is closed"));
+        } else {
+            LockSupport.unpark(flusher);
+        }
+        return future;
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            if (waiters.isEmpty()) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            try {
+                flush();
+                unmapRetired();
+                if (waiters.isEmpty()) {
+                    prepareStandby();
+                    long now = System.currentTimeMillis();
+                    if (now - lastRetentionCheck >= RETENTION_CHECK_MILLIS) {
+                        lastRetentionCheck = now;
+                        enforceRetention(now);
+                    }
+                }
+            } catch (Throwable e) {
+                log.error("commit log flush failed", e);
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+    }
+
+    /**
+     * 先把已移出列表的分段取到私有列表，再检查读方：此时仍在进行的读取可能持有它们的视图，计数为 0 说明这些读取都已结束，
+     * 之后开始的读取读到的是新的分段列表，拿不到这些分段
+     */
+    private void unmapRetired() {
+        for (Segment segment; (segment = retired.poll()) != null; ) {
+            unmapping.add(segment);
+        }
+        if (unmapping.isEmpty() || readers.get() != 0) {
+            return;
+        }
+        for (Segment segment : unmapping) {
+            segment.unmap();
+        }
+        retiredCount.addAndGet(-unmapping.size());
+        unmapping.clear();
+    }
+
+    /**
+     * 刷盘线程是 standby 唯一的写入方（置为非空），追加锁内的滚动是唯一的取走方
+     */
+    private void prepareStandby() throws IOException {
+        if (standby == null && !closed) {
+            standby = Segment.standby(dir, segmentBytes, indexIntervalBytes);
+        }
+    }
+
+    private void flush() {
+        long target = endOffset;
+        Segment[] current = segments;
+        long start = System.nanoTime();
+        boolean forced = false;
+        // 封存的分段 force 一次后不再变脏，脏分段总是连续地位于末尾
+        for (int i = current.length - 1; i >= 0; i--) {
+            Segment segment = current[i];
+            if (!segment.dirty) {
+                if (i < current.length - 1) {
+                    break;
+                }
+                continue;
+            }
+            segment.dirty = false;
+            try {
+                segment.force();
+            } catch (RuntimeException e) {
+                segment.dirty = true;
+                throw e;
+            }
+            forced = true;
+        }
+        if (forced) {
+            fsyncLatency.record(System.nanoTime() - start);
+        }
+        durableOffset = target;
+        Map.Entry<Long, CompletableFuture<Void>> entry;
+        while ((entry = waiters.firstEntry()) != null && entry.getKey() < target) {
+            waiters.remove(entry.getKey(), entry.getValue());
+            entry.getValue().complete(null);
+        }
+    }
+
+    /**
+     * 按保留策略删除最旧的已封存分段，返回删除的分段数；活跃分段从不删除。
+     * 超过总大小上限，或封存时间早于 now - retentionMillis 的分段依次删除，直到遇到第一个应保留的分段。
+     */
+    public int enforceRetention(long now) {
+        if (retentionMillis == 0 && retentionBytes == 0) {
+            return 0;
+        }
+        Segment[] current = segments;
+        long total = 0;
+        for (Segment segment : current) {
+            total += segment.capacity();
+        }
+        int drop = 0;
+        while (drop < current.length - 1) {
+            Segment oldest = current[drop];
+            boolean oversize = retentionBytes > 0 && total > retentionBytes;
+            boolean expired = retentionMillis > 0 && oldest.sealedMillis + retentionMillis <= now;
+            if (!oversize && !expired) {
+                break;
+            }
+            total -= oldest.capacity();
+            drop++;
+        }
+        return drop == 0 ? 0 : deleteBefore(current[drop].baseOffset);
+    }
+
+    /**
+     * 删除全部记录都小于 offset 的已封存分段。文件立即删除，映射由刷盘线程在没有读方时解除，正在读取的视图不受影响
+     */
+    public int deleteBefore(long offset) {
+        appendLock.lock();
+        try {
+            Segment[] current = segments;
+            int keep = 0;
+            while (keep < current.length - 1 && current[keep + 1].baseOffset <= offset) {
+                keep++;
+            }
+            if (keep == 0) {
+                return 0;
+            }
+            segments = Arrays.copyOfRange(current, keep, current.length);
+            // 先发布新的分段列表再交给刷盘线程，见 unmapRetired
+            for (int i = 0; i < keep; i++) {
+                deleteQuietly(current[i]);
+                retired.add(current[i]);
+            }
+            retiredCount.addAndGet(keep);
+            log.info("commit log deleted {} segment(s) before offset {}", keep, segments[0].baseOffset);
+            return keep;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private static void deleteQuietly(Segment segment) {
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            log.warn("delete commit log segment {} failed", segment.logPath, e);
+        }
+    }
+
+    public long firstOffset() {
+        return segments[0].baseOffset;
+    }
+
+    public long endOffset() {
+        return endOffset;
+    }
+
+    public long durableOffset() {
+        return durableOffset;
+    }
+
+    /**
+     * 已删除但映射尚未解除的分段数
+     */
+    public int retiredSegments() {
+        return retiredCount.get();
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            appendLock.unlock();
+        }
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        IllegalStateException cause = new IllegalStateException("commit log is closed");
+        waiters.values().forEach(future -> future.completeExceptionally(cause));
+        waiters.clear();
+        // 在用的分段不解除映射：读方可能仍持有映射区域上的视图，映射随 GC 释放
+        unmapRetired();
+        Segment prepared = standby;
+        if (prepared != null) {
+            standby = null;
+            deleteQuietly(prepared);
+            prepared.unmap();
+        }
+        log.info("commit log {} closed at offset {}", dir, endOffset);
+    }
+
+    @Override
+    public void writeTo(PrometheusWriter writer) {
+        writer.gauge("opentalk_commitlog_end_offset", "Next commit log offset to be assigned", endOffset)
+                .gauge("opentalk_commitlog_durable_offset", "Commit log offsets below this are fsynced", durableOffset)
+                .gauge("opentalk_commitlog_segments", "Commit log segment files", segments.length)
+                .gauge("opentalk_commitlog_retired_segments", "Deleted commit log segments still mapped", retiredCount.get())
+                .counter("opentalk_commitlog_append_contended_total", "Appends that waited for the append lock", appendContended.sum())
+                .counter("opentalk_commitlog_bytes_total", "Payload bytes appended to the commit log", appendedBytes.sum())
+                .summary("opentalk_commitlog_fsync_latency_seconds", "Time to force dirty commit log segments", fsyncLatency.snapshot());
+    }
+
+    @Override
+    public String toString() {
+        return "CommitLog{dir=" + dir + ", segments=" + segments.length + ", endOffset=" + endOffset
+                + ", durableOffset=" + durableOffset + "}";
+    }
+}
@@ -0,0 +1,68 @@
+package com.opentalk.netty.store;
+
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.message.MetaMessage;
+import io.netty.buffer.Unpooled;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 聊天消息在提交日志上的存取。记录的 payload 就是消息未压缩的线上帧，
+ * 追加时按 {@link MessageCodec#computeFrameSize} 预留空间后直接编码进映射区域，读取时按线上格式解码。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class MessageLog {
+
+    private final CommitLog commitLog;
+
+    public MessageLog(CommitLog commitLog) {
+        this.commitLog = commitLog;
+    }
+
+    /**
+     * 追加消息并返回 offset，msg 的所有权仍归调用方
+     */
+    public long append(MetaMessage msg) {
+        int size = MessageCodec.computeFrameSize(msg);
+        return commitLog.append(size, out -> MessageCodec.encode(out, msg));
+    }
+
+    /**
+     * 解码 offset 处的消息，消息体拷贝到堆上，不引用映射区域；不存在时返回 null，返回的消息由调用方 release
+     */
+    public MetaMessage read(long offset) {
+        commitLog.beginRead();
+        try {
+            ByteBuffer payload = commitLog.read(offset);
+            return payload == null ? null : MessageCodec.decode(Unpooled.wrappedBuffer(payload));
+        } finally {
+            commitLog.endRead();
+        }
+    }
+
+    /**
+     * offset 处消息的线上帧（未压缩），不解码；返回映射区域的只读切片，不存在时返回 null。
+     * 只能在 {@link #beginRead} 与 {@link #endRead} 之间调用并使用返回的切片
+     */
+    public ByteBuffer readFrame(long offset) {
+        return commitLog.read(offset);
+    }
+
+    /**
+     * 见 {@link CommitLog#beginRead}
+     */
+    public void beginRead() {
+        commitLog.beginRead();
+    }
+
+    public void endRead() {
+        commitLog.endRead();
+    }
+
+    public CommitLog getCommitLog() {
+        return commitLog;
+    }
+}
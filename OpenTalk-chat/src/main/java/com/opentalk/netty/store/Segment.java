@@ -0,0 +1,351 @@
+package com.opentalk.netty.store;
+
+import io.netty.util.internal.PlatformDependent;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32C;
+
+/**
+ * 提交日志的一个分段：预分配定长的数据文件与稀疏索引文件，两者都以 mmap 方式读写。
+ * <p>
+ * 记录格式：[int 记录总长][int crc32c][long offset][payload]，总长包含 16 字节记录头，
+ * 因此预分配文件中未写入的全零区域不会被误认为记录。crc 覆盖 offset 与 payload。
+ * <p>
+ * 索引每隔 indexIntervalBytes 字节记一项 [int 相对 offset][int 文件位置]，查找时二分定位后顺序扫描。
+ * 写入只在 {@link CommitLog} 的追加锁内进行；读方只访问 {@link #size} 之前的数据。
+ * <p>
+ * 删除只移除文件；映射由 {@link CommitLog} 在确认没有读方还持有视图之后通过 {@link #unmap} 解除，不等 GC。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+final class Segment {
+
+    static final int RECORD_HEADER = 16;
+    static final int INDEX_ENTRY = 8;
+
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx";
+    static final String STANDBY_LOG = "standby.log.tmp";
+    static final String STANDBY_INDEX = "standby.idx.tmp";
+    private static final int PAGE_SIZE = 4096;
+
+    final long baseOffset;
+    final Path logPath;
+    final Path indexPath;
+    private final int capacity;
+    private final int indexIntervalBytes;
+    private final MappedByteBuffer log;
+    private final MappedByteBuffer index;
+    private final int indexCapacity;
+
+    /**
+     * 已写入且对读方可见的字节数
+     */
+    private volatile int size;
+    private volatile int indexCount;
+    private int bytesSinceIndex;
+    private long nextOffset;
+    /**
+     * 上次 force 之后是否有新写入，由刷盘线程清除
+     */
+    volatile boolean dirty;
+    /**
+     * 封存时间，按时间清理时据此判断；恢复时打开的已封存分段取文件修改时间
+     */
+    volatile long sealedMillis;
+    private boolean unmapped;
+
+    Segment(Path dir, long baseOffset, int capacity, int indexIntervalBytes) throws IOException {
+        this(baseOffset, dir.resolve(fileName(baseOffset, LOG_SUFFIX)), dir.resolve(fileName(baseOffset, INDEX_SUFFIX)),
+                capacity, indexIntervalBytes);
+    }
+
+    private Segment(long baseOffset, Path logPath, Path indexPath, int capacity, int indexIntervalBytes) throws IOException {
+        this(baseOffset, logPath, indexPath, indexIntervalBytes, map(logPath, capacity),
+                map(indexPath, (capacity / indexIntervalBytes + 1) * INDEX_ENTRY));
+    }
+
+    private Segment(long baseOffset, Path logPath, Path indexPath, int indexIntervalBytes,
+                    MappedByteBuffer log, MappedByteBuffer index) {
+        this.baseOffset = baseOffset;
+        this.logPath = logPath;
+        this.indexPath = indexPath;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.log = log;
+        this.index = index;
+        // 已存在的文件以实际映射长度为准，容量配置调整后旧分段仍能打开
+        this.capacity = log.capacity();
+        this.indexCapacity = index.capacity() / INDEX_ENTRY;
+        this.nextOffset = baseOffset;
+    }
+
+    /**
+     * 预备分段：以临时文件名创建并逐页预触，滚动时由 {@link #activate} 改名启用，
+     * 追加路径上不再有建文件、mmap 和首次写入的缺页
+     */
+    static Segment standby(Path dir, int capacity, int indexIntervalBytes) throws IOException {
+        Segment segment = new Segment(-1, dir.resolve(STANDBY_LOG), dir.resolve(STANDBY_INDEX), capacity, indexIntervalBytes);
+        segment.preTouch();
+        return segment;
+    }
+
+    /**
+     * 按 baseOffset 改名启用预备分段，映射随文件改名保留
+     */
+    Segment activate(Path dir, long baseOffset) throws IOException {
+        Path activeLog = dir.resolve(fileName(baseOffset, LOG_SUFFIX));
+        Path activeIndex = dir.resolve(fileName(baseOffset, INDEX_SUFFIX));
+        Files.move(indexPath, activeIndex, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(logPath, activeLog, StandardCopyOption.ATOMIC_MOVE);
+        return new Segment(baseOffset, activeLog, activeIndex, indexIntervalBytes, log, index);
+    }
+
+    /**
+     * 每页写一个 0，让页表和页缓存提前就位；只用于还没有任何记录的新文件
+     */
+    private void preTouch() {
+        for (int i = 0; i < capacity; i += PAGE_SIZE) {
+            log.put(i, (byte) 0);
+        }
+        for (int i = 0; i < index.capacity(); i += PAGE_SIZE) {
+            index.put(i, (byte) 0);
+        }
+    }
+
+    static String fileName(long baseOffset, String suffix) {
+        return String.format("%020d%s", baseOffset, suffix);
+    }
+
+    private static MappedByteBuffer map(Path path, int length) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (file.length() < length) {
+                file.setLength(length);
+            }
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+        }
+    }
+
+    /**
+     * 剩余空间是否能容纳 payloadLength 字节的记录
+     */
+    boolean fits(int payloadLength) {
+        return (long) size + RECORD_HEADER + payloadLength <= capacity;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int maxPayload() {
+        return capacity - RECORD_HEADER;
+    }
+
+    long nextOffset() {
+        return nextOffset;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 在 position 处写入记录头并发布，payload 须已写入 position + RECORD_HEADER 起的区域
+     */
+    void commit(long offset, int payloadLength) {
+        int position = size;
+        ByteBuffer buf = log.duplicate();
+        buf.putLong(position + 8, offset);
+        buf.putInt(position + 4, crc(buf, position, payloadLength));
+        buf.putInt(position, RECORD_HEADER + payloadLength);
+        if (indexCount == 0 || bytesSinceIndex >= indexIntervalBytes) {
+            appendIndex(offset, position);
+        }
+        bytesSinceIndex += RECORD_HEADER + payloadLength;
+        nextOffset = offset + 1;
+        dirty = true;
+        size = position + RECORD_HEADER + payloadLength;
+    }
+
+    /**
+     * 当前写入位置之后可供写 payload 的缓冲区视图，长度为 payloadLength
+     */
+    ByteBuffer payloadRegion(int payloadLength) {
+        ByteBuffer buf = log.duplicate();
+        int start = size + RECORD_HEADER;
+        buf.limit(start + payloadLength).position(start);
+        return buf.slice();
+    }
+
+    private void appendIndex(long offset, int position) {
+        int count = indexCount;
+        if (count >= indexCapacity) {
+            return;
+        }
+        index.putInt(count * INDEX_ENTRY, (int) (offset - baseOffset));
+        index.putInt(count * INDEX_ENTRY + 4, position);
+        indexCount = count + 1;
+        bytesSinceIndex = 0;
+    }
+
+    private static int crc(ByteBuffer buf, int position, int payloadLength) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer view = buf.duplicate();
+        view.limit(position + RECORD_HEADER + payloadLength).position(position + 8);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 读取 offset 对应记录的 payload（只读视图，不拷贝），不存在时返回 null
+     */
+    ByteBuffer read(long offset) {
+        int end = size;
+        int position = floorPosition(offset);
+        ByteBuffer buf = log.duplicate();
+        while (position >= 0 && position + RECORD_HEADER <= end) {
+            int length = buf.getInt(position);
+            long recordOffset = buf.getLong(position + 8);
+            if (recordOffset == offset) {
+                buf.limit(position + length).position(position + RECORD_HEADER);
+                return buf.slice().asReadOnlyBuffer();
+            }
+            if (recordOffset > offset) {
+                return null;
+            }
+            position += length;
+        }
+        return null;
+    }
+
+    /**
+     * 不大于 offset 的最近索引项指向的文件位置
+     */
+    private int floorPosition(long offset) {
+        int relative = (int) (offset - baseOffset);
+        int low = 0, high = indexCount - 1, found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (index.getInt(mid * INDEX_ENTRY) <= relative) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found < 0 ? 0 : index.getInt(found * INDEX_ENTRY + 4);
+    }
+
+    /**
+     * 启动恢复：顺序校验记录直到第一条残缺记录（长度、offset 不连续或 crc 不符），截断其后的数据与索引，
+     * 返回恢复后的下一个 offset。
+     * <p>
+     * 未 fsync 的页可能乱序落盘，索引项有效不代表它之前的记录都完整，因此 full 为 true 时从头校验；
+     * 否则从最后一个指向有效记录的索引项开始，只用于已封存的分段，由调用方再以后继分段的起始 offset 验证。
+     */
+    long recover(boolean full) {
+        ByteBuffer buf = log.duplicate();
+        int count = 0;
+        if (!full) {
+            for (int i = countIndexEntries() - 1; i >= 0; i--) {
+                if (validRecord(buf, index.getInt(i * INDEX_ENTRY + 4), baseOffset + index.getInt(i * INDEX_ENTRY)) > 0) {
+                    count = i + 1;
+                    break;
+                }
+            }
+        }
+        int position = count == 0 ? 0 : index.getInt((count - 1) * INDEX_ENTRY + 4);
+        long expected = count == 0 ? baseOffset : baseOffset + index.getInt((count - 1) * INDEX_ENTRY);
+        indexCount = count;
+        bytesSinceIndex = 0;
+        int length;
+        while ((length = validRecord(buf, position, expected)) > 0) {
+            if (indexCount == 0 || bytesSinceIndex >= indexIntervalBytes) {
+                appendIndex(expected, position);
+            }
+            bytesSinceIndex += length;
+            position += length;
+            expected++;
+        }
+        boolean truncated = false;
+        for (int i = Math.max(indexCount, 1); i < indexCapacity && index.getInt(i * INDEX_ENTRY + 4) != 0; i++) {
+            index.putLong(i * INDEX_ENTRY, 0L);
+            truncated = true;
+        }
+        // 抹掉残缺记录的记录头，之后的扫描在此停下
+        if (position + RECORD_HEADER <= capacity && buf.getInt(position) != 0) {
+            buf.putLong(position, 0L);
+            buf.putLong(position + 8, 0L);
+            truncated = true;
+        }
+        nextOffset = expected;
+        size = position;
+        dirty = truncated;
+        return expected;
+    }
+
+    /**
+     * 第一项固定为 (0, 0)，之后各项的文件位置都大于 0，遇到 0 即为末尾
+     */
+    private int countIndexEntries() {
+        if (log.getInt(0) < RECORD_HEADER) {
+            return 0;
+        }
+        int count = 1;
+        while (count < indexCapacity && index.getInt(count * INDEX_ENTRY + 4) != 0) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * position 处是 offset 为 expected 的完整记录时返回记录总长，否则返回 0
+     */
+    private int validRecord(ByteBuffer buf, int position, long expected) {
+        if (position < 0 || position + RECORD_HEADER > capacity) {
+            return 0;
+        }
+        int length = buf.getInt(position);
+        if (length < RECORD_HEADER || position + (long) length > capacity || buf.getLong(position + 8) != expected) {
+            return 0;
+        }
+        return crc(buf, position, length - RECORD_HEADER) == buf.getInt(position + 4) ? length : 0;
+    }
+
+    /**
+     * 索引只用于加速查找，恢复时逐条校验记录，两个文件的落盘先后不影响正确性
+     */
+    void force() {
+        log.force();
+        index.force();
+    }
+
+    /**
+     * 只删除文件，不解除映射：可能仍有读方持有映射区域上的视图，由调用方确认安全后再 {@link #unmap}
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(logPath);
+        Files.deleteIfExists(indexPath);
+    }
+
+    /**
+     * 立即释放映射的虚拟内存与页缓存引用，之后访问映射区域会使进程崩溃；
+     * 只能在分段已不在分段列表中、且没有读方持有其视图时调用，重复调用是空操作
+     */
+    void unmap() {
+        if (unmapped) {
+            return;
+        }
+        unmapped = true;
+        PlatformDependent.freeDirectBuffer(log);
+        PlatformDependent.freeDirectBuffer(index);
+    }
+}
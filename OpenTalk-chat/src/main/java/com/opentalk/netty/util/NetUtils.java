@@ -44,7 +44,7 @@ public class NetUtils {
         InetSocketAddress remoteAddr = (InetSocketAddress) ch.remoteAddress();
         try {
             String ipForwarded = requestHeaders.get("X-Forwarded-For");
-            if (!StringUtils.isEmpty(ipForwarded)) {
+            if (StringUtils.hasLength(ipForwarded)) {
                 String[] ipArr = ipForwarded.split(",");
                 String ip = ipArr[0];
                 if ("0:0:0:0:0:0:0:1".equals(ip)) {
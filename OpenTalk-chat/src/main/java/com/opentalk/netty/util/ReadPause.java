@@ -0,0 +1,57 @@
+package com.opentalk.netty.util;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+/**
+ * 多个处理器共同控制同一连接的 autoRead：每个处理器以各自的原因位暂停读取，
+ * 原因记在 channel 属性的位掩码里，只有所有原因都解除后才恢复读取，
+ * 避免一个处理器恢复读取时覆盖另一个处理器的暂停。
+ * pause 与 resume 需在 channel 的 event loop 上调用。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public final class ReadPause {
+
+    /**
+     * 入站帧超出单连接限流配额
+     */
+    public static final int RATE_LIMIT = 1;
+    /**
+     * 分片消息尚未释放的 chunk 超出内存配额
+     */
+    public static final int STREAM_MEMORY = 1 << 1;
+
+    private static final AttributeKey<Integer> REASONS = AttributeKey.valueOf("readPauseReasons");
+
+    public static void pause(Channel channel, int reason) {
+        Attribute<Integer> attr = channel.attr(REASONS);
+        Integer reasons = attr.get();
+        attr.set((reasons == null ? 0 : reasons) | reason);
+        channel.config().setAutoRead(false);
+    }
+
+    public static void resume(Channel channel, int reason) {
+        Attribute<Integer> attr = channel.attr(REASONS);
+        Integer reasons = attr.get();
+        int remaining = (reasons == null ? 0 : reasons) & ~reason;
+        attr.set(remaining);
+        if (remaining == 0 && channel.isActive()) {
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    /**
+     * 可在任意线程调用，结果可能已过时，只用于过滤不必要的 resume 任务
+     */
+    public static boolean isPaused(Channel channel, int reason) {
+        Integer reasons = channel.attr(REASONS).get();
+        return reasons != null && (reasons & reason) != 0;
+    }
+
+    private ReadPause() {
+    }
+}
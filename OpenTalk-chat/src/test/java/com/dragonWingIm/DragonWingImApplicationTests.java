@@ -1,9 +1,16 @@
 package com.dragonWingIm;
 
+import com.opentalk.ChatApplication;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(classes = ChatApplication.class, properties = {
+        "opentalk.netty.port=0",
+        "opentalk.netty.node-id=1",
+        "opentalk.netty.metrics-port=0",
+        "opentalk.netty.commit-log-dir=",
+        "opentalk.netty.auth-enabled=false"
+})
 class DragonWingImApplicationTests {
 
     @Test
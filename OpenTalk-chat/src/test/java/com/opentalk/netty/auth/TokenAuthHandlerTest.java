@@ -0,0 +1,120 @@
+package com.opentalk.netty.auth;
+
+import com.opentalk.common.auth.ChatTokenCodec;
+import com.opentalk.common.auth.ChatTokenException;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * token 签发与校验，以及握手鉴权的放行、拒绝和密钥轮换后的缓存失效
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class TokenAuthHandlerTest {
+
+    private static final String KEY_1 = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+    private static final String KEY_2 = Base64.getEncoder().encodeToString("fedcba9876543210fedcba9876543210".getBytes());
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static Map<String, String> keys(String... kidAndKey) {
+        Map<String, String> keys = new HashMap<>();
+        for (int i = 0; i < kidAndKey.length; i += 2) {
+            keys.put(kidAndKey[i], kidAndKey[i + 1]);
+        }
+        return keys;
+    }
+
+    private static FullHttpRequest handshake(String token) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/chat?token=" + token);
+    }
+
+    @Test
+    void signedTokenVerifies() {
+        ChatTokenCodec issuer = new ChatTokenCodec(keys("k1", KEY_1), "k1");
+        String token = issuer.sign("user-1", now() + 60);
+        ChatTokenCodec verifier = new ChatTokenCodec(keys("k1", KEY_1), null);
+        assertThat(verifier.verify(token, now()).getUid()).isEqualTo("user-1");
+    }
+
+    @Test
+    void invalidTokensAreRejected() {
+        ChatTokenCodec issuer = new ChatTokenCodec(keys("k1", KEY_1, "k2", KEY_2), "k1");
+        ChatTokenCodec verifier = new ChatTokenCodec(keys("k1", KEY_1), null);
+        String expired = issuer.sign("user-1", now() - 1);
+        assertThatThrownBy(() -> verifier.verify(expired, now())).isInstanceOf(ChatTokenException.class).hasMessageContaining("expired");
+
+        String token = issuer.sign("user-1", now() + 60);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        assertThatThrownBy(() -> verifier.verify(tampered, now())).isInstanceOf(ChatTokenException.class);
+
+        issuer.updateKeys(keys("k1", KEY_1, "k2", KEY_2), "k2");
+        String unknownKid = issuer.sign("user-1", now() + 60);
+        assertThatThrownBy(() -> verifier.verify(unknownKid, now())).isInstanceOf(ChatTokenException.class).hasMessageContaining("unknown kid");
+        assertThatThrownBy(() -> verifier.verify("v1.k1.x", now())).isInstanceOf(ChatTokenException.class);
+        assertThatThrownBy(() -> verifier.verify(null, now())).isInstanceOf(ChatTokenException.class);
+    }
+
+    @Test
+    void validHandshakeBindsUidAndRemovesHandler() {
+        String token = new ChatTokenCodec(keys("k1", KEY_1), "k1").sign("user-1", now() + 60);
+        TokenAuthHandler handler = new TokenAuthHandler(new ChatTokenCodec(keys("k1", KEY_1), null), 16, 60);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        channel.writeInbound(handshake(token));
+        assertThat(channel.attr(TokenAuthHandler.AUTH_UID).get()).isEqualTo("user-1");
+        assertThat(channel.pipeline().get(TokenAuthHandler.class)).isNull();
+        FullHttpRequest forwarded = channel.readInbound();
+        assertThat(forwarded).isNotNull();
+        forwarded.release();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void invalidHandshakeGets401AndClose() {
+        TokenAuthHandler handler = new TokenAuthHandler(new ChatTokenCodec(keys("k1", KEY_1), null), 16, 60);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        channel.writeInbound(handshake("v1.k1.bogus.1.sig"));
+        FullHttpResponse response = channel.readOutbound();
+        assertThat(response.status()).isEqualTo(HttpResponseStatus.UNAUTHORIZED);
+        response.release();
+        assertThat(channel.isOpen()).isFalse();
+        assertThat((Object) channel.readInbound()).isNull();
+    }
+
+    @Test
+    void rotationInvalidatesCachedTokens() {
+        String token = new ChatTokenCodec(keys("k1", KEY_1), "k1").sign("user-1", now() + 60);
+        TokenAuthHandler handler = new TokenAuthHandler(new ChatTokenCodec(keys("k1", KEY_1), null), 16, 60);
+        EmbeddedChannel first = new EmbeddedChannel(handler);
+        first.writeInbound(handshake(token));
+        ((FullHttpRequest) first.readInbound()).release();
+        first.finish();
+
+        // k1 被移出密钥环后，缓存中的 token 也不再放行
+        handler.updateKeys(Collections.singletonMap("k2", KEY_2));
+        EmbeddedChannel second = new EmbeddedChannel(handler);
+        second.writeInbound(handshake(token));
+        FullHttpResponse response = second.readOutbound();
+        assertThat(response.status()).isEqualTo(HttpResponseStatus.UNAUTHORIZED);
+        response.release();
+        assertThat(second.attr(TokenAuthHandler.AUTH_UID).get()).isNull();
+    }
+}
@@ -0,0 +1,168 @@
+package com.opentalk.netty.codec;
+
+import com.opentalk.netty.message.MetaMessage;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 出站合并：同一轮写入合并为批量帧（含广播的预编码帧）、达到条数上限立即封帧、无待合并消息时 flush 不推迟
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class MessageBatchingHandlerTest {
+
+    private static EmbeddedChannel channel(boolean batch, int maxBatchMessages) {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        if (batch) {
+            channel.attr(MessageBatchingHandler.BATCH_ENABLED).set(Boolean.TRUE);
+        }
+        channel.pipeline().addLast(new MessageBatchingHandler(16 * 1024, maxBatchMessages));
+        return channel;
+    }
+
+    private static MetaMessage message(int i) {
+        return MessageCodecTest.message(2, new byte[]{(byte) i});
+    }
+
+    /**
+     * 解出批量帧中每条消息的首个 body 字节，解出的消息随即释放
+     */
+    private static List<Byte> decode(BinaryWebSocketFrame frame) {
+        List<Object> out = new ArrayList<>();
+        MessageCodec.decodeFrame(frame.content(), false, out);
+        frame.release();
+        List<Byte> bodies = new ArrayList<>();
+        for (Object o : out) {
+            MetaMessage msg = (MetaMessage) o;
+            bodies.add(msg.getBody()[0]);
+            msg.release();
+        }
+        return bodies;
+    }
+
+    @Test
+    void writesInOneRoundBecomeOneBatchFrame() {
+        EmbeddedChannel channel = channel(true, 64);
+        ChannelFuture first = channel.write(message(1));
+        ChannelFuture second = channel.write(message(2));
+        channel.write(message(3));
+        channel.flush();
+        // 有待合并的消息时 flush 推迟到已排队任务之后
+        assertThat((Object) channel.readOutbound()).isNull();
+        channel.runPendingTasks();
+
+        BinaryWebSocketFrame frame = channel.readOutbound();
+        assertThat(MessageCodec.isBatch(frame.content())).isTrue();
+        assertThat(decode(frame)).containsExactly((byte) 1, (byte) 2, (byte) 3);
+        assertThat(first.isSuccess()).isTrue();
+        assertThat(second.isSuccess()).isTrue();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    private static BinaryWebSocketFrame encoded(int i, int bodySize) {
+        byte[] body = new byte[bodySize];
+        body[0] = (byte) i;
+        return new BinaryWebSocketFrame(MessageCodec.encode(UnpooledByteBufAllocator.DEFAULT, MessageCodecTest.message(2, body)));
+    }
+
+    @Test
+    void preEncodedFramesJoinTheBatch() {
+        EmbeddedChannel channel = channel(true, 64);
+        // 广播写出的是共享编码结果的 retainedDuplicate，大帧以组件挂载，不拷贝
+        BinaryWebSocketFrame shared = encoded(1, 1024);
+        ChannelFuture first = channel.writeAndFlush(shared.retainedDuplicate());
+        channel.writeAndFlush(message(2));
+        channel.writeAndFlush(encoded(3, 1));
+        channel.runPendingTasks();
+
+        BinaryWebSocketFrame frame = channel.readOutbound();
+        assertThat(MessageCodec.isBatch(frame.content())).isTrue();
+        assertThat(decode(frame)).containsExactly((byte) 1, (byte) 2, (byte) 3);
+        assertThat(first.isSuccess()).isTrue();
+        assertThat(shared.refCnt()).isEqualTo(1);
+        shared.release();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void heartbeatAndBatchFramesPassThroughInOrder() {
+        EmbeddedChannel channel = channel(true, 64);
+        channel.write(encoded(1, 1));
+        List<MetaMessage> msgs = Arrays.asList(message(2), message(3));
+        BinaryWebSocketFrame batch = new BinaryWebSocketFrame(MessageCodec.encodeBatch(UnpooledByteBufAllocator.DEFAULT, msgs, null));
+        msgs.forEach(MetaMessage::release);
+        channel.writeAndFlush(batch);
+        // 不可合并的帧先写出已攒的批次，单条预编码帧原样写出
+        BinaryWebSocketFrame single = channel.readOutbound();
+        assertThat(MessageCodec.isBatch(single.content())).isFalse();
+        assertThat(decode(single)).containsExactly((byte) 1);
+        assertThat((Object) channel.readOutbound()).isSameAs(batch);
+        batch.release();
+
+        EmbeddedChannel plain = channel(false, 64);
+        BinaryWebSocketFrame frame = encoded(4, 1);
+        plain.writeAndFlush(frame);
+        assertThat((Object) plain.readOutbound()).isSameAs(frame);
+        frame.release();
+        assertThat(channel.finish()).isFalse();
+        assertThat(plain.finish()).isFalse();
+    }
+
+    @Test
+    void batchIsSealedAtMessageLimit() {
+        EmbeddedChannel channel = channel(true, 2);
+        channel.write(message(1));
+        channel.write(message(2));
+        channel.write(message(3));
+        channel.flush();
+        channel.runPendingTasks();
+
+        BinaryWebSocketFrame frame = channel.readOutbound();
+        assertThat(decode(frame)).hasSize(2);
+        // 剩下的一条不值得批量帧头，按普通消息交给 encoder
+        MetaMessage last = channel.readOutbound();
+        assertThat(last.getBody()).containsExactly(3);
+        last.release();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void flushWithoutPendingMessagesIsImmediate() {
+        EmbeddedChannel channel = channel(false, 64);
+        MetaMessage msg = message(1);
+        channel.write(msg);
+        channel.flush();
+        assertThat((Object) channel.readOutbound()).isSameAs(msg);
+        msg.release();
+
+        EmbeddedChannel batched = channel(true, 1);
+        batched.write(message(2));
+        batched.flush();
+        MetaMessage sealed = batched.readOutbound();
+        assertThat(sealed.getBody()).containsExactly(2);
+        sealed.release();
+        assertThat(channel.finish()).isFalse();
+        assertThat(batched.finish()).isFalse();
+    }
+
+    @Test
+    void pendingMessagesAreFailedOnClose() {
+        EmbeddedChannel channel = channel(true, 64);
+        ChannelFuture future = channel.write(message(1));
+        channel.pipeline().remove(MessageBatchingHandler.class);
+        assertThat(future.isSuccess()).isFalse();
+        assertThat(future.cause()).isNotNull();
+        channel.finish();
+    }
+}
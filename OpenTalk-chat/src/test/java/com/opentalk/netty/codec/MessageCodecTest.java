@@ -0,0 +1,132 @@
+package com.opentalk.netty.codec;
+
+import com.opentalk.netty.compress.BodyCompressor;
+import com.opentalk.netty.compress.BodyCompressors;
+import com.opentalk.netty.compress.SnappyBodyCompressor;
+import com.opentalk.netty.message.HeaderType;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.message.MetaMessageHead;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 编解码往返：拷贝与零拷贝解码、大块组件挂载、消息体压缩
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class MessageCodecTest {
+
+    private static final ByteBufAllocator ALLOC = UnpooledByteBufAllocator.DEFAULT;
+
+    static MetaMessage message(int cmd, byte[] body, MetaMessageHead... headers) {
+        MetaMessage msg = new MetaMessage();
+        msg.setVersion(1);
+        msg.setCmd(cmd);
+        msg.setHeaders(new ArrayList<>(Arrays.asList(headers)));
+        msg.setBody(body);
+        return msg;
+    }
+
+    @Test
+    void copyDecodeRoundTrip() {
+        byte[] body = "hello".getBytes(StandardCharsets.UTF_8);
+        MetaMessage msg = message(2, body, HeaderType.ofAscii(HeaderType.ROOM_ID, "room-1"),
+                HeaderType.ofLong(HeaderType.MESSAGE_ID, 123456789L));
+        ByteBuf frame = MessageCodec.encode(ALLOC, msg);
+        assertThat(frame.readableBytes()).isEqualTo(MessageCodec.computeFrameSize(msg));
+
+        MetaMessage decoded = MessageCodec.decode(frame);
+        try {
+            assertThat(decoded.getVersion()).isEqualTo(1);
+            assertThat(decoded.getCmd()).isEqualTo(2);
+            assertThat(HeaderType.asciiValue(decoded.header(HeaderType.ROOM_ID))).isEqualTo("room-1");
+            assertThat(HeaderType.longValue(decoded.header(HeaderType.MESSAGE_ID), 0)).isEqualTo(123456789L);
+            assertThat(decoded.getBody()).isEqualTo(body);
+            assertThat(decoded.getFrame()).isNull();
+        } finally {
+            decoded.release();
+            frame.release();
+        }
+    }
+
+    @Test
+    void zeroCopyDecodeRetainsFrameUntilRelease() {
+        byte[] body = new byte[1024];
+        new Random(1).nextBytes(body);
+        byte[] large = new byte[300];
+        Arrays.fill(large, (byte) 'x');
+        MetaMessage msg = message(1, body, new MetaMessageHead(HeaderType.ACK_SACK, large));
+        ByteBuf frame = MessageCodec.encode(ALLOC, msg);
+        assertThat(frame.readableBytes()).isEqualTo(MessageCodec.computeFrameSize(msg));
+
+        MetaMessage decoded = MessageCodec.decodeRetained(frame);
+        assertThat(frame.refCnt()).isEqualTo(2);
+        assertThat(decoded.getBodyBuf()).isNotNull();
+        assertThat(decoded.getBody()).isEqualTo(body);
+        assertThat(HeaderType.bytesValue(decoded.header(HeaderType.ACK_SACK))).isEqualTo(large);
+        decoded.release();
+        assertThat(frame.refCnt()).isEqualTo(1);
+        frame.release();
+    }
+
+    @Test
+    void heartbeatIsTwoBytesAndPongKeepsVersion() {
+        MetaMessage ping = new MetaMessage();
+        ping.setVersion(3);
+        ping.setHeartBeat(true);
+        ByteBuf frame = MessageCodec.encode(ALLOC, ping);
+        assertThat(frame.readableBytes()).isEqualTo(2);
+        assertThat(MessageCodec.isHeartbeat(frame)).isTrue();
+        ByteBuf pong = MessageCodec.pong(frame);
+        assertThat(pong.getByte(0)).isEqualTo((byte) 3);
+        assertThat(MessageCodec.isHeartbeat(pong)).isTrue();
+        frame.release();
+    }
+
+    @Test
+    void compressibleBodyIsCompressedAndRestored() {
+        BodyCompressor snappy = BodyCompressors.get(SnappyBodyCompressor.ID);
+        byte[] body = new byte[8192];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + i % 7);
+        }
+        MetaMessage msg = message(2, body);
+        ByteBuf frame = MessageCodec.encode(ALLOC, msg, snappy);
+        assertThat(frame.readableBytes()).isLessThan(body.length / 2);
+        assertThat(frame.getUnsignedByte(1) & MessageCodec.CODEC_MASK).isNotZero();
+
+        for (boolean zeroCopy : new boolean[]{false, true}) {
+            List<Object> out = new ArrayList<>();
+            MessageCodec.decodeFrame(frame.duplicate(), zeroCopy, out);
+            MetaMessage decoded = (MetaMessage) out.get(0);
+            assertThat(decoded.getBody()).isEqualTo(body);
+            decoded.release();
+        }
+        frame.release();
+    }
+
+    @Test
+    void incompressibleBodyIsSentRaw() {
+        BodyCompressor snappy = BodyCompressors.get(SnappyBodyCompressor.ID);
+        byte[] body = new byte[4096];
+        new Random(7).nextBytes(body);
+        ByteBuf frame = MessageCodec.encode(ALLOC, message(2, body), snappy);
+        assertThat(frame.getUnsignedByte(1) & MessageCodec.CODEC_MASK).isZero();
+        MetaMessage decoded = MessageCodec.decode(frame);
+        assertThat(decoded.getBody()).isEqualTo(body);
+        decoded.release();
+        frame.release();
+    }
+}
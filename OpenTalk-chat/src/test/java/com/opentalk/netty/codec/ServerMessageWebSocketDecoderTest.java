@@ -0,0 +1,93 @@
+package com.opentalk.netty.codec;
+
+import com.opentalk.netty.dispatch.CommandDispatcher;
+import com.opentalk.netty.dispatch.CommandType;
+import com.opentalk.netty.dispatch.ExecutionMode;
+import com.opentalk.netty.handler.NettyCenterHandler;
+import com.opentalk.netty.message.HeaderType;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.session.SessionRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 完整帧解码：截断的消息体或 header 表抛出 CorruptedFrameException，不会交给命令分发器
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class ServerMessageWebSocketDecoderTest {
+
+    private final CommandDispatcher dispatcher = new CommandDispatcher(1, 16);
+    private final List<String> dispatched = new ArrayList<>();
+
+    ServerMessageWebSocketDecoderTest() {
+        dispatcher.register(CommandType.ROOM_CHAT, ExecutionMode.INLINE,
+                (ctx, msg) -> dispatched.add(HeaderType.asciiValue(msg.header(HeaderType.ROOM_ID))));
+    }
+
+    @AfterEach
+    void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    private EmbeddedChannel channel(boolean zeroCopy) {
+        return new EmbeddedChannel(new ServerMessageWebSocketDecoder(zeroCopy),
+                new NettyCenterHandler(dispatcher, new SessionRegistry(16), null, null, null));
+    }
+
+    private static ByteBuf frame() {
+        return MessageCodec.encode(UnpooledByteBufAllocator.DEFAULT, MessageCodecTest.message(CommandType.ROOM_CHAT,
+                "hello".getBytes(StandardCharsets.UTF_8), HeaderType.ofAscii(HeaderType.ROOM_ID, "room-1")));
+    }
+
+    private static void assertRejected(EmbeddedChannel channel, ByteBuf truncated) {
+        assertThatThrownBy(() -> channel.writeInbound(new BinaryWebSocketFrame(truncated)))
+                .isInstanceOf(CorruptedFrameException.class);
+        assertThat(truncated.refCnt()).isZero();
+    }
+
+    @Test
+    void truncatedFramesAreNeverDispatched() {
+        for (boolean zeroCopy : new boolean[]{false, true}) {
+            dispatched.clear();
+            EmbeddedChannel channel = channel(zeroCopy);
+
+            ByteBuf body = frame();
+            assertRejected(channel, body.writerIndex(body.writerIndex() - 2));
+            // 截断在 header 表中间：固定前缀 + 1 字节 header 数 + 2 字节 header 头 + 部分 room id
+            ByteBuf head = frame();
+            assertRejected(channel, head.writerIndex(head.readerIndex() + 4 + 1 + 2 + 3));
+            assertThat(dispatched).isEmpty();
+
+            // 之后的完整帧照常分发
+            channel.writeInbound(new BinaryWebSocketFrame(frame()));
+            assertThat(dispatched).containsExactly("room-1");
+            assertThat(channel.finish()).isFalse();
+        }
+    }
+
+    @Test
+    void headerTableLongerThanLengthIsRejected() {
+        EmbeddedChannel channel = channel(false);
+        ByteBuf frame = frame();
+        // 长度字段（第 4 个字节，单字节 varint）改小到装不下 header 表
+        frame.setByte(frame.readerIndex() + 3, 1);
+        assertRejected(channel, frame);
+        assertThat(dispatched).isEmpty();
+        assertThat(channel.finish()).isFalse();
+    }
+}
@@ -0,0 +1,156 @@
+package com.opentalk.netty.codec;
+
+import com.opentalk.netty.message.HeaderType;
+import com.opentalk.netty.message.MessageBodyChunk;
+import com.opentalk.netty.message.MetaMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 分片消息：header 先行、chunk 按序送达、跨分片的 header 表、在途内存背压以及出错后的状态清理
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class StreamingMessageWebSocketDecoderTest {
+
+    private static byte[] body(int size) {
+        byte[] body = new byte[size];
+        new Random(size).nextBytes(body);
+        return body;
+    }
+
+    private static byte[] encode(byte[] body) {
+        MetaMessage msg = MessageCodecTest.message(2, body, HeaderType.ofAscii(HeaderType.ROOM_ID, "room-1"));
+        ByteBuf frame = MessageCodec.encode(UnpooledByteBufAllocator.DEFAULT, msg);
+        byte[] bytes = ByteBufUtil.getBytes(frame);
+        frame.release();
+        return bytes;
+    }
+
+    private static BinaryWebSocketFrame first(byte[] frame, int from, int to) {
+        return new BinaryWebSocketFrame(false, 0, UnpooledByteBufAllocator.DEFAULT.buffer().writeBytes(frame, from, to - from));
+    }
+
+    private static ContinuationWebSocketFrame next(byte[] frame, int from, int to, boolean last) {
+        return new ContinuationWebSocketFrame(last, 0, UnpooledByteBufAllocator.DEFAULT.buffer().writeBytes(frame, from, to - from));
+    }
+
+    @Test
+    void completeFrameDecodesAsUsual() {
+        EmbeddedChannel channel = new EmbeddedChannel(new StreamingMessageWebSocketDecoder(true, 1 << 20, 1 << 20));
+        byte[] body = body(100);
+        byte[] frame = encode(body);
+        channel.writeInbound(new BinaryWebSocketFrame(UnpooledByteBufAllocator.DEFAULT.buffer().writeBytes(frame)));
+        MetaMessage msg = channel.readInbound();
+        assertThat(msg.isStreaming()).isFalse();
+        assertThat(msg.getBody()).isEqualTo(body);
+        msg.release();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void fragmentsAreDeliveredAsOrderedChunks() {
+        EmbeddedChannel channel = new EmbeddedChannel(new StreamingMessageWebSocketDecoder(true, 1 << 20, 1 << 20));
+        byte[] body = body(10_000);
+        byte[] frame = encode(body);
+        // 首个分片只有 2 字节，header 表需要跨分片拼装
+        channel.writeInbound(first(frame, 0, 2));
+        assertThat((Object) channel.readInbound()).isNull();
+        channel.writeInbound(next(frame, 2, 4000, false));
+        channel.writeInbound(next(frame, 4000, 8000, false));
+        channel.writeInbound(next(frame, 8000, frame.length, true));
+
+        MetaMessage head = channel.readInbound();
+        assertThat(head.isStreaming()).isTrue();
+        assertThat(HeaderType.asciiValue(head.header(HeaderType.ROOM_ID))).isEqualTo("room-1");
+        head.release();
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        MessageBodyChunk chunk;
+        boolean last = false;
+        while ((chunk = channel.readInbound()) != null) {
+            assertThat(last).isFalse();
+            assertThat(chunk.offset()).isEqualTo(received.size());
+            received.writeBytes(ByteBufUtil.getBytes(chunk.content()));
+            last = chunk.isLast();
+            chunk.release();
+        }
+        assertThat(last).isTrue();
+        assertThat(received.toByteArray()).isEqualTo(body);
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void readsPauseWhileChunksAreHeldAndResumeOnRelease() {
+        EmbeddedChannel channel = new EmbeddedChannel(new StreamingMessageWebSocketDecoder(true, 4096, 1 << 20));
+        byte[] frame = encode(body(10_000));
+        channel.writeInbound(first(frame, 0, 6000));
+        assertThat(channel.config().isAutoRead()).isFalse();
+
+        MetaMessage head = channel.readInbound();
+        head.release();
+        MessageBodyChunk chunk = channel.readInbound();
+        chunk.release();
+        channel.runPendingTasks();
+        assertThat(channel.config().isAutoRead()).isTrue();
+
+        channel.writeInbound(next(frame, 6000, frame.length, true));
+        chunk = channel.readInbound();
+        assertThat(chunk.isLast()).isTrue();
+        chunk.release();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void continuationWithoutStartIsRejected() {
+        EmbeddedChannel channel = new EmbeddedChannel(new StreamingMessageWebSocketDecoder(true, 1 << 20, 1 << 20));
+        byte[] frame = encode(body(10));
+        assertThatThrownBy(() -> channel.writeInbound(next(frame, 0, frame.length, true)))
+                .isInstanceOf(CorruptedFrameException.class);
+        assertThat(channel.isOpen()).isTrue();
+        channel.finish();
+    }
+
+    @Test
+    void corruptedStreamResetsStateAndClosesChannel() {
+        EmbeddedChannel channel = new EmbeddedChannel(new StreamingMessageWebSocketDecoder(true, 1 << 20, 1 << 20));
+        byte[] frame = encode(body(1000));
+        channel.writeInbound(first(frame, 0, 500));
+        // 第二个分片超出声明的消息体长度
+        byte[] tail = new byte[2000];
+        assertThatThrownBy(() -> channel.writeInbound(next(tail, 0, tail.length, true)))
+                .isInstanceOf(CorruptedFrameException.class);
+        assertThat(channel.isOpen()).isFalse();
+        Object msg;
+        while ((msg = channel.readInbound()) != null) {
+            ReferenceCountUtil.release(msg);
+        }
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void pendingHeadIsReleasedWhenStreamEndsEarly() {
+        EmbeddedChannel channel = new EmbeddedChannel(new StreamingMessageWebSocketDecoder(true, 1 << 20, 1 << 20));
+        byte[] frame = encode(body(10));
+        channel.writeInbound(first(frame, 0, 2));
+        assertThatThrownBy(() -> channel.writeInbound(next(frame, 2, 3, true)))
+                .isInstanceOf(CorruptedFrameException.class);
+        assertThat(channel.isOpen()).isFalse();
+        assertThat(channel.finishAndReleaseAll()).isFalse();
+    }
+}
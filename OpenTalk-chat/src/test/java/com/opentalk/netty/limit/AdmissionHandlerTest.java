@@ -0,0 +1,82 @@
+package com.opentalk.netty.limit;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 建连准入：握手名额在升级完成、连接关闭或握手期限到期时归还，只建连不发请求的连接不会一直占着名额
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class AdmissionHandlerTest {
+
+    private static final long TIMEOUT_MILLIS = 50;
+    private static final InetSocketAddress REMOTE = new InetSocketAddress("10.0.0.1", 40000);
+
+    private final AdmissionStats stats = new AdmissionStats();
+    private final AdmissionHandler handler = new AdmissionHandler(false, 1000, 1000, 1, 1024, TIMEOUT_MILLIS, 1, stats);
+
+    /**
+     * EmbeddedChannel 的远端地址不是 InetSocketAddress，准入按 socket 地址取 IP，需要换成真实地址
+     */
+    private static final class RemoteChannel extends EmbeddedChannel {
+        RemoteChannel(AdmissionHandler handler) {
+            super(handler);
+        }
+
+        @Override
+        protected SocketAddress remoteAddress0() {
+            return REMOTE;
+        }
+    }
+
+    @Test
+    void silentConnectionFreesItsSlotAtTheDeadline() throws InterruptedException {
+        EmbeddedChannel silent = new RemoteChannel(handler);
+        assertThat(silent.isActive()).isTrue();
+        assertThat(handler.handshaking()).isEqualTo(1);
+
+        // 名额被占满时新连接直接关闭
+        EmbeddedChannel rejected = new RemoteChannel(handler);
+        assertThat(rejected.isOpen()).isFalse();
+        assertThat(stats.getRejectedConcurrency()).isEqualTo(1);
+
+        Thread.sleep(TIMEOUT_MILLIS * 2);
+        silent.runScheduledPendingTasks();
+        assertThat(silent.isOpen()).isFalse();
+        assertThat(handler.handshaking()).isZero();
+        assertThat(stats.getHandshakeTimedOut()).isEqualTo(1);
+
+        EmbeddedChannel next = new RemoteChannel(handler);
+        assertThat(next.isActive()).isTrue();
+        assertThat(handler.handshaking()).isEqualTo(1);
+        next.close();
+        assertThat(handler.handshaking()).isZero();
+    }
+
+    @Test
+    void upgradedConnectionCancelsTheDeadline() throws InterruptedException {
+        EmbeddedChannel channel = new RemoteChannel(handler);
+        channel.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.SWITCHING_PROTOCOLS));
+        ReferenceCountUtil.release(channel.readOutbound());
+        assertThat(handler.handshaking()).isZero();
+        assertThat(channel.pipeline().get(AdmissionHandler.class)).isNull();
+
+        Thread.sleep(TIMEOUT_MILLIS * 2);
+        channel.runScheduledPendingTasks();
+        assertThat(channel.isActive()).isTrue();
+        assertThat(stats.getHandshakeTimedOut()).isZero();
+        assertThat(channel.finish()).isFalse();
+    }
+}
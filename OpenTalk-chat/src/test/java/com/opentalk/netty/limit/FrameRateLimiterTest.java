@@ -0,0 +1,103 @@
+package com.opentalk.netty.limit;
+
+import com.opentalk.netty.util.ReadPause;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 令牌桶的补充与透支、限流器的暂停与恢复，以及与其他暂停原因共用 autoRead
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class FrameRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void bucketRefillsUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire(1, 0)).isTrue();
+        }
+        assertThat(bucket.tryAcquire(1, 0)).isFalse();
+        // 10 个/秒，0.1 秒补一个
+        assertThat(bucket.tryAcquire(1, SECOND / 10)).isTrue();
+        assertThat(bucket.isFull(10 * SECOND)).isTrue();
+        assertThat(bucket.tryAcquire(6, 10 * SECOND)).isFalse();
+    }
+
+    @Test
+    void overdraftIsRepaidBeforeNextAcquire() {
+        TokenBucket bucket = new TokenBucket(10, 1, 0);
+        bucket.consume(3, 0);
+        assertThat(bucket.nanosUntil(0, 0)).isEqualTo(SECOND / 5);
+        assertThat(bucket.nanosUntil(1, 0)).isEqualTo(SECOND * 3 / 10);
+        assertThat(bucket.nanosUntil(0, SECOND / 5)).isZero();
+    }
+
+    @Test
+    void invalidRateOrBurstIsRejected() {
+        assertThatThrownBy(() -> new TokenBucket(0, 10, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TokenBucket(-1, 10, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TokenBucket(Double.NaN, 10, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TokenBucket(10, 0, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void limiterPausesReadsAndResumesAfterRefill() throws Exception {
+        AdmissionStats stats = new AdmissionStats();
+        EmbeddedChannel channel = new EmbeddedChannel(new FrameRateLimiter(1000, 1, 1 << 20, 1 << 20, stats));
+        channel.writeInbound(frame());
+        assertThat(channel.config().isAutoRead()).isTrue();
+        channel.writeInbound(frame());
+        assertThat(channel.config().isAutoRead()).isFalse();
+        assertThat(stats.getFrameThrottled()).isEqualTo(1);
+        // 已读到的帧照常向后传递
+        releaseInbound(channel, 2);
+
+        Thread.sleep(5);
+        channel.runScheduledPendingTasks();
+        assertThat(channel.config().isAutoRead()).isTrue();
+        channel.finish();
+    }
+
+    @Test
+    void limiterDoesNotResumeReadsPausedForAnotherReason() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new FrameRateLimiter(1000, 1, 1 << 20, 1 << 20, new AdmissionStats()));
+        channel.writeInbound(frame());
+        channel.writeInbound(frame());
+        releaseInbound(channel, 2);
+        ReadPause.pause(channel, ReadPause.STREAM_MEMORY);
+
+        Thread.sleep(5);
+        channel.runScheduledPendingTasks();
+        assertThat(ReadPause.isPaused(channel, ReadPause.RATE_LIMIT)).isFalse();
+        assertThat(channel.config().isAutoRead()).isFalse();
+
+        ReadPause.resume(channel, ReadPause.STREAM_MEMORY);
+        assertThat(channel.config().isAutoRead()).isTrue();
+        channel.finish();
+    }
+
+    private static BinaryWebSocketFrame frame() {
+        return new BinaryWebSocketFrame(Unpooled.wrappedBuffer(new byte[16]));
+    }
+
+    private static void releaseInbound(EmbeddedChannel channel, int expected) {
+        for (int i = 0; i < expected; i++) {
+            Object msg = channel.readInbound();
+            assertThat(msg).isInstanceOf(BinaryWebSocketFrame.class);
+            ReferenceCountUtil.release(msg);
+        }
+    }
+}
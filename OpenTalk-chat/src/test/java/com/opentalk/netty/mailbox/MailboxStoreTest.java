@@ -0,0 +1,198 @@
+package com.opentalk.netty.mailbox;
+
+import com.opentalk.netty.codec.MessageBatchingHandler;
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.dispatch.CommandType;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.session.SessionRegistry;
+import com.opentalk.netty.store.CommitLog;
+import com.opentalk.netty.store.MessageLog;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 离线信箱：补发与在线投递的先后顺序、多端登录时补发与在线投递都写给全部连接、补发进行中信箱上限仍然生效
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class MailboxStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private CommitLog commitLog;
+    private MessageLog messageLog;
+    private SessionRegistry sessions;
+    private MailboxStore mailbox;
+
+    @BeforeEach
+    void open() throws IOException {
+        commitLog = new CommitLog(dir, 1 << 16, 4096, 10, 0, 0);
+        messageLog = new MessageLog(commitLog);
+        sessions = new SessionRegistry(16);
+        mailbox = new MailboxStore(messageLog, sessions, 16, 100, 64, 64 * 1024);
+    }
+
+    @AfterEach
+    void close() {
+        commitLog.close();
+    }
+
+    /**
+     * 追加到提交日志后交给信箱投递，与点对点命令的处理顺序一致
+     */
+    private void deliver(String uid, int body) {
+        MetaMessage msg = new MetaMessage();
+        msg.setVersion(1);
+        msg.setCmd(CommandType.P2P_CHAT);
+        msg.setHeaders(new ArrayList<>());
+        msg.setBody(new byte[]{(byte) body});
+        mailbox.deliver(uid, msg, messageLog.append(msg));
+    }
+
+    /**
+     * 读出 channel 上已写出的全部帧，按顺序返回每条消息的 body 字节
+     */
+    private static List<Byte> received(EmbeddedChannel channel) {
+        List<Byte> bodies = new ArrayList<>();
+        for (BinaryWebSocketFrame frame; (frame = channel.readOutbound()) != null; ) {
+            List<Object> out = new ArrayList<>();
+            MessageCodec.decodeFrame(frame.content(), false, out);
+            frame.release();
+            for (Object o : out) {
+                MetaMessage msg = (MetaMessage) o;
+                bodies.add(msg.getBody()[0]);
+                msg.release();
+            }
+        }
+        return bodies;
+    }
+
+    @Test
+    void offlineMessagesAreDrainedBeforeLaterOnes() {
+        deliver("bob", 1);
+        deliver("bob", 2);
+        assertThat(mailbox.hasPending("bob")).isTrue();
+
+        // 已上线但补发尚未开始时到达的消息排在离线消息之后
+        EmbeddedChannel channel = new EmbeddedChannel();
+        sessions.bind("bob", channel);
+        deliver("bob", 3);
+        mailbox.drain(channel, "bob");
+        assertThat(mailbox.hasPending("bob")).isFalse();
+
+        deliver("bob", 4);
+        assertThat(received(channel)).containsExactly((byte) 1, (byte) 2, (byte) 3, (byte) 4);
+        assertThat(mailbox.size()).isZero();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void drainAndLiveDeliveryReachEveryDevice() {
+        deliver("bob", 1);
+        deliver("bob", 2);
+        deliver("bob", 3);
+
+        EmbeddedChannel phone = new EmbeddedChannel();
+        EmbeddedChannel laptop = new EmbeddedChannel();
+        laptop.attr(MessageBatchingHandler.BATCH_ENABLED).set(Boolean.TRUE);
+        sessions.bind("bob", phone);
+        sessions.bind("bob", laptop);
+        mailbox.drain(phone, "bob");
+        assertThat(mailbox.hasPending("bob")).isFalse();
+        deliver("bob", 4);
+
+        assertThat(received(phone)).containsExactly((byte) 1, (byte) 2, (byte) 3, (byte) 4);
+        // 声明了批量帧的连接一轮补发只收到一个帧，之后是在线投递的一帧
+        assertThat(laptop.outboundMessages()).hasSize(2);
+        assertThat(MessageCodec.isBatch(((BinaryWebSocketFrame) laptop.outboundMessages().peek()).content())).isTrue();
+        assertThat(received(laptop)).containsExactly((byte) 1, (byte) 2, (byte) 3, (byte) 4);
+
+        // 一端下线后在线投递只写给剩下的连接，不进入信箱
+        phone.close();
+        sessions.unbind(phone);
+        deliver("bob", 5);
+        assertThat(received(laptop)).containsExactly((byte) 5);
+        assertThat(mailbox.hasPending("bob")).isFalse();
+        assertThat(phone.finish()).isFalse();
+        assertThat(laptop.finish()).isFalse();
+    }
+
+    /**
+     * 扣住全部写出，模拟迟迟不确认的连接，release 时才真正写出并完成
+     */
+    private static final class HoldWrites extends ChannelOutboundHandlerAdapter {
+        private final List<Object> msgs = new ArrayList<>();
+        private final List<ChannelPromise> promises = new ArrayList<>();
+        private ChannelHandlerContext ctx;
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            msgs.add(msg);
+            promises.add(promise);
+        }
+
+        int held() {
+            return msgs.size();
+        }
+
+        void release() {
+            List<Object> heldMsgs = new ArrayList<>(msgs);
+            List<ChannelPromise> heldPromises = new ArrayList<>(promises);
+            msgs.clear();
+            promises.clear();
+            for (int i = 0; i < heldMsgs.size(); i++) {
+                ctx.write(heldMsgs.get(i), heldPromises.get(i));
+            }
+            ctx.flush();
+        }
+    }
+
+    @Test
+    void capIsEnforcedWhileDraining() {
+        mailbox = new MailboxStore(messageLog, sessions, 16, 4, 64, 64 * 1024);
+        deliver("bob", 1);
+        deliver("bob", 2);
+        deliver("bob", 3);
+
+        HoldWrites hold = new HoldWrites();
+        EmbeddedChannel channel = new EmbeddedChannel(hold);
+        sessions.bind("bob", channel);
+        mailbox.drain(channel, "bob");
+        assertThat(hold.held()).isEqualTo(3);
+
+        // 本轮的 3 条在途，信箱最多再放 1 条：每来一条新消息丢弃本轮之后最旧的一条
+        for (int body = 4; body <= 10; body++) {
+            deliver("bob", body);
+        }
+        assertThat(mailbox.toString()).contains("dropped=6");
+
+        hold.release();
+        assertThat(hold.held()).isEqualTo(1);
+        hold.release();
+        assertThat(received(channel)).containsExactly((byte) 1, (byte) 2, (byte) 3, (byte) 10);
+        assertThat(mailbox.hasPending("bob")).isFalse();
+        assertThat(channel.finish()).isFalse();
+    }
+}
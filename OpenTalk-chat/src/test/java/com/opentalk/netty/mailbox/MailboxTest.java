@@ -0,0 +1,120 @@
+package com.opentalk.netty.mailbox;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 信箱指针编码：zigzag + varint 的差值往返（含负差值和超长跨度）、读游标前移与空间回收、删除中间指针
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class MailboxTest {
+
+    private static long[] peekAll(Mailbox box) {
+        long[] out = new long[box.size()];
+        assertThat(box.peek(out)).isEqualTo(out.length);
+        return out;
+    }
+
+    @Test
+    void offsetsRoundTripIncludingNegativeDeltas() {
+        long[] offsets = {0, 1, 127, 128, 16_511, 3, 0, Long.MAX_VALUE, 5, 1L << 40, (1L << 40) - 1, 0};
+        Mailbox box = new Mailbox();
+        for (long offset : offsets) {
+            box.add(offset);
+        }
+        assertThat(box.size()).isEqualTo(offsets.length);
+        assertThat(peekAll(box)).containsExactly(offsets);
+
+        box.skip(3);
+        long[] rest = new long[4];
+        assertThat(box.peek(rest)).isEqualTo(4);
+        assertThat(rest).containsExactly(128, 16_511, 3, 0);
+    }
+
+    @Test
+    void nearbyOffsetsTakeOneByteEach() {
+        Mailbox box = new Mailbox();
+        long offset = 1_000_000;
+        box.add(offset);
+        int first = box.bytes();
+        for (int i = 0; i < 100; i++) {
+            // 差值在 [-64, 63] 内的 zigzag 编码只占一个字节
+            offset += (i & 1) == 0 ? 63 : -64;
+            box.add(offset);
+        }
+        assertThat(box.bytes()).isEqualTo(first + 100);
+    }
+
+    @Test
+    void skipCompactsAndReleasesSpace() {
+        Mailbox box = new Mailbox();
+        Random random = new Random(42);
+        long[] expected = new long[10_000];
+        long offset = 0;
+        int added = 0;
+        int skipped = 0;
+        // 边写边读，未读部分始终不超过 64 个指针，缓冲区不应随累计写入量增长
+        while (added < expected.length) {
+            offset += random.nextInt(1 << 16) - (1 << 14);
+            expected[added++] = offset;
+            box.add(offset);
+            if (box.size() > 64) {
+                long[] head = new long[16];
+                box.peek(head);
+                for (int i = 0; i < head.length; i++) {
+                    assertThat(head[i]).isEqualTo(expected[skipped + i]);
+                }
+                box.skip(head.length);
+                skipped += head.length;
+            }
+        }
+        assertThat(box.capacity()).isLessThan(64 * 10 * 2);
+        assertThat(peekAll(box)).containsExactly(Arrays.copyOfRange(expected, skipped, added));
+
+        // 读空后缓冲区缩回初始大小，之后的差值仍以最后一个指针为基准
+        box.skip(box.size());
+        assertThat(box.size()).isZero();
+        assertThat(box.bytes()).isZero();
+        assertThat(box.capacity()).isEqualTo(16);
+        box.add(offset + 1);
+        assertThat(peekAll(box)).containsExactly(offset + 1);
+    }
+
+    @Test
+    void dropAtMergesNeighbouringDeltas() {
+        Mailbox box = new Mailbox();
+        List<Long> expected = new ArrayList<>();
+        Random random = new Random(7);
+        long offset = 1L << 40;
+        for (int i = 0; i < 200; i++) {
+            // 混合小跨度与超长跨度，合并后的差值编码长度会变化
+            offset += (i % 10 == 0) ? random.nextLong() >> 2 : random.nextInt(256) - 128;
+            expected.add(offset);
+            box.add(offset);
+        }
+        box.skip(5);
+        expected.subList(0, 5).clear();
+        while (expected.size() > 1) {
+            int index = random.nextInt(expected.size());
+            box.dropAt(index);
+            expected.remove(index);
+            assertThat(box.size()).isEqualTo(expected.size());
+            assertThat(peekAll(box)).containsExactly(expected.stream().mapToLong(Long::longValue).toArray());
+        }
+
+        // 删除末尾后新追加的差值以剩下的最后一个指针为基准
+        box.add(offset + 1);
+        box.dropAt(1);
+        box.add(offset + 2);
+        assertThat(peekAll(box)).containsExactly(expected.get(0), offset + 2);
+    }
+}
@@ -0,0 +1,111 @@
+package com.opentalk.netty.message;
+
+import com.opentalk.netty.codec.MessageCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 视图的按类型访问、按消息读取路由 header（零拷贝与拷贝解码）、无符号 header 数量以及畸形帧的越界校验
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class MetaMessageViewTest {
+
+    private static ByteBuf encode(List<MetaMessageHead> headers, byte[] body) {
+        MetaMessage msg = new MetaMessage();
+        msg.setVersion(1);
+        msg.setCmd(2);
+        msg.setHeaders(headers);
+        msg.setBody(body);
+        return MessageCodec.encode(UnpooledByteBufAllocator.DEFAULT, msg);
+    }
+
+    @Test
+    void typedAccessorsReadHeadersInPlace() {
+        List<MetaMessageHead> headers = new ArrayList<>();
+        headers.add(HeaderType.ofAscii(HeaderType.ROOM_ID, "lobby"));
+        headers.add(HeaderType.ofLong(HeaderType.MESSAGE_ID, 42L));
+        ByteBuf frame = encode(headers, new byte[]{9, 8, 7});
+        MetaMessageView view = MetaMessageView.local().wrap(frame);
+        assertThat(view.getCmd()).isEqualTo(2);
+        assertThat(view.asciiEquals(HeaderType.ROOM_ID, "lobby")).isTrue();
+        assertThat(view.getLong(HeaderType.MESSAGE_ID)).isEqualTo(42L);
+        assertThat(view.hasHeader(HeaderType.TARGET_UID)).isFalse();
+        assertThat(frame.getByte(view.bodyOffset())).isEqualTo((byte) 9);
+        view.clear();
+        frame.release();
+    }
+
+    @Test
+    void routingHeadersReadTheSameInBothDecodeModes() {
+        List<MetaMessageHead> headers = new ArrayList<>();
+        headers.add(HeaderType.ofAscii(HeaderType.TARGET_UID, "bob"));
+        ByteBuf frame = encode(headers, new byte[]{1});
+        for (MetaMessage msg : new MetaMessage[]{MessageCodec.decodeRetained(frame.duplicate()), MessageCodec.decode(frame.duplicate())}) {
+            assertThat(MetaMessageView.asciiOf(msg, HeaderType.TARGET_UID)).isEqualTo("bob");
+            assertThat(MetaMessageView.asciiOf(msg, HeaderType.ROOM_ID)).isNull();
+            assertThat(MetaMessageView.asciiEquals(msg, HeaderType.TARGET_UID, "bob")).isTrue();
+            assertThat(MetaMessageView.asciiEquals(msg, HeaderType.TARGET_UID, "bo")).isFalse();
+            assertThat(MetaMessageView.asciiEquals(msg, HeaderType.ROOM_ID, "bob")).isFalse();
+            msg.release();
+        }
+        assertThat(frame.refCnt()).isEqualTo(1);
+        frame.release();
+    }
+
+    @Test
+    void headerCountAbove127IsUnsigned() {
+        List<MetaMessageHead> headers = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            headers.add(HeaderType.ofInt(i % 100 + 20, i));
+        }
+        headers.add(HeaderType.ofLong(HeaderType.MESSAGE_ID, 7L));
+        ByteBuf frame = encode(headers, new byte[0]);
+        MetaMessageView view = new MetaMessageView().wrap(frame);
+        assertThat(view.getHeaderCount()).isEqualTo(201);
+        assertThat(view.getLong(HeaderType.MESSAGE_ID)).isEqualTo(7L);
+
+        MetaMessage decoded = MessageCodec.decode(frame.duplicate());
+        assertThat(decoded.getHeaders()).hasSize(201);
+        decoded.release();
+        frame.release();
+    }
+
+    @Test
+    void truncatedHeaderTableIsRejected() {
+        List<MetaMessageHead> headers = new ArrayList<>();
+        headers.add(HeaderType.ofAscii(HeaderType.ROOM_ID, "some-room"));
+        ByteBuf frame = encode(headers, new byte[0]);
+        ByteBuf truncated = frame.slice(0, frame.readableBytes() - 3);
+        MetaMessageView view = new MetaMessageView().wrap(truncated);
+        assertThatThrownBy(() -> view.hasHeader(HeaderType.ROOM_ID)).isInstanceOf(CorruptedFrameException.class);
+        frame.release();
+    }
+
+    @Test
+    void headerLengthBeyondFrameIsRejected() {
+        // [version][flags][cmd][length=10][count=1][dataLength=100][type] 后无数据
+        ByteBuf frame = Unpooled.wrappedBuffer(new byte[]{1, 0, 2, 10, 1, 100, 1});
+        MetaMessageView view = new MetaMessageView().wrap(frame);
+        assertThatThrownBy(() -> view.getLong(HeaderType.ROOM_ID)).isInstanceOf(CorruptedFrameException.class);
+    }
+
+    @Test
+    void truncatedPrefixIsRejected() {
+        assertThatThrownBy(() -> new MetaMessageView().wrap(Unpooled.wrappedBuffer(new byte[]{1})))
+                .isInstanceOf(CorruptedFrameException.class);
+        assertThatThrownBy(() -> new MetaMessageView().wrap(Unpooled.wrappedBuffer(new byte[]{1, 0, 2, (byte) 0x80})))
+                .isInstanceOf(CorruptedFrameException.class);
+    }
+}
@@ -0,0 +1,88 @@
+package com.opentalk.netty.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 分桶边界与相对误差、分位数、越界值截断以及多线程并发记录
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsAreMonotonicWithBoundedError() {
+        Random random = new Random(18);
+        int last = -1;
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(index).isGreaterThanOrEqualTo(last);
+            last = index;
+            assertThat(LatencyHistogram.upperBound(index)).isGreaterThanOrEqualTo(value);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            long value = 16 + (random.nextLong() >>> 24);
+            long upper = LatencyHistogram.upperBound(LatencyHistogram.indexOf(value));
+            assertThat(upper).isGreaterThanOrEqualTo(value);
+            assertThat((double) (upper - value) / value).isLessThan(1.0 / 16);
+        }
+        assertThat(LatencyHistogram.indexOf(Long.MAX_VALUE >>> 22)).isLessThan(LatencyHistogram.BUCKETS);
+    }
+
+    @Test
+    void quantilesAreUpperBoundsOfTheirBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 10_000; v++) {
+            histogram.record(v);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(10_000);
+        assertThat(snapshot.getSum()).isEqualTo(10_000L * 10_001 / 2);
+        assertThat(snapshot.valueAt(0.5)).isBetween(5_000L, 5_000L + 5_000 / 16);
+        assertThat(snapshot.valueAt(0.99)).isBetween(9_900L, 9_900L + 9_900 / 16);
+        assertThat(snapshot.max()).isBetween(10_000L, 10_000L + 10_000 / 16);
+        assertThat(snapshot.valueAt(0)).isEqualTo(1);
+    }
+
+    @Test
+    void emptyAndOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.snapshot().valueAt(0.99)).isZero();
+        assertThat(histogram.snapshot().max()).isZero();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(2);
+        assertThat(snapshot.valueAt(0.5)).isZero();
+        // 超出范围的值截断到最后一个桶
+        assertThat(snapshot.max()).isEqualTo(LatencyHistogram.upperBound(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(1_000);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(800_000);
+        assertThat(snapshot.getSum()).isEqualTo(800_000_000L);
+    }
+}
@@ -0,0 +1,334 @@
+package com.opentalk.netty.reliable;
+
+import com.opentalk.netty.codec.MessageCodec;
+import com.opentalk.netty.dispatch.CommandType;
+import com.opentalk.netty.mailbox.MailboxStore;
+import com.opentalk.netty.message.HeaderType;
+import com.opentalk.netty.message.MetaMessage;
+import com.opentalk.netty.session.SessionRegistry;
+import com.opentalk.netty.store.CommitLog;
+import com.opentalk.netty.store.MessageLog;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 可靠投递：确认后完成 promise、超时重发与重发耗尽断开、跨重连的入站去重、断开后交回信箱重投以及按窗口分轮补发
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class ReliableDeliveryHandlerTest {
+
+    @TempDir
+    Path dir;
+
+    private final ReliableDelivery delivery = new ReliableDelivery(16, 10_000, 3, 1024, 100, 64, 60_000, 16);
+
+    @AfterEach
+    void stop() {
+        delivery.stop();
+    }
+
+    /**
+     * 手动触发的时间轮，到期任务由测试调用 {@link #fire} 执行
+     */
+    private static final class ManualTimer implements Timer {
+
+        private final List<TimerTask> tasks = new ArrayList<>();
+
+        @Override
+        public Timeout newTimeout(TimerTask task, long delay, TimeUnit unit) {
+            tasks.add(task);
+            return new Timeout() {
+                @Override
+                public Timer timer() {
+                    return ManualTimer.this;
+                }
+
+                @Override
+                public TimerTask task() {
+                    return task;
+                }
+
+                @Override
+                public boolean isExpired() {
+                    return false;
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return !tasks.contains(task);
+                }
+
+                @Override
+                public boolean cancel() {
+                    return tasks.remove(task);
+                }
+            };
+        }
+
+        void fire() throws Exception {
+            List<TimerTask> due = new ArrayList<>(tasks);
+            tasks.clear();
+            for (TimerTask task : due) {
+                task.run(null);
+            }
+        }
+
+        @Override
+        public Set<Timeout> stop() {
+            tasks.clear();
+            return Collections.emptySet();
+        }
+    }
+
+    private static MetaMessage message(int cmd, long clientMsgId, int body) {
+        MetaMessage msg = new MetaMessage();
+        msg.setVersion(1);
+        msg.setCmd(cmd);
+        msg.setHeaders(new ArrayList<>());
+        msg.getHeaders().add(HeaderType.ofLong(HeaderType.CLIENT_MSG_ID, clientMsgId));
+        msg.setBody(new byte[]{(byte) body});
+        return msg;
+    }
+
+    private static BinaryWebSocketFrame frame(int cmd, int body) {
+        return new BinaryWebSocketFrame(MessageCodec.encode(UnpooledByteBufAllocator.DEFAULT, message(cmd, 0, body)));
+    }
+
+    private static EmbeddedChannel channel(ReliableDeliveryHandler handler) {
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        channel.attr(ReliableDeliveryHandler.RELIABLE_ENABLED).set(Boolean.TRUE);
+        return channel;
+    }
+
+    /**
+     * 读出一个带序号信封的帧，返回序号并释放
+     */
+    private static long readSeq(EmbeddedChannel channel) {
+        BinaryWebSocketFrame frame = channel.readOutbound();
+        assertThat(MessageCodec.isSequenced(frame.content())).isTrue();
+        long seq = frame.content().getLong(frame.content().readerIndex() + 2);
+        frame.release();
+        return seq;
+    }
+
+    @Test
+    void ackCompletesPromiseAndReleasesFrames() {
+        ReliableDeliveryHandler handler = new ReliableDeliveryHandler(delivery, new ManualTimer(), 16, 10_000, 3);
+        EmbeddedChannel channel = channel(handler);
+        ChannelFuture first = channel.writeAndFlush(frame(CommandType.ROOM_CHAT, 1));
+        ChannelFuture second = channel.writeAndFlush(frame(CommandType.P2P_CHAT, 2));
+        ChannelFuture third = channel.writeAndFlush(frame(CommandType.ROOM_CHAT, 3));
+        assertThat(readSeq(channel)).isEqualTo(1);
+        assertThat(readSeq(channel)).isEqualTo(2);
+        assertThat(readSeq(channel)).isEqualTo(3);
+        // 写出成功不代表送达
+        assertThat(first.isDone()).isFalse();
+        assertThat(handler.inFlight()).isEqualTo(3);
+
+        // 选择确认第 3 个：第 i 位对应 cumulative + 2 + i
+        handler.ack(1, new byte[]{0b01});
+        assertThat(first.isSuccess()).isTrue();
+        assertThat(second.isDone()).isFalse();
+        assertThat(third.isSuccess()).isTrue();
+
+        handler.ack(3, null);
+        assertThat(second.isSuccess()).isTrue();
+        assertThat(handler.inFlight()).isZero();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void unreliableFramesPassThrough() {
+        ReliableDeliveryHandler handler = new ReliableDeliveryHandler(delivery, new ManualTimer(), 16, 10_000, 3);
+        EmbeddedChannel channel = channel(handler);
+        ChannelFuture future = channel.writeAndFlush(frame(CommandType.ACK, 1));
+        BinaryWebSocketFrame frame = channel.readOutbound();
+        assertThat(MessageCodec.isSequenced(frame.content())).isFalse();
+        frame.release();
+        assertThat(future.isSuccess()).isTrue();
+        assertThat(handler.inFlight()).isZero();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    void unackedFrameIsRetransmittedThenConnectionClosed() throws Exception {
+        ManualTimer timer = new ManualTimer();
+        // 超时为 0：每次触发时间轮都已到期
+        ReliableDeliveryHandler handler = new ReliableDeliveryHandler(delivery, timer, 16, 0, 1);
+        EmbeddedChannel channel = channel(handler);
+        ChannelFuture future = channel.writeAndFlush(frame(CommandType.P2P_CHAT, 1));
+        assertThat(readSeq(channel)).isEqualTo(1);
+
+        timer.fire();
+        channel.runPendingTasks();
+        // 重发沿用原序号
+        assertThat(readSeq(channel)).isEqualTo(1);
+        assertThat(future.isDone()).isFalse();
+
+        timer.fire();
+        channel.runPendingTasks();
+        assertThat(channel.isOpen()).isFalse();
+        assertThat(future.cause()).isInstanceOf(ClosedChannelException.class);
+        assertThat(handler.inFlight()).isZero();
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void inboundDedupSurvivesReconnectAndAcceptsIdZero() {
+        EmbeddedChannel first = new EmbeddedChannel();
+        delivery.bindSession(first, "alice", "phone");
+        assertThat(delivery.acceptInbound(first, message(CommandType.P2P_CHAT, 0, 0))).isTrue();
+        assertThat(delivery.acceptInbound(first, message(CommandType.P2P_CHAT, 0, 0))).isFalse();
+        assertThat(delivery.acceptInbound(first, message(CommandType.P2P_CHAT, 1, 0))).isTrue();
+        first.finish();
+
+        // 同一会话重连后，断线前发过的消息重发仍被识别
+        EmbeddedChannel second = new EmbeddedChannel();
+        delivery.bindSession(second, "alice", "phone");
+        assertThat(delivery.acceptInbound(second, message(CommandType.P2P_CHAT, 1, 0))).isFalse();
+        assertThat(delivery.acceptInbound(second, message(CommandType.P2P_CHAT, 2, 0))).isTrue();
+
+        EmbeddedChannel other = new EmbeddedChannel();
+        delivery.bindSession(other, "alice", "laptop");
+        assertThat(delivery.acceptInbound(other, message(CommandType.P2P_CHAT, 1, 0))).isTrue();
+        second.finish();
+        other.finish();
+    }
+
+    @Test
+    void devicesWithoutSessionKeepSeparateDedupWindows() {
+        EmbeddedChannel phone = new EmbeddedChannel();
+        EmbeddedChannel laptop = new EmbeddedChannel();
+        delivery.bindSession(phone, "alice", null);
+        delivery.bindSession(laptop, "alice", "");
+
+        // 两台设备同时在线、各自从 0 编号，互不当作重复
+        for (long id = 0; id < 3; id++) {
+            assertThat(delivery.acceptInbound(phone, message(CommandType.P2P_CHAT, id, 0))).isTrue();
+            assertThat(delivery.acceptInbound(laptop, message(CommandType.P2P_CHAT, id, 0))).isTrue();
+        }
+        assertThat(delivery.acceptInbound(phone, message(CommandType.P2P_CHAT, 2, 0))).isFalse();
+        assertThat(delivery.acceptInbound(laptop, message(CommandType.P2P_CHAT, 2, 0))).isFalse();
+        phone.finish();
+        laptop.finish();
+    }
+
+    @Test
+    void unackedP2pMessageIsRedeliveredAfterReconnect() throws IOException {
+        try (CommitLog commitLog = new CommitLog(dir, 1 << 16, 4096, 10, 0, 0)) {
+            MessageLog messageLog = new MessageLog(commitLog);
+            SessionRegistry sessions = new SessionRegistry(16);
+            MailboxStore mailbox = new MailboxStore(messageLog, sessions, 16, 100, 64, 64 * 1024);
+
+            EmbeddedChannel before = channel(new ReliableDeliveryHandler(delivery, new ManualTimer(), 16, 10_000, 3));
+            sessions.bind("bob", before);
+            MetaMessage msg = message(CommandType.P2P_CHAT, 7, 42);
+            long offset = messageLog.append(msg);
+            mailbox.deliver("bob", msg, offset);
+            assertThat(readSeq(before)).isEqualTo(1);
+            assertThat(mailbox.hasPending("bob")).isFalse();
+
+            // 确认前断开：offset 交回信箱
+            before.close();
+            sessions.unbind(before);
+            assertThat(mailbox.hasPending("bob")).isTrue();
+
+            ReliableDeliveryHandler handler = new ReliableDeliveryHandler(delivery, new ManualTimer(), 16, 10_000, 3);
+            EmbeddedChannel after = channel(handler);
+            sessions.bind("bob", after);
+            mailbox.drain(after, "bob");
+            BinaryWebSocketFrame frame = after.readOutbound();
+            List<Object> out = new ArrayList<>();
+            MessageCodec.decodeFrame(frame.content(), false, out);
+            frame.release();
+            assertThat(out).hasSize(1);
+            MetaMessage redelivered = (MetaMessage) out.get(0);
+            assertThat(redelivered.getBody()).containsExactly(42);
+            redelivered.release();
+
+            // 补发的游标在确认后才前移
+            assertThat(mailbox.hasPending("bob")).isTrue();
+            handler.ack(1, null);
+            assertThat(mailbox.hasPending("bob")).isFalse();
+            assertThat(after.finish()).isFalse();
+        }
+    }
+
+    /**
+     * 读出一个带序号信封的帧，返回其中消息的 body 字节
+     */
+    private static int readBody(EmbeddedChannel channel) {
+        BinaryWebSocketFrame frame = channel.readOutbound();
+        List<Object> out = new ArrayList<>();
+        MessageCodec.decodeFrame(frame.content(), false, out);
+        frame.release();
+        MetaMessage msg = (MetaMessage) out.get(0);
+        int body = msg.getBody()[0];
+        msg.release();
+        return body;
+    }
+
+    @Test
+    void unbatchedDrainRoundsFitHalfTheWindowAndAdvanceOnAck() throws IOException {
+        try (CommitLog commitLog = new CommitLog(dir, 1 << 16, 4096, 10, 0, 0)) {
+            MessageLog messageLog = new MessageLog(commitLog);
+            SessionRegistry sessions = new SessionRegistry(16);
+            MailboxStore mailbox = new MailboxStore(messageLog, sessions, 16, 100, 64, 64 * 1024);
+            for (int i = 1; i <= 5; i++) {
+                MetaMessage msg = message(CommandType.P2P_CHAT, i, i);
+                mailbox.deliver("bob", msg, messageLog.append(msg));
+            }
+
+            // 窗口 4：每轮最多 2 条，确认前不开始下一轮
+            ReliableDeliveryHandler handler = new ReliableDeliveryHandler(delivery, new ManualTimer(), 4, 10_000, 3);
+            EmbeddedChannel channel = channel(handler);
+            sessions.bind("bob", channel);
+            mailbox.drain(channel, "bob");
+            assertThat(readBody(channel)).isEqualTo(1);
+            assertThat(readBody(channel)).isEqualTo(2);
+            assertThat((Object) channel.readOutbound()).isNull();
+
+            // 补发进行中的在线消息排在信箱末尾
+            MetaMessage live = message(CommandType.P2P_CHAT, 6, 6);
+            mailbox.deliver("bob", live, messageLog.append(live));
+            assertThat((Object) channel.readOutbound()).isNull();
+
+            // 只选择确认第 2 条不推进游标
+            handler.ack(0, new byte[]{0b1});
+            assertThat((Object) channel.readOutbound()).isNull();
+            handler.ack(2, null);
+            assertThat(readBody(channel)).isEqualTo(3);
+            assertThat(readBody(channel)).isEqualTo(4);
+            handler.ack(4, null);
+            assertThat(readBody(channel)).isEqualTo(5);
+            assertThat(readBody(channel)).isEqualTo(6);
+            assertThat(mailbox.hasPending("bob")).isTrue();
+            handler.ack(6, null);
+            assertThat(mailbox.hasPending("bob")).isFalse();
+            assertThat(channel.isOpen()).isTrue();
+            assertThat(channel.finish()).isFalse();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.opentalk.netty.room;
+
+import com.opentalk.netty.handler.OutboundPolicyHandler;
+import com.opentalk.netty.handler.OutboundStats;
+import com.opentalk.netty.message.MetaMessage;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 房间广播：每个成员恰好收到一次；写出途中某个成员出站溢出被关闭并同步离开房间时，其余成员不受影响；
+ * 成员按下标 O(1) 删除；热点房间的新连接在升级前被放到归属 event loop 上
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class RoomFanoutTest {
+
+    private DefaultEventLoopGroup group;
+    private Channel server;
+    private final Map<SocketAddress, AtomicInteger> received = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        group = new DefaultEventLoopGroup(1);
+        server = new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                received.computeIfAbsent(ctx.channel().remoteAddress(), key -> new AtomicInteger()).incrementAndGet();
+                                ReferenceCountUtil.release(msg);
+                            }
+                        });
+                    }
+                })
+                .bind(new LocalAddress("room-fanout-test")).sync().channel();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close().sync();
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+    }
+
+    private Channel connect(long maxQueuedBytes) throws Exception {
+        return new Bootstrap().group(group).channel(LocalChannel.class)
+                .handler(new OutboundPolicyHandler(new OutboundStats(), maxQueuedBytes, 60_000))
+                .connect(server.localAddress()).sync().channel();
+    }
+
+    private static MetaMessage message() {
+        MetaMessage msg = MetaMessage.newInstance();
+        msg.setVersion(1);
+        msg.setCmd(2);
+        msg.setHeaders(new ArrayList<>());
+        msg.setBody(new byte[64]);
+        return msg;
+    }
+
+    private int receivedBy(Channel member) {
+        AtomicInteger count = received.get(member.localAddress());
+        return count == null ? 0 : count.get();
+    }
+
+    private void awaitReceived(List<Channel> members, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            if (members.stream().allMatch(m -> receivedBy(m) == expected)) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void everyMemberReceivesOnce() throws Exception {
+        RoomFanout fanout = new RoomFanout(group, 0);
+        List<Channel> members = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            members.add(connect(1 << 20));
+        }
+        group.submit(() -> members.forEach(m -> fanout.join(m, "room"))).sync();
+        assertThat(fanout.memberCount("room")).isEqualTo(5);
+
+        MetaMessage msg = message();
+        assertThat(group.submit(() -> fanout.broadcast("room", msg)).get()).isEqualTo(1);
+        msg.release();
+        awaitReceived(members, 1);
+        for (Channel member : members) {
+            assertThat(receivedBy(member)).isEqualTo(1);
+        }
+
+        members.get(0).close().sync();
+        group.submit(() -> { }).sync();
+        assertThat(fanout.memberCount("room")).isEqualTo(4);
+        members.forEach(Channel::close);
+    }
+
+    @Test
+    void memberClosedByOverflowMidBroadcastDoesNotDisturbOthers() throws Exception {
+        RoomFanout fanout = new RoomFanout(group, 0);
+        List<Channel> members = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            members.add(connect(i == 1 ? 1 : 1 << 20));
+        }
+        Channel slow = members.get(1);
+        group.submit(() -> {
+            members.forEach(m -> fanout.join(m, "room"));
+            // 出站缓冲判定为不可写，首次写出即超过 1 字节的排队上限而被关闭
+            slow.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        }).sync();
+
+        MetaMessage msg = message();
+        assertThat(group.submit(() -> fanout.broadcast("room", msg)).get()).isEqualTo(1);
+        msg.release();
+
+        List<Channel> others = new ArrayList<>(members);
+        others.remove(slow);
+        awaitReceived(others, 1);
+        for (Channel member : others) {
+            assertThat(receivedBy(member)).isEqualTo(1);
+        }
+        assertThat(slow.isOpen()).isFalse();
+        assertThat(receivedBy(slow)).isZero();
+        assertThat(fanout.memberCount("room")).isEqualTo(4);
+
+        // 推迟的删除已生效，第二次广播不再写给已关闭的连接
+        MetaMessage second = message();
+        group.submit(() -> fanout.broadcast("room", second)).sync();
+        second.release();
+        awaitReceived(others, 2);
+        for (Channel member : others) {
+            assertThat(receivedBy(member)).isEqualTo(2);
+        }
+        others.forEach(Channel::close);
+    }
+
+    @Test
+    void removalSwapsTheLastMemberIntoTheFreedSlot() {
+        ChatRoom room = new ChatRoom("room", 1);
+        List<ChatRoom.Member> members = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            members.add(room.join(0, new EmbeddedChannel()));
+        }
+        ChatRoom.Partition partition = room.partition(0);
+        partition.remove(members.get(1));
+        partition.remove(members.get(5));
+        partition.remove(members.get(0));
+        // 重复删除是空操作
+        partition.remove(members.get(0));
+
+        assertThat(partition.size).isEqualTo(3);
+        assertThat(partition.channels).containsExactlyInAnyOrder(
+                members.get(2).channel, members.get(3).channel, members.get(4).channel);
+        for (int i = 2; i <= 4; i++) {
+            ChatRoom.Member member = members.get(i);
+            assertThat(partition.channels.get(member.slot)).isSameAs(member.channel);
+        }
+        members.forEach(m -> m.channel.close());
+    }
+
+    @Test
+    void hotRoomConnectionsArePlacedOnTheHomeLoop() throws Exception {
+        DefaultEventLoopGroup loops = new DefaultEventLoopGroup(2);
+        RoomFanout fanout = new RoomFanout(loops, 2);
+        Queue<EventLoop> upgradedOn = new ConcurrentLinkedQueue<>();
+        Channel placementServer = new ServerBootstrap().group(loops).channel(LocalServerChannel.class)
+                .childHandler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                        ch.pipeline().addLast(new RoomPlacementHandler(fanout), new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                upgradedOn.add(ctx.channel().eventLoop());
+                                ReferenceCountUtil.release(msg);
+                            }
+                        });
+                    }
+                })
+                .bind(new LocalAddress("room-placement-test")).sync().channel();
+        try {
+            List<Channel> members = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                Channel member = new Bootstrap().group(loops).channel(LocalChannel.class)
+                        .handler(new ChannelInboundHandlerAdapter())
+                        .connect(placementServer.localAddress()).sync().channel();
+                member.eventLoop().submit(() -> fanout.join(member, "hot")).sync();
+                members.add(member);
+            }
+            EventLoop home = fanout.homeLoop("hot");
+            assertThat(home).isNotNull();
+            assertThat(fanout.homeLoop("cold")).isNull();
+
+            // 连接轮询落在两个 event loop 上，至少有一个需要迁移
+            for (int i = 0; i < 4; i++) {
+                FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/chat?room=hot");
+                Channel client = new Bootstrap().group(loops).channel(LocalChannel.class)
+                        .handler(new ChannelInboundHandlerAdapter())
+                        .connect(placementServer.localAddress()).sync().channel();
+                client.writeAndFlush(request).sync();
+                members.add(client);
+            }
+            long deadline = System.currentTimeMillis() + 5_000;
+            // 只有发出握手请求的四个连接会走到这里，都应已在归属 event loop 上
+            while (upgradedOn.size() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(upgradedOn).hasSize(4).allMatch(loop -> loop == home);
+            assertThat(fanout.toString()).doesNotContain("placements=0");
+            members.forEach(Channel::close);
+        } finally {
+            placementServer.close().sync();
+            loops.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.opentalk.netty.store;
+
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 提交日志：跨分段读写、残缺尾部与 crc 不符的恢复截断、保留策略清理与已删除分段的解除映射
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class CommitLogTest {
+
+    /**
+     * 每条记录 16 字节头 + 32 字节 payload，一个分段恰好放 5 条
+     */
+    private static final int SEGMENT_BYTES = 5 * 48;
+    private static final int PAYLOAD = 32;
+
+    @TempDir
+    Path dir;
+
+    private CommitLog open() throws IOException {
+        return open(0, 0);
+    }
+
+    private CommitLog open(long retentionMillis, long retentionBytes) throws IOException {
+        return new CommitLog(dir, SEGMENT_BYTES, 64, 1, retentionMillis, retentionBytes);
+    }
+
+    private static byte[] payload(int i) {
+        byte[] payload = new byte[PAYLOAD];
+        payload[0] = (byte) i;
+        payload[PAYLOAD - 1] = (byte) ~i;
+        return payload;
+    }
+
+    private static void appendAll(CommitLog log, int from, int to) {
+        for (int i = from; i < to; i++) {
+            assertThat(log.append(Unpooled.wrappedBuffer(payload(i)))).isEqualTo(i);
+        }
+    }
+
+    private static byte[] read(CommitLog log, long offset) {
+        log.beginRead();
+        try {
+            return copy(log.read(offset));
+        } finally {
+            log.endRead();
+        }
+    }
+
+    private static byte[] copy(ByteBuffer buf) {
+        if (buf == null) {
+            return null;
+        }
+        byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    private Path segmentFile(long baseOffset) {
+        return dir.resolve(Segment.fileName(baseOffset, Segment.LOG_SUFFIX));
+    }
+
+    /**
+     * 改写分段文件中第 record 条记录的一个字节
+     */
+    private void corrupt(long baseOffset, int record, int byteInRecord) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(baseOffset).toFile(), "rw")) {
+            long position = record * 48L + byteInRecord;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+    }
+
+    @Test
+    void recordsSurviveRollAndReopen() throws IOException {
+        try (CommitLog log = open()) {
+            appendAll(log, 0, 12);
+            log.awaitDurable(11).join();
+            assertThat(log.durableOffset()).isEqualTo(12);
+        }
+        try (CommitLog log = open()) {
+            assertThat(log.firstOffset()).isZero();
+            assertThat(log.endOffset()).isEqualTo(12);
+            for (int i = 0; i < 12; i++) {
+                assertThat(read(log, i)).isEqualTo(payload(i));
+            }
+            assertThat(read(log, 12)).isNull();
+            appendAll(log, 12, 13);
+        }
+        assertThat(segmentFile(0)).exists();
+        assertThat(segmentFile(5)).exists();
+        assertThat(segmentFile(10)).exists();
+        assertThat(dir.resolve(Segment.STANDBY_LOG)).doesNotExist();
+    }
+
+    @Test
+    void tornTailIsTruncatedOnRecovery() throws IOException {
+        try (CommitLog log = open()) {
+            appendAll(log, 0, 4);
+        }
+        // 最后一条记录的长度字段被写坏，像是只落盘了一半
+        corrupt(0, 3, 0);
+        try (CommitLog log = open()) {
+            assertThat(log.endOffset()).isEqualTo(3);
+            assertThat(read(log, 2)).isEqualTo(payload(2));
+            assertThat(read(log, 3)).isNull();
+            // 截断处重新分配 offset
+            appendAll(log, 3, 5);
+        }
+        try (CommitLog log = open()) {
+            assertThat(log.endOffset()).isEqualTo(5);
+            assertThat(read(log, 3)).isEqualTo(payload(3));
+        }
+    }
+
+    @Test
+    void crcMismatchTruncatesFromThatRecord() throws IOException {
+        try (CommitLog log = open()) {
+            appendAll(log, 0, 4);
+        }
+        // 第二条记录的 payload 损坏，它和之后的记录都不再可信
+        corrupt(0, 1, Segment.RECORD_HEADER + 5);
+        try (CommitLog log = open()) {
+            assertThat(log.endOffset()).isEqualTo(1);
+            assertThat(read(log, 0)).isEqualTo(payload(0));
+            assertThat(read(log, 1)).isNull();
+        }
+    }
+
+    @Test
+    void tornSealedSegmentDropsLaterSegments() throws IOException {
+        try (CommitLog log = open()) {
+            appendAll(log, 0, 12);
+        }
+        // 第二个分段的最后一条记录损坏，恢复后的 offset 接不上第三个分段
+        corrupt(5, 4, Segment.RECORD_HEADER);
+        try (CommitLog log = open()) {
+            assertThat(log.endOffset()).isEqualTo(9);
+            assertThat(read(log, 8)).isEqualTo(payload(8));
+            assertThat(read(log, 9)).isNull();
+        }
+        assertThat(segmentFile(10)).doesNotExist();
+    }
+
+    @Test
+    void retentionDeletesOldestSealedSegments() throws IOException {
+        try (CommitLog log = open(0, 2L * SEGMENT_BYTES)) {
+            appendAll(log, 0, 16);
+            // 4 个分段超过 2 个分段的上限，删除最旧的 2 个
+            assertThat(log.enforceRetention(System.currentTimeMillis())).isEqualTo(2);
+            assertThat(log.firstOffset()).isEqualTo(10);
+            assertThat(read(log, 9)).isNull();
+            assertThat(read(log, 10)).isEqualTo(payload(10));
+            assertThat(segmentFile(0)).doesNotExist();
+        }
+        try (CommitLog log = open(60_000, 0)) {
+            assertThat(log.firstOffset()).isEqualTo(10);
+            long now = System.currentTimeMillis();
+            assertThat(log.enforceRetention(now)).isZero();
+            // 时间到期后只剩活跃分段
+            assertThat(log.enforceRetention(now + 120_000)).isEqualTo(1);
+            assertThat(log.firstOffset()).isEqualTo(15);
+            assertThat(read(log, 15)).isEqualTo(payload(15));
+        }
+    }
+
+    @Test
+    void deletedSegmentsAreUnmappedOnceNoReaderIsActive() throws Exception {
+        try (CommitLog log = open(0, 2L * SEGMENT_BYTES)) {
+            appendAll(log, 0, 16);
+            log.beginRead();
+            ByteBuffer view = log.read(0);
+            assertThat(log.enforceRetention(System.currentTimeMillis())).isEqualTo(2);
+            assertThat(log.retiredSegments()).isEqualTo(2);
+
+            // 读取进行中，刷盘线程跑过多轮也不能解除映射，已拿到的视图仍然可读
+            Thread.sleep(50);
+            assertThat(log.retiredSegments()).isEqualTo(2);
+            assertThat(copy(view)).isEqualTo(payload(0));
+            log.endRead();
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (log.retiredSegments() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(log.retiredSegments()).isZero();
+            assertThat(read(log, 10)).isEqualTo(payload(10));
+        }
+    }
+}
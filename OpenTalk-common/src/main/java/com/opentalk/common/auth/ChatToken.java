@@ -0,0 +1,22 @@
+package com.opentalk.common.auth;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * @author welsir
+ * @description : 校验通过的聊天 token
+ * @date 2026/10/17
+ */
+@Data
+@AllArgsConstructor
+public class ChatToken {
+
+    private String uid;
+
+    /**
+     * 过期时间（秒级时间戳）
+     */
+    private long expireAt;
+
+}
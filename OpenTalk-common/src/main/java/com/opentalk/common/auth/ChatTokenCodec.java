@@ -0,0 +1,140 @@
+package com.opentalk.common.auth;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 平台登录后签发、聊天节点握手时校验的无状态 token，格式：
+ * <pre>v1.{kid}.{base64url(uid)}.{exp 秒级时间戳}.{base64url(HMAC-SHA256(前四段))}</pre>
+ * 校验只做一次 HMAC 与常量时间比较，不访问任何外部存储。
+ * 密钥按 kid 组成密钥环：签发总使用 currentKid，校验按 token 中的 kid 选取密钥，
+ * 轮换时先在所有聊天节点加入新密钥，再切换平台的 currentKid，旧密钥在 token 有效期过后移除。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class ChatTokenCodec {
+
+    public static final String VERSION = "v1";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static final int MAX_CACHED_MACS = 16;
+
+    /**
+     * Mac 不是线程安全的，按线程、按密钥实例缓存已初始化的 Mac
+     */
+    private final ThreadLocal<Map<SecretKeySpec, Mac>> macs = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    private volatile KeyRing ring;
+
+    /**
+     * @param keys kid 到 base64 编码密钥的映射
+     * @param currentKid 签发使用的 kid，只校验时可为 null
+     */
+    public ChatTokenCodec(Map<String, String> keys, String currentKid) {
+        updateKeys(keys, currentKid);
+    }
+
+    /**
+     * 运行时替换密钥环
+     */
+    public void updateKeys(Map<String, String> keys, String currentKid) {
+        Map<String, SecretKeySpec> specs = new HashMap<>();
+        keys.forEach((kid, secret) -> {
+            if (kid.indexOf('.') >= 0) {
+                throw new IllegalArgumentException("kid must not contain '.': " + kid);
+            }
+            specs.put(kid, new SecretKeySpec(Base64.getDecoder().decode(secret), ALGORITHM));
+        });
+        if (currentKid != null && !specs.containsKey(currentKid)) {
+            throw new IllegalArgumentException("current kid not in key ring: " + currentKid);
+        }
+        this.ring = new KeyRing(Collections.unmodifiableMap(specs), currentKid);
+    }
+
+    public String sign(String uid, long expireAtSeconds) {
+        KeyRing ring = this.ring;
+        String kid = ring.currentKid;
+        if (kid == null) {
+            throw new IllegalStateException("no signing key configured");
+        }
+        String payload = VERSION + "." + kid + "." + ENCODER.encodeToString(uid.getBytes(StandardCharsets.UTF_8)) + "." + expireAtSeconds;
+        return payload + "." + ENCODER.encodeToString(mac(ring.keys.get(kid)).doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * 校验 token 并返回其中的 uid，失败时抛出 {@link ChatTokenException}
+     */
+    public ChatToken verify(String token, long nowSeconds) {
+        if (token == null) {
+            throw new ChatTokenException("token missing");
+        }
+        int sigStart = token.lastIndexOf('.');
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 5 || !VERSION.equals(parts[0])) {
+            throw new ChatTokenException("malformed token");
+        }
+        SecretKeySpec key = ring.keys.get(parts[1]);
+        if (key == null) {
+            throw new ChatTokenException("unknown kid: " + parts[1]);
+        }
+        long expireAt;
+        byte[] signature;
+        String uid;
+        try {
+            expireAt = Long.parseLong(parts[3]);
+            signature = DECODER.decode(parts[4]);
+            uid = new String(DECODER.decode(parts[2]), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ChatTokenException("malformed token");
+        }
+        byte[] expected = mac(key).doFinal(token.substring(0, sigStart).getBytes(StandardCharsets.US_ASCII));
+        if (!MessageDigest.isEqual(expected, signature)) {
+            throw new ChatTokenException("bad signature");
+        }
+        if (expireAt <= nowSeconds) {
+            throw new ChatTokenException("token expired");
+        }
+        return new ChatToken(uid, expireAt);
+    }
+
+    private Mac mac(SecretKeySpec key) {
+        Map<SecretKeySpec, Mac> cache = macs.get();
+        Mac mac = cache.get(key);
+        if (mac == null) {
+            // 密钥环替换后旧实例不再命中，数量超出时整体清理
+            if (cache.size() >= MAX_CACHED_MACS) {
+                cache.clear();
+            }
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            cache.put(key, mac);
+        }
+        return mac;
+    }
+
+    private static final class KeyRing {
+        final Map<String, SecretKeySpec> keys;
+        final String currentKid;
+
+        KeyRing(Map<String, SecretKeySpec> keys, String currentKid) {
+            this.keys = keys;
+            this.currentKid = currentKid;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.opentalk.common.auth;
+
+/**
+ * @author welsir
+ * @description : 聊天 token 校验失败
+ * @date 2026/10/17
+ */
+public class ChatTokenException extends RuntimeException {
+
+    public ChatTokenException(String message) {
+        super(message);
+    }
+
+    /**
+     * 校验失败是常态路径（过期、伪造），不需要堆栈
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
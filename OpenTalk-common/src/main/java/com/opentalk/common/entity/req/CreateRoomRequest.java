@@ -14,4 +14,7 @@ public class CreateRoomRequest {
     private String ownerName;
     private String ownerUid;
     private String roomType;
+    private String description;
+    private boolean isPublic;
+    private int maxMembers;
 }
\ No newline at end of file
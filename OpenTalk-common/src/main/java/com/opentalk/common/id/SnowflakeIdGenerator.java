@@ -0,0 +1,133 @@
+package com.opentalk.common.id;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake 风格的 64 位 ID：[1 位符号 0][41 位毫秒时间戳][10 位节点号][12 位序列号]，
+ * 时间戳相对 {@link #EPOCH_MILLIS}，可用约 69 年。同一节点生成的 ID 严格递增，不同节点按时间大致有序，
+ * 按时间范围查询时用 {@link #minIdAt}/{@link #maxIdAt} 换算成 ID 区间即可。
+ * <p>
+ * 无锁：上一次分配的 (时间戳, 序列号) 合在一个 AtomicLong 里，分配就是一次 CAS。
+ * 同一毫秒内序列号耗尽时借用下一毫秒；时钟回拨时沿用上一次的时间戳继续递增，
+ * 逻辑时钟领先系统时钟超过 maxDriftMillis 时抛出 {@link IllegalStateException}，避免长时间回拨后 ID 与墙上时间严重偏离。
+ * 进程重启前后的回拨无法感知，部署时应保证节点号唯一且重启间隔大于可能的回拨幅度。
+ * 节点号没有默认值，每个进程（平台服务与各聊天节点）都必须显式配置互不相同的值。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+public class SnowflakeIdGenerator {
+
+    /**
+     * 2025-01-01T00:00:00Z
+     */
+    public static final long EPOCH_MILLIS = 1735689600000L;
+
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    /**
+     * 正数 long 的最大十进制位数，字符串形式补零到此长度
+     */
+    public static final int STRING_LENGTH = 19;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    private final long nodeBits;
+    private final long maxDriftMillis;
+    /**
+     * (相对时间戳 << SEQUENCE_BITS) | 序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        this(nodeId, 5_000);
+    }
+
+    /**
+     * @param maxDriftMillis 允许逻辑时钟领先系统时钟的最大毫秒数
+     */
+    public SnowflakeIdGenerator(long nodeId, long maxDriftMillis) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("node id must be in [0, " + MAX_NODE_ID + "], got " + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        this.maxDriftMillis = maxDriftMillis;
+    }
+
+    public long nextId() {
+        for (;;) {
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            long prev = state.get();
+            long last = prev >>> SEQUENCE_BITS;
+            long next;
+            if (now > last) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                if (last - now > maxDriftMillis) {
+                    throw new IllegalStateException("clock moved backwards or id rate exceeded: logical clock is "
+                            + (last - now) + "ms ahead of system clock");
+                }
+                // 同一毫秒或时钟回拨：序列号加一，溢出时进位到下一毫秒
+                next = prev + 1;
+            }
+            if (state.compareAndSet(prev, next)) {
+                return (next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 定长十进制字符串形式，供仍以 String 存储 ID 的实体使用，见 {@link #toPaddedString}
+     */
+    public String nextIdString() {
+        return toPaddedString(nextId());
+    }
+
+    /**
+     * 补零到 {@link #STRING_LENGTH} 位的十进制字符串。时间戳进位时十进制位数会增加，
+     * 不补零的话 String 列按字典序排序与按 ID 数值排序不一致，定长后两者一致
+     */
+    public static String toPaddedString(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("id must not be negative: " + id);
+        }
+        String digits = Long.toString(id);
+        if (digits.length() == STRING_LENGTH) {
+            return digits;
+        }
+        char[] chars = new char[STRING_LENGTH];
+        int pad = STRING_LENGTH - digits.length();
+        Arrays.fill(chars, 0, pad, '0');
+        digits.getChars(0, digits.length(), chars, pad);
+        return new String(chars);
+    }
+
+    /**
+     * ID 中的毫秒时间戳（Unix 纪元）
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH_MILLIS;
+    }
+
+    public static long nodeOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+
+    /**
+     * 不早于 epochMillis 生成的 ID 的下界
+     */
+    public static long minIdAt(long epochMillis) {
+        return Math.max(0, epochMillis - EPOCH_MILLIS) << TIMESTAMP_SHIFT;
+    }
+
+    /**
+     * 不晚于 epochMillis 生成的 ID 的上界
+     */
+    public static long maxIdAt(long epochMillis) {
+        return minIdAt(epochMillis + 1) - 1;
+    }
+}
@@ -50,6 +50,10 @@ public final class ResultUtils {
         return result;
     }
 
+    public static <T> Result<T> error(String messsage) {
+        return error(ResultCode.PROGRAM_ERROR, messsage);
+    }
+
     public static <T> Result<T> error(ResultCode resultCode) {
         Result<T> result = new Result<>();
         result.setCode(resultCode.getCode());
@@ -0,0 +1,54 @@
+package com.opentalk.common.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ID 单调递增、节点号编码、定长字符串的字典序与数值序一致
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+class SnowflakeIdGeneratorTest {
+
+    @Test
+    void idsIncreaseAndCarryNodeId() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(7);
+        long prev = -1;
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(prev);
+            assertThat(SnowflakeIdGenerator.nodeOf(id)).isEqualTo(7);
+            prev = id;
+        }
+    }
+
+    @Test
+    void paddedStringsSortLikeNumbers() {
+        long[] ids = {0L, 9L, 10L, SnowflakeIdGenerator.minIdAt(SnowflakeIdGenerator.EPOCH_MILLIS + 1), 123_456_789L,
+                SnowflakeIdGenerator.maxIdAt(System.currentTimeMillis()), Long.MAX_VALUE};
+        List<String> strings = new ArrayList<>();
+        for (long id : ids) {
+            String s = SnowflakeIdGenerator.toPaddedString(id);
+            assertThat(s).hasSize(SnowflakeIdGenerator.STRING_LENGTH);
+            assertThat(Long.parseLong(s)).isEqualTo(id);
+            strings.add(s);
+        }
+        assertThat(strings).isSorted();
+        assertThat(new SnowflakeIdGenerator(1).nextIdString()).hasSize(SnowflakeIdGenerator.STRING_LENGTH);
+    }
+
+    @Test
+    void invalidArgumentsAreRejected() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SnowflakeIdGenerator.toPaddedString(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,26 @@
+package com.opentalk.application.dto;
+
+import com.opentalk.domain.user.entity.User;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * @author welsir
+ * @description : 登录结果，附带连接聊天节点用的 token
+ * @date 2026/10/17
+ */
+@Data
+@Builder
+public class LoginResponse {
+
+    private User user;
+    /**
+     * 连接聊天节点时以 /chat?token=xxx 携带
+     */
+    private String chatToken;
+    /**
+     * chatToken 过期时间（秒级时间戳）
+     */
+    private long chatTokenExpireAt;
+
+}
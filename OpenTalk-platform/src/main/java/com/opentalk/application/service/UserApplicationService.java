@@ -1,11 +1,13 @@
 package com.opentalk.application.service;
 
+import com.opentalk.application.dto.LoginResponse;
 import com.opentalk.common.result.Result;
 import com.opentalk.common.result.ResultUtils;
 import com.opentalk.domain.user.entity.User;
 import com.opentalk.domain.user.factory.UserFactory;
 import com.opentalk.domain.user.repository.facade.UserRepositoryInterface;
 import com.opentalk.domain.user.service.UserDomainService;
+import com.opentalk.infrastructure.auth.ChatTokenIssuer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -29,6 +31,9 @@ public class UserApplicationService {
     @Autowired
     private UserFactory userFactory;
 
+    @Autowired
+    private ChatTokenIssuer chatTokenIssuer;
+
     /**
      * 用户注册
      */
@@ -74,8 +79,14 @@ public class UserApplicationService {
             
             // 更新在线状态
             userRepository.updateOnlineStatus(user.getId(), true);
-            
-            return ResultUtils.success(user);
+
+            // 签发聊天节点握手 token，聊天节点本地校验，不再回查数据库
+            long expireAt = System.currentTimeMillis() / 1000 + chatTokenIssuer.getTtlSeconds();
+            return ResultUtils.success(LoginResponse.builder()
+                    .user(user)
+                    .chatToken(chatTokenIssuer.issue(user.getId(), expireAt))
+                    .chatTokenExpireAt(expireAt)
+                    .build());
         } catch (Exception e) {
             return ResultUtils.error("登录失败：" + e.getMessage());
         }
@@ -9,12 +9,13 @@ import com.opentalk.domain.room.entity.valueObject.GroupStatus;
 import com.opentalk.domain.room.entity.valueObject.MemberInfo;
 import com.opentalk.domain.room.entity.valueObject.RoomType;
 import com.opentalk.domain.room.repository.po.GroupRoomPO;
+import com.opentalk.infrastructure.id.IdGenerator;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * @author welsir
@@ -24,6 +25,9 @@ import java.util.UUID;
 @Service
 public class RoomFactory {
 
+    @Resource
+    private IdGenerator idGenerator;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
@@ -82,7 +86,7 @@ public class RoomFactory {
         MemberInfo memberInfo = initMemberInfo(ownerUid, nickName);
         
         GroupRoom room = new GroupRoom(roomName, ownerUid, groupInfo, memberInfo);
-        room.setGroupId(UUID.randomUUID().toString());
+        room.setGroupId(idGenerator.nextIdString());
         room.setStatus(GroupStatus.NORMAL);
         room.setRoomType(RoomType.GROUP);
         
@@ -4,13 +4,14 @@ import com.opentalk.domain.user.entity.User;
 import com.opentalk.domain.user.entity.po.UserPO;
 import com.opentalk.domain.user.entity.valueObject.UserInfo;
 import com.opentalk.domain.user.entity.valueObject.UserStatus;
+import com.opentalk.infrastructure.id.IdGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * @author welsir
@@ -20,6 +21,9 @@ import java.util.UUID;
 @Component
 public class UserFactory {
 
+    @Resource
+    private IdGenerator idGenerator;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
@@ -27,7 +31,7 @@ public class UserFactory {
      */
     public User createUser(String username, String password, String nickname) {
         User user = new User();
-        user.setId(UUID.randomUUID().toString());
+        user.setId(idGenerator.nextIdString());
         user.setUsername(username);
         user.setNickname(nickname);
         user.setPassword(password);
@@ -0,0 +1,62 @@
+package com.opentalk.infrastructure.auth;
+
+import com.opentalk.common.auth.ChatTokenCodec;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 登录成功后签发聊天节点握手用的 token，配置前缀 opentalk.chat-token。
+ * 未配置密钥时不签发，聊天节点需同时关闭握手鉴权（聊天节点默认关闭）。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "opentalk.chat-token")
+public class ChatTokenIssuer {
+
+    /**
+     * kid 到 base64 编码密钥的映射，需与聊天节点的密钥环一致
+     */
+    private Map<String, String> keys = new HashMap<>();
+    /**
+     * 签发使用的 kid
+     */
+    private String currentKid;
+    /**
+     * token 有效期（秒）
+     */
+    private long ttlSeconds = 24 * 3600;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private ChatTokenCodec codec;
+
+    @PostConstruct
+    public void init() {
+        if (!keys.isEmpty()) {
+            codec = new ChatTokenCodec(keys, currentKid);
+        }
+    }
+
+    public boolean isEnabled() {
+        return codec != null;
+    }
+
+    /**
+     * 签发 token，未配置密钥时返回 null
+     */
+    public String issue(String uid, long expireAtSeconds) {
+        return codec == null ? null : codec.sign(uid, expireAtSeconds);
+    }
+}
@@ -0,0 +1,53 @@
+package com.opentalk.infrastructure.id;
+
+import com.opentalk.common.id.SnowflakeIdGenerator;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * 房间、用户等实体的 ID 生成，配置前缀 opentalk.id。
+ * 节点号在同一集群内（含聊天节点）必须唯一，取值 0~1023，没有默认值，未配置时启动失败。
+ *
+ * @author welsir
+ * @description :
+ * @date 2026/10/17
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "opentalk.id")
+public class IdGenerator {
+
+    /**
+     * -1 表示未配置
+     */
+    private long nodeId = -1;
+    /**
+     * 允许逻辑时钟领先系统时钟的最大毫秒数，超过后拒绝生成
+     */
+    private long maxDriftMillis = 5_000;
+
+    private SnowflakeIdGenerator generator;
+
+    @PostConstruct
+    public void init() {
+        if (nodeId < 0) {
+            throw new IllegalStateException("opentalk.id.node-id must be configured explicitly and be unique across "
+                    + "platform and chat nodes, range [0, " + SnowflakeIdGenerator.MAX_NODE_ID + "]");
+        }
+        generator = new SnowflakeIdGenerator(nodeId, maxDriftMillis);
+    }
+
+    public long nextId() {
+        return generator.nextId();
+    }
+
+    /**
+     * 实体 ID 仍以 String 存储，使用补零到 19 位的十进制形式，字典序与数值序一致
+     */
+    public String nextIdString() {
+        return generator.nextIdString();
+    }
+}
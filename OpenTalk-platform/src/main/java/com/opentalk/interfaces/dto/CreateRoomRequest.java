@@ -0,0 +1,19 @@
+package com.opentalk.interfaces.dto;
+
+import lombok.Data;
+
+/**
+ * @author welsir
+ * @description : 创建群聊请求
+ * @date 2026/10/17
+ */
+@Data
+public class CreateRoomRequest {
+
+    private String roomName;
+    private String ownerUid;
+    private String ownerName;
+    private String description;
+    private boolean isPublic;
+    private int maxMembers;
+}
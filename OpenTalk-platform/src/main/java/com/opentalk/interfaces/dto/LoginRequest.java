@@ -0,0 +1,15 @@
+package com.opentalk.interfaces.dto;
+
+import lombok.Data;
+
+/**
+ * @author welsir
+ * @description : 登录请求
+ * @date 2026/10/17
+ */
+@Data
+public class LoginRequest {
+
+    private String username;
+    private String password;
+}
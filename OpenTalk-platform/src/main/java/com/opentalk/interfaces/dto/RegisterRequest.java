@@ -0,0 +1,17 @@
+package com.opentalk.interfaces.dto;
+
+import lombok.Data;
+
+/**
+ * @author welsir
+ * @description : 注册请求
+ * @date 2026/10/17
+ */
+@Data
+public class RegisterRequest {
+
+    private String username;
+    private String password;
+    private String nickname;
+    private String email;
+}
@@ -0,0 +1,18 @@
+package com.opentalk.interfaces.dto;
+
+import lombok.Data;
+
+/**
+ * @author welsir
+ * @description : 更新用户信息请求
+ * @date 2026/10/17
+ */
+@Data
+public class UpdateUserInfoRequest {
+
+    private String userId;
+    private String nickname;
+    private String avatar;
+    private String email;
+    private String phone;
+}